@@ -25,6 +25,7 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.orion.server.core.LogHelper;
 import org.eclipse.orion.server.core.authentication.IAuthenticationService;
 import org.eclipse.orion.server.core.resources.Base64;
+import org.eclipse.orion.server.useradmin.CredentialsCache;
 import org.eclipse.orion.server.useradmin.IOrionCredentialsService;
 import org.eclipse.orion.server.useradmin.UserAdminActivator;
 import org.osgi.service.useradmin.Authorization;
@@ -59,10 +60,15 @@ public class BasicAuthenticationService implements IAuthenticationService {
 
 			String login = authString.substring(0, authString.indexOf(':'));
 			String password = authString.substring(authString.indexOf(':') + 1);
+			CredentialsCache cache = CredentialsCache.getDefault();
+			String uid = cache.getVerifiedUid(login, password);
+			if (uid != null)
+				return uid;
 			User user = getUserForCredentials(login, password);
 			if (user != null) {
 				Authorization authorization = defaultUserAdmin.getAuthorization(user);
 				// TODO handle authorization
+				cache.put(login, password, user.getUid());
 				return user.getUid();
 			}
 		}
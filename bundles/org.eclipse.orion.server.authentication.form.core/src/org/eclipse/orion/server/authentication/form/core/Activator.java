@@ -10,8 +10,12 @@
  *******************************************************************************/
 package org.eclipse.orion.server.authentication.form.core;
 
-import org.osgi.framework.BundleActivator;
-import org.osgi.framework.BundleContext;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collection;
+import org.eclipse.osgi.service.datalocation.Location;
+import org.osgi.framework.*;
 
 public class Activator implements BundleActivator {
 
@@ -32,6 +36,38 @@ public class Activator implements BundleActivator {
 		return bundleContext;
 	}
 
+	/**
+	 * Returns the directory in the instance location where revoked tokens are
+	 * stored, or <code>null</code> if there is no instance location.
+	 */
+	File getRevocationLocation() {
+		BundleContext context = bundleContext;
+		if (context == null)
+			return null;
+		Collection<ServiceReference<Location>> refs;
+		try {
+			refs = context.getServiceReferences(Location.class, Location.INSTANCE_FILTER);
+		} catch (InvalidSyntaxException e) {
+			// we know the instance location filter syntax is valid
+			throw new RuntimeException(e);
+		}
+		if (refs.isEmpty())
+			return null;
+		ServiceReference<Location> ref = refs.iterator().next();
+		Location location = context.getService(ref);
+		try {
+			if (location == null)
+				return null;
+			URL root = location.getDataArea(PI_FORM_CORE);
+			// strip off file: prefix from URL
+			return new File(root.toExternalForm().substring(5), "revokedTokens"); //$NON-NLS-1$
+		} catch (IOException e) {
+			return null;
+		} finally {
+			context.ungetService(ref);
+		}
+	}
+
 	public void start(BundleContext context) throws Exception {
 		singleton = this;
 		bundleContext = context;
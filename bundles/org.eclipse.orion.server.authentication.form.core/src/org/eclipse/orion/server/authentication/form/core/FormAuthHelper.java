@@ -34,27 +34,78 @@ public class FormAuthHelper {
 	
 	private static boolean allowAnonymousAccountCreation;
 
+	/**
+	 * The name of the cookie carrying the signed token of the authenticated user.
+	 */
+	private static final String TOKEN_COOKIE = "OrionToken"; //$NON-NLS-1$
+
+	/**
+	 * The signed tokens identifying authenticated users, or <code>null</code> if
+	 * authenticated users are recorded in sessions.
+	 */
+	private static final SessionTokens tokens = SessionTokens.fromConfiguration();
+
 	static {
 		//if there is no list of users authorised to create accounts, it means everyone can create accounts
 		allowAnonymousAccountCreation = PreferenceHelper.getString(ServerConstants.CONFIG_AUTH_USER_CREATION, null) == null; //$NON-NLS-1$
 	}
 
 	/**
-	 * Returns the name of the user stored in session.
+	 * Returns the name of the user stored in session, or identified by the signed
+	 * token sent with the request.
 	 * 
 	 * @param req
 	 * @return authenticated user name or <code>null</code> if user is not
 	 *         authenticated.
 	 */
 	public static String getAuthenticatedUser(HttpServletRequest req) {
-		HttpSession s = req.getSession(true);
-		if (s.getAttribute("user") != null) { //$NON-NLS-1$
+		return getAuthenticatedUser(req, tokens);
+	}
+
+	/**
+	 * Returns the name of the user stored in session, or identified by a token
+	 * sent with the request that the given tokens verify.
+	 * 
+	 * @param req
+	 * @param tokens the tokens identifying authenticated users, or <code>null</code>
+	 * if authenticated users are recorded in sessions
+	 * @return authenticated user name or <code>null</code> if user is not
+	 *         authenticated.
+	 */
+	public static String getAuthenticatedUser(HttpServletRequest req, SessionTokens tokens) {
+		if (tokens != null)
+			return tokens.verify(getTokenCookie(req));
+		//don't create sessions for requests that are not authenticated
+		HttpSession s = req.getSession(false);
+		if (s != null && s.getAttribute("user") != null) { //$NON-NLS-1$
 			return (String) s.getAttribute("user"); //$NON-NLS-1$
 		}
 
 		return null;
 	}
 
+	private static String getTokenCookie(HttpServletRequest req) {
+		Cookie[] cookies = req.getCookies();
+		if (cookies == null)
+			return null;
+		for (Cookie cookie : cookies)
+			if (TOKEN_COOKIE.equals(cookie.getName()))
+				return cookie.getValue();
+		return null;
+	}
+
+	/**
+	 * Sets the token cookie. The servlet API in use can't mark cookies as HTTP only,
+	 * so the header is written directly.
+	 */
+	private static void setTokenCookie(HttpServletRequest req, HttpServletResponse resp, String token, int maxAge) {
+		StringBuilder cookie = new StringBuilder(TOKEN_COOKIE).append('=').append(token);
+		cookie.append("; Path=/; Max-Age=").append(maxAge).append("; HttpOnly"); //$NON-NLS-1$ //$NON-NLS-2$
+		if (req.isSecure())
+			cookie.append("; Secure"); //$NON-NLS-1$
+		resp.addHeader("Set-Cookie", cookie.toString()); //$NON-NLS-1$
+	}
+
 	/**
 	 * @param user
 	 * @param resp
@@ -73,7 +124,7 @@ public class FormAuthHelper {
 	/**
 	 * Authenticates user by credentials send in <code>login</code> and
 	 * <code>password</password> request parameters. If user credentials are correct session attribute <code>user</code>
-	 * is set. If user cannot be logged in
+	 * is set, or a signed token cookie is issued if a token key is configured. If user cannot be logged in
 	 * {@link HttpServletResponse#SC_UNAUTHORIZED} error is send.
 	 * 
 	 * @param req
@@ -90,13 +141,14 @@ public class FormAuthHelper {
 			String actualLogin = user.getUid();
 			if (logger.isInfoEnabled())
 				logger.info("Login success: " + actualLogin); //$NON-NLS-1$ 
-			req.getSession().setAttribute("user", actualLogin); //$NON-NLS-1$
+			if (tokens != null)
+				setTokenCookie(req, resp, tokens.issue(actualLogin), tokens.getMaxAge());
+			else
+				req.getSession().setAttribute("user", actualLogin); //$NON-NLS-1$
 			
-			IOrionUserProfileNode userProfileNode =getUserProfileService().getUserProfileNode(actualLogin, IOrionUserProfileConstants.GENERAL_PROFILE_PART);
 			try {
-				// try to store the login timestamp in the user profile
-				userProfileNode.put(IOrionUserProfileConstants.LAST_LOGIN_TIMESTAMP, new Long(System.currentTimeMillis()).toString(), false);
-				userProfileNode.flush();
+				// try to store the login timestamp in the user profile, without waiting for the profile to be written
+				UserProfileWriter.getDefault().put(getUserProfileService(), actualLogin, IOrionUserProfileConstants.GENERAL_PROFILE_PART, IOrionUserProfileConstants.LAST_LOGIN_TIMESTAMP, new Long(System.currentTimeMillis()).toString());
 			} catch (CoreException e) {
 				// just log that the login timestamp was not stored
 				LogHelper.log(e);
@@ -121,9 +173,17 @@ public class FormAuthHelper {
 		return null;
 	}
 
-	public static void performLogout(HttpServletRequest req) {
-		HttpSession s = req.getSession(true);
-		if (s.getAttribute("user") != null) { //$NON-NLS-1$
+	public static void performLogout(HttpServletRequest req, HttpServletResponse resp) {
+		if (tokens != null) {
+			String token = getTokenCookie(req);
+			if (token != null) {
+				tokens.revoke(token);
+				setTokenCookie(req, resp, "", 0); //$NON-NLS-1$
+			}
+			return;
+		}
+		HttpSession s = req.getSession(false);
+		if (s != null && s.getAttribute("user") != null) { //$NON-NLS-1$
 			s.removeAttribute("user"); //$NON-NLS-1$
 		}
 	}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.authentication.form.core;
+
+import java.io.*;
+import java.util.*;
+import org.eclipse.orion.server.core.LogHelper;
+
+/**
+ * The ids of revoked tokens, stored as one file per token in a directory shared by
+ * all servers. The name of each file is the token id, and its contents the time the
+ * token expires. A token revoked by one server is therefore rejected by every
+ * server, also after a restart.
+ * <p>
+ * Tokens found to be revoked are remembered in memory until they expire, since a
+ * revocation is never undone. Files of expired tokens are deleted from time to time.
+ */
+class RevokedTokens {
+	/**
+	 * The time in milliseconds between removals of expired revocations.
+	 */
+	private static final long SWEEP_INTERVAL = 60 * 60 * 1000;
+
+	private final File root;
+	/**
+	 * Map of the id of each token known to be revoked to the time the token expires.
+	 */
+	private final Map<String, Long> known = new HashMap<String, Long>();
+	private long lastSweep = System.currentTimeMillis();
+
+	RevokedTokens(File root) {
+		this.root = root;
+	}
+
+	/**
+	 * Returns whether the token with the given id has been revoked by any server.
+	 */
+	boolean isRevoked(String id) {
+		synchronized (known) {
+			if (known.containsKey(id))
+				return true;
+		}
+		File file = new File(root, id);
+		if (!file.exists())
+			return false;
+		Long expires = readExpiry(file);
+		synchronized (known) {
+			known.put(id, expires == null ? Long.valueOf(Long.MAX_VALUE) : expires);
+		}
+		return true;
+	}
+
+	/**
+	 * Revokes the token with the given id, which expires at the given time.
+	 */
+	void revoke(String id, long expires) {
+		synchronized (known) {
+			known.put(id, Long.valueOf(expires));
+		}
+		root.mkdirs();
+		try {
+			Writer writer = new OutputStreamWriter(new FileOutputStream(new File(root, id)), "UTF-8"); //$NON-NLS-1$
+			try {
+				writer.write(Long.toString(expires));
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			LogHelper.log(e);
+		}
+		long now = System.currentTimeMillis();
+		if (now - lastSweep > SWEEP_INTERVAL) {
+			lastSweep = now;
+			sweep(now);
+		}
+	}
+
+	/**
+	 * Forgets and deletes the revocations of tokens that have expired anyway.
+	 */
+	void sweep(long now) {
+		synchronized (known) {
+			for (Iterator<Long> it = known.values().iterator(); it.hasNext();)
+				if (it.next().longValue() < now)
+					it.remove();
+		}
+		File[] files = root.listFiles();
+		if (files == null)
+			return;
+		for (File file : files) {
+			Long expires = readExpiry(file);
+			if (expires != null && expires.longValue() < now)
+				file.delete();
+		}
+	}
+
+	/**
+	 * Returns the expiry time stored in the given file, or <code>null</code> if it
+	 * can't be read.
+	 */
+	private static Long readExpiry(File file) {
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8")); //$NON-NLS-1$
+			try {
+				String line = reader.readLine();
+				return line == null ? null : Long.valueOf(line.trim());
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			return null;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.authentication.form.core;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.security.*;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.orion.server.core.*;
+
+/**
+ * Issues and verifies signed, expiring tokens identifying an authenticated user.
+ * A token carries the user's uid, its expiry time and a random id, signed with
+ * HMAC-SHA256 using a key shared by all servers. Any server configured with the
+ * same key can verify a token without any session state.
+ * <p>
+ * A token is revoked on logout by remembering its id until it would have expired
+ * anyway. Revoked ids are stored in a location shared by all servers, so a revoked
+ * token is rejected by every server, also after a restart.
+ */
+public class SessionTokens {
+	private static final String MAC_ALGORITHM = "HmacSHA256"; //$NON-NLS-1$
+	/**
+	 * The default time in seconds a token is valid.
+	 */
+	private static final long DEFAULT_TIME_TO_LIVE = 8 * 60 * 60;
+	private static final int ID_LENGTH = 16;
+	private static final char[] HEX = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	private final SecretKeySpec key;
+	private final long timeToLive;
+	private final SecureRandom random = new SecureRandom();
+
+	private final RevokedTokens revoked;
+
+	/**
+	 * Returns the tokens configured for this server, or <code>null</code> if no
+	 * token key is configured and authentication should use sessions.
+	 */
+	static SessionTokens fromConfiguration() {
+		String secret = PreferenceHelper.getString(ServerConstants.CONFIG_AUTH_TOKEN_KEY);
+		if (secret == null || secret.trim().length() == 0)
+			return null;
+		long ttl = DEFAULT_TIME_TO_LIVE;
+		String configured = PreferenceHelper.getString(ServerConstants.CONFIG_AUTH_TOKEN_TTL);
+		if (configured != null) {
+			try {
+				ttl = Long.parseLong(configured.trim());
+			} catch (NumberFormatException e) {
+				//use the default
+			}
+		}
+		File revocations;
+		String location = PreferenceHelper.getString(ServerConstants.CONFIG_AUTH_TOKEN_REVOCATIONS);
+		if (location != null && location.trim().length() > 0) {
+			revocations = new File(location.trim());
+		} else {
+			Activator activator = Activator.getDefault();
+			revocations = activator == null ? null : activator.getRevocationLocation();
+			if (revocations == null) {
+				LogHelper.log(new Status(IStatus.ERROR, Activator.PI_FORM_CORE, "No location for revoked authentication tokens, using sessions instead")); //$NON-NLS-1$
+				return null;
+			}
+		}
+		try {
+			return new SessionTokens(secret.trim().getBytes("UTF-8"), ttl * 1000, revocations); //$NON-NLS-1$
+		} catch (UnsupportedEncodingException e) {
+			//every Java platform supports UTF-8
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Creates tokens signed with the given key.
+	 * @param secret The key used to sign and verify tokens
+	 * @param timeToLive The time in milliseconds issued tokens are valid
+	 * @param revocations The directory shared by all servers where revoked token ids are stored
+	 */
+	public SessionTokens(byte[] secret, long timeToLive, File revocations) {
+		this.key = new SecretKeySpec(secret, MAC_ALGORITHM);
+		this.timeToLive = timeToLive;
+		this.revoked = new RevokedTokens(revocations);
+	}
+
+	/**
+	 * Returns the number of seconds tokens issued now will be valid.
+	 */
+	int getMaxAge() {
+		return (int) (timeToLive / 1000);
+	}
+
+	/**
+	 * Returns a new token for the user with the given uid.
+	 */
+	public String issue(String uid) {
+		byte[] id = new byte[ID_LENGTH];
+		synchronized (random) {
+			random.nextBytes(id);
+		}
+		String payload = toHex(utf8(uid)) + '.' + (System.currentTimeMillis() + timeToLive) + '.' + toHex(id);
+		return payload + '.' + toHex(sign(payload));
+	}
+
+	/**
+	 * Returns the uid of the user the given token was issued to, or <code>null</code>
+	 * if the token is malformed, forged, expired or revoked.
+	 */
+	public String verify(String token) {
+		if (token == null)
+			return null;
+		String[] parts = token.split("\\."); //$NON-NLS-1$
+		if (parts.length != 4)
+			return null;
+		String payload = parts[0] + '.' + parts[1] + '.' + parts[2];
+		byte[] signature = fromHex(parts[3]);
+		if (signature == null || !MessageDigest.isEqual(signature, sign(payload)))
+			return null;
+		long expires;
+		try {
+			expires = Long.parseLong(parts[1]);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		if (expires < System.currentTimeMillis())
+			return null;
+		if (revoked.isRevoked(parts[2]))
+			return null;
+		byte[] uid = fromHex(parts[0]);
+		if (uid == null)
+			return null;
+		try {
+			return new String(uid, "UTF-8"); //$NON-NLS-1$
+		} catch (UnsupportedEncodingException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Revokes the given token, if it is valid.
+	 */
+	public void revoke(String token) {
+		if (verify(token) == null)
+			return;
+		String[] parts = token.split("\\."); //$NON-NLS-1$
+		revoked.revoke(parts[2], Long.parseLong(parts[1]));
+	}
+
+	private byte[] sign(String payload) {
+		try {
+			Mac mac = Mac.getInstance(MAC_ALGORITHM);
+			mac.init(key);
+			return mac.doFinal(utf8(payload));
+		} catch (NoSuchAlgorithmException e) {
+			//every Java platform supports HmacSHA256
+			throw new RuntimeException(e);
+		} catch (InvalidKeyException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static byte[] utf8(String value) {
+		try {
+			return value.getBytes("UTF-8"); //$NON-NLS-1$
+		} catch (UnsupportedEncodingException e) {
+			//every Java platform supports UTF-8
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		char[] result = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			result[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+			result[2 * i + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(result);
+	}
+
+	/**
+	 * Returns the bytes encoded by the given hexadecimal string, or <code>null</code>
+	 * if the string is not valid hexadecimal.
+	 */
+	private static byte[] fromHex(String hex) {
+		if (hex.length() % 2 != 0)
+			return null;
+		byte[] result = new byte[hex.length() / 2];
+		for (int i = 0; i < result.length; i++) {
+			int high = Character.digit(hex.charAt(2 * i), 16);
+			int low = Character.digit(hex.charAt(2 * i + 1), 16);
+			if (high < 0 || low < 0)
+				return null;
+			result[i] = (byte) ((high << 4) | low);
+		}
+		return result;
+	}
+}
@@ -29,6 +29,6 @@ public class LogoutServlet extends HttpServlet {
 
 	@Override
 	protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-		FormAuthHelper.performLogout(req);
+		FormAuthHelper.performLogout(req, resp);
 	}
 }
@@ -31,7 +31,7 @@ public class FormOpenIdLogoutServlet extends HttpServlet {
 
 	@Override
 	protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-		FormAuthHelper.performLogout(req);
+		FormAuthHelper.performLogout(req, resp);
 		OpenIdHelper.performLogout(req);
 	}
 }
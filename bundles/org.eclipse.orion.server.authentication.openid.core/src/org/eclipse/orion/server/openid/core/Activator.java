@@ -39,6 +39,7 @@ public class Activator implements BundleActivator {
 	}
 
 	public void stop(BundleContext context) throws Exception {
+		OpenIdCache.shutdownDefault();
 		bundleContext = null;
 	}
 }
@@ -0,0 +1,394 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.openid.core;
+
+import java.io.*;
+import java.util.*;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.orion.server.core.LogHelper;
+import org.openid4java.association.Association;
+import org.openid4java.consumer.*;
+import org.openid4java.discovery.*;
+
+/**
+ * Caches the results of OpenID discovery, and the associations with OpenID
+ * providers, so that logging in does not have to contact the provider before
+ * redirecting the user to it.
+ * <p>
+ * All logins share one {@link ConsumerManager} using this cache. Discovery
+ * results are kept for an hour, and associations until they expire. Entries
+ * that are still in use are refreshed in the background shortly before they
+ * expire. If discovery fails, the last result is used instead. Discovery results
+ * are persisted, so they survive server restarts. Associations contain the shared
+ * MAC keys, so they are only kept in memory and renegotiated after a restart.
+ */
+public class OpenIdCache {
+	/**
+	 * The default time in milliseconds discovery results are kept.
+	 */
+	private static final long DISCOVERY_TIME_TO_LIVE = 60 * 60 * 1000;
+	/**
+	 * The time in milliseconds before expiry that entries are refreshed.
+	 */
+	private static final long REFRESH_MARGIN = 5 * 60 * 1000;
+	/**
+	 * The interval in milliseconds between background refreshes.
+	 */
+	private static final long REFRESH_INTERVAL = 60 * 1000;
+	private static final String CACHE_FILE = "openid-discovery.ser"; //$NON-NLS-1$
+	/**
+	 * The file earlier versions persisted associations in.
+	 */
+	private static final String LEGACY_CACHE_FILE = "openid-cache.ser"; //$NON-NLS-1$
+
+	private static OpenIdCache instance;
+
+	private static class DiscoveryEntry implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		final Identifier identifier;
+		final List<DiscoveryInformation> discoveries;
+		final long expires;
+		long lastUsed;
+
+		DiscoveryEntry(Identifier identifier, List<DiscoveryInformation> discoveries, long expires, long lastUsed) {
+			this.identifier = identifier;
+			this.discoveries = discoveries;
+			this.expires = expires;
+			this.lastUsed = lastUsed;
+		}
+	}
+
+	/**
+	 * Performs discovery through another discovery, and caches the results.
+	 */
+	private class CachingDiscovery extends Discovery {
+		CachingDiscovery() {
+			super();
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public List discover(Identifier identifier) throws DiscoveryException {
+			String key = identifier.getIdentifier();
+			long now = System.currentTimeMillis();
+			DiscoveryEntry entry;
+			synchronized (discoveries) {
+				entry = discoveries.get(key);
+				if (entry != null)
+					entry.lastUsed = now;
+			}
+			if (entry != null && entry.expires > now)
+				return new ArrayList<DiscoveryInformation>(entry.discoveries);
+			try {
+				return new ArrayList<DiscoveryInformation>(refreshDiscovery(identifier, now).discoveries);
+			} catch (DiscoveryException e) {
+				if (entry == null)
+					throw e;
+				//the provider is not responding, so keep using what we know
+				LogHelper.log(new Status(IStatus.WARNING, Activator.PI_OPENID_CORE, "Using previous discovery result for " + key, e)); //$NON-NLS-1$
+				return new ArrayList<DiscoveryInformation>(entry.discoveries);
+			}
+		}
+	}
+
+	/**
+	 * Stores associations in memory only.
+	 */
+	private class CachingAssociationStore implements ConsumerAssociationStore {
+		public void save(String opUrl, Association association) {
+			synchronized (associations) {
+				Map<String, Association> endpointAssociations = associations.get(opUrl);
+				if (endpointAssociations == null) {
+					endpointAssociations = new HashMap<String, Association>();
+					associations.put(opUrl, endpointAssociations);
+				}
+				endpointAssociations.put(association.getHandle(), association);
+			}
+		}
+
+		public Association load(String opUrl, String handle) {
+			synchronized (associations) {
+				Map<String, Association> endpointAssociations = associations.get(opUrl);
+				Association association = endpointAssociations == null ? null : endpointAssociations.get(handle);
+				return association == null || association.hasExpired() ? null : association;
+			}
+		}
+
+		/**
+		 * Returns the association with the given provider that expires last.
+		 */
+		public Association load(String opUrl) {
+			synchronized (associations) {
+				Map<String, Association> endpointAssociations = associations.get(opUrl);
+				if (endpointAssociations == null)
+					return null;
+				Association latest = null;
+				for (Association association : endpointAssociations.values())
+					if (!association.hasExpired() && (latest == null || association.getExpiry().after(latest.getExpiry())))
+						latest = association;
+				return latest;
+			}
+		}
+
+		public void remove(String opUrl, String handle) {
+			synchronized (associations) {
+				Map<String, Association> endpointAssociations = associations.get(opUrl);
+				if (endpointAssociations != null && endpointAssociations.remove(handle) != null && endpointAssociations.isEmpty())
+					associations.remove(opUrl);
+			}
+		}
+	}
+
+	private final Discovery delegate;
+	private final File file;
+	private final long discoveryTimeToLive;
+	private final ConsumerManager manager;
+	/**
+	 * Map of identifier to the discovery results for that identifier. Whether the
+	 * cache has unsaved changes is also guarded by this map.
+	 */
+	private final Map<String, DiscoveryEntry> discoveries;
+	/**
+	 * Map of provider endpoint URL to the associations with that provider, by handle.
+	 */
+	private final Map<String, Map<String, Association>> associations = new HashMap<String, Map<String, Association>>();
+	private boolean dirty = false;
+	private Timer refreshTimer;
+
+	/**
+	 * Returns the cache used by all logins, persisted in the data area of this bundle.
+	 */
+	public static synchronized OpenIdCache getDefault() throws ConsumerException {
+		if (instance == null) {
+			File file = null;
+			if (Activator.bundleContext != null) {
+				file = Activator.bundleContext.getDataFile(CACHE_FILE);
+				//don't leave association keys written by earlier versions on disk
+				File legacyFile = Activator.bundleContext.getDataFile(LEGACY_CACHE_FILE);
+				if (legacyFile != null)
+					legacyFile.delete();
+			}
+			instance = new OpenIdCache(new Discovery(), file);
+			instance.startRefresh();
+		}
+		return instance;
+	}
+
+	/**
+	 * Stops refreshing the cache used by all logins in the background, and persists it.
+	 */
+	static synchronized void shutdownDefault() {
+		if (instance != null) {
+			instance.shutdown();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Creates a cache performing discovery through the given discovery.
+	 * 
+	 * @param delegate the discovery that contacts providers
+	 * @param file the file the discovery results are persisted in, or <code>null</code>
+	 * @throws ConsumerException if the consumer manager could not be created
+	 */
+	public OpenIdCache(Discovery delegate, File file) throws ConsumerException {
+		this(delegate, file, DISCOVERY_TIME_TO_LIVE);
+	}
+
+	/**
+	 * Creates a cache performing discovery through the given discovery, and keeping
+	 * discovery results for the given time.
+	 * 
+	 * @param delegate the discovery that contacts providers
+	 * @param file the file the discovery results are persisted in, or <code>null</code>
+	 * @param discoveryTimeToLive the time in milliseconds discovery results are kept
+	 * @throws ConsumerException if the consumer manager could not be created
+	 */
+	public OpenIdCache(Discovery delegate, File file, long discoveryTimeToLive) throws ConsumerException {
+		this.delegate = delegate;
+		this.file = file;
+		this.discoveryTimeToLive = discoveryTimeToLive;
+		Map<String, DiscoveryEntry> loadedDiscoveries = null;
+		if (file != null && file.exists()) {
+			try {
+				ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+				try {
+					loadedDiscoveries = castMap(in.readObject());
+				} finally {
+					in.close();
+				}
+			} catch (Exception e) {
+				//start with an empty cache
+				LogHelper.log(new Status(IStatus.WARNING, Activator.PI_OPENID_CORE, "Could not read the OpenID cache", e)); //$NON-NLS-1$
+			}
+		}
+		this.discoveries = loadedDiscoveries != null ? loadedDiscoveries : new HashMap<String, DiscoveryEntry>();
+
+		manager = new ConsumerManager();
+		manager.setDiscovery(new CachingDiscovery());
+		manager.setAssociations(new CachingAssociationStore());
+		manager.setNonceVerifier(new InMemoryNonceVerifier(5000));
+		//don't use associations that are about to expire, the background refresh replaces them
+		manager.setPreExpiryAssocLockInterval((int) (REFRESH_MARGIN / 1000));
+		// for a working demo, not enforcing RP realm discovery
+		// since this new feature is not deployed
+		manager.getRealmVerifier().setEnforceRpId(false);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K, V> Map<K, V> castMap(Object object) {
+		return (Map<K, V>) object;
+	}
+
+	/**
+	 * Returns the consumer manager using this cache.
+	 */
+	public ConsumerManager getConsumerManager() {
+		return manager;
+	}
+
+	/**
+	 * Performs discovery on the given identifier, and caches the result.
+	 */
+	@SuppressWarnings("unchecked")
+	private DiscoveryEntry refreshDiscovery(Identifier identifier, long lastUsed) throws DiscoveryException {
+		List<DiscoveryInformation> result = delegate.discover(identifier);
+		DiscoveryEntry entry = new DiscoveryEntry(identifier, new ArrayList<DiscoveryInformation>(result), System.currentTimeMillis() + discoveryTimeToLive, lastUsed);
+		synchronized (discoveries) {
+			discoveries.put(identifier.getIdentifier(), entry);
+			dirty = true;
+		}
+		return entry;
+	}
+
+	/**
+	 * Refreshes the discovery results and associations that are still in use and
+	 * are about to expire, forgets the ones that are no longer used, and persists
+	 * the cache if it has changed.
+	 */
+	public void refresh() {
+		long now = System.currentTimeMillis();
+		List<DiscoveryEntry> entries;
+		synchronized (discoveries) {
+			for (Iterator<DiscoveryEntry> it = discoveries.values().iterator(); it.hasNext();) {
+				DiscoveryEntry entry = it.next();
+				if (entry.expires < now && entry.lastUsed < now - discoveryTimeToLive) {
+					it.remove();
+					dirty = true;
+				}
+			}
+			entries = new ArrayList<DiscoveryEntry>(discoveries.values());
+		}
+		for (DiscoveryEntry entry : entries) {
+			//only refresh what has been used recently
+			if (entry.lastUsed < now - discoveryTimeToLive)
+				continue;
+			if (entry.expires - now < REFRESH_MARGIN) {
+				try {
+					entry = refreshDiscovery(entry.identifier, entry.lastUsed);
+				} catch (DiscoveryException e) {
+					LogHelper.log(new Status(IStatus.WARNING, Activator.PI_OPENID_CORE, "Could not refresh discovery result for " + entry.identifier.getIdentifier(), e)); //$NON-NLS-1$
+				}
+			}
+			if (entry.discoveries.isEmpty())
+				continue;
+			Association association = manager.getAssociations().load(entry.discoveries.get(0).getOPEndpoint().toString());
+			if (association == null || association.getExpiry().getTime() - now < REFRESH_MARGIN)
+				manager.associate(entry.discoveries);
+		}
+		removeExpiredAssociations();
+		persist();
+	}
+
+	private void removeExpiredAssociations() {
+		synchronized (associations) {
+			for (Iterator<Map<String, Association>> endpoints = associations.values().iterator(); endpoints.hasNext();) {
+				Map<String, Association> endpointAssociations = endpoints.next();
+				for (Iterator<Association> it = endpointAssociations.values().iterator(); it.hasNext();) {
+					if (it.next().hasExpired())
+						it.remove();
+				}
+				if (endpointAssociations.isEmpty())
+					endpoints.remove();
+			}
+		}
+	}
+
+	/**
+	 * Writes the discovery results to the cache file, if they have changed since
+	 * they were last written. Associations are never written.
+	 */
+	public void persist() {
+		if (file == null)
+			return;
+		byte[] bytes;
+		try {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(buffer);
+			synchronized (discoveries) {
+				if (!dirty)
+					return;
+				out.writeObject(new HashMap<String, DiscoveryEntry>(discoveries));
+				dirty = false;
+			}
+			out.close();
+			bytes = buffer.toByteArray();
+		} catch (IOException e) {
+			LogHelper.log(new Status(IStatus.WARNING, Activator.PI_OPENID_CORE, "Could not write the OpenID cache", e)); //$NON-NLS-1$
+			return;
+		}
+		//write a new file and replace the old one, so a crash never leaves a partial cache
+		File temp = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+		try {
+			OutputStream out = new FileOutputStream(temp);
+			try {
+				out.write(bytes);
+			} finally {
+				out.close();
+			}
+			if (!temp.renameTo(file) && (!file.delete() || !temp.renameTo(file)))
+				throw new IOException("Could not replace " + file); //$NON-NLS-1$
+		} catch (IOException e) {
+			LogHelper.log(new Status(IStatus.WARNING, Activator.PI_OPENID_CORE, "Could not write the OpenID cache", e)); //$NON-NLS-1$
+			synchronized (discoveries) {
+				dirty = true;
+			}
+		}
+	}
+
+	private synchronized void startRefresh() {
+		refreshTimer = new Timer("Orion OpenID cache refresh", true); //$NON-NLS-1$
+		refreshTimer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				try {
+					refresh();
+				} catch (RuntimeException e) {
+					//keep refreshing
+					LogHelper.log(new Status(IStatus.ERROR, Activator.PI_OPENID_CORE, "Error refreshing the OpenID cache", e)); //$NON-NLS-1$
+				}
+			}
+		}, REFRESH_INTERVAL, REFRESH_INTERVAL);
+	}
+
+	/**
+	 * Stops refreshing the cache in the background, and persists it.
+	 */
+	public synchronized void shutdown() {
+		if (refreshTimer != null) {
+			refreshTimer.cancel();
+			refreshTimer = null;
+		}
+		persist();
+	}
+}
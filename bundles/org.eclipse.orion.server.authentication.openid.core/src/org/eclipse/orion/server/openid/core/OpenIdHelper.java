@@ -29,8 +29,8 @@ import org.eclipse.orion.server.core.PreferenceHelper;
 import org.eclipse.orion.server.core.ServerConstants;
 import org.eclipse.orion.server.core.resources.Base64;
 import org.eclipse.orion.server.user.profile.IOrionUserProfileConstants;
-import org.eclipse.orion.server.user.profile.IOrionUserProfileNode;
 import org.eclipse.orion.server.user.profile.IOrionUserProfileService;
+import org.eclipse.orion.server.user.profile.UserProfileWriter;
 import org.eclipse.orion.server.useradmin.IOrionCredentialsService;
 import org.eclipse.orion.server.useradmin.User;
 import org.eclipse.orion.server.useradmin.UserAdminActivator;
@@ -196,11 +196,9 @@ public class OpenIdHelper {
 
 			req.getSession().setAttribute("user", user.getUid()); //$NON-NLS-1$
 
-			IOrionUserProfileNode userProfileNode = getUserProfileService().getUserProfileNode(user.getUid(), IOrionUserProfileConstants.GENERAL_PROFILE_PART);
 			try {
-				// try to store the login timestamp in the user profile
-				userProfileNode.put(IOrionUserProfileConstants.LAST_LOGIN_TIMESTAMP, new Long(System.currentTimeMillis()).toString(), false);
-				userProfileNode.flush();
+				// try to store the login timestamp in the user profile, without waiting for the profile to be written
+				UserProfileWriter.getDefault().put(getUserProfileService(), user.getUid(), IOrionUserProfileConstants.GENERAL_PROFILE_PART, IOrionUserProfileConstants.LAST_LOGIN_TIMESTAMP, new Long(System.currentTimeMillis()).toString());
 			} catch (CoreException e) {
 				// just log that the login timestamp was not stored
 				LogHelper.log(e);
@@ -24,8 +24,6 @@ import org.eclipse.core.runtime.Status;
 import org.openid4java.OpenIDException;
 import org.openid4java.consumer.ConsumerException;
 import org.openid4java.consumer.ConsumerManager;
-import org.openid4java.consumer.InMemoryConsumerAssociationStore;
-import org.openid4java.consumer.InMemoryNonceVerifier;
 import org.openid4java.consumer.VerificationResult;
 import org.openid4java.discovery.DiscoveryException;
 import org.openid4java.discovery.DiscoveryInformation;
@@ -52,14 +50,8 @@ public class OpenidConsumer {
 		// the authentication responses from the OpenID provider
 		this.returnToUrl = returnToUrl;
 
-		// instantiate a ConsumerManager object
-		manager = new ConsumerManager();
-		manager.setAssociations(new InMemoryConsumerAssociationStore());
-		manager.setNonceVerifier(new InMemoryNonceVerifier(5000));
-
-		// for a working demo, not enforcing RP realm discovery
-		// since this new feature is not deployed
-		manager.getRealmVerifier().setEnforceRpId(false);
+		// share one ConsumerManager, which caches discovery results and associations
+		manager = OpenIdCache.getDefault().getConsumerManager();
 	}
 
 	// --- placing the authentication request ---
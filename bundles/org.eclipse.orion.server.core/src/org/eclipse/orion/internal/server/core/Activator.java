@@ -35,6 +35,7 @@ public class Activator implements BundleActivator {
 	ServiceTracker<FrameworkLog, FrameworkLog> logTracker;
 	ServiceTracker<IPreferencesService, IPreferencesService> prefTracker;
 	private ServiceRegistration<ITaskService> taskServiceRegistration;
+	private TaskService taskService;
 
 	public static Activator getDefault() {
 		return singleton;
@@ -134,8 +135,8 @@ public class Activator implements BundleActivator {
 	private void startTaskService() {
 		try {
 			IPath taskLocation = getTaskLocation();
-			ITaskService service = new TaskService(taskLocation);
-			taskServiceRegistration = bundleContext.registerService(ITaskService.class, service, null);
+			taskService = new TaskService(taskLocation);
+			taskServiceRegistration = bundleContext.registerService(ITaskService.class, taskService, null);
 		} catch (IOException e) {
 			LogHelper.log(new Status(IStatus.ERROR, ServerConstants.PI_SERVER_CORE, "Failed to initialize task service", e)); //$NON-NLS-1$
 		}
@@ -162,5 +163,9 @@ public class Activator implements BundleActivator {
 		taskServiceRegistration = null;
 		if (reg != null)
 			reg.unregister();
+		TaskService service = taskService;
+		taskService = null;
+		if (service != null)
+			service.shutdown();
 	}
 }
@@ -75,8 +75,13 @@ public class HashUtilities {
 		return bytesToHex(mdbytes);
 	}
 
-	//convert the byte to hex format
-	private static String bytesToHex(byte[] bytes) {
+	/**
+	 * Returns the text representation of the given hash, as returned by the
+	 * other methods of this class.
+	 * @param bytes the hash value
+	 * @return text representation of the hash
+	 */
+	public static String bytesToHex(byte[] bytes) {
 	    StringBuffer sb = new StringBuffer("");
 	    for (int i = 0; i < bytes.length; i++) {
 	    	sb.append(Integer.toHexString(0xFF & bytes[i]));
@@ -0,0 +1,361 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.core.metastore;
+
+import java.io.*;
+import java.util.*;
+import org.eclipse.orion.internal.server.core.IOUtilities;
+import org.eclipse.orion.server.core.LogHelper;
+import org.eclipse.orion.server.core.users.IMetadataStore;
+import org.osgi.service.prefs.BackingStoreException;
+
+/**
+ * A metadata store that keeps all qualifiers in a single append-only log file. Each
+ * save appends only the properties that changed since the previous save, as one
+ * transaction terminated by a commit record, so saving one user doesn't rewrite the
+ * metadata of all other users. Callers that know which properties changed use
+ * {@link #update(String, Map)}, which doesn't need the other properties at all.
+ * A transaction without a commit record, left behind when the server stops during
+ * a save, is ignored.
+ * <p>
+ * The current contents of all qualifiers are held in memory. When the log grows
+ * much larger than those contents, it is compacted by writing the current contents
+ * to a new log file that then replaces the old one.
+ * <p>
+ * The log is a UTF-8 text file with one record per line. Fields are separated by tabs,
+ * and tabs, line breaks and backslashes within fields are escaped with a backslash.
+ * The records are:
+ * <ul>
+ * <li><code>B &lt;qualifier&gt;</code> - begins a transaction on the given qualifier</li>
+ * <li><code>P &lt;key&gt; &lt;value&gt;</code> - sets a property</li>
+ * <li><code>D &lt;key&gt;</code> - removes a property</li>
+ * <li><code>C</code> - commits the transaction</li>
+ * </ul>
+ */
+public class LogMetadataStore implements IMetadataStore {
+	private static final String CHARSET = "UTF-8"; //$NON-NLS-1$
+	private static final char RECORD_BEGIN = 'B';
+	private static final char RECORD_COMMIT = 'C';
+	private static final char RECORD_DELETE = 'D';
+	private static final char RECORD_PUT = 'P';
+
+	/**
+	 * The default number of records above which the log is compacted, once it
+	 * also holds more than twice as many records as there are current properties.
+	 */
+	private static final int COMPACTION_THRESHOLD = 10000;
+
+	/**
+	 * The suffix of the marker file recording that existing metadata has been imported.
+	 */
+	private static final String IMPORTED_SUFFIX = ".imported"; //$NON-NLS-1$
+
+	private final File logFile;
+	private final int compactionThreshold;
+
+	/**
+	 * Map of qualifier to the current properties of the qualifier.
+	 */
+	private final Map<String, Map<String, String>> qualifiers = new HashMap<String, Map<String, String>>();
+	private int recordCount = 0;
+
+	/**
+	 * Opens the store with the given log file, reading the current contents of
+	 * the log. The log file is created on the first save.
+	 */
+	public LogMetadataStore(File logFile) throws BackingStoreException {
+		this(logFile, COMPACTION_THRESHOLD);
+	}
+
+	/**
+	 * Opens the store with the given log file, compacting the log once it holds more
+	 * than the given number of records.
+	 */
+	public LogMetadataStore(File logFile, int compactionThreshold) throws BackingStoreException {
+		this.logFile = logFile;
+		this.compactionThreshold = compactionThreshold;
+		if (logFile.exists() && !replay())
+			compact();
+	}
+
+	/**
+	 * Copies all qualifiers of the given store that are not yet known to this store.
+	 * Existing data is migrated from an older store this way the first time this
+	 * store is used. A marker file next to the log records a completed import, and
+	 * later calls return immediately without reading the source store.
+	 */
+	public synchronized void importFrom(IMetadataStore source) throws BackingStoreException {
+		File marker = new File(logFile.getParentFile(), logFile.getName() + IMPORTED_SUFFIX);
+		if (marker.exists())
+			return;
+		for (String qualifier : source.getQualifiers()) {
+			if (qualifiers.containsKey(qualifier))
+				continue;
+			Properties properties = source.load(qualifier);
+			if (properties != null)
+				save(qualifier, properties);
+		}
+		try {
+			marker.getParentFile().mkdirs();
+			marker.createNewFile();
+		} catch (IOException e) {
+			//importing again on the next start is harmless, since known qualifiers are skipped
+			LogHelper.log(e);
+		}
+	}
+
+	public synchronized String[] getQualifiers() {
+		return qualifiers.keySet().toArray(new String[qualifiers.size()]);
+	}
+
+	public synchronized Properties load(String qualifier) {
+		Map<String, String> current = qualifiers.get(qualifier);
+		if (current == null)
+			return null;
+		Properties result = new Properties();
+		result.putAll(current);
+		return result;
+	}
+
+	public synchronized void save(String qualifier, Properties properties) throws BackingStoreException {
+		Map<String, String> previous = qualifiers.get(qualifier);
+		if (previous == null)
+			previous = Collections.emptyMap();
+		Map<String, String> changes = new HashMap<String, String>();
+		for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+			String key = (String) entry.getKey();
+			String value = (String) entry.getValue();
+			if (!value.equals(previous.get(key)))
+				changes.put(key, value);
+		}
+		for (String key : previous.keySet()) {
+			if (!properties.containsKey(key))
+				changes.put(key, null);
+		}
+		update(qualifier, changes);
+	}
+
+	public synchronized void update(String qualifier, Map<String, String> changes) throws BackingStoreException {
+		Map<String, String> current = qualifiers.get(qualifier);
+		//nothing to write if the qualifier is already known and unchanged
+		if (changes.isEmpty() && current != null)
+			return;
+		StringBuilder transaction = new StringBuilder();
+		appendRecord(transaction, RECORD_BEGIN, qualifier, null);
+		for (Map.Entry<String, String> change : changes.entrySet()) {
+			if (change.getValue() == null)
+				appendRecord(transaction, RECORD_DELETE, change.getKey(), null);
+			else
+				appendRecord(transaction, RECORD_PUT, change.getKey(), change.getValue());
+		}
+		appendRecord(transaction, RECORD_COMMIT, null, null);
+		append(transaction.toString());
+		if (current == null) {
+			current = new HashMap<String, String>();
+			qualifiers.put(qualifier, current);
+		}
+		for (Map.Entry<String, String> change : changes.entrySet()) {
+			if (change.getValue() == null)
+				current.remove(change.getKey());
+			else
+				current.put(change.getKey(), change.getValue());
+		}
+		recordCount += changes.size() + 2;
+		if (recordCount > compactionThreshold && recordCount > 2 * countProperties())
+			compact();
+	}
+
+	/**
+	 * Reads the log into memory. Returns <code>false</code> if the log ends with
+	 * an incomplete transaction.
+	 */
+	private boolean replay() throws BackingStoreException {
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(logFile), CHARSET));
+			String qualifier = null;
+			Map<String, String> pending = null;
+			Set<String> deleted = null;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.length() == 0)
+					continue;
+				recordCount++;
+				List<String> fields = parseFields(line);
+				switch (line.charAt(0)) {
+					case RECORD_BEGIN :
+						//a new transaction discards an unfinished one
+						qualifier = fields.size() > 1 ? fields.get(1) : null;
+						pending = new HashMap<String, String>();
+						deleted = new HashSet<String>();
+						break;
+					case RECORD_PUT :
+						if (pending != null && fields.size() > 2) {
+							pending.put(fields.get(1), fields.get(2));
+							deleted.remove(fields.get(1));
+						}
+						break;
+					case RECORD_DELETE :
+						if (pending != null && fields.size() > 1) {
+							pending.remove(fields.get(1));
+							deleted.add(fields.get(1));
+						}
+						break;
+					case RECORD_COMMIT :
+						if (qualifier != null) {
+							Map<String, String> current = qualifiers.get(qualifier);
+							if (current == null) {
+								current = new HashMap<String, String>();
+								qualifiers.put(qualifier, current);
+							}
+							current.keySet().removeAll(deleted);
+							current.putAll(pending);
+						}
+						qualifier = null;
+						pending = null;
+						deleted = null;
+						break;
+				}
+			}
+			return pending == null;
+		} catch (IOException e) {
+			throw new BackingStoreException("Error reading metadata log " + logFile, e);
+		} finally {
+			IOUtilities.safeClose(reader);
+		}
+	}
+
+	/**
+	 * Appends the given records to the log and forces them to disk.
+	 */
+	private void append(String records) throws BackingStoreException {
+		logFile.getParentFile().mkdirs();
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(logFile, true);
+			out.write(records.getBytes(CHARSET));
+			out.getFD().sync();
+		} catch (IOException e) {
+			throw new BackingStoreException("Error writing metadata log " + logFile, e);
+		} finally {
+			IOUtilities.safeClose(out);
+		}
+	}
+
+	/**
+	 * Rewrites the log so that it only contains the current properties.
+	 */
+	private void compact() throws BackingStoreException {
+		File temp = new File(logFile.getParentFile(), logFile.getName() + ".tmp"); //$NON-NLS-1$
+		Writer writer = null;
+		int records = 0;
+		try {
+			FileOutputStream out = new FileOutputStream(temp);
+			writer = new BufferedWriter(new OutputStreamWriter(out, CHARSET));
+			for (Map.Entry<String, Map<String, String>> qualifier : qualifiers.entrySet()) {
+				StringBuilder transaction = new StringBuilder();
+				appendRecord(transaction, RECORD_BEGIN, qualifier.getKey(), null);
+				for (Map.Entry<String, String> property : qualifier.getValue().entrySet())
+					appendRecord(transaction, RECORD_PUT, property.getKey(), property.getValue());
+				appendRecord(transaction, RECORD_COMMIT, null, null);
+				writer.write(transaction.toString());
+				records += qualifier.getValue().size() + 2;
+			}
+			writer.flush();
+			out.getFD().sync();
+		} catch (IOException e) {
+			throw new BackingStoreException("Error compacting metadata log " + logFile, e);
+		} finally {
+			IOUtilities.safeClose(writer);
+		}
+		replace(temp, logFile);
+		recordCount = records;
+	}
+
+	private int countProperties() {
+		int count = 0;
+		for (Map<String, String> properties : qualifiers.values())
+			count += properties.size();
+		return count;
+	}
+
+	/**
+	 * Replaces the target file with the source file.
+	 */
+	static void replace(File source, File target) throws BackingStoreException {
+		if (source.renameTo(target))
+			return;
+		//renaming over an existing file fails on some platforms
+		File backup = new File(target.getParentFile(), target.getName() + ".bak"); //$NON-NLS-1$
+		backup.delete();
+		if (target.exists() && !target.renameTo(backup))
+			throw new BackingStoreException("Error replacing metadata file " + target);
+		if (!source.renameTo(target)) {
+			backup.renameTo(target);
+			throw new BackingStoreException("Error replacing metadata file " + target);
+		}
+		if (!backup.delete())
+			LogHelper.log(new IOException("Unable to delete " + backup)); //$NON-NLS-1$
+	}
+
+	private static void appendRecord(StringBuilder result, char type, String first, String second) {
+		result.append(type);
+		if (first != null)
+			escape(result.append('\t'), first);
+		if (second != null)
+			escape(result.append('\t'), second);
+		result.append('\n');
+	}
+
+	private static void escape(StringBuilder result, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '\\' :
+					result.append("\\\\"); //$NON-NLS-1$
+					break;
+				case '\t' :
+					result.append("\\t"); //$NON-NLS-1$
+					break;
+				case '\n' :
+					result.append("\\n"); //$NON-NLS-1$
+					break;
+				case '\r' :
+					result.append("\\r"); //$NON-NLS-1$
+					break;
+				default :
+					result.append(c);
+			}
+		}
+	}
+
+	/**
+	 * Splits a record into its unescaped fields. The first field is the record type.
+	 */
+	private static List<String> parseFields(String line) {
+		List<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '\t') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c == '\\' && i + 1 < line.length()) {
+				char next = line.charAt(++i);
+				field.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.core.metastore;
+
+import java.io.*;
+import java.util.*;
+import org.eclipse.orion.internal.server.core.IOUtilities;
+import org.eclipse.orion.server.core.users.IMetadataStore;
+import org.osgi.service.prefs.BackingStoreException;
+
+/**
+ * A metadata store that keeps each qualifier in its own preference file, in the
+ * layout used by Eclipse preferences. Every save rewrites the entire file of the
+ * qualifier, so this store is slow for large numbers of users or projects. It is
+ * kept for compatibility, and as the source for migrating to {@link LogMetadataStore}.
+ */
+public class PropertiesFileMetadataStore implements IMetadataStore {
+	private static final String FILE_EXTENSION = ".prefs"; //$NON-NLS-1$
+
+	private final File directory;
+
+	/**
+	 * @param directory The directory containing the preference files
+	 */
+	public PropertiesFileMetadataStore(File directory) {
+		this.directory = directory;
+	}
+
+	public synchronized String[] getQualifiers() {
+		List<String> result = new ArrayList<String>();
+		String[] names = directory.list();
+		if (names != null) {
+			for (String name : names) {
+				if (name.endsWith(FILE_EXTENSION))
+					result.add(name.substring(0, name.length() - FILE_EXTENSION.length()));
+			}
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	public synchronized Properties load(String qualifier) throws BackingStoreException {
+		File file = new File(directory, qualifier + FILE_EXTENSION);
+		if (!file.exists())
+			return null;
+		Properties result = new Properties();
+		InputStream in = null;
+		try {
+			in = new BufferedInputStream(new FileInputStream(file));
+			result.load(in);
+		} catch (IOException e) {
+			throw new BackingStoreException("Error reading metadata file " + file, e);
+		} finally {
+			IOUtilities.safeClose(in);
+		}
+		return result;
+	}
+
+	public synchronized void save(String qualifier, Properties properties) throws BackingStoreException {
+		File file = new File(directory, qualifier + FILE_EXTENSION);
+		//write a new file and then replace the old one, so a failed write leaves the old contents intact
+		File temp = new File(directory, qualifier + FILE_EXTENSION + ".tmp"); //$NON-NLS-1$
+		directory.mkdirs();
+		OutputStream out = null;
+		try {
+			FileOutputStream fileOut = new FileOutputStream(temp);
+			out = new BufferedOutputStream(fileOut);
+			properties.store(out, null);
+			out.flush();
+			fileOut.getFD().sync();
+		} catch (IOException e) {
+			throw new BackingStoreException("Error writing metadata file " + file, e);
+		} finally {
+			IOUtilities.safeClose(out);
+		}
+		LogMetadataStore.replace(temp, file);
+	}
+
+	public synchronized void update(String qualifier, Map<String, String> changes) throws BackingStoreException {
+		Properties properties = load(qualifier);
+		if (properties == null)
+			properties = new Properties();
+		for (Map.Entry<String, String> change : changes.entrySet()) {
+			if (change.getValue() == null)
+				properties.remove(change.getKey());
+			else
+				properties.put(change.getKey(), change.getValue());
+		}
+		save(qualifier, properties);
+	}
+}
@@ -4,42 +4,355 @@
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
- * 
+ *
  * Contributors:
  *     IBM Corporation - initial API and implementation
  *******************************************************************************/
 package org.eclipse.orion.internal.server.core.tasks;
 
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.orion.server.core.PreferenceHelper;
+import org.eclipse.orion.server.core.ServerConstants;
 import org.eclipse.orion.server.core.resources.UniversalUniqueIdentifier;
+import org.eclipse.orion.server.core.tasks.ITaskListener;
 import org.eclipse.orion.server.core.tasks.ITaskService;
 import org.eclipse.orion.server.core.tasks.TaskInfo;
 
 /**
  * A concrete implementation of the {@link ITaskService}.
+ * <p>
+ * Tasks known to this service are kept in memory, and written to the task store
+ * behind the callers' backs. Progress updates of running tasks are coalesced and
+ * written at most once per flush interval, while completed tasks are written
+ * immediately. Completed tasks are forgotten, and removed from the task store,
+ * once they have been completed for longer than the configured time to live.
+ * Running tasks that have not been updated for a day are assumed to have been
+ * abandoned, for example by a job that failed without completing its task, and
+ * are removed as well.
+ * <p>
+ * A task removed by a client is remembered as removed for the time to live, so
+ * that updates from a job still working on the task don't bring it back.
+ * <p>
+ * Clients waiting for a task to change register a listener, which is notified
+ * the next time the task is updated.
  */
 public class TaskService implements ITaskService {
+	/**
+	 * The default time in seconds a completed task is kept.
+	 */
+	private static final long DEFAULT_TIME_TO_LIVE = 3600;
+	/**
+	 * The time in milliseconds between writes of running tasks.
+	 */
+	private static final long FLUSH_INTERVAL = 2000;
+	/**
+	 * The time in milliseconds between removals of expired tasks.
+	 */
+	private static final long SWEEP_INTERVAL = 60000;
+	/**
+	 * The default time in milliseconds after which a running task that is not
+	 * updated is removed.
+	 */
+	private static final long DEFAULT_MAX_IDLE_TIME = 24 * 3600 * 1000;
+
+	/**
+	 * The last known state of a task.
+	 */
+	private static class Entry {
+		String representation;
+		long version;
+		boolean dirty;
+		/**
+		 * The time the task expires, or 0 while the task is running.
+		 */
+		long expires;
+		final String userId;
+		/**
+		 * The time the task was created, or first read from the task store.
+		 */
+		final long created = System.currentTimeMillis();
+		/**
+		 * The time the task was last updated.
+		 */
+		long updated = created;
+		/**
+		 * The listeners to notify the next time the task is updated, or <code>null</code>.
+		 */
+		List<ITaskListener> listeners;
+		/**
+		 * Whether the task has been removed. Updates of a removed task are ignored.
+		 */
+		boolean removed;
+
+		Entry(TaskInfo task, String representation, boolean dirty, long expires) {
+			this.representation = representation;
+			this.version = task.getVersion();
+			this.userId = task.getUserId();
+			this.dirty = dirty;
+			this.expires = expires;
+		}
+	}
+
 	TaskStore store;
+	private final long timeToLive;
+	private final long maxIdleTime;
+	private final ConcurrentMap<String, Entry> tasks = new ConcurrentHashMap<String, Entry>();
+	private final Timer timer = new Timer("Orion task writer", true); //$NON-NLS-1$
 
 	public TaskService(IPath baseLocation) {
+		this(baseLocation, getConfiguredTimeToLive());
+	}
+
+	/**
+	 * Creates a task service storing tasks in the given location, and keeping
+	 * completed tasks for the given time.
+	 * @param baseLocation The location of the task store
+	 * @param timeToLive The time in milliseconds completed tasks are kept
+	 */
+	public TaskService(IPath baseLocation, long timeToLive) {
+		this(baseLocation, timeToLive, DEFAULT_MAX_IDLE_TIME);
+	}
+
+	/**
+	 * Creates a task service storing tasks in the given location, keeping
+	 * completed tasks for the given time, and removing running tasks that are not
+	 * updated within the given maximum idle time.
+	 * @param baseLocation The location of the task store
+	 * @param timeToLive The time in milliseconds completed tasks are kept
+	 * @param maxIdleTime The time in milliseconds running tasks are kept without updates
+	 */
+	public TaskService(IPath baseLocation, long timeToLive, long maxIdleTime) {
 		store = new TaskStore(baseLocation.toFile());
+		this.timeToLive = timeToLive;
+		this.maxIdleTime = maxIdleTime;
+		timer.schedule(new TimerTask() {
+			public void run() {
+				flush();
+			}
+		}, FLUSH_INTERVAL, FLUSH_INTERVAL);
+		timer.schedule(new TimerTask() {
+			public void run() {
+				sweep();
+			}
+		}, 0, SWEEP_INTERVAL);
+	}
+
+	private static long getConfiguredTimeToLive() {
+		long ttl = DEFAULT_TIME_TO_LIVE;
+		String configured = PreferenceHelper.getString(ServerConstants.CONFIG_TASK_TTL);
+		if (configured != null) {
+			try {
+				ttl = Long.parseLong(configured.trim());
+			} catch (NumberFormatException e) {
+				//use the default
+			}
+		}
+		return ttl * 1000;
 	}
 
 	public TaskInfo createTask() {
-		TaskInfo task = new TaskInfo(new UniversalUniqueIdentifier().toBase64String());
-		store.writeTask(task.getTaskId(), task.toJSON().toString());
+		return createTask(null);
+	}
+
+	public TaskInfo createTask(String userId) {
+		TaskInfo task = new TaskInfo(new UniversalUniqueIdentifier().toBase64String(), userId);
+		tasks.put(task.getTaskId(), new Entry(task, task.toJSON().toString(), true, 0));
 		return task;
 	}
 
 	public TaskInfo getTask(String id) {
+		Entry entry = tasks.get(id);
+		if (entry != null) {
+			synchronized (entry) {
+				return entry.removed ? null : TaskInfo.fromJSON(entry.representation);
+			}
+		}
+		//the task may have been written by an earlier run of the server
 		String taskString = store.readTask(id);
 		if (taskString == null)
 			return null;
-		return TaskInfo.fromJSON(taskString);
+		TaskInfo task = TaskInfo.fromJSON(taskString);
+		if (task != null && !task.isRunning())
+			tasks.putIfAbsent(id, new Entry(task, taskString, false, System.currentTimeMillis() + timeToLive));
+		return task;
+	}
+
+	public List<TaskInfo> getTasks(String userId) {
+		List<Map.Entry<String, Entry>> owned = new ArrayList<Map.Entry<String, Entry>>();
+		for (Map.Entry<String, Entry> task : tasks.entrySet())
+			if (userId.equals(task.getValue().userId))
+				owned.add(task);
+		Collections.sort(owned, new Comparator<Map.Entry<String, Entry>>() {
+			public int compare(Map.Entry<String, Entry> task1, Map.Entry<String, Entry> task2) {
+				long created1 = task1.getValue().created;
+				long created2 = task2.getValue().created;
+				return created1 < created2 ? -1 : (created1 == created2 ? 0 : 1);
+			}
+		});
+		List<TaskInfo> result = new ArrayList<TaskInfo>(owned.size());
+		for (Map.Entry<String, Entry> task : owned) {
+			Entry entry = task.getValue();
+			TaskInfo info;
+			synchronized (entry) {
+				info = entry.removed ? null : TaskInfo.fromJSON(entry.representation);
+			}
+			if (info != null)
+				result.add(info);
+		}
+		return result;
+	}
+
+	public void removeTask(String id) {
+		Entry entry = tasks.get(id);
+		if (entry == null) {
+			store.removeTask(id);
+			return;
+		}
+		List<ITaskListener> listeners;
+		String representation;
+		synchronized (entry) {
+			if (entry.removed)
+				return;
+			store.removeTask(id);
+			//the entry is kept until it expires, so a late update doesn't bring the task back
+			entry.removed = true;
+			entry.expires = System.currentTimeMillis() + timeToLive;
+			entry.dirty = false;
+			representation = entry.representation;
+			listeners = entry.listeners;
+			entry.listeners = null;
+		}
+		//waiting clients find the task is gone
+		if (listeners != null) {
+			TaskInfo removed = TaskInfo.fromJSON(representation);
+			for (ITaskListener listener : listeners)
+				listener.taskUpdated(removed);
+		}
 	}
 
 	public void updateTask(TaskInfo task) {
-		store.writeTask(task.getTaskId(), task.toJSON().toString());
+		String id = task.getTaskId();
+		String representation = task.toJSON().toString();
+		Entry entry = tasks.get(id);
+		if (entry == null) {
+			Entry created = new Entry(task, representation, true, 0);
+			entry = tasks.putIfAbsent(id, created);
+			if (entry == null)
+				entry = created;
+		}
+		List<ITaskListener> listeners;
+		synchronized (entry) {
+			if (entry.removed)
+				return;
+			entry.representation = representation;
+			entry.version = task.getVersion();
+			entry.dirty = true;
+			entry.updated = System.currentTimeMillis();
+			if (!task.isRunning()) {
+				entry.expires = System.currentTimeMillis() + timeToLive;
+				write(id, entry);
+			}
+			listeners = entry.listeners;
+			entry.listeners = null;
+		}
+		//notify listeners without holding the lock, so they can get the task
+		if (listeners != null) {
+			TaskInfo updated = TaskInfo.fromJSON(representation);
+			for (ITaskListener listener : listeners)
+				listener.taskUpdated(updated);
+		}
+	}
+
+	public boolean addTaskListener(String id, long since, ITaskListener listener) {
+		Entry entry = tasks.get(id);
+		if (entry == null)
+			return false;
+		synchronized (entry) {
+			if (entry.expires != 0 || entry.version > since)
+				return false;
+			if (entry.listeners == null)
+				entry.listeners = new ArrayList<ITaskListener>(2);
+			entry.listeners.add(listener);
+			return true;
+		}
+	}
+
+	public void removeTaskListener(String id, ITaskListener listener) {
+		Entry entry = tasks.get(id);
+		if (entry == null)
+			return;
+		synchronized (entry) {
+			if (entry.listeners != null)
+				entry.listeners.remove(listener);
+		}
 	}
 
+	/**
+	 * Writes all tasks that have changed since they were last written.
+	 */
+	public void flush() {
+		for (Map.Entry<String, Entry> task : tasks.entrySet()) {
+			Entry entry = task.getValue();
+			synchronized (entry) {
+				write(task.getKey(), entry);
+			}
+		}
+	}
+
+	/**
+	 * Forgets and removes all completed tasks whose time to live has passed, and
+	 * all running tasks that have not been updated within the maximum idle time.
+	 * Also removes tasks left in the task store by an earlier run of the server
+	 * that have not been written within the time to live.
+	 */
+	public void sweep() {
+		long now = System.currentTimeMillis();
+		Map<String, List<ITaskListener>> abandoned = new HashMap<String, List<ITaskListener>>();
+		for (Iterator<Map.Entry<String, Entry>> it = tasks.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, Entry> task = it.next();
+			Entry entry = task.getValue();
+			synchronized (entry) {
+				if (entry.expires == 0 ? entry.updated + maxIdleTime >= now : entry.expires > now)
+					continue;
+				it.remove();
+				store.removeTask(task.getKey());
+				//an update that already found the entry must not write it again
+				entry.removed = true;
+				entry.dirty = false;
+				if (entry.listeners != null) {
+					abandoned.put(entry.representation, entry.listeners);
+					entry.listeners = null;
+				}
+			}
+		}
+		//clients waiting for an abandoned task find it is gone
+		for (Map.Entry<String, List<ITaskListener>> task : abandoned.entrySet()) {
+			TaskInfo removed = TaskInfo.fromJSON(task.getKey());
+			for (ITaskListener listener : task.getValue())
+				listener.taskUpdated(removed);
+		}
+		store.removeTasks(now - timeToLive, tasks.keySet());
+	}
+
+	/**
+	 * Stops writing tasks in the background, and writes all changed tasks.
+	 */
+	public void shutdown() {
+		timer.cancel();
+		flush();
+	}
+
+	/**
+	 * Writes the given task if it has changed. Must be called while holding the
+	 * lock of the entry, so that an older state never overwrites a newer one.
+	 */
+	private void write(String id, Entry entry) {
+		if (!entry.dirty)
+			return;
+		store.writeTask(id, entry.representation);
+		entry.dirty = false;
+	}
 }
@@ -11,6 +11,7 @@
 package org.eclipse.orion.internal.server.core.tasks;
 
 import java.io.*;
+import java.util.Collection;
 import org.eclipse.orion.internal.server.core.IOUtilities;
 import org.eclipse.orion.server.core.LogHelper;
 
@@ -19,43 +20,92 @@ import org.eclipse.orion.server.core.LogHelper;
  * will need to be reimplemented by different server implementations if they do
  * not support bare file access. This class intentionally does not understand
  * representations of tasks, to make it more easily pluggable in the future.
+ * <p>
+ * Access to each task is serialized by one of a fixed number of locks chosen by
+ * the task id, so different tasks can be read and written concurrently.
  */
 public class TaskStore {
+	/**
+	 * The number of locks shared by all tasks.
+	 */
+	private static final int LOCK_COUNT = 32;
+
 	private final File root;
+	private final Object[] locks = new Object[LOCK_COUNT];
 
 	public TaskStore(File root) {
 		this.root = root;
+		for (int i = 0; i < locks.length; i++)
+			locks[i] = new Object();
+	}
+
+	private Object lockFor(String id) {
+		return locks[(id.hashCode() & Integer.MAX_VALUE) % locks.length];
 	}
 
 	/**
 	 * Returns a string representation of the task with the given id, or <code>null</code>
 	 * if no such task exists.
 	 */
-	public synchronized String readTask(String id) {
-		File taskFile = new File(root, id);
-		if (!taskFile.exists())
-			return null;
-		StringWriter writer;
-		try {
-			FileReader reader = new FileReader(taskFile);
-			writer = new StringWriter();
-			IOUtilities.pipe(reader, writer, true, false);
-			return writer.toString();
-		} catch (IOException e) {
-			LogHelper.log(e);
-			return null;
+	public String readTask(String id) {
+		synchronized (lockFor(id)) {
+			File taskFile = new File(root, id);
+			if (!taskFile.exists())
+				return null;
+			StringWriter writer;
+			try {
+				FileReader reader = new FileReader(taskFile);
+				writer = new StringWriter();
+				IOUtilities.pipe(reader, writer, true, false);
+				return writer.toString();
+			} catch (IOException e) {
+				LogHelper.log(e);
+				return null;
+			}
 		}
 	}
 
-	public synchronized void writeTask(String id, String representation) {
-		root.mkdirs();
-		try {
-			File taskFile = new File(root, id);
-			FileWriter writer = new FileWriter(taskFile);
-			StringReader reader = new StringReader(representation);
-			IOUtilities.pipe(reader, writer, true, true);
-		} catch (IOException e) {
-			LogHelper.log(e);
+	public void writeTask(String id, String representation) {
+		synchronized (lockFor(id)) {
+			root.mkdirs();
+			try {
+				File taskFile = new File(root, id);
+				FileWriter writer = new FileWriter(taskFile);
+				StringReader reader = new StringReader(representation);
+				IOUtilities.pipe(reader, writer, true, true);
+			} catch (IOException e) {
+				LogHelper.log(e);
+			}
+		}
+	}
+
+	/**
+	 * Removes the task with the given id. Has no effect if no such task exists.
+	 */
+	public void removeTask(String id) {
+		synchronized (lockFor(id)) {
+			new File(root, id).delete();
+		}
+	}
+
+	/**
+	 * Removes all tasks that have not been written since the given time, except
+	 * the tasks with the given ids.
+	 * @param time The time in milliseconds since the epoch
+	 * @param keep The ids of the tasks to keep
+	 */
+	public void removeTasks(long time, Collection<String> keep) {
+		String[] ids = root.list();
+		if (ids == null)
+			return;
+		for (String id : ids) {
+			if (keep.contains(id))
+				continue;
+			synchronized (lockFor(id)) {
+				File taskFile = new File(root, id);
+				if (taskFile.lastModified() < time)
+					taskFile.delete();
+			}
 		}
 	}
 }
@@ -33,6 +33,34 @@ public class ServerConstants {
 	 */
 	public static final String CONFIG_AUTH_ADMIN_DEFAULT_PASSWORD = "orion.auth.admin.default.password"; //$NON-NLS-1$
 
+	/**
+	 * The name of a configuration property specifying the number of seconds a login and
+	 * password verified against the user store are trusted without verifying them again.
+	 * A value of <code>0</code> disables caching. The default is <code>60</code>.
+	 */
+	public static final String CONFIG_AUTH_CREDENTIALS_CACHE_TTL = "orion.auth.credentials.cache.ttl"; //$NON-NLS-1$
+
+	/**
+	 * The name of a configuration property specifying the secret key used to sign the tokens
+	 * identifying users authenticated with form-based authentication. When set, users are
+	 * identified by a signed token cookie instead of a server session, so any server
+	 * configured with the same key can serve any request. By default sessions are used.
+	 */
+	public static final String CONFIG_AUTH_TOKEN_KEY = "orion.auth.token.key"; //$NON-NLS-1$
+
+	/**
+	 * The name of a configuration property specifying the number of seconds a signed
+	 * authentication token is valid. The default is <code>28800</code> (eight hours).
+	 */
+	public static final String CONFIG_AUTH_TOKEN_TTL = "orion.auth.token.ttl"; //$NON-NLS-1$
+
+	/**
+	 * The name of a configuration property specifying the directory where the ids of
+	 * authentication tokens revoked on logout are stored. All servers sharing a token
+	 * key must share this directory. The default is a directory in the instance location.
+	 */
+	public static final String CONFIG_AUTH_TOKEN_REVOCATIONS = "orion.auth.token.revocations"; //$NON-NLS-1$
+
 	/**
 	 * The name of a configuration property specifying the default source configuration management
 	 * system to use for newly created top level folders.
@@ -58,6 +86,22 @@ public class ServerConstants {
 	 */
 	public static final String CONFIG_FILE_LAYOUT = "orion.file.layout"; //$NON-NLS-1$
 
+	/**
+	 * The name of a configuration property specifying how the contents of a project are
+	 * duplicated when a project is copied. The property value is one of <code>auto</code>
+	 * (clone files where the file system supports it, and copy otherwise) or <code>copy</code>.
+	 * The default is <code>auto</code>.
+	 */
+	public static final String CONFIG_FILE_PROJECT_COPY = "orion.file.projectCopy"; //$NON-NLS-1$
+
+	/**
+	 * The name of a configuration property specifying how server metadata such as users,
+	 * workspaces and projects is stored. The property value is one of <code>log</code>
+	 * (a single append-only log file), or <code>legacy</code> (one preference file per
+	 * kind of metadata). The default is <code>log</code>.
+	 */
+	public static final String CONFIG_META_STORE = "orion.core.metastore"; //$NON-NLS-1$
+
 	/**
 	 * The name of a configuration property specifying the virtual hosts to use for
 	 * test sites launched by this server. The property value is a comma-separated 
@@ -65,6 +109,12 @@ public class ServerConstants {
 	 */
 	public static final String CONFIG_SITE_VIRTUAL_HOSTS= "orion.site.virtualHosts"; //$NON-NLS-1$
 
+	/**
+	 * The name of a configuration property specifying the number of seconds a completed
+	 * long running task is kept before it is removed. The default is <code>3600</code>.
+	 */
+	public static final String CONFIG_TASK_TTL = "orion.task.ttl"; //$NON-NLS-1$
+
 	/**
 	 * The bundle ID of the server core. 
 	 */
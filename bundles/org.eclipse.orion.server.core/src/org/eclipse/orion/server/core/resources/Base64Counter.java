@@ -24,6 +24,18 @@ public class Base64Counter {
 		super();
 	}
 
+	/**
+	 * Constructs a new counter that starts at the given number.
+	 */
+	public Base64Counter(long start) {
+		if (start < 0 || start >= 1L << 48)
+			throw new IllegalArgumentException("This counter only supports numbers up to 2^48"); //$NON-NLS-1$
+		for (int position = 5; position >= 0; position--) {
+			counter[position] = (byte) start;
+			start >>>= 8;
+		}
+	}
+
 	/**
 	 * Constructs a new counter that starts at the given base-64 encoded number.
 	 */
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.core.resources;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.orion.server.core.LogHelper;
+import org.osgi.service.prefs.BackingStoreException;
+
+/**
+ * Allocates ids in the format of {@link Base64Counter}. Ids are reserved in blocks,
+ * and the end of the last reserved block is persisted, so allocation continues after
+ * the last id handed out before a restart instead of starting from zero again. Ids
+ * within a reserved block are handed out without locking.
+ * <p>
+ * When the allocator starts, it also skips past the ids already in use, so allocation
+ * continues after them when no high-water mark has been persisted yet, or when the
+ * persisted mark is stale. Ids can still be taken by other means, so callers should
+ * keep checking whether a candidate id is taken.
+ */
+public abstract class IdAllocator {
+	/**
+	 * The number of ids reserved each time the persisted high-water mark is updated.
+	 * Up to this many ids are skipped after a restart.
+	 */
+	private static final int BLOCK_SIZE = 100;
+
+	private final AtomicLong next = new AtomicLong();
+	/**
+	 * The end of the reserved block. Ids below this value may be handed out.
+	 */
+	private volatile long limit = 0;
+	private boolean initialized = false;
+
+	/**
+	 * Returns an allocator that persists its high-water mark under the given key
+	 * of the given preference node.
+	 */
+	public static IdAllocator forPreferences(final IEclipsePreferences node, final String key) {
+		return new IdAllocator() {
+			@Override
+			protected long readHighWaterMark() {
+				return node.getLong(key, 0);
+			}
+
+			@Override
+			protected void writeHighWaterMark(long mark) throws BackingStoreException {
+				node.putLong(key, mark);
+				node.flush();
+			}
+
+			@Override
+			protected String[] readExistingIds() throws BackingStoreException {
+				return node.childrenNames();
+			}
+		};
+	}
+
+	/**
+	 * Returns the next id.
+	 */
+	public String nextId() {
+		while (true) {
+			long current = next.get();
+			if (current < limit) {
+				if (next.compareAndSet(current, current + 1))
+					return new Base64Counter(current).toString();
+			} else {
+				reserve();
+			}
+		}
+	}
+
+	/**
+	 * Reserves the next block of ids once the current block is used up.
+	 */
+	private synchronized void reserve() {
+		if (!initialized) {
+			next.set(findStart());
+			initialized = true;
+		}
+		if (next.get() < limit)
+			return;
+		long newLimit = next.get() + BLOCK_SIZE;
+		try {
+			writeHighWaterMark(newLimit);
+		} catch (Exception e) {
+			//ids are still unique until the next restart, and callers check for ids in use
+			LogHelper.log(e);
+		}
+		limit = newLimit;
+	}
+
+	/**
+	 * Returns the first id to hand out: the persisted high-water mark, or the id after
+	 * the highest id already in use if that is larger.
+	 */
+	private long findStart() {
+		long start = readHighWaterMark();
+		String[] existing;
+		try {
+			existing = readExistingIds();
+		} catch (Exception e) {
+			LogHelper.log(e);
+			return start;
+		}
+		for (String id : existing) {
+			long value = parseId(id);
+			if (value >= start)
+				start = value + 1;
+		}
+		return start;
+	}
+
+	/**
+	 * Returns the value of the given id in the format of {@link Base64Counter}, or -1
+	 * if the id is not in that format.
+	 */
+	static long parseId(String id) {
+		if (id.length() == 0 || id.length() > 8)
+			return -1;
+		long value = 0;
+		for (int i = 0; i < id.length(); i++) {
+			char c = id.charAt(i);
+			int digit;
+			if (c >= 'A' && c <= 'Z')
+				digit = c - 'A';
+			else if (c >= 'a' && c <= 'z')
+				digit = c - 'a' + 26;
+			else if (c >= '0' && c <= '9')
+				digit = c - '0' + 52;
+			else if (c == '-')
+				digit = 62;
+			else if (c == '_')
+				digit = 63;
+			else
+				return -1;
+			value = (value << 6) | digit;
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the persisted high-water mark, or zero if none has been persisted.
+	 */
+	protected abstract long readHighWaterMark();
+
+	/**
+	 * Persists the given high-water mark. No id at or above the mark has been handed out.
+	 */
+	protected abstract void writeHighWaterMark(long mark) throws Exception;
+
+	/**
+	 * Returns the ids already in use. Ids not in the format of {@link Base64Counter}
+	 * are ignored. By default no ids are known to be in use.
+	 */
+	protected String[] readExistingIds() throws Exception {
+		return new String[0];
+	}
+}
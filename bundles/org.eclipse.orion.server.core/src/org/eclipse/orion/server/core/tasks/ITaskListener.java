@@ -0,0 +1,24 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.core.tasks;
+
+/**
+ * A listener that is notified when a task is updated in the task service.
+ * @see ITaskService#addTaskListener(String, long, ITaskListener)
+ */
+public interface ITaskListener {
+	/**
+	 * Notifies this listener that the given task has been updated. Listeners
+	 * are notified in the thread updating the task, and must return quickly.
+	 * @param task The updated task
+	 */
+	void taskUpdated(TaskInfo task);
+}
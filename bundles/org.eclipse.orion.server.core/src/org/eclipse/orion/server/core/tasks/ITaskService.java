@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.eclipse.orion.server.core.tasks;
 
+import java.util.List;
+
 /**
  * A service that server side components use for registering long running
  * operations. This service provides an HTTP resource representing the current
@@ -24,6 +26,15 @@ public interface ITaskService {
 	 */
 	TaskInfo createTask();
 
+	/**
+	 * Creates a new task owned by the given user. In its initial state the task
+	 * is running and 0% complete.
+	 * @param userId The login of the user owning the task
+	 * @return A new task
+	 * @see #createTask()
+	 */
+	TaskInfo createTask(String userId);
+
 	/**
 	 * Returns the task with the given task id, or <code>null</code> if no such task exists.
 	 * @param id The task id
@@ -31,6 +42,21 @@ public interface ITaskService {
 	 */
 	TaskInfo getTask(String id);
 
+	/**
+	 * Returns the tasks owned by the given user that are known to the task service,
+	 * in the order they were created.
+	 * @param userId The login of the task owner
+	 * @return The tasks of the user
+	 */
+	List<TaskInfo> getTasks(String userId);
+
+	/**
+	 * Removes the task with the given id from the task service. Has no effect
+	 * if no such task exists.
+	 * @param id The task id
+	 */
+	void removeTask(String id);
+
 	/**
 	 * Updates the state of the given task within the task service. Any changes
 	 * to a task object are only observed by other clients of the task service
@@ -38,4 +64,25 @@ public interface ITaskService {
 	 * @param task The task to update
 	 */
 	void updateTask(TaskInfo task);
+
+	/**
+	 * Registers a listener to be notified once, the next time the given task is
+	 * updated. The listener is only registered if the task is running and its
+	 * version is not newer than the given version. Otherwise there is nothing
+	 * to wait for, and this method returns <code>false</code>.
+	 * @param id The task id
+	 * @param since The version of the task known to the caller
+	 * @param listener The listener to notify
+	 * @return <code>true</code> if the listener was registered, and
+	 * <code>false</code> otherwise
+	 */
+	boolean addTaskListener(String id, long since, ITaskListener listener);
+
+	/**
+	 * Removes a listener that has not been notified yet. Has no effect if the
+	 * listener is not registered for the given task.
+	 * @param id The task id
+	 * @param listener The listener to remove
+	 */
+	void removeTaskListener(String id, ITaskListener listener);
 }
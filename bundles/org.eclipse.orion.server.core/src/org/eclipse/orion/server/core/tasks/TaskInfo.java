@@ -26,12 +26,16 @@ public class TaskInfo {
 	private static final String KEY_RUNNING = "Running"; //$NON-NLS-1$
 	private static final String KEY_LOCATION = "Location"; //$NON-NLS-1$
 	private static final String KEY_RESULT = "Result"; //$NON-NLS-1$
+	private static final String KEY_VERSION = "Version"; //$NON-NLS-1$
+	private static final String KEY_USER_ID = "UserId"; //$NON-NLS-1$
 	private final String id;
+	private final String userId;
 	private String message = ""; //$NON-NLS-1$
 	private int percentComplete = 0;
 	private boolean running = true;
 	private String resultLocation = null;
 	private IStatus result;
+	private long version = 0;
 
 	/**
 	 * Returns a task object based on its JSON representation. Returns
@@ -41,7 +45,7 @@ public class TaskInfo {
 		TaskInfo info;
 		try {
 			JSONObject json = new JSONObject(taskString);
-			info = new TaskInfo(json.getString(KEY_ID));
+			info = new TaskInfo(json.getString(KEY_ID), json.optString(KEY_USER_ID, null));
 			info.setMessage(json.optString(KEY_MESSAGE, "")); //$NON-NLS-1$
 			info.running = json.optBoolean(KEY_RUNNING, true);
 			info.setPercentComplete(json.optInt(KEY_PERCENT_COMPLETE, 0));
@@ -49,6 +53,7 @@ public class TaskInfo {
 			String resultString = json.optString(KEY_RESULT, null);
 			if (resultString!= null)
 				info.result = ServerStatus.fromJSON(resultString);
+			info.version = json.optLong(KEY_VERSION, 0);
 			return info;
 		} catch (JSONException e) {
 			LogHelper.log(new Status(IStatus.ERROR, ServerConstants.PI_SERVER_CORE, "Invalid task: " + taskString, e)); //$NON-NLS-1$
@@ -57,7 +62,18 @@ public class TaskInfo {
 	}
 
 	public TaskInfo(String id) {
+		this(id, null);
+	}
+
+	/**
+	 * Creates a task owned by the given user.
+	 * @param id The task id
+	 * @param userId The login of the user owning the task, or <code>null</code>
+	 * if the task has no owner
+	 */
+	public TaskInfo(String id, String userId) {
 		this.id = id;
+		this.userId = userId;
 	}
 
 	/**
@@ -98,6 +114,24 @@ public class TaskInfo {
 		return id;
 	}
 
+	/**
+	 * Returns the login of the user owning this task, or <code>null</code> if
+	 * the task has no owner.
+	 * @return The task owner, or <code>null</code>
+	 */
+	public String getUserId() {
+		return userId;
+	}
+
+	/**
+	 * Returns the version of this task. The version starts at zero and increases
+	 * every time the state of the task is changed.
+	 * @return The task version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
 	/**
 	 * Returns whether the task is currently running.
 	 * @return <code>true</code> if the task is currently running, and
@@ -114,6 +148,7 @@ public class TaskInfo {
 	 */
 	public TaskInfo setMessage(String message) {
 		this.message = message == null ? "" : message; //$NON-NLS-1$
+		version++;
 		return this;
 	}
 
@@ -130,6 +165,7 @@ public class TaskInfo {
 		if (percentComplete > 100)
 			percentComplete = 100;
 		this.percentComplete = percentComplete;
+		version++;
 		return this;
 	}
 
@@ -143,6 +179,7 @@ public class TaskInfo {
 		this.percentComplete = 100;
 		this.result = status;
 		this.message = status.getMessage();
+		version++;
 		return this;
 	}
 
@@ -154,6 +191,7 @@ public class TaskInfo {
 	 */
 	public TaskInfo setResultLocation(String location) {
 		this.resultLocation = location;
+		version++;
 		return this;
 	}
 
@@ -167,6 +205,9 @@ public class TaskInfo {
 			resultObject.put(KEY_MESSAGE, getMessage());
 			resultObject.put(KEY_ID, getTaskId());
 			resultObject.put(KEY_PERCENT_COMPLETE, getPercentComplete());
+			resultObject.put(KEY_VERSION, getVersion());
+			if (userId != null)
+				resultObject.put(KEY_USER_ID, userId);
 			if (resultLocation != null)
 				resultObject.put(KEY_LOCATION, resultLocation);
 			if (result != null) {
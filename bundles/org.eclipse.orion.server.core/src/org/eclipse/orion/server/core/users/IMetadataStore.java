@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.core.users;
+
+import java.util.Map;
+import java.util.Properties;
+import org.osgi.service.prefs.BackingStoreException;
+
+/**
+ * Storage for the orion preference scope, which holds server metadata such as
+ * users, workspaces and projects. The scope is divided into qualifiers, such as
+ * "Users" or "Projects". The contents of each qualifier are loaded and saved as a
+ * whole, as properties whose keys are paths relative to the qualifier node.
+ * <p>
+ * Implementations must be thread safe. A save must either complete entirely or
+ * have no effect, even if the server stops while it is in progress.
+ */
+public interface IMetadataStore {
+	/**
+	 * Returns the names of all qualifiers that have been saved.
+	 */
+	public String[] getQualifiers() throws BackingStoreException;
+
+	/**
+	 * Returns the contents of the given qualifier, or <code>null</code> if the
+	 * qualifier has never been saved.
+	 */
+	public Properties load(String qualifier) throws BackingStoreException;
+
+	/**
+	 * Replaces the contents of the given qualifier.
+	 */
+	public void save(String qualifier, Properties properties) throws BackingStoreException;
+
+	/**
+	 * Changes some properties of the given qualifier, and leaves all other properties
+	 * unchanged. The qualifier is created if it has never been saved.
+	 * @param changes Map of property key to its new value, or to <code>null</code>
+	 * if the property is removed
+	 */
+	public void update(String qualifier, Map<String, String> changes) throws BackingStoreException;
+}
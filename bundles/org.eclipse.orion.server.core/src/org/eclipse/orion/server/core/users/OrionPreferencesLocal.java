@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.orion.server.core.users;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.*;
@@ -17,14 +18,26 @@ import org.eclipse.core.internal.preferences.EclipsePreferences;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
 import org.eclipse.orion.internal.server.core.Activator;
-import org.eclipse.orion.server.core.ServerConstants;
+import org.eclipse.orion.internal.server.core.metastore.LogMetadataStore;
+import org.eclipse.orion.internal.server.core.metastore.PropertiesFileMetadataStore;
+import org.eclipse.orion.server.core.*;
 import org.eclipse.osgi.service.datalocation.Location;
 import org.osgi.framework.*;
+import org.osgi.service.prefs.BackingStoreException;
 
 /**
  * A local file system implementation of storage for the eclipse web preference
- * scope.
+ * scope. Each node directly below the scope root is loaded and saved as a whole
+ * through an {@link IMetadataStore}, chosen by the {@link ServerConstants#CONFIG_META_STORE}
+ * configuration property. By default all metadata is kept in a single log file,
+ * and existing preference files are migrated into the log the first time it is used.
+ * <p>
+ * Changes to the nodes of a qualifier are tracked as they happen, so saving a
+ * qualifier only hands the changed properties to the store, rather than all
+ * properties of the qualifier.
  */
 public class OrionPreferencesLocal extends EclipsePreferences {
 
@@ -37,6 +50,23 @@ public class OrionPreferencesLocal extends EclipsePreferences {
 	private static Set<String> loadedNodes = Collections.synchronizedSet(new HashSet<String>());
 	private static boolean initialized = false;
 	private static IPath baseLocation;
+	private static IMetadataStore metadataStore;
+
+	private static final String METADATA_LOG = "metadata.log"; //$NON-NLS-1$
+	private static final String STORE_LEGACY = "legacy"; //$NON-NLS-1$
+
+	/**
+	 * Map of qualifier to the properties changed since the qualifier was last saved,
+	 * with <code>null</code> values for removed properties. Guarded by the map.
+	 */
+	private static final Map<String, Map<String, String>> changedProperties = new HashMap<String, Map<String, String>>();
+
+	private static final IPreferenceChangeListener changeTracker = new IPreferenceChangeListener() {
+		public void preferenceChange(PreferenceChangeEvent event) {
+			Object newValue = event.getNewValue();
+			((OrionPreferencesLocal) event.getNode()).recordChange(event.getKey(), newValue == null ? null : newValue.toString());
+		}
+	};
 
 	static {
 		baseLocation = computeLocation();
@@ -99,12 +129,85 @@ public class OrionPreferencesLocal extends EclipsePreferences {
 			return;
 		if (baseLocation != null)
 			location = computeLocation(baseLocation, qualifier);
+		addPreferenceChangeListener(changeTracker);
+	}
+
+	/**
+	 * Records a change to a property of this node, using the same key for the
+	 * property as {@link #convertToProperties(Properties, String)} does when the
+	 * qualifier is saved as a whole.
+	 */
+	void recordChange(String key, String value) {
+		String path = absolutePath();
+		String loadLevelPath = getLoadLevel().absolutePath();
+		String prefix = path.length() > loadLevelPath.length() ? path.substring(loadLevelPath.length() + 1) : ""; //$NON-NLS-1$
+		String propertyKey = prefix.length() == 0 ? key : encodePath(prefix, key);
+		synchronized (changedProperties) {
+			Map<String, String> changes = changedProperties.get(qualifier);
+			if (changes == null) {
+				changes = new HashMap<String, String>();
+				changedProperties.put(qualifier, changes);
+			}
+			changes.put(propertyKey, value);
+		}
 	}
 
 	protected IPath getLocation() {
 		return location;
 	}
 
+	/**
+	 * Returns the store for the metadata of this scope, creating it on first use.
+	 */
+	private static synchronized IMetadataStore getMetadataStore() throws BackingStoreException {
+		if (metadataStore == null) {
+			//the preference files used before metadata stores were introduced
+			PropertiesFileMetadataStore legacy = new PropertiesFileMetadataStore(baseLocation.append(DEFAULT_PREFERENCES_DIRNAME).toFile());
+			if (STORE_LEGACY.equals(PreferenceHelper.getString(ServerConstants.CONFIG_META_STORE))) {
+				metadataStore = legacy;
+			} else {
+				LogMetadataStore log = new LogMetadataStore(baseLocation.append(METADATA_LOG).toFile());
+				log.importFrom(legacy);
+				metadataStore = log;
+			}
+		}
+		return metadataStore;
+	}
+
+	protected void load() throws BackingStoreException {
+		if (baseLocation == null || qualifier == null)
+			return;
+		Properties properties = getMetadataStore().load(qualifier);
+		if (properties != null)
+			convertFromProperties(this, properties, false);
+	}
+
+	protected void save() throws BackingStoreException {
+		if (baseLocation == null || qualifier == null)
+			return;
+		IMetadataStore store = getMetadataStore();
+		Map<String, String> changes;
+		synchronized (changedProperties) {
+			changes = changedProperties.remove(qualifier);
+		}
+		if (changes == null) {
+			store.save(qualifier, convertToProperties(new Properties(), "")); //$NON-NLS-1$
+			return;
+		}
+		try {
+			store.update(qualifier, changes);
+		} catch (BackingStoreException e) {
+			//keep the changes for the next save, unless they have been changed again since
+			synchronized (changedProperties) {
+				Map<String, String> newer = changedProperties.get(qualifier);
+				if (newer != null)
+					changes.putAll(newer);
+				changedProperties.put(qualifier, changes);
+			}
+			throw e;
+		}
+	}
+
 	protected boolean isAlreadyLoaded(IEclipsePreferences node) {
 		return loadedNodes.contains(node.name());
 	}
@@ -138,10 +241,12 @@ public class OrionPreferencesLocal extends EclipsePreferences {
 			synchronized (this) {
 				if (baseLocation == null)
 					return;
-				String[] names = computeChildren(baseLocation);
+				String[] names = getMetadataStore().getQualifiers();
 				for (int i = 0; i < names.length; i++)
 					addChild(names[i], null);
 			}
+		} catch (BackingStoreException e) {
+			LogHelper.log(e);
 		} finally {
 			initialized = true;
 		}
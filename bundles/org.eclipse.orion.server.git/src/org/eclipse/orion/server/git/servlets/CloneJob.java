@@ -13,6 +13,7 @@ package org.eclipse.orion.server.git.servlets;
 import java.io.File;
 import java.io.IOException;
 import javax.servlet.http.HttpServletResponse;
+import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.runtime.*;
 import org.eclipse.jgit.api.CloneCommand;
 import org.eclipse.jgit.api.Git;
@@ -20,6 +21,7 @@ import org.eclipse.jgit.api.errors.JGitInternalException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.transport.CredentialsProvider;
 import org.eclipse.jgit.util.FileUtils;
+import org.eclipse.orion.internal.server.servlets.file.FileChangeNotifier;
 import org.eclipse.orion.internal.server.servlets.workspace.WebProject;
 import org.eclipse.orion.server.core.ServerStatus;
 import org.eclipse.orion.server.core.tasks.ITaskService;
@@ -53,13 +55,13 @@ public class CloneJob extends GitJob {
 	}
 
 	private TaskInfo createTask() {
-		TaskInfo info = getTaskService().createTask();
+		TaskInfo info = getTaskService().createTask(user);
 		info.setMessage(NLS.bind("Cloning {0}...", clone.getUrl()));
 		getTaskService().updateTask(info);
 		return info;
 	}
 
-	private IStatus doClone() {
+	private IStatus doClone(IProgressMonitor monitor) {
 		try {
 			File cloneFolder = new File(clone.getContentLocation().getPath());
 			if (!cloneFolder.exists()) {
@@ -76,6 +78,7 @@ public class CloneJob extends GitJob {
 			cc.setDirectory(cloneFolder);
 			cc.setRemote(Constants.DEFAULT_REMOTE_NAME);
 			cc.setURI(clone.getUrl());
+			cc.setProgressMonitor(toGitMonitor(monitor));
 			Git git = cc.call();
 
 			// Configure the clone, see Bug 337820
@@ -118,7 +121,9 @@ public class CloneJob extends GitJob {
 	protected IStatus run(IProgressMonitor monitor) {
 		IStatus result = Status.OK_STATUS;
 		try {
-			result = doClone();
+			result = doClone(monitor);
+			if (monitor.isCanceled())
+				result = new Status(IStatus.CANCEL, GitActivator.PI_GIT, "Clone canceled.");
 			// save the clone metadata
 			if (result.isOK()) {
 				task.setResultLocation(cloneLocation);
@@ -136,6 +141,8 @@ public class CloneJob extends GitJob {
 					result = new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, msg, e);
 				}
 			}
+			//the clone was created, or removed again, behind the file servlet's back
+			FileChangeNotifier.getDefault().fireChanged(EFS.getLocalFileSystem().fromLocalFile(URIUtil.toFile(clone.getContentLocation())), FileChangeNotifier.CHANGE_MODIFIED);
 			task.done(result);
 			updateTask();
 		} finally {
@@ -39,10 +39,12 @@ public class FetchJob extends GitJob {
 	private ServiceReference<ITaskService> taskServiceRef;
 	private IPath path;
 	private String remote;
+	private final String userId;
 
-	public FetchJob(CredentialsProvider credentials, Path path) {
+	public FetchJob(String userId, CredentialsProvider credentials, Path path) {
 		super("Fetching", (GitCredentialsProvider) credentials); //$NON-NLS-1$
 
+		this.userId = userId;
 		// path: {remote}[/{branch}]/file/{...}
 		this.path = path;
 		this.remote = path.segment(0);
@@ -50,13 +52,13 @@ public class FetchJob extends GitJob {
 	}
 
 	private TaskInfo createTask() {
-		TaskInfo info = getTaskService().createTask();
+		TaskInfo info = getTaskService().createTask(userId);
 		info.setMessage(NLS.bind("Fetching {0}...", remote));
 		getTaskService().updateTask(info);
 		return info;
 	}
 
-	private void doFetch() throws IOException, CoreException, JGitInternalException, InvalidRemoteException, URISyntaxException {
+	private void doFetch(IProgressMonitor monitor) throws IOException, CoreException, JGitInternalException, InvalidRemoteException, URISyntaxException {
 		Repository db = getRepository();
 		String branch = getRemoteBranch();
 
@@ -68,6 +70,7 @@ public class FetchJob extends GitJob {
 
 		fc.setCredentialsProvider(credentials);
 		fc.setRemote(remote);
+		fc.setProgressMonitor(toGitMonitor(monitor));
 		if (branch != null) {
 			// refs/heads/{branch}:refs/remotes/{remote}/{branch}
 			RefSpec spec = new RefSpec(Constants.R_HEADS + branch + ":" + Constants.R_REMOTES + remote + "/" + branch); //$NON-NLS-1$ //$NON-NLS-2$
@@ -111,7 +114,7 @@ public class FetchJob extends GitJob {
 	protected IStatus run(IProgressMonitor monitor) {
 		IStatus result = Status.OK_STATUS;
 		try {
-			doFetch();
+			doFetch(monitor);
 		} catch (IOException e) {
 			result = new Status(IStatus.ERROR, GitActivator.PI_GIT, "Error fetching git remote", e);
 		} catch (CoreException e) {
@@ -123,6 +126,8 @@ public class FetchJob extends GitJob {
 		} catch (Exception e) {
 			result = new Status(IStatus.ERROR, GitActivator.PI_GIT, "Error fetching git remote", e);
 		}
+		if (monitor.isCanceled())
+			result = new Status(IStatus.CANCEL, GitActivator.PI_GIT, "Fetch canceled");
 		task.done(result);
 		task.setMessage(NLS.bind("Fetching {0} done", remote));
 		updateTask();
@@ -15,6 +15,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Map;
+import java.util.Set;
 import java.util.Map.Entry;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -370,25 +371,7 @@ public class GitCloneHandlerV1 extends ServletResourceHandler<String> {
 	 * Returns whether the user can access the given project
 	 */
 	private boolean isAccessAllowed(String userName, WebProject webProject) {
-		try {
-			WebUser webUser = WebUser.fromUserName(userName);
-			JSONArray workspacesJSON = webUser.getWorkspacesJSON();
-			for (int i = 0; i < workspacesJSON.length(); i++) {
-				JSONObject workspace = workspacesJSON.getJSONObject(i);
-				String workspaceId = workspace.getString(ProtocolConstants.KEY_ID);
-				WebWorkspace webWorkspace = WebWorkspace.fromId(workspaceId);
-				JSONArray projectsJSON = webWorkspace.getProjectsJSON();
-				for (int j = 0; j < projectsJSON.length(); j++) {
-					JSONObject project = projectsJSON.getJSONObject(j);
-					String projectId = project.getString(ProtocolConstants.KEY_ID);
-					if (projectId.equals(webProject.getId()))
-						return true;
-				}
-			}
-		} catch (JSONException e) {
-			// ignore, deny access
-		}
-		return false;
+		return OwnerIndex.getDefault().isProjectOwner(userName, webProject.getId());
 	}
 
 	/**
@@ -402,46 +385,35 @@ public class GitCloneHandlerV1 extends ServletResourceHandler<String> {
 	 * <code>ERROR</code> if an error occurred or the project couldn't be found
 	 */
 	static ServerStatus removeProject(String userName, WebProject webProject) {
-		try {
-			WebUser webUser = WebUser.fromUserName(userName);
-			JSONArray workspacesJSON = webUser.getWorkspacesJSON();
-			for (int i = 0; i < workspacesJSON.length(); i++) {
-				JSONObject workspace = workspacesJSON.getJSONObject(i);
-				String workspaceId = workspace.getString(ProtocolConstants.KEY_ID);
-				WebWorkspace webWorkspace = WebWorkspace.fromId(workspaceId);
-				JSONArray projectsJSON = webWorkspace.getProjectsJSON();
-				for (int j = 0; j < projectsJSON.length(); j++) {
-					JSONObject project = projectsJSON.getJSONObject(j);
-					String projectId = project.getString(ProtocolConstants.KEY_ID);
-					if (projectId.equals(webProject.getId())) {
-
-						//If found, remove project from workspace
-						webWorkspace.removeProject(webProject);
-
-						// remove the project folder
-						try {
-							WorkspaceResourceHandler.removeProject(webProject, userName);
-						} catch (CoreException e) {
-							//we are unable to write in the platform location!
-							String msg = NLS.bind("Server content location could not be written: {0}", Activator.getDefault().getRootLocationURI());
-							return new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, msg, e);
-						}
+		OwnerIndex index = OwnerIndex.getDefault();
+		Set<String> userWorkspaces = index.getWorkspacesOfUser(userName);
+		for (String workspaceId : index.getWorkspacesOfProject(webProject.getId())) {
+			if (!userWorkspaces.contains(workspaceId))
+				continue;
+			WebWorkspace webWorkspace = WebWorkspace.fromId(workspaceId);
 
-						//save the workspace and project metadata
-						try {
-							webProject.save();
-							webWorkspace.save();
-						} catch (CoreException e) {
-							String msg = "Error persisting project state";
-							return new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, msg, e);
-						}
+			//If found, remove project from workspace
+			webWorkspace.removeProject(webProject);
 
-						return new ServerStatus(IStatus.OK, HttpServletResponse.SC_OK, null, null);
-					}
-				}
+			// remove the project folder
+			try {
+				WorkspaceResourceHandler.removeProject(webProject, userName);
+			} catch (CoreException e) {
+				//we are unable to write in the platform location!
+				String msg = NLS.bind("Server content location could not be written: {0}", Activator.getDefault().getRootLocationURI());
+				return new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, msg, e);
 			}
-		} catch (JSONException e) {
-			// ignore, no project will be harmed
+
+			//save the workspace and project metadata
+			try {
+				webProject.save();
+				webWorkspace.save();
+			} catch (CoreException e) {
+				String msg = "Error persisting project state";
+				return new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, msg, e);
+			}
+
+			return new ServerStatus(IStatus.OK, HttpServletResponse.SC_OK, null, null);
 		}
 		// FIXME: not sure about this one
 		return new ServerStatus(IStatus.OK, HttpServletResponse.SC_OK, null, null);
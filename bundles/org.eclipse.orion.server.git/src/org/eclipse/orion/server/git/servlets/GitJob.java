@@ -15,13 +15,16 @@ import java.text.MessageFormat;
 import java.util.Locale;
 import java.util.regex.Pattern;
 import javax.servlet.http.HttpServletResponse;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jgit.JGitText;
 import org.eclipse.jgit.api.errors.JGitInternalException;
 import org.eclipse.jgit.errors.TransportException;
+import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.orion.server.core.ServerStatus;
+import org.eclipse.orion.server.core.tasks.TaskInfo;
 import org.eclipse.orion.server.git.GitActivator;
 import org.eclipse.orion.server.git.GitCredentialsProvider;
 import org.eclipse.orion.server.jsch.HostFingerprintException;
@@ -122,6 +125,48 @@ public abstract class GitJob extends Job {
 		super(name);
 	}
 
+	/**
+	 * Returns the task tracking this job.
+	 */
+	public abstract TaskInfo getTask();
+
+	/**
+	 * The family of a Git job is the id of its task, so the job can be found
+	 * and canceled through its task.
+	 */
+	@Override
+	public boolean belongsTo(Object family) {
+		return getTask().getTaskId().equals(family);
+	}
+
+	/**
+	 * Returns a JGit progress monitor that reports the given job monitor's
+	 * cancellation to JGit commands.
+	 */
+	protected static ProgressMonitor toGitMonitor(final IProgressMonitor monitor) {
+		return new ProgressMonitor() {
+			public void start(int totalTasks) {
+				//progress is reported through the task
+			}
+
+			public void beginTask(String title, int totalWork) {
+				//progress is reported through the task
+			}
+
+			public void update(int completed) {
+				//progress is reported through the task
+			}
+
+			public void endTask() {
+				//progress is reported through the task
+			}
+
+			public boolean isCancelled() {
+				return monitor.isCanceled();
+			}
+		};
+	}
+
 	/**
 	 * Check if message matches or contains pattern in {@link MessageFormat} format.
 	 *  
@@ -278,7 +278,7 @@ public class GitRemoteHandlerV1 extends ServletResourceHandler<String> {
 	private boolean fetch(HttpServletRequest request, HttpServletResponse response, GitCredentialsProvider cp, String path) throws URISyntaxException, JSONException, IOException {
 		// {remote}/{branch}/{file}/{path}
 		Path p = new Path(path);
-		FetchJob job = new FetchJob(cp, p);
+		FetchJob job = new FetchJob(request.getRemoteUser(), cp, p);
 		job.schedule();
 
 		TaskInfo task = job.getTask();
@@ -296,7 +296,7 @@ public class GitRemoteHandlerV1 extends ServletResourceHandler<String> {
 		// FIXME: what if a remote or branch is named "file"?
 		if (p.segment(2).equals("file")) { //$NON-NLS-1$
 			// /git/remote/{remote}/{branch}/file/{path}
-			PushJob job = new PushJob(cp, p, srcRef, tags);
+			PushJob job = new PushJob(request.getRemoteUser(), cp, p, srcRef, tags);
 			job.schedule();
 
 			TaskInfo task = job.getTask();
@@ -10,11 +10,17 @@
  *******************************************************************************/
 package org.eclipse.orion.server.git.servlets;
 
+import java.io.File;
 import java.io.IOException;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.runtime.*;
 import org.eclipse.orion.internal.server.servlets.ServletResourceHandler;
+import org.eclipse.orion.internal.server.servlets.file.FileChangeNotifier;
+import org.eclipse.orion.server.core.LogHelper;
+import org.eclipse.orion.server.git.GitActivator;
 import org.eclipse.orion.server.servlets.OrionServlet;
 
 /*
@@ -36,8 +42,14 @@ public class GitServlet extends OrionServlet {
 	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 		traceRequest(req);
 		String pathInfo = req.getPathInfo();
-		if (gitSerializer.handleRequest(req, resp, pathInfo))
-			return;
+		try {
+			if (gitSerializer.handleRequest(req, resp, pathInfo))
+				return;
+		} finally {
+			//git commands such as checkout, merge or pull change files in the working tree
+			if (!"GET".equals(req.getMethod())) //$NON-NLS-1$
+				fireWorkingTreeChanged(pathInfo);
+		}
 		// finally invoke super to return an error for requests we don't know how to handle
 		super.doGet(req, resp);
 	}
@@ -56,4 +68,29 @@ public class GitServlet extends OrionServlet {
 	protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 		doGet(req, resp);
 	}
+
+	/**
+	 * Notifies watchers that the working tree of the repository containing the
+	 * file in the given request path may have changed.
+	 */
+	private void fireWorkingTreeChanged(String pathInfo) {
+		if (pathInfo == null)
+			return;
+		IPath path = new Path(pathInfo);
+		for (int i = 0; i < path.segmentCount(); i++) {
+			if (!"file".equals(path.segment(i))) //$NON-NLS-1$
+				continue;
+			try {
+				File gitDir = GitUtils.getGitDir(path.removeFirstSegments(i));
+				if (gitDir != null)
+					FileChangeNotifier.getDefault().fireChanged(EFS.getLocalFileSystem().fromLocalFile(gitDir.getParentFile()), FileChangeNotifier.CHANGE_MODIFIED);
+			} catch (CoreException e) {
+				LogHelper.log(e);
+			} catch (RuntimeException e) {
+				//this runs after the request, so never let it hide the outcome of the request
+				LogHelper.log(new Status(IStatus.ERROR, GitActivator.PI_GIT, "Error notifying working tree changes for " + pathInfo, e)); //$NON-NLS-1$
+			}
+			return;
+		}
+	}
 }
@@ -11,14 +11,13 @@
 package org.eclipse.orion.server.git.servlets;
 
 import java.io.File;
-import java.io.FileFilter;
 import java.util.*;
-import org.eclipse.core.filesystem.EFS;
-import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.filesystem.*;
 import org.eclipse.core.runtime.*;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.RepositoryCache;
 import org.eclipse.jgit.util.FS;
+import org.eclipse.orion.internal.server.servlets.file.DirectorySnapshotCache;
 import org.eclipse.orion.internal.server.servlets.file.NewFileServlet;
 import org.eclipse.orion.internal.server.servlets.workspace.WebProject;
 
@@ -123,13 +122,9 @@ public class GitUtils {
 					gitDirs.put(path.addTrailingSeparator(), new File(file, Constants.DOT_GIT));
 					return;
 				}
-				File[] folders = file.listFiles(new FileFilter() {
-					public boolean accept(File file) {
-						return file.isDirectory() && !file.getName().equals(Constants.DOT_GIT);
-					}
-				});
-				for (File folder : folders) {
-					getGitDirsInChildren(path.append(folder.getName()), gitDirs);
+				for (IFileInfo childInfo : DirectorySnapshotCache.getDefault().childInfos(store)) {
+					if (childInfo.isDirectory() && !childInfo.getName().equals(Constants.DOT_GIT))
+						getGitDirsInChildren(path.append(childInfo.getName()), gitDirs);
 				}
 				return;
 			}
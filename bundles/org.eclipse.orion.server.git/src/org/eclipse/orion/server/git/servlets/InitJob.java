@@ -11,11 +11,13 @@
 package org.eclipse.orion.server.git.servlets;
 
 import java.io.File;
+import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.runtime.*;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.InitCommand;
 import org.eclipse.jgit.api.errors.JGitInternalException;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.orion.internal.server.servlets.file.FileChangeNotifier;
 import org.eclipse.orion.server.core.tasks.ITaskService;
 import org.eclipse.orion.server.core.tasks.TaskInfo;
 import org.eclipse.orion.server.git.GitActivator;
@@ -44,7 +46,7 @@ public class InitJob extends GitJob {
 	}
 
 	private TaskInfo createTask() {
-		TaskInfo info = getTaskService().createTask();
+		TaskInfo info = getTaskService().createTask(user);
 		info.setMessage(NLS.bind("Initializing repository {0}...", clone.getName()));
 		getTaskService().updateTask(info);
 		return info;
@@ -96,6 +98,8 @@ public class InitJob extends GitJob {
 	protected IStatus run(IProgressMonitor monitor) {
 		try {
 			IStatus result = doInit();
+			//the repository was created behind the file servlet's back
+			FileChangeNotifier.getDefault().fireChanged(EFS.getLocalFileSystem().fromLocalFile(new File(clone.getContentLocation())), FileChangeNotifier.CHANGE_MODIFIED);
 			if (result.isOK()) {
 				// save the clone metadata
 				task.setResultLocation(cloneLocation);
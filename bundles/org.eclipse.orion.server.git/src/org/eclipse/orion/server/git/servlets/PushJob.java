@@ -44,10 +44,12 @@ public class PushJob extends GitJob {
 	private Path p;
 	private String srcRef;
 	private boolean tags;
+	private final String userId;
 
-	public PushJob(CredentialsProvider credentials, Path path, String srcRef, boolean tags) {
+	public PushJob(String userId, CredentialsProvider credentials, Path path, String srcRef, boolean tags) {
 		super("Pushing", (GitCredentialsProvider) credentials); //$NON-NLS-1$
 
+		this.userId = userId;
 		this.p = path;
 		this.srcRef = srcRef;
 		this.tags = tags;
@@ -55,13 +57,13 @@ public class PushJob extends GitJob {
 	}
 
 	private TaskInfo createTask() {
-		TaskInfo info = getTaskService().createTask();
+		TaskInfo info = getTaskService().createTask(userId);
 		info.setMessage(NLS.bind("Pushing {0}...", p.segment(0)));
 		getTaskService().updateTask(info);
 		return info;
 	}
 
-	private IStatus doPush() throws IOException, CoreException, JGitInternalException, InvalidRemoteException, URISyntaxException, JSONException {
+	private IStatus doPush(IProgressMonitor monitor) throws IOException, CoreException, JGitInternalException, InvalidRemoteException, URISyntaxException, JSONException {
 		// /git/remote/{remote}/{branch}/file/{path}
 		File gitDir = GitUtils.getGitDir(p.removeFirstSegments(2));
 		Repository db = new FileRepository(gitDir);
@@ -72,6 +74,7 @@ public class PushJob extends GitJob {
 		RemoteConfig remoteConfig = new RemoteConfig(git.getRepository().getConfig(), p.segment(0));
 		credentials.setUri(remoteConfig.getURIs().get(0));
 		pushCommand.setCredentialsProvider(credentials);
+		pushCommand.setProgressMonitor(toGitMonitor(monitor));
 
 		// ObjectId ref = db.resolve(srcRef);
 		RefSpec spec = new RefSpec(srcRef + ":" + Constants.R_HEADS + p.segment(1)); //$NON-NLS-1$
@@ -123,7 +126,7 @@ public class PushJob extends GitJob {
 	protected IStatus run(IProgressMonitor monitor) {
 		IStatus result = Status.OK_STATUS;
 		try {
-			result = doPush();
+			result = doPush(monitor);
 		} catch (IOException e) {
 			result = new Status(IStatus.ERROR, GitActivator.PI_GIT, "Error pushing git remote", e); //$NON-NLS-1$
 		} catch (CoreException e) {
@@ -135,6 +138,8 @@ public class PushJob extends GitJob {
 		} catch (Exception e) {
 			result = new Status(IStatus.ERROR, GitActivator.PI_GIT, "Error pushing git repository", e); //$NON-NLS-1$
 		}
+		if (monitor.isCanceled())
+			result = new Status(IStatus.CANCEL, GitActivator.PI_GIT, "Push canceled"); //$NON-NLS-1$
 		task.done(result);
 		task.setMessage(NLS.bind("Pushing {0} done", p.segment(0)));
 		updateTask();
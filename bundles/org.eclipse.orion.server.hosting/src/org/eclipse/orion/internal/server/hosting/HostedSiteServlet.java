@@ -16,16 +16,14 @@ import java.util.*;
 import java.util.Map.Entry;
 import javax.servlet.ServletException;
 import javax.servlet.http.*;
-import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.runtime.*;
-import org.eclipse.orion.internal.server.core.IAliasRegistry;
 import org.eclipse.orion.internal.server.servlets.Activator;
 import org.eclipse.orion.internal.server.servlets.ServletResourceHandler;
+import org.eclipse.orion.internal.server.servlets.file.FileStoreResolver;
 import org.eclipse.orion.internal.server.servlets.file.ServletFileStoreHandler;
 import org.eclipse.orion.internal.server.servlets.hosting.IHostedSite;
 import org.eclipse.orion.internal.server.servlets.workspace.authorization.AuthorizationService;
-import org.eclipse.orion.server.core.LogHelper;
 import org.eclipse.orion.server.core.ServerStatus;
 import org.eclipse.orion.server.servlets.OrionServlet;
 import org.eclipse.osgi.util.NLS;
@@ -108,10 +106,8 @@ public class HostedSiteServlet extends OrionServlet {
 	// FIXME these variables are copied from fileservlet
 	private ServletResourceHandler<IFileStore> fileSerializer;
 	private final URI rootStoreURI;
-	private IAliasRegistry aliasRegistry;
 
 	public HostedSiteServlet() {
-		aliasRegistry = Activator.getDefault();
 		rootStoreURI = Activator.getDefault().getRootLocationURI();
 		fileSerializer = new ServletFileStoreHandler(rootStoreURI, getStatusHandler());
 	}
@@ -233,7 +229,7 @@ public class HostedSiteServlet extends OrionServlet {
 		boolean allow = false;
 		// Check that user who launched the hosted site really has access to the workspace
 		try {
-			if (AuthorizationService.checkRights(userName, workspaceUri, "GET")) { //$NON-NLS-1$
+			if (AuthorizationService.checkRightsCached(userName, workspaceUri, "GET")) { //$NON-NLS-1$
 				allow = true;
 			}
 		} catch (JSONException e) {
@@ -245,8 +241,9 @@ public class HostedSiteServlet extends OrionServlet {
 			// start copied
 			String pathInfo = path.toString();
 			IPath filePath = pathInfo == null ? Path.ROOT : new Path(pathInfo);
-			IFileStore file = tempGetFileStore(filePath);
-			if (file == null || !file.fetchInfo().exists()) {
+			FileStoreResolver resolver = Activator.getDefault().getFileStoreResolver();
+			IFileStore file = resolver.resolve(filePath);
+			if (file == null || !resolver.exists(file)) {
 				if (failEarlyOn404) {
 					return false;
 				}
@@ -279,30 +276,6 @@ public class HostedSiteServlet extends OrionServlet {
 			resp.addHeader("Content-Type", mimeType);
 	}
 
-	// temp code for grabbing files from filesystem
-	protected IFileStore tempGetFileStore(IPath path) {
-		//first check if we have an alias registered
-		if (path.segmentCount() > 0) {
-			URI alias = aliasRegistry.lookupAlias(path.segment(0));
-			if (alias != null)
-				try {
-					return EFS.getStore(alias).getFileStore(path.removeFirstSegments(1));
-				} catch (CoreException e) {
-					LogHelper.log(new Status(IStatus.WARNING, HostingActivator.PI_SERVER_HOSTING, 1, "An error occured when getting file store for path '" + path + "' and alias '" + alias + '\'', e)); //$NON-NLS-1$ //$NON-NLS-2$
-					// fallback is to try the same path relatively to the root
-				}
-		}
-		//assume it is relative to the root
-		try {
-			return EFS.getStore(rootStoreURI).getFileStore(path);
-		} catch (CoreException e) {
-			LogHelper.log(new Status(IStatus.WARNING, HostingActivator.PI_SERVER_HOSTING, 1, "An error occured when getting file store for path '" + path + "' and root '" + rootStoreURI + '\'', e)); //$NON-NLS-1$ //$NON-NLS-2$
-			// fallback and return null
-		}
-
-		return null;
-	}
-
 	private void proxyRemotePath(HttpServletRequest req, HttpServletResponse resp, URI[] mappedPaths) throws IOException, ServletException, UnknownHostException {
 		try {
 			URL[] mappedURLs = new URL[mappedPaths.length];
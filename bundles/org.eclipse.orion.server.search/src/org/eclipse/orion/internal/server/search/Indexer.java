@@ -23,6 +23,7 @@ import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.orion.internal.server.core.IOUtilities;
 import org.eclipse.orion.internal.server.servlets.Activator;
 import org.eclipse.orion.internal.server.servlets.ProtocolConstants;
+import org.eclipse.orion.internal.server.servlets.file.DirectorySnapshotCache;
 import org.eclipse.orion.internal.server.servlets.workspace.WebProject;
 import org.eclipse.orion.internal.server.servlets.workspace.authorization.AuthorizationService;
 import org.eclipse.orion.server.core.LogHelper;
@@ -59,10 +60,10 @@ public class Indexer extends Job {
 	 */
 	private void collectFiles(IFileStore dir, List<IFileStore> files) {
 		try {
-			IFileStore[] children = dir.childStores(EFS.NONE, null);
-			for (IFileStore child : children) {
-				if (!child.getName().startsWith(".")) { //$NON-NLS-1$
-					IFileInfo info = child.fetchInfo();
+			IFileInfo[] children = DirectorySnapshotCache.getDefault().childInfos(dir);
+			for (IFileInfo info : children) {
+				if (!info.getName().startsWith(".")) { //$NON-NLS-1$
+					IFileStore child = dir.getChild(info.getName());
 					if (info.isDirectory())
 						collectFiles(child, files);
 					else if (!skip(info))
@@ -13,11 +13,14 @@ package org.eclipse.orion.internal.server.servlets;
 import java.net.URI;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.runtime.*;
 import org.eclipse.orion.internal.server.core.IAliasRegistry;
 import org.eclipse.orion.internal.server.core.IWebResourceDecorator;
+import org.eclipse.orion.internal.server.servlets.file.FileChangeNotifier;
+import org.eclipse.orion.internal.server.servlets.file.FileStoreResolver;
 import org.eclipse.orion.internal.server.servlets.hosting.ISiteHostingService;
 import org.eclipse.orion.internal.server.servlets.workspace.ProjectParentDecorator;
 import org.eclipse.orion.internal.server.servlets.workspace.WebProject;
@@ -45,13 +48,20 @@ public class Activator implements BundleActivator, IAliasRegistry {
 	public static final String PI_SERVER_SERVLETS = "org.eclipse.orion.server.servlets"; //$NON-NLS-1$
 	public static final String PROP_USER_AREA = "org.eclipse.orion.server.core.userArea"; //$NON-NLS-1$
 
+	/**
+	 * Whether waiting requests can be suspended. The continuation API is an optional
+	 * import, which is missing when the servlets run outside of Jetty.
+	 */
+	private static final boolean continuationsAvailable = isContinuationSupportAvailable();
+
 	static Activator singleton;
 
-	private Map<String, URI> aliases = Collections.synchronizedMap(new HashMap<String, URI>());
+	private Map<String, URI> aliases = new ConcurrentHashMap<String, URI>();
 	private ServiceTracker<IWebResourceDecorator, IWebResourceDecorator> decoratorTracker;
 	private ServiceTracker<ISiteHostingService, ISiteHostingService> siteHostingTracker;
 
 	private URI rootStoreURI;
+	private FileStoreResolver fileStoreResolver;
 	private ServiceRegistration<IWebResourceDecorator> transferDecoratorRegistration;
 	private ServiceRegistration<IWebResourceDecorator> parentDecoratorRegistration;
 
@@ -79,6 +89,26 @@ public class Activator implements BundleActivator, IAliasRegistry {
 		return siteHostingTracker;
 	}
 
+	/**
+	 * Returns whether requests can be suspended with the optional continuation API.
+	 * Classes referring to that API must only be loaded if this method returns
+	 * <code>true</code>.
+	 */
+	public static boolean hasContinuationSupport() {
+		return continuationsAvailable;
+	}
+
+	private static boolean isContinuationSupportAvailable() {
+		try {
+			Activator.class.getClassLoader().loadClass("org.mortbay.util.ajax.ContinuationSupport"); //$NON-NLS-1$
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		} catch (LinkageError e) {
+			return false;
+		}
+	}
+
 	/**
 	 * Returns the root file system location for the workspace.
 	 */
@@ -120,6 +150,13 @@ public class Activator implements BundleActivator, IAliasRegistry {
 		return tracker.getTracked().values();
 	}
 
+	/**
+	 * Returns the resolver for paths relative to the file servlet.
+	 */
+	public FileStoreResolver getFileStoreResolver() {
+		return fileStoreResolver;
+	}
+
 	public ISiteHostingService getSiteHostingService() {
 		ServiceTracker<ISiteHostingService, ISiteHostingService> tracker = getSiteHostingTracker();
 		Collection<ISiteHostingService> hostingServices = tracker.getTracked().values();
@@ -135,6 +172,7 @@ public class Activator implements BundleActivator, IAliasRegistry {
 		try {
 			rootStore.mkdir(EFS.NONE, null);
 			rootStoreURI = rootStore.toURI();
+			fileStoreResolver = new FileStoreResolver(this, rootStoreURI);
 		} catch (CoreException e) {
 			throw new RuntimeException("Instance location is read only: " + rootStore, e); //$NON-NLS-1$
 		}
@@ -200,6 +238,7 @@ public class Activator implements BundleActivator, IAliasRegistry {
 			siteHostingTracker = null;
 		}
 		unregisterDecorators();
+		FileChangeNotifier.getDefault().shutdown();
 		bundleContext = null;
 	}
 
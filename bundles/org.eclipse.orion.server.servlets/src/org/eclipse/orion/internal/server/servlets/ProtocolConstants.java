@@ -100,6 +100,12 @@ public class ProtocolConstants {
 	 */
 	public static final String OPTION_OVERWRITE_OLDER = "overwrite-older"; //$NON-NLS-1$
 
+	/**
+	 * JSON representation key for a list of file changes. The value's data type
+	 * is a JSON array of objects with location and type values.
+	 */
+	public static final String KEY_CHANGES = "Changes"; //$NON-NLS-1$
+
 	/**
 	 * JSON representation key for an object's children. The value's data
 	 * type is a JSON array of workspace objects.
@@ -129,6 +135,12 @@ public class ProtocolConstants {
 	 */
 	public static final String KEY_DIRECTORY = "Directory"; //$NON-NLS-1$
 
+	/**
+	 * JSON representation key for the textual contents of a file. The value's
+	 * data type is a String.
+	 */
+	public static final String KEY_CONTENTS = "Contents"; //$NON-NLS-1$
+
 	/**
 	 * JSON representation key for the location of an object's export service.
 	 * The value's data type is String.
@@ -171,6 +183,12 @@ public class ProtocolConstants {
 	 */
 	public static final String KEY_LOCATION = "Location"; //$NON-NLS-1$
 
+	/**
+	 * JSON representation key for the HTTP method of a single operation in a batch
+	 * request. The value's data type is a String.
+	 */
+	public static final String KEY_METHOD = "Method"; //$NON-NLS-1$
+
 	/**
 	 * JSON representation key for an object's name. The value's data type is a String
 	 */
@@ -186,6 +204,18 @@ public class ProtocolConstants {
 	 */
 	public static final String KEY_TYPE = "Type"; //$NON-NLS-1$
 
+	/**
+	 * JSON representation key for the list of operations in a batch request. The value's
+	 * data type is a JSON array of operation objects.
+	 */
+	public static final String KEY_OPERATIONS = "Operations"; //$NON-NLS-1$
+
+	/**
+	 * JSON representation key for the parts of a file (meta, body) a batch operation
+	 * applies to. The value's data type is a String.
+	 */
+	public static final String KEY_PARTS = "Parts"; //$NON-NLS-1$
+
 	/**
 	 * JSON representation key for an object's parents. The value's data
 	 * type is a JSON array of objects with name and location values.
@@ -198,11 +228,35 @@ public class ProtocolConstants {
 	 */
 	public static final String KEY_PROJECTS = "Projects"; //$NON-NLS-1$
 
+	/**
+	 * JSON representation key for the result of an operation. The value's data
+	 * type is a JSON object.
+	 */
+	public static final String KEY_RESULT = "Result"; //$NON-NLS-1$
+
+	/**
+	 * JSON representation key indicating that changes were lost, and the client
+	 * must refresh everything it shows. The value's data type is a Boolean.
+	 */
+	public static final String KEY_RESET = "Reset"; //$NON-NLS-1$
+
 	/**
 	 * JSON representation key for the location of an object's search service.
 	 * The value's data type is String.
 	 */
 	public static final String KEY_SEARCH_LOCATION = "SearchLocation"; //$NON-NLS-1$
+
+	/**
+	 * JSON representation key for the sequence number of the most recent change
+	 * included in a response. The value's data type is a Long.
+	 */
+	public static final String KEY_SINCE = "Since"; //$NON-NLS-1$
+
+	/**
+	 * JSON representation key for the total number of items in a list, of which
+	 * a response may only contain a part. The value's data type is a Number.
+	 */
+	public static final String KEY_TOTAL = "Total"; //$NON-NLS-1$
 	/**
 	 * JSON representation key for an object's name. The value's data type is a String
 	 */
@@ -238,12 +292,56 @@ public class ProtocolConstants {
 	 */
 	public static final String KEY_WORKSPACES = "Workspaces"; //$NON-NLS-1$
 
+	/**
+	 * Query parameter on HTTP requests for copy, move and delete operations, indicating
+	 * that the operation should be performed in the background. The response
+	 * describes a task that can be used to track progress of the operation.
+	 */
+	public static final String PARM_ASYNC = "async"; //$NON-NLS-1$
+
 	/**
 	 * Query parameter on HTTP requests for directories, indicating the depth
 	 * of children to be encoded in the response.
 	 */
 	public static final String PARM_DEPTH = "depth"; //$NON-NLS-1$
 
+	/**
+	 * Query parameter on HTTP requests for lists, indicating the maximum number
+	 * of items to include in the response.
+	 */
+	public static final String PARM_ROWS = "rows"; //$NON-NLS-1$
+
+	/**
+	 * Query parameter on HTTP requests for task lists, indicating whether only running
+	 * tasks (<code>true</code>) or only completed tasks (<code>false</code>) should be
+	 * included in the response.
+	 */
+	public static final String PARM_RUNNING = "running"; //$NON-NLS-1$
+
+	/**
+	 * Query parameter on HTTP requests that wait for changes, indicating the sequence
+	 * number of the last change the client has seen.
+	 */
+	public static final String PARM_SINCE = "since"; //$NON-NLS-1$
+
+	/**
+	 * Query parameter on HTTP requests for lists, indicating the index of the first
+	 * item to include in the response.
+	 */
+	public static final String PARM_START = "start"; //$NON-NLS-1$
+
+	/**
+	 * Query parameter on HTTP requests that wait for changes, indicating the maximum
+	 * time in milliseconds to wait before responding.
+	 */
+	public static final String PARM_WAIT = "wait"; //$NON-NLS-1$
+
+	/**
+	 * Query parameter on file watch requests, indicating the id of a workspace
+	 * whose projects should be watched.
+	 */
+	public static final String PARM_WORKSPACE = "workspace"; //$NON-NLS-1$
+
 	/**
 	 * JSON representation key for a file's attributes. The value's data
 	 * type is a JSON object of String/Boolean pairs.
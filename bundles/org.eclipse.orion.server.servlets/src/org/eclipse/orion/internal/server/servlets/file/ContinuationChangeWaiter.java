@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.servlets.file;
+
+import java.net.URI;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import org.eclipse.orion.internal.server.servlets.file.FileChangeNotifier.ChangeBatch;
+import org.eclipse.orion.internal.server.servlets.file.FileChangeNotifier.ChangeListener;
+import org.mortbay.util.ajax.Continuation;
+import org.mortbay.util.ajax.ContinuationSupport;
+
+/**
+ * Waits for changes to files using a Jetty continuation, so the waiting request
+ * doesn't hold a thread. This is the only class of this package referring to the
+ * continuation API, which is an optional import, so it must only be loaded if
+ * {@link org.eclipse.orion.internal.server.servlets.Activator#hasContinuationSupport()}
+ * returns <code>true</code>.
+ */
+class ContinuationChangeWaiter {
+	/**
+	 * Returns the changes within the given trees after the given sequence number,
+	 * once there are any or the given wait time expires. With continuations that
+	 * retry the request, this method is entered again when the wait is over.
+	 */
+	static ChangeBatch waitForChanges(HttpServletRequest req, List<URI> roots, long since, long wait) {
+		FileChangeNotifier notifier = FileChangeNotifier.getDefault();
+		final Continuation continuation = ContinuationSupport.getContinuation(req, null);
+		if (continuation.isNew()) {
+			ChangeListener listener = new ChangeListener() {
+				public void changesAvailable() {
+					continuation.resume();
+				}
+			};
+			if (wait > 0 && notifier.addChangeListener(roots, since, listener)) {
+				continuation.setObject(listener);
+				//either throws to retry the request when the wait is over, or blocks until then
+				continuation.suspend(wait);
+			}
+		}
+		Object listener = continuation.getObject();
+		if (listener instanceof ChangeListener)
+			notifier.removeChangeListener((ChangeListener) listener);
+		return notifier.getChanges(roots, since);
+	}
+}
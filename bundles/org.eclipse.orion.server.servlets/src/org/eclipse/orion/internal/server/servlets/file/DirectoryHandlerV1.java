@@ -19,9 +19,11 @@ import javax.servlet.http.HttpServletResponse;
 import org.eclipse.core.filesystem.*;
 import org.eclipse.core.runtime.*;
 import org.eclipse.core.runtime.URIUtil;
+import org.eclipse.orion.internal.server.core.IOUtilities;
 import org.eclipse.orion.internal.server.servlets.ProtocolConstants;
 import org.eclipse.orion.internal.server.servlets.ServletResourceHandler;
 import org.eclipse.orion.server.core.ServerStatus;
+import org.eclipse.orion.server.core.tasks.TaskInfo;
 import org.eclipse.orion.server.servlets.OrionServlet;
 import org.eclipse.osgi.util.NLS;
 import org.json.*;
@@ -62,9 +64,9 @@ public class DirectoryHandlerV1 extends ServletResourceHandler<IFileStore> {
 		if (depth <= 0)
 			return;
 		JSONArray children = new JSONArray();
-		IFileStore[] childStores = dir.childStores(EFS.NONE, null);
-		for (IFileStore childStore : childStores) {
-			IFileInfo childInfo = childStore.fetchInfo();
+		IFileInfo[] childInfos = DirectorySnapshotCache.getDefault().childInfos(dir);
+		for (IFileInfo childInfo : childInfos) {
+			IFileStore childStore = dir.getChild(childInfo.getName());
 			String name = childInfo.getName();
 			if (childInfo.isDirectory())
 				name += "/"; //$NON-NLS-1$
@@ -94,7 +96,8 @@ public class DirectoryHandlerV1 extends ServletResourceHandler<IFileStore> {
 		if (!validateOptions(request, response, toCreate, destinationExists, options))
 			return true;
 		//perform the operation
-		if (performPost(request, response, requestObject, toCreate, options)) {
+		if (performPost(request, response, requestObject, toCreate, options, name)) {
+			FileChangeNotifier.getDefault().fireChanged(toCreate, destinationExists ? FileChangeNotifier.CHANGE_MODIFIED : FileChangeNotifier.CHANGE_CREATED);
 			//write the response
 			URI location = URIUtil.append(getURI(request), name);
 			JSONObject result = ServletFileStoreHandler.toJSON(toCreate, toCreate.fetchInfo(), location);
@@ -109,13 +112,14 @@ public class DirectoryHandlerV1 extends ServletResourceHandler<IFileStore> {
 	/**
 	 * Performs the actual modification corresponding to a POST request. All preconditions
 	 * are assumed to be satisfied.
-	 * @return <code>true</code> if the operation was successful, and <code>false</code> otherwise.
+	 * @return <code>true</code> if the operation was successful, and <code>false</code> if
+	 * the operation failed or the response has already been written.
 	 */
-	private boolean performPost(HttpServletRequest request, HttpServletResponse response, JSONObject requestObject, IFileStore toCreate, int options) throws CoreException, IOException, ServletException {
+	private boolean performPost(HttpServletRequest request, HttpServletResponse response, JSONObject requestObject, IFileStore toCreate, int options, String name) throws CoreException, IOException, ServletException {
 		boolean isCopy = (options & CREATE_COPY) != 0;
 		boolean isMove = (options & CREATE_MOVE) != 0;
 		if (isCopy || isMove)
-			return performCopyMove(request, response, requestObject, toCreate, isCopy);
+			return performCopyMove(request, response, requestObject, toCreate, isCopy, name);
 		if (requestObject.optBoolean(ProtocolConstants.KEY_DIRECTORY))
 			toCreate.mkdir(EFS.NONE, null);
 		else
@@ -125,9 +129,10 @@ public class DirectoryHandlerV1 extends ServletResourceHandler<IFileStore> {
 
 	/**
 	 * Perform a copy or move as specified by the request.
-	 * @return <code>true</code> if the operation was successful, and <code>false</code> otherwise.
+	 * @return <code>true</code> if the operation was successful, and <code>false</code> if
+	 * the operation failed or is running in the background.
 	 */
-	private boolean performCopyMove(HttpServletRequest request, HttpServletResponse response, JSONObject requestObject, IFileStore toCreate, boolean isCopy) throws ServletException, CoreException {
+	private boolean performCopyMove(HttpServletRequest request, HttpServletResponse response, JSONObject requestObject, IFileStore toCreate, boolean isCopy, String name) throws ServletException, CoreException, IOException {
 		String locationString = requestObject.optString(ProtocolConstants.KEY_LOCATION, null);
 		if (locationString == null) {
 			statusHandler.handleRequest(request, response, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_BAD_REQUEST, "Copy or move request must specify source location", null));
@@ -135,22 +140,34 @@ public class DirectoryHandlerV1 extends ServletResourceHandler<IFileStore> {
 		}
 		try {
 			IFileStore source = resolveSourceLocation(request, locationString);
+			if (isAsync(request)) {
+				if (!source.fetchInfo().exists()) {
+					statusHandler.handleRequest(request, response, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_NOT_FOUND, NLS.bind("Source does not exist: {0}", locationString), null));
+					return false;
+				}
+				String resultLocation = URIUtil.append(getURI(request), name).toString();
+				FileOperationJob job = new FileOperationJob(isCopy ? FileOperationJob.COPY : FileOperationJob.MOVE, source, toCreate, resultLocation, request.getRemoteUser());
+				scheduleOperation(request, response, job);
+				return false;
+			}
 			//note we checked in preconditions that overwrite is ok here
 			try {
 				if (isCopy)
 					source.copy(toCreate, EFS.OVERWRITE, null);
 				else
 					source.move(toCreate, EFS.OVERWRITE, null);
+				if (!isCopy)
+					FileChangeNotifier.getDefault().fireChanged(source, FileChangeNotifier.CHANGE_DELETED);
 			} catch (CoreException e) {
 				if (!source.fetchInfo().exists()) {
-					statusHandler.handleRequest(request, response, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_NOT_FOUND, NLS.bind("Source does not exist: ", locationString), e));
+					statusHandler.handleRequest(request, response, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_NOT_FOUND, NLS.bind("Source does not exist: {0}", locationString), e));
 					return false;
 				}
 				//just rethrow if we can't do something more specific
 				throw e;
 			}
 		} catch (URISyntaxException e) {
-			statusHandler.handleRequest(request, response, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_BAD_REQUEST, NLS.bind("Bad source location in request: ", locationString), e));
+			statusHandler.handleRequest(request, response, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_BAD_REQUEST, NLS.bind("Bad source location in request: {0}", locationString), e));
 			return false;
 		}
 		return true;
@@ -230,10 +247,45 @@ public class DirectoryHandlerV1 extends ServletResourceHandler<IFileStore> {
 	}
 
 	private boolean handleDelete(HttpServletRequest request, HttpServletResponse response, IFileStore dir) throws JSONException, CoreException, ServletException, IOException {
+		if (isAsync(request)) {
+			scheduleOperation(request, response, new FileOperationJob(FileOperationJob.DELETE, dir, null, null, request.getRemoteUser()));
+			return true;
+		}
 		dir.delete(EFS.NONE, null);
 		return true;
 	}
 
+	/**
+	 * Returns whether the client asked for the operation to run in the background.
+	 */
+	private boolean isAsync(HttpServletRequest request) {
+		return "true".equals(IOUtilities.getQueryParameter(request, ProtocolConstants.PARM_ASYNC)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Schedules a background file operation and writes a response describing the
+	 * task that tracks its progress.
+	 */
+	private void scheduleOperation(HttpServletRequest request, HttpServletResponse response, FileOperationJob job) throws IOException, ServletException {
+		job.schedule();
+		TaskInfo task = job.getTask();
+		JSONObject result = task.toJSON();
+		//the task servlet location is not known to the task service, so compute it here
+		URI requestLocation = getURI(request);
+		try {
+			URI taskLocation = new URI(requestLocation.getScheme(), requestLocation.getAuthority(), "/task/id/" + task.getTaskId(), null, null); //$NON-NLS-1$
+			result.put(ProtocolConstants.KEY_LOCATION, taskLocation);
+			response.setHeader(ProtocolConstants.HEADER_LOCATION, taskLocation.toString());
+		} catch (URISyntaxException e) {
+			//should not be possible
+			throw new ServletException(e);
+		} catch (JSONException e) {
+			//cannot happen because the key is non-null
+		}
+		OrionServlet.writeJSONResponse(request, response, result);
+		response.setStatus(HttpServletResponse.SC_ACCEPTED);
+	}
+
 	private boolean handlePut(HttpServletRequest request, HttpServletResponse response, IFileStore dir) throws JSONException, IOException, CoreException {
 		IFileInfo info = ServletFileStoreHandler.fromJSON(request);
 		dir.putInfo(info, EFS.NONE, null);
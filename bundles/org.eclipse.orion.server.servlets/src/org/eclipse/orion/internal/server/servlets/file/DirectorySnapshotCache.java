@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.servlets.file;
+
+import java.util.*;
+import org.eclipse.core.filesystem.*;
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * Caches the children of recently listed directories, so that listing the same
+ * directory repeatedly doesn't fetch the information of every child from the file
+ * system each time. The time stamp of the directory is checked on every lookup, so
+ * children added, removed or renamed outside the server are seen immediately. A
+ * snapshot is also discarded when a change to the directory or one of its children
+ * is reported to the {@link FileChangeNotifier}, or after a few seconds, since changes
+ * to the contents of a child outside the server don't change the time stamp of the
+ * directory.
+ * <p>
+ * The cache is bounded by the total number of children it holds, and discards
+ * the least recently used snapshots first.
+ */
+public class DirectorySnapshotCache {
+	/**
+	 * The maximum total number of children in all cached snapshots.
+	 */
+	private static final int MAX_ENTRIES = 100000;
+
+	/**
+	 * The maximum time in milliseconds a snapshot is used. This is also how long it
+	 * takes for a change to the contents of a child made outside the server to show.
+	 */
+	private static final long MAX_AGE = 5000;
+
+	/**
+	 * File systems may only record time stamps to the second. A snapshot taken
+	 * within this many milliseconds of the last change to its directory might miss a
+	 * further change with the same time stamp, so it isn't used.
+	 */
+	private static final long TIMESTAMP_RESOLUTION = 2000;
+
+	private static final DirectorySnapshotCache instance = new DirectorySnapshotCache();
+
+	/**
+	 * Map of directory location (store URI) to snapshot, in access order. Guarded by
+	 * this cache, which is the only lock held while accessing the cache, and which is
+	 * never held while calling out of the cache.
+	 */
+	private final LinkedHashMap<String, Snapshot> snapshots = new LinkedHashMap<String, Snapshot>(64, 0.75f, true);
+	private int entryCount = 0;
+
+	/**
+	 * The children of a directory at a point in time.
+	 */
+	private static class Snapshot {
+		final IFileInfo[] children;
+		final long directoryTimestamp;
+		final long created;
+
+		Snapshot(IFileInfo[] children, long directoryTimestamp, long created) {
+			this.children = children;
+			this.directoryTimestamp = directoryTimestamp;
+			this.created = created;
+		}
+	}
+
+	public static DirectorySnapshotCache getDefault() {
+		return instance;
+	}
+
+	/**
+	 * Returns information about the children of the given directory. The returned
+	 * array is shared and must not be modified.
+	 */
+	public IFileInfo[] childInfos(IFileStore directory) throws CoreException {
+		String key = directory.toURI().toString();
+		long directoryTimestamp = directory.fetchInfo().getLastModified();
+		long now = currentTimeMillis();
+		synchronized (this) {
+			Snapshot snapshot = snapshots.get(key);
+			if (snapshot != null && snapshot.directoryTimestamp == directoryTimestamp && now - snapshot.created < MAX_AGE)
+				return snapshot.children;
+		}
+		IFileInfo[] children = directory.childInfos(EFS.NONE, null);
+		//only cache snapshots that can't miss a change made in the same time stamp interval
+		if (directoryTimestamp != EFS.NONE && now - directoryTimestamp > TIMESTAMP_RESOLUTION)
+			put(key, new Snapshot(children, directoryTimestamp, now));
+		return children;
+	}
+
+	/**
+	 * Returns the current time in milliseconds. Tests override this to control the
+	 * age of snapshots.
+	 */
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	private synchronized void put(String key, Snapshot snapshot) {
+		if (snapshot.children.length > MAX_ENTRIES)
+			return;
+		remove(key);
+		snapshots.put(key, snapshot);
+		entryCount += snapshot.children.length;
+		for (Iterator<Snapshot> it = snapshots.values().iterator(); entryCount > MAX_ENTRIES && it.hasNext();) {
+			entryCount -= it.next().children.length;
+			it.remove();
+		}
+	}
+
+	private void remove(String key) {
+		Snapshot removed = snapshots.remove(key);
+		if (removed != null)
+			entryCount -= removed.children.length;
+	}
+
+	/**
+	 * Discards the snapshots of the given file or directory, of the directory
+	 * containing it, and of all directories below it.
+	 */
+	public void invalidate(IFileStore store) {
+		invalidate(store.toURI().toString());
+	}
+
+	synchronized void invalidate(String location) {
+		if (snapshots.isEmpty())
+			return;
+		String path = location.endsWith("/") ? location.substring(0, location.length() - 1) : location; //$NON-NLS-1$
+		remove(path);
+		remove(path + '/');
+		int lastSlash = path.lastIndexOf('/');
+		if (lastSlash > 0) {
+			remove(path.substring(0, lastSlash));
+			remove(path.substring(0, lastSlash + 1));
+		}
+		String prefix = path + '/';
+		for (Iterator<Map.Entry<String, Snapshot>> it = snapshots.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, Snapshot> entry = it.next();
+			if (entry.getKey().startsWith(prefix)) {
+				entryCount -= entry.getValue().children.length;
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Discards all snapshots.
+	 */
+	public synchronized void clear() {
+		snapshots.clear();
+		entryCount = 0;
+	}
+}
@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.servlets.file;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.core.filesystem.*;
+import org.eclipse.core.runtime.*;
+import org.eclipse.orion.internal.server.core.IOUtilities;
+import org.eclipse.orion.internal.server.servlets.Activator;
+import org.eclipse.orion.internal.server.servlets.ProtocolConstants;
+import org.eclipse.orion.internal.server.servlets.workspace.authorization.AuthorizationService;
+import org.eclipse.orion.server.core.ServerStatus;
+import org.eclipse.orion.server.core.authentication.IAuthenticationService;
+import org.eclipse.orion.server.servlets.OrionServlet;
+import org.eclipse.osgi.util.NLS;
+import org.json.*;
+
+/**
+ * Servlet that performs a list of file operations in a single request. The request
+ * body is a JSON object with an array of operations, each specifying a method
+ * (GET, PUT or DELETE), the location of a file under the file servlet, and for
+ * GET the parts of the file to return (meta, body or both). The response is a JSON
+ * array with one result object per operation, in the order of the request. A successful
+ * operation results in the file metadata, with the file contents included if requested.
+ * A failed operation results in a status object describing the failure.
+ * <p>
+ * The request is authenticated once by the servlet filter, and each operation is
+ * individually checked against the rights of the requesting user. Operations on
+ * different files are independent and are run in parallel, while operations on the
+ * same file are run in the order they appear in the request.
+ */
+public class FileBatchServlet extends OrionServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The maximum number of operations accepted in a single batch request.
+	 */
+	private static final int MAX_OPERATIONS = 500;
+
+	private static final String PART_BODY = "body"; //$NON-NLS-1$
+	private static final String PART_META = "meta"; //$NON-NLS-1$
+
+	private final ExecutorService executor;
+
+	public FileBatchServlet() {
+		//daemon threads, so an idle pool never keeps the server from exiting
+		executor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+			private int count = 0;
+
+			public synchronized Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Orion file batch worker " + ++count); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	@Override
+	public void destroy() {
+		executor.shutdown();
+		super.destroy();
+	}
+
+	@Override
+	protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		traceRequest(req);
+		JSONArray operations;
+		try {
+			operations = readJSONRequest(req).getJSONArray(ProtocolConstants.KEY_OPERATIONS);
+		} catch (JSONException e) {
+			handleException(resp, "Syntax error in request", e, HttpServletResponse.SC_BAD_REQUEST);
+			return;
+		}
+		if (operations.length() > MAX_OPERATIONS) {
+			handleException(resp, NLS.bind("A batch request may contain at most {0} operations", Integer.toString(MAX_OPERATIONS)), null, HttpServletResponse.SC_BAD_REQUEST);
+			return;
+		}
+		String userName = req.getRemoteUser();
+		if (userName == null)
+			userName = IAuthenticationService.ANONYMOUS_LOGIN_VALUE;
+		URI baseLocation = getURI(req);
+
+		//operations on the same file must run in request order, so group them by path
+		JSONObject[] results = new JSONObject[operations.length()];
+		Map<IPath, List<Integer>> groups = new LinkedHashMap<IPath, List<Integer>>();
+		for (int i = 0; i < operations.length(); i++) {
+			JSONObject operation = operations.optJSONObject(i);
+			IPath path = operation == null ? null : getOperationPath(operation);
+			if (path == null) {
+				results[i] = createErrorResult(null, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_BAD_REQUEST, "Operation must specify a file location", null));
+				continue;
+			}
+			List<Integer> group = groups.get(path);
+			if (group == null) {
+				group = new ArrayList<Integer>();
+				groups.put(path, group);
+			}
+			group.add(Integer.valueOf(i));
+		}
+
+		List<Future<?>> pending = new ArrayList<Future<?>>(groups.size());
+		for (Map.Entry<IPath, List<Integer>> group : groups.entrySet())
+			pending.add(executor.submit(new OperationGroup(userName, baseLocation, group.getKey(), group.getValue(), operations, results)));
+		try {
+			for (Future<?> future : pending)
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			handleException(resp, "Batch request was interrupted", e);
+			return;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Error)
+				throw (Error) cause;
+			handleException(resp, "Error processing batch request", cause instanceof Exception ? (Exception) cause : e);
+			return;
+		}
+
+		JSONArray response = new JSONArray();
+		for (JSONObject result : results)
+			response.put(result);
+		writeJSONResponse(req, resp, response);
+	}
+
+	/**
+	 * Returns the path of the file targeted by the given operation, relative to the
+	 * file servlet, or <code>null</code> if the operation does not specify a valid location.
+	 */
+	private IPath getOperationPath(JSONObject operation) {
+		String location = operation.optString(ProtocolConstants.KEY_LOCATION, null);
+		if (location == null)
+			return null;
+		try {
+			IPath path = new Path(new URI(location).getPath());
+			//locations are expressed relative to the server, so strip off the file servlet segment
+			if (path.segmentCount() == 0 || !Activator.LOCATION_FILE_SERVLET.equals('/' + path.segment(0)))
+				return null;
+			return path.removeFirstSegments(1).makeAbsolute();
+		} catch (URISyntaxException e) {
+			return null;
+		}
+	}
+
+	static JSONObject createErrorResult(URI location, IStatus status) {
+		JSONObject result = ServerStatus.convert(status).toJSON();
+		try {
+			if (location != null)
+				result.put(ProtocolConstants.KEY_LOCATION, location);
+		} catch (JSONException e) {
+			//cannot happen because the key is non-null
+		}
+		return result;
+	}
+
+	/**
+	 * Runs all operations on a single file in request order.
+	 */
+	private class OperationGroup implements Callable<Object> {
+		private final URI baseLocation;
+		private final List<Integer> indices;
+		private final JSONArray operations;
+		private final IPath path;
+		private final JSONObject[] results;
+		private final String userName;
+
+		OperationGroup(String userName, URI baseLocation, IPath path, List<Integer> indices, JSONArray operations, JSONObject[] results) {
+			this.userName = userName;
+			this.baseLocation = baseLocation;
+			this.path = path;
+			this.indices = indices;
+			this.operations = operations;
+			this.results = results;
+		}
+
+		public Object call() throws Exception {
+			URI location = baseLocation.resolve(Activator.LOCATION_FILE_SERVLET + path.toString());
+			for (Integer index : indices) {
+				JSONObject operation = operations.getJSONObject(index.intValue());
+				results[index.intValue()] = perform(operation, location);
+			}
+			return null;
+		}
+
+		private JSONObject perform(JSONObject operation, URI location) throws IOException, JSONException {
+			String method = operation.optString(ProtocolConstants.KEY_METHOD, "GET").toUpperCase(); //$NON-NLS-1$
+			//don't allow anyone to mess with metadata
+			if (path.segmentCount() > 0 && ".metadata".equals(path.segment(0))) //$NON-NLS-1$
+				return createErrorResult(location, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_FORBIDDEN, NLS.bind("Forbidden: {0}", path), null));
+			if (!AuthorizationService.checkRights(userName, location.getPath(), method))
+				return createErrorResult(location, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_FORBIDDEN, NLS.bind("Forbidden: {0}", path), null));
+			IFileStore file = NewFileServlet.getFileStore(path);
+			if (file == null)
+				return createErrorResult(location, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_NOT_FOUND, NLS.bind("File not found: {0}", path), null));
+			try {
+				IFileInfo info = file.fetchInfo();
+				if (!"PUT".equals(method) && !info.exists()) //$NON-NLS-1$
+					return createErrorResult(location, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_NOT_FOUND, NLS.bind("File not found: {0}", path), null));
+				if (info.isDirectory())
+					return createErrorResult(location, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_BAD_REQUEST, NLS.bind("Batch operations are not supported on directories: {0}", path), null));
+				String receivedETag = operation.optString(ProtocolConstants.KEY_ETAG, null);
+				if (receivedETag != null && info.exists() && !receivedETag.equals(GenericFileHandler.generateFileETag(file)))
+					return createErrorResult(location, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_PRECONDITION_FAILED, NLS.bind("File has been modified: {0}", path), null));
+				if ("GET".equals(method)) //$NON-NLS-1$
+					return performGet(operation, file, location);
+				if ("PUT".equals(method)) { //$NON-NLS-1$
+					try {
+						return performPut(operation, file, location);
+					} finally {
+						//also report a failed write, which may have created or truncated the file
+						FileChangeNotifier.getDefault().fireChanged(file, info.exists() ? FileChangeNotifier.CHANGE_MODIFIED : FileChangeNotifier.CHANGE_CREATED);
+					}
+				}
+				if ("DELETE".equals(method)) { //$NON-NLS-1$
+					file.delete(EFS.NONE, null);
+					FileChangeNotifier.getDefault().fireChanged(file, FileChangeNotifier.CHANGE_DELETED);
+					JSONObject result = new JSONObject();
+					result.put(ProtocolConstants.KEY_LOCATION, location);
+					return result;
+				}
+				return createErrorResult(location, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_METHOD_NOT_ALLOWED, NLS.bind("Unsupported batch operation: {0}", method), null));
+			} catch (CoreException e) {
+				return createErrorResult(location, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, NLS.bind("Error processing file: {0}", path), e));
+			} catch (NoSuchAlgorithmException e) {
+				return createErrorResult(location, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, NLS.bind("Error processing file: {0}", path), e));
+			}
+		}
+
+		private JSONObject performGet(JSONObject operation, IFileStore file, URI location) throws CoreException, IOException, JSONException, NoSuchAlgorithmException {
+			String parts = operation.optString(ProtocolConstants.KEY_PARTS, PART_META);
+			JSONObject result = getMetadata(file, location);
+			if (parts.indexOf(PART_BODY) >= 0)
+				result.put(ProtocolConstants.KEY_CONTENTS, IOUtilities.toString(file.openInputStream(EFS.NONE, null)));
+			return result;
+		}
+
+		private JSONObject getMetadata(IFileStore file, URI location) throws CoreException, IOException, JSONException, NoSuchAlgorithmException {
+			JSONObject result = ServletFileStoreHandler.toJSON(file, file.fetchInfo(), location);
+			result.put(ProtocolConstants.KEY_ETAG, GenericFileHandler.generateFileETag(file));
+			return result;
+		}
+
+		private JSONObject performPut(JSONObject operation, IFileStore file, URI location) throws CoreException, IOException, JSONException, NoSuchAlgorithmException {
+			String contents = operation.optString(ProtocolConstants.KEY_CONTENTS, ""); //$NON-NLS-1$
+			OutputStream out = file.openOutputStream(EFS.NONE, null);
+			try {
+				out.write(contents.getBytes("UTF-8")); //$NON-NLS-1$
+			} finally {
+				IOUtilities.safeClose(out);
+			}
+			return getMetadata(file, location);
+		}
+	}
+}
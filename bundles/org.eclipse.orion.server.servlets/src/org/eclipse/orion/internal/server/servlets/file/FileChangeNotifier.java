@@ -0,0 +1,483 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.servlets.file;
+
+import java.io.File;
+import java.net.URI;
+import java.util.*;
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.orion.internal.server.servlets.Activator;
+
+/**
+ * Records changes to files and delivers them to clients watching a set of directory
+ * trees. Changes made through the server are reported by calling {@link #fireChanged(IFileStore, String)}.
+ * Changes made outside the server, for example by command line tools, are detected by
+ * periodically checking the time stamps of the directories in local trees that are
+ * currently being watched. This detects files being added, removed or renamed, but
+ * not changes to the contents of existing files. Recorded changes also invalidate
+ * the affected entries of the {@link DirectorySnapshotCache} and of the existence
+ * cache of the {@link FileStoreResolver}, so code that modifies files only needs to
+ * report the change here.
+ * <p>
+ * Each change is assigned a sequence number. Watchers remember the last sequence
+ * number they have seen, and ask for the changes that happened after it. Only a
+ * bounded number of recent changes is retained; a watcher that falls further behind
+ * is told to reset and refresh everything it shows.
+ * <p>
+ * Each waiting watcher has its own monitor, and a change only wakes the watchers
+ * of trees containing the changed location. Watchers that don't want to hold a
+ * thread while waiting register a {@link ChangeListener} instead, and collect the
+ * changes with {@link #getChanges(List, long)} once they are notified.
+ */
+public class FileChangeNotifier {
+	public static final String CHANGE_CREATED = "Created"; //$NON-NLS-1$
+	public static final String CHANGE_DELETED = "Deleted"; //$NON-NLS-1$
+	public static final String CHANGE_MODIFIED = "Modified"; //$NON-NLS-1$
+
+	/**
+	 * The maximum number of changes retained.
+	 */
+	private static final int MAX_CHANGES = 10000;
+
+	/**
+	 * Once a change is available, the time in milliseconds to wait for related
+	 * changes so they are delivered in the same batch.
+	 */
+	private static final long COALESCE_DELAY = 200;
+
+	/**
+	 * The interval in milliseconds between checks for changes made outside the server.
+	 */
+	private static final long POLL_INTERVAL = 5000;
+
+	/**
+	 * The time in milliseconds after which a tree that nobody has asked about is no
+	 * longer checked for changes made outside the server.
+	 */
+	private static final long WATCH_EXPIRY = 60000;
+
+	/**
+	 * The maximum number of directories checked for changes in a single tree.
+	 */
+	private static final int MAX_POLLED_DIRECTORIES = 5000;
+
+	private static final FileChangeNotifier instance = new FileChangeNotifier();
+
+	/**
+	 * Circular buffer of recent changes. The change with sequence number <code>n</code>
+	 * is stored at index <code>n % MAX_CHANGES</code>.
+	 */
+	private final Change[] changes = new Change[MAX_CHANGES];
+	private long lastSequence = 0;
+	/**
+	 * The watchers currently waiting for changes. Guarded by this notifier.
+	 */
+	private final List<Waiter> waiters = new ArrayList<Waiter>();
+
+	/**
+	 * Local trees being checked for changes, mapped to the last time somebody asked about them.
+	 */
+	private final Map<File, PolledTree> polledTrees = new HashMap<File, PolledTree>();
+	private Timer pollTimer;
+
+	/**
+	 * Notified once when a change is recorded within the trees it was registered for.
+	 */
+	public interface ChangeListener {
+		/**
+		 * Called when changes are available. Implementations must not block, since
+		 * they are called by the thread recording the change.
+		 */
+		void changesAvailable();
+	}
+
+	/**
+	 * A single change to a file or directory.
+	 */
+	private static class Change {
+		final long sequence;
+		final String location;
+		final String type;
+
+		Change(long sequence, String location, String type) {
+			this.sequence = sequence;
+			this.location = location;
+			this.type = type;
+		}
+	}
+
+	/**
+	 * A watcher waiting for changes within some trees. The waiter is its own monitor,
+	 * and is signalled when a change within its trees is recorded, unless it has a
+	 * listener to notify instead.
+	 */
+	private static class Waiter {
+		final List<URI> roots;
+		final ChangeListener listener;
+		/**
+		 * Whether a matching change has been recorded. Guarded by this waiter.
+		 */
+		boolean signalled = false;
+
+		Waiter(List<URI> roots, ChangeListener listener) {
+			this.roots = roots;
+			this.listener = listener;
+		}
+
+		synchronized void signal() {
+			signalled = true;
+			notifyAll();
+		}
+
+		/**
+		 * Waits until this waiter is signalled or the given time has passed, and
+		 * returns whether it was signalled.
+		 */
+		synchronized boolean await(long deadline) throws InterruptedException {
+			long remaining = deadline - System.currentTimeMillis();
+			while (!signalled && remaining > 0) {
+				wait(remaining);
+				remaining = deadline - System.currentTimeMillis();
+			}
+			return signalled;
+		}
+	}
+
+	/**
+	 * The changes found for a watcher.
+	 */
+	public static class ChangeBatch {
+		/**
+		 * Map of changed file location (store URI) to change type, in the order the changes occurred.
+		 */
+		public final Map<String, String> changes;
+		/**
+		 * The sequence number of the most recent change known when the batch was created.
+		 */
+		public final long sequence;
+		/**
+		 * Whether changes were lost since the watcher last asked.
+		 */
+		public final boolean reset;
+
+		ChangeBatch(Map<String, String> changes, long sequence, boolean reset) {
+			this.changes = changes;
+			this.sequence = sequence;
+			this.reset = reset;
+		}
+	}
+
+	/**
+	 * The state of a local tree being checked for changes made outside the server.
+	 */
+	private static class PolledTree {
+		long lastAccess;
+		Map<File, Long> directories;
+	}
+
+	public static FileChangeNotifier getDefault() {
+		return instance;
+	}
+
+	/**
+	 * Records a change to the given file or directory. A change to a directory
+	 * may also mean its children have changed.
+	 * @param store The file or directory that changed
+	 * @param type One of {@link #CHANGE_CREATED}, {@link #CHANGE_MODIFIED} or {@link #CHANGE_DELETED}
+	 */
+	public void fireChanged(IFileStore store, String type) {
+		fireChanged(store.toURI().toString(), type);
+	}
+
+	private void fireChanged(String location, String type) {
+		//the caches have their own locks, which are never held while calling the notifier
+		DirectorySnapshotCache.getDefault().invalidate(location);
+		Activator activator = Activator.getDefault();
+		FileStoreResolver resolver = activator == null ? null : activator.getFileStoreResolver();
+		if (resolver != null)
+			resolver.invalidate(location);
+		record(location, type);
+	}
+
+	private void record(String location, String type) {
+		List<ChangeListener> notified = null;
+		synchronized (this) {
+			long sequence = ++lastSequence;
+			changes[(int) (sequence % MAX_CHANGES)] = new Change(sequence, location, type);
+			for (Iterator<Waiter> it = waiters.iterator(); it.hasNext();) {
+				Waiter waiter = it.next();
+				if (!matches(waiter.roots, location))
+					continue;
+				if (waiter.listener == null) {
+					waiter.signal();
+					continue;
+				}
+				//listeners are notified once
+				it.remove();
+				if (notified == null)
+					notified = new ArrayList<ChangeListener>(2);
+				notified.add(waiter.listener);
+			}
+		}
+		if (notified != null) {
+			for (ChangeListener listener : notified)
+				listener.changesAvailable();
+		}
+	}
+
+	/**
+	 * Returns the sequence number of the most recent change.
+	 */
+	public synchronized long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * Waits for changes within the given trees that occurred after the given sequence
+	 * number, and returns them. Changes to the same file are combined. This method returns
+	 * an empty batch if the timeout expires before any matching change occurs.
+	 * @param roots The locations (store URIs) of the watched trees
+	 * @param since The sequence number of the last change the caller has seen
+	 * @param timeout The maximum time to wait in milliseconds
+	 */
+	public ChangeBatch waitForChanges(List<URI> roots, long since, long timeout) throws InterruptedException {
+		watch(roots);
+		long deadline = System.currentTimeMillis() + timeout;
+		Waiter waiter = new Waiter(roots, null);
+		synchronized (this) {
+			if (hasChanges(roots, since))
+				waiter.signalled = true;
+			else
+				waiters.add(waiter);
+		}
+		boolean changed;
+		try {
+			changed = waiter.await(deadline);
+		} finally {
+			synchronized (this) {
+				waiters.remove(waiter);
+			}
+		}
+		//wait a little longer to include related changes, such as the rest of a copy
+		long remaining = deadline - System.currentTimeMillis();
+		if (changed && remaining > 0)
+			Thread.sleep(Math.min(remaining, COALESCE_DELAY));
+		synchronized (this) {
+			return collectChanges(roots, since);
+		}
+	}
+
+	/**
+	 * Registers a listener to notify once a change within the given trees occurs
+	 * after the given sequence number. Returns <code>false</code> without registering
+	 * the listener if such changes are already available.
+	 * @param roots The locations (store URIs) of the watched trees
+	 * @param since The sequence number of the last change the caller has seen
+	 * @param listener The listener to notify
+	 */
+	public boolean addChangeListener(List<URI> roots, long since, ChangeListener listener) {
+		watch(roots);
+		synchronized (this) {
+			if (hasChanges(roots, since))
+				return false;
+			waiters.add(new Waiter(roots, listener));
+			return true;
+		}
+	}
+
+	/**
+	 * Unregisters a listener that has not been notified yet. Has no effect if the
+	 * listener has been notified already.
+	 */
+	public synchronized void removeChangeListener(ChangeListener listener) {
+		for (Iterator<Waiter> it = waiters.iterator(); it.hasNext();) {
+			if (it.next().listener == listener) {
+				it.remove();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the changes within the given trees that occurred after the given
+	 * sequence number, without waiting. Changes to the same file are combined.
+	 * @param roots The locations (store URIs) of the watched trees
+	 * @param since The sequence number of the last change the caller has seen
+	 */
+	public ChangeBatch getChanges(List<URI> roots, long since) {
+		watch(roots);
+		synchronized (this) {
+			return collectChanges(roots, since);
+		}
+	}
+
+	private boolean hasChanges(List<URI> roots, long since) {
+		if (isReset(since))
+			return true;
+		for (long sequence = since + 1; sequence <= lastSequence; sequence++) {
+			if (matches(roots, changes[(int) (sequence % MAX_CHANGES)].location))
+				return true;
+		}
+		return false;
+	}
+
+	private ChangeBatch collectChanges(List<URI> roots, long since) {
+		Map<String, String> result = new LinkedHashMap<String, String>();
+		if (isReset(since))
+			return new ChangeBatch(result, lastSequence, true);
+		for (long sequence = since + 1; sequence <= lastSequence; sequence++) {
+			Change change = changes[(int) (sequence % MAX_CHANGES)];
+			if (!matches(roots, change.location))
+				continue;
+			//a file that was created and then modified is still new to the watcher
+			String previous = result.remove(change.location);
+			String type = CHANGE_CREATED.equals(previous) && CHANGE_MODIFIED.equals(change.type) ? CHANGE_CREATED : change.type;
+			result.put(change.location, type);
+		}
+		return new ChangeBatch(result, lastSequence, false);
+	}
+
+	/**
+	 * Returns whether changes after the given sequence number are no longer available.
+	 */
+	private boolean isReset(long since) {
+		return since > lastSequence || since < lastSequence - MAX_CHANGES;
+	}
+
+	/**
+	 * Returns whether the given location is in one of the given trees, or is an
+	 * ancestor of one of them.
+	 */
+	private static boolean matches(List<URI> roots, String location) {
+		for (URI root : roots) {
+			String rootString = root.toString();
+			if (isPrefix(rootString, location) || isPrefix(location, rootString))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether the first location is the same as or an ancestor of the second.
+	 */
+	static boolean isPrefix(String ancestor, String location) {
+		if (!location.startsWith(ancestor))
+			return false;
+		return location.length() == ancestor.length() || ancestor.endsWith("/") || location.charAt(ancestor.length()) == '/'; //$NON-NLS-1$
+	}
+
+	/**
+	 * Ensures the local trees among the given roots are checked for changes made
+	 * outside the server.
+	 */
+	private void watch(List<URI> roots) {
+		long now = System.currentTimeMillis();
+		synchronized (polledTrees) {
+			for (URI root : roots) {
+				File file;
+				try {
+					file = EFS.getStore(root).toLocalFile(EFS.NONE, null);
+				} catch (CoreException e) {
+					file = null;
+				}
+				if (file == null)
+					continue;
+				PolledTree tree = polledTrees.get(file);
+				if (tree == null) {
+					tree = new PolledTree();
+					polledTrees.put(file, tree);
+				}
+				tree.lastAccess = now;
+			}
+			if (pollTimer == null && !polledTrees.isEmpty()) {
+				pollTimer = new Timer("Orion file change poller", true); //$NON-NLS-1$
+				pollTimer.schedule(new TimerTask() {
+					@Override
+					public void run() {
+						poll();
+					}
+				}, 0, POLL_INTERVAL);
+			}
+		}
+	}
+
+	/**
+	 * Checks all watched local trees for changes made outside the server.
+	 */
+	void poll() {
+		Map<File, PolledTree> trees;
+		synchronized (polledTrees) {
+			long expired = System.currentTimeMillis() - WATCH_EXPIRY;
+			for (Iterator<PolledTree> it = polledTrees.values().iterator(); it.hasNext();) {
+				if (it.next().lastAccess < expired)
+					it.remove();
+			}
+			if (polledTrees.isEmpty()) {
+				shutdown();
+				return;
+			}
+			trees = new HashMap<File, PolledTree>(polledTrees);
+		}
+		for (Map.Entry<File, PolledTree> entry : trees.entrySet()) {
+			Map<File, Long> current = new HashMap<File, Long>();
+			collectDirectories(entry.getKey(), current);
+			Map<File, Long> previous = entry.getValue().directories;
+			entry.getValue().directories = current;
+			//the first scan of a tree establishes what it looks like
+			if (previous == null)
+				continue;
+			for (Map.Entry<File, Long> directory : current.entrySet()) {
+				Long oldStamp = previous.get(directory.getKey());
+				if (oldStamp == null)
+					fireChanged(directory.getKey(), CHANGE_CREATED);
+				else if (!oldStamp.equals(directory.getValue()))
+					fireChanged(directory.getKey(), CHANGE_MODIFIED);
+			}
+			for (File directory : previous.keySet()) {
+				if (!current.containsKey(directory))
+					fireChanged(directory, CHANGE_DELETED);
+			}
+		}
+	}
+
+	private void fireChanged(File file, String type) {
+		fireChanged(EFS.getLocalFileSystem().fromLocalFile(file), type);
+	}
+
+	private void collectDirectories(File directory, Map<File, Long> result) {
+		if (result.size() >= MAX_POLLED_DIRECTORIES)
+			return;
+		File[] children = directory.listFiles();
+		if (children == null)
+			return;
+		result.put(directory, Long.valueOf(directory.lastModified()));
+		for (File child : children) {
+			//git and server metadata change constantly and are not shown to users
+			if (child.isDirectory() && !child.getName().equals(".git") && !child.getName().equals(".metadata")) //$NON-NLS-1$ //$NON-NLS-2$
+				collectDirectories(child, result);
+		}
+	}
+
+	/**
+	 * Stops checking for changes made outside the server.
+	 */
+	public void shutdown() {
+		synchronized (polledTrees) {
+			if (pollTimer != null) {
+				pollTimer.cancel();
+				pollTimer = null;
+			}
+			polledTrees.clear();
+		}
+	}
+}
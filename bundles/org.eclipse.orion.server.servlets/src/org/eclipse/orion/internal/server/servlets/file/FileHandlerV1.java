@@ -12,8 +12,6 @@ package org.eclipse.orion.internal.server.servlets.file;
 
 import java.io.*;
 import java.security.NoSuchAlgorithmException;
-import java.util.HashMap;
-import java.util.Map;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -50,8 +48,15 @@ class FileHandlerV1 extends GenericFileHandler {
 	// responseWriter is used, as in some cases response should be
 	// appended to response generated earlier (i.e. multipart get)
 	protected void handleGetMetadata(HttpServletRequest request, HttpServletResponse response, Writer responseWriter, IFileStore file) throws IOException, NoSuchAlgorithmException, JSONException, CoreException {
+		handleGetMetadata(request, response, responseWriter, file, generateFileETag(file));
+	}
+
+	/**
+	 * Writes the file metadata using the given ETag, which must match the
+	 * current contents of the file.
+	 */
+	private void handleGetMetadata(HttpServletRequest request, HttpServletResponse response, Writer responseWriter, IFileStore file, String etag) throws IOException, JSONException, CoreException {
 		JSONObject result = ServletFileStoreHandler.toJSON(file, file.fetchInfo(), getURI(request));
-		String etag = generateFileETag(file);
 		result.put(ProtocolConstants.KEY_ETAG, etag);
 		response.setHeader(ProtocolConstants.KEY_ETAG, etag);
 		OrionServlet.decorateResponse(request, result);
@@ -79,35 +84,34 @@ class FileHandlerV1 extends GenericFileHandler {
 		return new UniversalUniqueIdentifier().toBase64String();
 	}
 
-	private void handlePutContents(HttpServletRequest request, BufferedReader requestReader, HttpServletResponse response, IFileStore file) throws IOException, CoreException, NoSuchAlgorithmException, JSONException {
-		Writer fileWriter = new BufferedWriter(new OutputStreamWriter(file.openOutputStream(EFS.NONE, null)));
-		IOUtilities.pipe(requestReader, fileWriter, false, true);
+	private void handlePutContents(HttpServletRequest request, InputStream requestStream, HttpServletResponse response, IFileStore file) throws IOException, CoreException, NoSuchAlgorithmException, JSONException {
+		//contents are copied byte for byte, and the new ETag is computed on the way
+		String etag = writeFileContents(requestStream, file);
 
 		// return metadata with the new Etag
-		handleGetMetadata(request, response, response.getWriter(), file);
+		handleGetMetadata(request, response, response.getWriter(), file, etag);
 	}
 
-	private void handleMultiPartPut(HttpServletRequest request, HttpServletResponse response, IFileStore file) throws IOException, CoreException, JSONException, NoSuchAlgorithmException {
-		String typeHeader = request.getHeader(ProtocolConstants.HEADER_CONTENT_TYPE);
-		String boundary = typeHeader.substring(typeHeader.indexOf("boundary=\"") + 10, typeHeader.length() - 1); //$NON-NLS-1$
-		BufferedReader requestReader = request.getReader();
-		handlePutMetadata(requestReader, boundary, file);
-		// next come the headers for the content
-		Map<String, String> contentHeaders = new HashMap<String, String>();
-		String line;
-		while ((line = requestReader.readLine()) != null && line.length() > 0) {
-			String[] header = line.split(":"); //$NON-NLS-1$
-			if (header.length == 2)
-				contentHeaders.put(header[0], header[1]);
-		}
+	private boolean handleMultiPartPut(HttpServletRequest request, HttpServletResponse response, IFileStore file) throws IOException, CoreException, JSONException, NoSuchAlgorithmException, ServletException {
+		String boundary = MultiPartParser.getBoundary(request.getHeader(ProtocolConstants.HEADER_CONTENT_TYPE));
+		if (boundary == null || boundary.length() == 0)
+			return statusHandler.handleRequest(request, response, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_BAD_REQUEST, "Multipart request does not specify a boundary", null));
+		MultiPartParser parser = new MultiPartParser(request.getInputStream(), boundary);
+		// the first part is the metadata
+		if (!parser.nextPart())
+			return statusHandler.handleRequest(request, response, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_BAD_REQUEST, "Multipart request is missing the file metadata", null));
+		handlePutMetadata(new BufferedReader(new InputStreamReader(parser.getPartStream(), "UTF-8")), file); //$NON-NLS-1$
 		// now for the file contents
-		handlePutContents(request, requestReader, response, file);
+		if (!parser.nextPart())
+			return statusHandler.handleRequest(request, response, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_BAD_REQUEST, "Multipart request is missing the file contents", null));
+		handlePutContents(request, parser.getPartStream(), response, file);
+		return true;
 	}
 
-	private void handlePutMetadata(BufferedReader reader, String boundary, IFileStore file) throws IOException, CoreException, JSONException {
+	private void handlePutMetadata(BufferedReader reader, IFileStore file) throws IOException, CoreException, JSONException {
 		StringBuffer buf = new StringBuffer();
 		String line;
-		while ((line = reader.readLine()) != null && !line.equals(boundary))
+		while ((line = reader.readLine()) != null)
 			buf.append(line);
 		//merge with existing metadata
 		FileInfo info = (FileInfo) file.fetchInfo();
@@ -130,7 +134,7 @@ class FileHandlerV1 extends GenericFileHandler {
 						file.delete(EFS.NONE, null);
 						break;
 					case PUT :
-						handlePutContents(request, request.getReader(), response, file);
+						handlePutContents(request, request.getInputStream(), response, file);
 						break;
 					default :
 						handleFileContents(request, response, file);
@@ -143,7 +147,7 @@ class FileHandlerV1 extends GenericFileHandler {
 						handleGetMetadata(request, response, response.getWriter(), file);
 						return true;
 					case PUT :
-						handlePutMetadata(request.getReader(), null, file);
+						handlePutMetadata(request.getReader(), file);
 						response.setStatus(HttpServletResponse.SC_NO_CONTENT);
 						return true;
 				}
@@ -155,8 +159,7 @@ class FileHandlerV1 extends GenericFileHandler {
 						handleMultiPartGet(request, response, file);
 						return true;
 					case PUT :
-						handleMultiPartPut(request, response, file);
-						return true;
+						return handleMultiPartPut(request, response, file);
 				}
 				return false;
 			}
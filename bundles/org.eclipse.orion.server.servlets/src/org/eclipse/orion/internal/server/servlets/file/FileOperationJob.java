@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.servlets.file;
+
+import java.io.*;
+import org.eclipse.core.filesystem.*;
+import org.eclipse.core.runtime.*;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.orion.internal.server.core.IOUtilities;
+import org.eclipse.orion.internal.server.servlets.Activator;
+import org.eclipse.orion.server.core.tasks.ITaskService;
+import org.eclipse.orion.server.core.tasks.TaskInfo;
+import org.eclipse.osgi.util.NLS;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Performs a copy, move or delete of a file or directory tree in the background,
+ * reporting progress through a task. Progress is computed from the number of
+ * files and bytes processed so far relative to the size of the source tree.
+ */
+public class FileOperationJob extends Job {
+	public static final int COPY = 1;
+	public static final int MOVE = 2;
+	public static final int DELETE = 3;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final int kind;
+	private final IFileStore source;
+	private final IFileStore destination;
+	private final String resultLocation;
+	private final String userId;
+	private TaskInfo task;
+	private ITaskService taskService;
+	private ServiceReference<ITaskService> taskServiceRef;
+
+	private long totalWork;
+	private long worked;
+
+	/**
+	 * Creates a new file operation job.
+	 * @param kind One of {@link #COPY}, {@link #MOVE} or {@link #DELETE}
+	 * @param source The file or directory to operate on
+	 * @param destination The destination of a copy or move, or <code>null</code> for a delete
+	 * @param resultLocation The location of the resource resulting from the operation, or <code>null</code>
+	 * @param userId The login of the user performing the operation
+	 */
+	public FileOperationJob(int kind, IFileStore source, IFileStore destination, String resultLocation, String userId) {
+		super(kind == DELETE ? "Delete" : kind == MOVE ? "Move" : "Copy"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		this.kind = kind;
+		this.source = source;
+		this.destination = destination;
+		this.resultLocation = resultLocation;
+		this.userId = userId;
+		this.task = createTask();
+	}
+
+	private void cleanUp() {
+		taskService = null;
+		if (taskServiceRef != null) {
+			Activator.getDefault().getContext().ungetService(taskServiceRef);
+			taskServiceRef = null;
+		}
+	}
+
+	private TaskInfo createTask() {
+		TaskInfo info = getTaskService().createTask(userId);
+		info.setMessage(NLS.bind("Preparing {0}...", source.getName()));
+		getTaskService().updateTask(info);
+		return info;
+	}
+
+	public TaskInfo getTask() {
+		return task;
+	}
+
+	/**
+	 * The family of this job is the id of its task, so the job can be found
+	 * and canceled through its task.
+	 */
+	@Override
+	public boolean belongsTo(Object family) {
+		return task.getTaskId().equals(family);
+	}
+
+	private ITaskService getTaskService() {
+		if (taskService == null) {
+			BundleContext context = Activator.getDefault().getContext();
+			if (taskServiceRef == null) {
+				taskServiceRef = context.getServiceReference(ITaskService.class);
+				if (taskServiceRef == null)
+					throw new IllegalStateException("Task service not available"); //$NON-NLS-1$
+			}
+			taskService = context.getService(taskServiceRef);
+			if (taskService == null)
+				throw new IllegalStateException("Task service not available"); //$NON-NLS-1$
+		}
+		return taskService;
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		try {
+			IStatus result;
+			try {
+				switch (kind) {
+					case COPY :
+						setTaskMessage(NLS.bind("Copying {0}...", source.getName()));
+						totalWork = computeWork(source);
+						copy(source, destination, monitor);
+						break;
+					case MOVE :
+						setTaskMessage(NLS.bind("Moving {0}...", source.getName()));
+						//the tree is only walked if it has to be copied
+						if (!rename(source, destination)) {
+							totalWork = computeWork(source);
+							copy(source, destination, monitor);
+							delete(source, monitor);
+						}
+						break;
+					case DELETE :
+						setTaskMessage(NLS.bind("Deleting {0}...", source.getName()));
+						totalWork = computeWork(source);
+						delete(source, monitor);
+						break;
+				}
+				result = new Status(IStatus.OK, Activator.PI_SERVER_SERVLETS, NLS.bind("Operation complete: {0}", source.getName()));
+			} catch (OperationCanceledException e) {
+				result = new Status(IStatus.CANCEL, Activator.PI_SERVER_SERVLETS, NLS.bind("Operation canceled: {0}", source.getName()));
+			} catch (Exception e) {
+				String msg = NLS.bind("Operation failed on {0}: {1}", source.getName(), e.getMessage());
+				result = new Status(IStatus.ERROR, Activator.PI_SERVER_SERVLETS, msg, e);
+			}
+			//even a failed or canceled operation may have changed some files
+			FileChangeNotifier notifier = FileChangeNotifier.getDefault();
+			if (destination != null)
+				notifier.fireChanged(destination, FileChangeNotifier.CHANGE_CREATED);
+			if (kind != COPY)
+				notifier.fireChanged(source, FileChangeNotifier.CHANGE_DELETED);
+			if (result.isOK() && resultLocation != null)
+				task.setResultLocation(resultLocation);
+			task.done(result);
+			getTaskService().updateTask(task);
+			return result;
+		} finally {
+			cleanUp();
+		}
+	}
+
+	/**
+	 * Returns the amount of work required to process the given tree. Each file
+	 * or directory counts as one unit of work, and each byte of content as another.
+	 */
+	private long computeWork(IFileStore store) throws CoreException {
+		IFileInfo info = store.fetchInfo();
+		if (!info.exists())
+			return 0;
+		if (!info.isDirectory())
+			return 1 + (kind == DELETE ? 0 : info.getLength());
+		long work = 1;
+		for (IFileStore child : store.childStores(EFS.NONE, null))
+			work += computeWork(child);
+		return work;
+	}
+
+	private void copy(IFileStore from, IFileStore to, IProgressMonitor monitor) throws CoreException, IOException {
+		checkCanceled(monitor);
+		IFileInfo info = from.fetchInfo();
+		if (info.isDirectory()) {
+			to.mkdir(EFS.NONE, null);
+			worked(1);
+			for (IFileStore child : from.childStores(EFS.NONE, null))
+				copy(child, to.getChild(child.getName()), monitor);
+		} else {
+			InputStream in = from.openInputStream(EFS.NONE, null);
+			OutputStream out = to.openOutputStream(EFS.NONE, null);
+			try {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					out.write(buffer, 0, read);
+					worked(read);
+				}
+			} finally {
+				IOUtilities.safeClose(in);
+				IOUtilities.safeClose(out);
+			}
+			worked(1);
+		}
+		to.putInfo(info, EFS.SET_ATTRIBUTES | EFS.SET_LAST_MODIFIED, null);
+	}
+
+	private void delete(IFileStore store, IProgressMonitor monitor) throws CoreException {
+		checkCanceled(monitor);
+		IFileInfo info = store.fetchInfo();
+		if (info.isDirectory()) {
+			for (IFileStore child : store.childStores(EFS.NONE, null))
+				delete(child, monitor);
+		}
+		store.delete(EFS.NONE, null);
+		worked(1);
+	}
+
+	/**
+	 * Attempts a fast rename of the source to the destination. This only succeeds
+	 * when both are on the same local file system. Returns <code>true</code> if the
+	 * rename succeeded, and <code>false</code> if a full copy is required.
+	 * <p>
+	 * An existing destination is moved aside first, and only deleted once the rename
+	 * has succeeded, so a failed rename leaves the destination as it was.
+	 */
+	private boolean rename(IFileStore from, IFileStore to) throws CoreException {
+		File sourceFile = from.toLocalFile(EFS.NONE, null);
+		File destinationFile = to.toLocalFile(EFS.NONE, null);
+		if (sourceFile == null || destinationFile == null)
+			return false;
+		//overwrite was validated by the caller, so clear the way for the rename
+		File aside = null;
+		if (destinationFile.exists()) {
+			for (int i = 0; aside == null || aside.exists(); i++)
+				aside = new File(destinationFile.getParentFile(), '.' + destinationFile.getName() + ".replaced" + i); //$NON-NLS-1$
+			if (!destinationFile.renameTo(aside))
+				return false;
+		}
+		if (!sourceFile.renameTo(destinationFile)) {
+			if (aside != null && !aside.renameTo(destinationFile))
+				throw new CoreException(new Status(IStatus.ERROR, Activator.PI_SERVER_SERVLETS, NLS.bind("Could not restore {0} from {1}", destinationFile, aside)));
+			return false;
+		}
+		if (aside != null)
+			EFS.getLocalFileSystem().fromLocalFile(aside).delete(EFS.NONE, null);
+		worked(totalWork);
+		return true;
+	}
+
+	private void checkCanceled(IProgressMonitor monitor) {
+		if (monitor != null && monitor.isCanceled())
+			throw new OperationCanceledException();
+	}
+
+	/**
+	 * Records the given amount of work and updates the task if the percentage
+	 * complete has changed.
+	 */
+	private void worked(long work) {
+		if (totalWork <= 0)
+			return;
+		int oldPercent = (int) (worked * 100 / totalWork);
+		worked += work;
+		int newPercent = (int) (Math.min(worked, totalWork) * 100 / totalWork);
+		if (newPercent != oldPercent) {
+			task.setPercentComplete(newPercent);
+			getTaskService().updateTask(task);
+		}
+	}
+
+	private void setTaskMessage(String message) {
+		task.setMessage(message);
+		getTaskService().updateTask(task);
+	}
+}
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.servlets.file;
+
+import java.net.URI;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.*;
+import org.eclipse.orion.internal.server.core.IAliasRegistry;
+import org.eclipse.orion.internal.server.servlets.Activator;
+import org.eclipse.orion.server.core.LogHelper;
+
+/**
+ * Resolves paths relative to the file servlet to file stores. The first segment of
+ * a path is either a registered alias, typically the id of a project stored outside
+ * the server root, or a folder under the server root.
+ * <p>
+ * The stores of aliased project roots are cached, so repeated requests against the
+ * same project don't look up the root store again. The existence of resolved files
+ * is also cached for a short time, so frequent existence checks on the same files
+ * don't each go to the file system. Changes reported to the {@link FileChangeNotifier}
+ * invalidate the cached existence of the changed files and all files below them, and
+ * other changes become visible once the cached result expires. All caches are bounded
+ * and safe for concurrent use.
+ */
+public class FileStoreResolver {
+	/**
+	 * The maximum number of cached project root stores.
+	 */
+	private static final int MAX_ROOTS = 1024;
+
+	/**
+	 * The maximum number of files whose existence is cached.
+	 */
+	private static final int MAX_EXISTENCE_ENTRIES = 4096;
+
+	/**
+	 * The time in milliseconds for which the existence of a file is cached.
+	 */
+	private static final long EXISTENCE_TTL = 2000;
+
+	private final IAliasRegistry aliasRegistry;
+	private final URI rootStoreURI;
+	private volatile IFileStore rootStore;
+
+	private final ConcurrentMap<String, RootEntry> roots = new ConcurrentHashMap<String, RootEntry>();
+	/**
+	 * Map of file location (store URI) to cached existence. Sorted, so the entries
+	 * of all files below a directory can be discarded as one range. Guarded by itself.
+	 */
+	private final TreeMap<String, ExistenceEntry> existence = new TreeMap<String, ExistenceEntry>();
+	/**
+	 * Incremented on every invalidation, so a result fetched while the file was being
+	 * changed is not cached. Guarded by {@link #existence}.
+	 */
+	private long invalidations = 0;
+
+	/**
+	 * A cached root store, along with the alias location it was created for.
+	 */
+	private static class RootEntry {
+		final URI location;
+		final IFileStore store;
+
+		RootEntry(URI location, IFileStore store) {
+			this.location = location;
+			this.store = store;
+		}
+	}
+
+	private static class ExistenceEntry {
+		final boolean exists;
+		final long expires;
+
+		ExistenceEntry(boolean exists, long expires) {
+			this.exists = exists;
+			this.expires = expires;
+		}
+	}
+
+	public FileStoreResolver(IAliasRegistry aliasRegistry, URI rootStoreURI) {
+		this.aliasRegistry = aliasRegistry;
+		this.rootStoreURI = rootStoreURI;
+	}
+
+	/**
+	 * Returns the store representing the file at the given path relative to the
+	 * file servlet, or <code>null</code> if the path could not be resolved.
+	 */
+	public IFileStore resolve(IPath path) {
+		//first check if we have an alias registered
+		if (path.segmentCount() > 0) {
+			String alias = path.segment(0);
+			URI location = aliasRegistry.lookupAlias(alias);
+			if (location != null) {
+				RootEntry root = roots.get(alias);
+				//the alias may have been registered again since we cached it
+				if (root == null || !root.location.equals(location)) {
+					try {
+						root = new RootEntry(location, EFS.getStore(location));
+						if (roots.size() >= MAX_ROOTS)
+							roots.clear();
+						roots.put(alias, root);
+					} catch (CoreException e) {
+						LogHelper.log(new Status(IStatus.WARNING, Activator.PI_SERVER_SERVLETS, 1, "An error occured when getting file store for path '" + path + "' and alias '" + location + "'", e));
+						root = null;
+						// fallback is to try the same path relatively to the root
+					}
+				}
+				if (root != null)
+					return root.store.getFileStore(path.removeFirstSegments(1));
+			}
+		}
+		//assume it is relative to the root
+		try {
+			IFileStore root = rootStore;
+			if (root == null)
+				rootStore = root = EFS.getStore(rootStoreURI);
+			return root.getFileStore(path);
+		} catch (CoreException e) {
+			LogHelper.log(new Status(IStatus.WARNING, Activator.PI_SERVER_SERVLETS, 1, "An error occured when getting file store for path '" + path + "' and root '" + rootStoreURI + "'", e));
+			// fallback and return null
+		}
+		return null;
+	}
+
+	/**
+	 * Returns whether the given file exists. The result may be up to a few seconds
+	 * old unless the file was invalidated after being changed.
+	 */
+	public boolean exists(IFileStore store) {
+		String key = store.toURI().toString();
+		long now = System.currentTimeMillis();
+		long generation;
+		synchronized (existence) {
+			ExistenceEntry entry = existence.get(key);
+			if (entry != null && entry.expires > now)
+				return entry.exists;
+			generation = invalidations;
+		}
+		boolean exists = store.fetchInfo().exists();
+		synchronized (existence) {
+			if (generation == invalidations) {
+				if (existence.size() >= MAX_EXISTENCE_ENTRIES)
+					existence.clear();
+				existence.put(key, new ExistenceEntry(exists, now + EXISTENCE_TTL));
+			}
+		}
+		return exists;
+	}
+
+	/**
+	 * Discards cached information about the given file and any files below it.
+	 * Changes reported to the {@link FileChangeNotifier} are invalidated automatically.
+	 */
+	public void invalidate(IFileStore store) {
+		invalidate(store.toURI().toString());
+	}
+
+	void invalidate(String location) {
+		String path = location.endsWith("/") ? location.substring(0, location.length() - 1) : location; //$NON-NLS-1$
+		synchronized (existence) {
+			invalidations++;
+			if (existence.isEmpty())
+				return;
+			existence.remove(path);
+			//all locations below the path start with the path and a slash, and sort before the path and the next character
+			existence.subMap(path + '/', path + (char) ('/' + 1)).clear();
+		}
+	}
+}
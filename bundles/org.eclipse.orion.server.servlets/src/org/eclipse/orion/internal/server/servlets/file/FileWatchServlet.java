@@ -0,0 +1,358 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.servlets.file;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.*;
+import org.eclipse.orion.internal.server.core.IOUtilities;
+import org.eclipse.orion.internal.server.servlets.Activator;
+import org.eclipse.orion.internal.server.servlets.ProtocolConstants;
+import org.eclipse.orion.internal.server.servlets.file.FileChangeNotifier.ChangeBatch;
+import org.eclipse.orion.internal.server.servlets.workspace.WebProject;
+import org.eclipse.orion.internal.server.servlets.workspace.WebWorkspace;
+import org.eclipse.orion.internal.server.servlets.workspace.authorization.AuthorizationService;
+import org.eclipse.orion.server.core.ServerStatus;
+import org.eclipse.orion.server.core.authentication.IAuthenticationService;
+import org.eclipse.orion.server.servlets.OrionServlet;
+import org.eclipse.osgi.util.NLS;
+import org.json.*;
+
+/**
+ * Servlet that notifies clients of changes to files, so they don't need to poll
+ * directory listings. The path of a request is the path of a file or directory
+ * under the file servlet, and the request watches that file and everything below it.
+ * Alternatively the <code>workspace</code> query parameter specifies a workspace,
+ * and the request watches all projects in the workspace.
+ * <p>
+ * A client first asks for the current sequence number by omitting the <code>since</code>
+ * parameter. It then repeatedly asks for changes since the last sequence number it
+ * received. Each request waits until changes are available or the <code>wait</code>
+ * timeout expires, and responds with a batch of changes where each changed location
+ * appears once. Clients that send <code>Accept: text/event-stream</code> instead
+ * receive server-sent events, one event per batch of changes.
+ * <p>
+ * On containers supporting continuations, waiting requests are suspended and
+ * resumed when a change occurs, so they don't hold a thread. An event stream then
+ * carries a single event, and the client reconnects with the id of that event.
+ * Without continuations every waiting request holds a thread, an event stream
+ * stays open for several minutes, and the number of concurrent watchers is limited.
+ * Requests beyond the limit are answered with 503 and a <code>Retry-After</code>
+ * header.
+ */
+public class FileWatchServlet extends OrionServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String CONTENT_TYPE_EVENT_STREAM = "text/event-stream"; //$NON-NLS-1$
+	private static final String HEADER_LAST_EVENT_ID = "Last-Event-ID"; //$NON-NLS-1$
+
+	/**
+	 * The default and maximum time in milliseconds a request waits for changes.
+	 */
+	private static final long DEFAULT_WAIT = 30000;
+	private static final long MAX_WAIT = 60000;
+
+	/**
+	 * The maximum time in milliseconds an event stream stays open. Clients
+	 * reconnect after this time, which frees threads held by abandoned streams.
+	 */
+	private static final long MAX_STREAM_DURATION = 10 * 60 * 1000;
+
+	/**
+	 * The time in milliseconds a client waits before reconnecting to an event stream
+	 * that carried a single event.
+	 */
+	private static final long STREAM_RECONNECT_DELAY = 100;
+
+	/**
+	 * The maximum number of requests holding a thread while waiting for changes at the same time.
+	 */
+	private static final int MAX_WATCHERS = 100;
+
+	/**
+	 * The time in seconds a client rejected because of too many watchers should wait before retrying.
+	 */
+	private static final String RETRY_AFTER = "10"; //$NON-NLS-1$
+
+	private final AtomicInteger watchers = new AtomicInteger();
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		traceRequest(req);
+		String userName = req.getRemoteUser();
+		if (userName == null)
+			userName = IAuthenticationService.ANONYMOUS_LOGIN_VALUE;
+		//map of watched store location to the corresponding path under the file servlet
+		Map<URI, IPath> watched = new LinkedHashMap<URI, IPath>();
+		try {
+			String workspaceId = IOUtilities.getQueryParameter(req, ProtocolConstants.PARM_WORKSPACE);
+			if (workspaceId != null) {
+				if (!WebWorkspace.exists(workspaceId)) {
+					handleException(resp, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_NOT_FOUND, NLS.bind("Workspace not found: {0}", workspaceId), null));
+					return;
+				}
+				if (!AuthorizationService.checkRights(userName, "/workspace/" + workspaceId, "GET")) { //$NON-NLS-1$ //$NON-NLS-2$
+					handleException(resp, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_FORBIDDEN, NLS.bind("Forbidden: {0}", workspaceId), null));
+					return;
+				}
+				JSONArray projects = WebWorkspace.fromId(workspaceId).getProjectsJSON();
+				for (int i = 0; i < projects.length(); i++) {
+					String projectId = projects.getJSONObject(i).optString(ProtocolConstants.KEY_ID, null);
+					IPath projectPath = projectId == null ? null : getProjectPath(WebProject.fromId(projectId));
+					if (projectPath != null)
+						addWatched(watched, projectPath);
+				}
+			} else {
+				String pathInfo = req.getPathInfo();
+				IPath path = pathInfo == null ? Path.ROOT : new Path(pathInfo);
+				if (path.segmentCount() == 0) {
+					handleException(resp, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_BAD_REQUEST, "A file location or workspace must be specified", null));
+					return;
+				}
+				//don't allow anyone to mess with metadata
+				if (".metadata".equals(path.segment(0)) || !AuthorizationService.checkRights(userName, Activator.LOCATION_FILE_SERVLET + path.makeAbsolute(), "GET")) { //$NON-NLS-1$ //$NON-NLS-2$
+					handleException(resp, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_FORBIDDEN, NLS.bind("Forbidden: {0}", path), null));
+					return;
+				}
+				if (!addWatched(watched, path.makeAbsolute())) {
+					handleException(resp, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_NOT_FOUND, NLS.bind("File not found: {0}", path), null));
+					return;
+				}
+			}
+		} catch (JSONException e) {
+			handleException(resp, "Error reading user rights", e);
+			return;
+		}
+
+		long since = getLongParameter(req, ProtocolConstants.PARM_SINCE, -1);
+		long wait = Math.min(getLongParameter(req, ProtocolConstants.PARM_WAIT, DEFAULT_WAIT), MAX_WAIT);
+		String accept = req.getHeader("Accept"); //$NON-NLS-1$
+		boolean stream = accept != null && accept.indexOf(CONTENT_TYPE_EVENT_STREAM) >= 0;
+		if (Activator.hasContinuationSupport()) {
+			try {
+				respondSuspended(req, resp, watched, since, wait, stream);
+			} catch (JSONException e) {
+				handleException(resp, "Error creating change notification", e);
+			}
+			return;
+		}
+		if (watchers.incrementAndGet() > MAX_WATCHERS) {
+			watchers.decrementAndGet();
+			resp.setHeader("Retry-After", RETRY_AFTER); //$NON-NLS-1$
+			handleException(resp, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many clients are watching for changes, try again later", null));
+			return;
+		}
+		try {
+			if (stream) {
+				streamChanges(req, resp, watched, since);
+				return;
+			}
+			FileChangeNotifier notifier = FileChangeNotifier.getDefault();
+			ChangeBatch batch;
+			//without a starting point there is nothing to wait for
+			if (since < 0)
+				batch = new ChangeBatch(new HashMap<String, String>(), notifier.getLastSequence(), false);
+			else
+				batch = notifier.waitForChanges(new ArrayList<URI>(watched.keySet()), since, Math.max(0, wait));
+			writeJSONResponse(req, resp, toJSON(req, batch, watched));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			handleException(resp, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Request was interrupted", e));
+		} catch (JSONException e) {
+			handleException(resp, "Error creating change notification", e);
+		} finally {
+			watchers.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Answers the request once changes are available or the wait time expires,
+	 * suspending the request in the meantime. An event stream carries a single
+	 * event, or none if the wait time expired.
+	 */
+	private void respondSuspended(HttpServletRequest req, HttpServletResponse resp, Map<URI, IPath> watched, long since, long wait, boolean stream) throws IOException, JSONException {
+		FileChangeNotifier notifier = FileChangeNotifier.getDefault();
+		if (stream) {
+			since = getLastEventId(req, since);
+			wait = DEFAULT_WAIT;
+		}
+		ChangeBatch batch;
+		//without a starting point there is nothing to wait for, and the client learns the current sequence number
+		boolean initial = since < 0;
+		if (initial)
+			batch = new ChangeBatch(new HashMap<String, String>(), notifier.getLastSequence(), false);
+		else
+			batch = ContinuationChangeWaiter.waitForChanges(req, new ArrayList<URI>(watched.keySet()), since, Math.max(0, wait));
+		if (!stream) {
+			writeJSONResponse(req, resp, toJSON(req, batch, watched));
+			return;
+		}
+		PrintWriter writer = startStream(resp);
+		writer.write("retry: " + STREAM_RECONNECT_DELAY + '\n'); //$NON-NLS-1$
+		writeEvent(writer, req, batch, watched, initial);
+		writer.flush();
+	}
+
+	/**
+	 * Returns the sequence number of the last event received by a reconnecting
+	 * event stream client, or the given sequence number.
+	 */
+	private long getLastEventId(HttpServletRequest req, long since) {
+		String lastEventId = req.getHeader(HEADER_LAST_EVENT_ID);
+		if (lastEventId != null) {
+			try {
+				return Long.parseLong(lastEventId);
+			} catch (NumberFormatException e) {
+				//ignore and use the request parameter
+			}
+		}
+		return since;
+	}
+
+	private PrintWriter startStream(HttpServletResponse resp) throws IOException {
+		resp.setContentType(CONTENT_TYPE_EVENT_STREAM);
+		resp.setCharacterEncoding("UTF-8"); //$NON-NLS-1$
+		resp.setHeader("Cache-Control", "no-cache"); //$NON-NLS-1$ //$NON-NLS-2$
+		return resp.getWriter();
+	}
+
+	/**
+	 * Writes the given batch of changes as a server-sent event. An empty batch is
+	 * written as a comment, unless the client must learn its sequence number.
+	 */
+	private void writeEvent(PrintWriter writer, HttpServletRequest req, ChangeBatch batch, Map<URI, IPath> watched, boolean always) throws JSONException {
+		if (!always && batch.changes.isEmpty() && !batch.reset) {
+			//comment line that keeps the connection alive and detects closed connections
+			writer.write(":\n\n"); //$NON-NLS-1$
+			return;
+		}
+		writer.write("id: " + batch.sequence + '\n'); //$NON-NLS-1$
+		writer.write("data: " + toJSON(req, batch, watched).toString() + "\n\n"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Writes batches of changes as server-sent events until the client disconnects
+	 * or the maximum stream duration is reached. This holds a thread for the whole
+	 * time, and is only used when requests can't be suspended.
+	 */
+	private void streamChanges(HttpServletRequest req, HttpServletResponse resp, Map<URI, IPath> watched, long since) throws IOException, InterruptedException, JSONException {
+		FileChangeNotifier notifier = FileChangeNotifier.getDefault();
+		//a reconnecting client tells us the last event it received
+		since = getLastEventId(req, since);
+		if (since < 0)
+			since = notifier.getLastSequence();
+		PrintWriter writer = startStream(resp);
+		List<URI> roots = new ArrayList<URI>(watched.keySet());
+		long end = System.currentTimeMillis() + MAX_STREAM_DURATION;
+		while (System.currentTimeMillis() < end) {
+			ChangeBatch batch = notifier.waitForChanges(roots, since, DEFAULT_WAIT);
+			writeEvent(writer, req, batch, watched, false);
+			since = batch.sequence;
+			//flushes, and reports whether the client has gone away
+			if (writer.checkError())
+				return;
+		}
+	}
+
+	private JSONObject toJSON(HttpServletRequest req, ChangeBatch batch, Map<URI, IPath> watched) throws JSONException {
+		JSONObject result = new JSONObject();
+		JSONArray changes = new JSONArray();
+		URI base = getURI(req);
+		for (Map.Entry<String, String> change : batch.changes.entrySet()) {
+			URI location = toLocation(base, change.getKey(), watched);
+			if (location == null)
+				continue;
+			JSONObject changeObject = new JSONObject();
+			changeObject.put(ProtocolConstants.KEY_LOCATION, location);
+			changeObject.put(ProtocolConstants.KEY_TYPE, change.getValue());
+			changes.put(changeObject);
+		}
+		result.put(ProtocolConstants.KEY_CHANGES, changes);
+		result.put(ProtocolConstants.KEY_SINCE, batch.sequence);
+		result.put(ProtocolConstants.KEY_RESET, batch.reset);
+		return result;
+	}
+
+	/**
+	 * Maps the location of a changed store to its location under the file servlet.
+	 */
+	private URI toLocation(URI base, String storeLocation, Map<URI, IPath> watched) {
+		for (Map.Entry<URI, IPath> entry : watched.entrySet()) {
+			String root = entry.getKey().toString();
+			String suffix;
+			if (FileChangeNotifier.isPrefix(root, storeLocation))
+				suffix = storeLocation.substring(root.length());
+			else if (FileChangeNotifier.isPrefix(storeLocation, root))
+				suffix = ""; //an ancestor of the watched tree changed //$NON-NLS-1$
+			else
+				continue;
+			if (suffix.length() > 0 && suffix.charAt(0) != '/')
+				suffix = '/' + suffix;
+			try {
+				//the store suffix is already encoded, but the servlet path is not
+				String rootPath = new URI(null, null, Activator.LOCATION_FILE_SERVLET + entry.getValue().toString(), null).getRawPath();
+				if (rootPath.endsWith("/") && suffix.startsWith("/")) //$NON-NLS-1$ //$NON-NLS-2$
+					suffix = suffix.substring(1);
+				return base.resolve(rootPath + suffix);
+			} catch (URISyntaxException e) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds the store for the given path to the watched map. Returns <code>false</code>
+	 * if the path could not be resolved.
+	 */
+	private boolean addWatched(Map<URI, IPath> watched, IPath path) {
+		IFileStore store = NewFileServlet.getFileStore(path);
+		if (store == null)
+			return false;
+		watched.put(store.toURI(), path);
+		return true;
+	}
+
+	/**
+	 * Returns the path of the given project under the file servlet, or <code>null</code>
+	 * if the project is not stored on this server.
+	 */
+	private IPath getProjectPath(WebProject project) {
+		URI contentLocation = project.getContentLocation();
+		if (contentLocation.isAbsolute() && !"file".equals(contentLocation.getScheme())) //$NON-NLS-1$
+			return null;
+		IPath contentPath = new Path(contentLocation.getPath());
+		//absolute file system paths are mapped via the alias registry using the project id
+		if (contentPath.isAbsolute())
+			return new Path(project.getId()).makeAbsolute();
+		return contentPath.makeAbsolute();
+	}
+
+	private long getLongParameter(HttpServletRequest req, String name, long defaultValue) {
+		String value = IOUtilities.getQueryParameter(req, name);
+		if (value == null)
+			return defaultValue;
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+}
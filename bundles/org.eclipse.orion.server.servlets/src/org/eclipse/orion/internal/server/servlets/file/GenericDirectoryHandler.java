@@ -31,7 +31,7 @@ public class GenericDirectoryHandler extends ServletResourceHandler<IFileStore>
 		try {
 			response.setContentType(ProtocolConstants.CONTENT_TYPE_HTML);
 			String path = request.getPathInfo();
-			IFileStore[] children = dir.childStores(EFS.NONE, null);
+			IFileInfo[] children = DirectorySnapshotCache.getDefault().childInfos(dir);
 			PrintWriter writer = response.getWriter();
 			writer.println("<!DOCTYPE HTML>"); //$NON-NLS-1$
 			writer.println("<html>"); //$NON-NLS-1$
@@ -42,9 +42,8 @@ public class GenericDirectoryHandler extends ServletResourceHandler<IFileStore>
 			writer.println("<h1>Index of " + path + "</h1>"); //$NON-NLS-1$ //$NON-NLS-2$
 			writer.println("<pre>Name                          Last modified      Size  "); //$NON-NLS-1$
 			writer.println("<hr>"); //$NON-NLS-1$
-			for (IFileStore child : children) {
-				IFileInfo childInfo = child.fetchInfo();
-				String childName = child.getName();
+			for (IFileInfo childInfo : children) {
+				String childName = childInfo.getName();
 				if (childInfo.isDirectory())
 					childName += '/';
 				writer.print("<a href=\"" + childName + "\">" + childName + "</a>"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
@@ -11,7 +11,8 @@
 package org.eclipse.orion.internal.server.servlets.file;
 
 import java.io.IOException;
-import java.security.NoSuchAlgorithmException;
+import java.io.InputStream;
+import java.security.*;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -35,16 +36,17 @@ class GenericFileHandler extends ServletResourceHandler<IFileStore> {
 			response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
 			return;
 		}
+		String etag = null;
 		switch (getMethod(request)) {
 			case GET :
 				IOUtilities.pipe(file.openInputStream(EFS.NONE, null), response.getOutputStream(), true, false);
 				break;
 			case PUT :
-				IOUtilities.pipe(request.getInputStream(), file.openOutputStream(EFS.NONE, null), false, true);
+				etag = writeFileContents(request.getInputStream(), file);
 				break;
 		}
 		response.setHeader("Cache-Control", "no-cache"); //$NON-NLS-1$ //$NON-NLS-2$
-		response.setHeader(ProtocolConstants.KEY_ETAG, generateFileETag(file));
+		response.setHeader(ProtocolConstants.KEY_ETAG, etag != null ? etag : generateFileETag(file));
 	}
 
 	@Override
@@ -67,4 +69,15 @@ class GenericFileHandler extends ServletResourceHandler<IFileStore> {
 	public static String generateFileETag(IFileStore file) throws NoSuchAlgorithmException, IOException, CoreException {
 		return HashUtilities.getHash(file.openInputStream(EFS.NONE, null), true, HashUtilities.SHA_1);
 	}
+
+	/**
+	 * Replaces the contents of the file with the bytes of the given stream, and returns
+	 * the ETag of the new contents. The ETag is computed while writing, so the file
+	 * does not need to be read back. The input stream is not closed.
+	 */
+	static String writeFileContents(InputStream in, IFileStore file) throws NoSuchAlgorithmException, IOException, CoreException {
+		MessageDigest digest = MessageDigest.getInstance(HashUtilities.SHA_1);
+		IOUtilities.pipe(in, new DigestOutputStream(file.openOutputStream(EFS.NONE, null), digest), false, true);
+		return HashUtilities.bytesToHex(digest.digest());
+	}
 }
\ No newline at end of file
@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.servlets.file;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the parts of a multipart message body (RFC 2046) directly from the underlying
+ * byte stream, without decoding part contents. Boundaries are located in a sliding
+ * buffer, so the contents of each part can be streamed to their destination without
+ * holding the whole part in memory.
+ * <p>
+ * Typical usage is to call {@link #nextPart()} to advance to each part, followed
+ * by {@link #getHeaders()} and {@link #getPartStream()} to read the part.
+ * <p>
+ * Older clients do not delimit the first part. They send a JSON object without
+ * headers, followed by a line holding just the boundary, then the headers and
+ * contents of the second part up to the end of the message. A message beginning
+ * with a JSON object is read that way, so that its first part is the object.
+ */
+class MultiPartParser {
+	private static final byte[] CRLF = {'\r', '\n'};
+	private static final String HEADER_CHARSET = "ISO-8859-1"; //$NON-NLS-1$
+
+	private final InputStream in;
+	/**
+	 * The delimiter that precedes each part: CRLF, two hyphens, and the boundary.
+	 * In the older framing, a line feed followed by the boundary.
+	 */
+	private final byte[] delimiter;
+	private final byte[] buffer;
+	/**
+	 * The buffered bytes that have not yet been consumed are buffer[start..end).
+	 */
+	private int start;
+	private int end;
+	private boolean eof;
+
+	private Map<String, String> headers;
+	private boolean inPart;
+	private boolean partDone;
+	private boolean finished;
+	/**
+	 * Whether the message uses the older framing, and its first part has not been reached.
+	 */
+	private boolean legacyStart;
+
+	/**
+	 * Returns the boundary parameter of the given multipart content type, or
+	 * <code>null</code> if there is no boundary parameter.
+	 */
+	static String getBoundary(String contentType) {
+		if (contentType == null)
+			return null;
+		int index = contentType.indexOf("boundary="); //$NON-NLS-1$
+		if (index < 0)
+			return null;
+		String boundary = contentType.substring(index + 9).trim();
+		if (boundary.startsWith("\"")) { //$NON-NLS-1$
+			int close = boundary.indexOf('"', 1);
+			return close < 0 ? boundary.substring(1) : boundary.substring(1, close);
+		}
+		int separator = boundary.indexOf(';');
+		return separator < 0 ? boundary : boundary.substring(0, separator).trim();
+	}
+
+	MultiPartParser(InputStream in, String boundary) throws IOException {
+		this.in = in;
+		this.buffer = new byte[Math.max(8192, boundary.length() * 4 + 16)];
+		//the first delimiter is not preceded by a line break, so pretend there is one
+		System.arraycopy(CRLF, 0, buffer, 0, CRLF.length);
+		end = CRLF.length;
+		while (end == CRLF.length && !eof) {
+			int read = in.read(buffer, end, buffer.length - end);
+			if (read < 0)
+				eof = true;
+			else
+				end += read;
+		}
+		legacyStart = end > CRLF.length && buffer[CRLF.length] == '{';
+		if (legacyStart) {
+			//a line holding just the boundary ends the first part
+			this.delimiter = ("\n" + boundary).getBytes(HEADER_CHARSET); //$NON-NLS-1$
+			start = CRLF.length;
+		} else {
+			this.delimiter = ("\r\n--" + boundary).getBytes(HEADER_CHARSET); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Advances to the next part of the message, skipping any unread content of the
+	 * current part. Returns <code>false</code> if there are no more parts.
+	 */
+	boolean nextPart() throws IOException {
+		if (finished)
+			return false;
+		if (legacyStart) {
+			//the first part starts right away, and has no headers
+			legacyStart = false;
+			headers = new HashMap<String, String>();
+			inPart = true;
+			partDone = false;
+			return true;
+		}
+		//skip the preamble or the remainder of the current part
+		InputStream part = inPart ? getPartStream() : new PartInputStream();
+		byte[] skip = new byte[1024];
+		while (part.read(skip) >= 0) {
+			//discard
+		}
+		//a delimiter followed by two hyphens marks the end of the message
+		if (!fill(2) || (buffer[start] == '-' && buffer[start + 1] == '-')) {
+			finished = true;
+			inPart = false;
+			return false;
+		}
+		//ignore anything else on the delimiter line, and treat a delimiter at the very end as closing
+		readLine();
+		if (!fill(1)) {
+			finished = true;
+			inPart = false;
+			return false;
+		}
+		headers = null;
+		inPart = true;
+		partDone = false;
+		return true;
+	}
+
+	/**
+	 * Returns the headers of the current part. Header names are converted to lower case.
+	 */
+	Map<String, String> getHeaders() throws IOException {
+		if (headers == null) {
+			headers = new HashMap<String, String>();
+			String line;
+			while ((line = readLine()) != null && line.length() > 0) {
+				int colon = line.indexOf(':');
+				if (colon > 0)
+					headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+			}
+		}
+		return headers;
+	}
+
+	/**
+	 * Returns a stream on the contents of the current part. The stream ends
+	 * immediately before the delimiter of the next part, or at the end of the
+	 * message if the delimiter is missing.
+	 */
+	InputStream getPartStream() throws IOException {
+		getHeaders();
+		return new PartInputStream();
+	}
+
+	/**
+	 * Ensures at least the given number of bytes are buffered, unless the end of the
+	 * stream is reached first. Returns whether the requested number of bytes is available.
+	 */
+	private boolean fill(int count) throws IOException {
+		while (end - start < count && !eof) {
+			if (start > 0) {
+				System.arraycopy(buffer, start, buffer, 0, end - start);
+				end -= start;
+				start = 0;
+			}
+			int read = in.read(buffer, end, buffer.length - end);
+			if (read < 0)
+				eof = true;
+			else
+				end += read;
+		}
+		return end - start >= count;
+	}
+
+	/**
+	 * Returns the position of the next delimiter in the buffer, or -1 if
+	 * the buffer does not contain a complete delimiter.
+	 */
+	private int findDelimiter() {
+		int last = end - delimiter.length;
+		outer: for (int i = start; i <= last; i++) {
+			if (buffer[i] != delimiter[0])
+				continue;
+			for (int j = 1; j < delimiter.length; j++) {
+				if (buffer[i + j] != delimiter[j])
+					continue outer;
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads a line of header text, accepting either CRLF or LF line endings.
+	 * Returns <code>null</code> at the end of the stream.
+	 */
+	private String readLine() throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		while (fill(1)) {
+			byte b = buffer[start++];
+			if (b == '\n') {
+				byte[] bytes = line.toByteArray();
+				int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+				return new String(bytes, 0, length, HEADER_CHARSET);
+			}
+			line.write(b);
+		}
+		return line.size() == 0 ? null : line.toString(HEADER_CHARSET);
+	}
+
+	/**
+	 * Stream on the bytes of the current part, up to the next delimiter.
+	 */
+	private class PartInputStream extends InputStream {
+		@Override
+		public int read() throws IOException {
+			byte[] single = new byte[1];
+			return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (partDone)
+				return -1;
+			if (len == 0)
+				return 0;
+			fill(delimiter.length);
+			int found = findDelimiter();
+			int available;
+			if (found >= 0) {
+				available = found - start;
+				if (available == 0) {
+					start += delimiter.length;
+					partDone = true;
+					return -1;
+				}
+			} else if (eof) {
+				available = end - start;
+				if (available == 0) {
+					partDone = true;
+					return -1;
+				}
+			} else {
+				//the tail of the buffer could be the beginning of a delimiter, so hold it back
+				available = end - start - (delimiter.length - 1);
+			}
+			int count = Math.min(len, available);
+			System.arraycopy(buffer, start, b, off, count);
+			start += count;
+			return count;
+		}
+	}
+}
@@ -15,12 +15,10 @@ import java.net.URI;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.runtime.*;
 import org.eclipse.orion.internal.server.servlets.Activator;
 import org.eclipse.orion.internal.server.servlets.ServletResourceHandler;
-import org.eclipse.orion.server.core.LogHelper;
 import org.eclipse.orion.server.core.ServerStatus;
 import org.eclipse.orion.server.servlets.OrionServlet;
 import org.eclipse.osgi.util.NLS;
@@ -58,6 +56,7 @@ public class NewFileServlet extends OrionServlet {
 			handleException(resp, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_NOT_FOUND, NLS.bind("File not found: {0}", path), null));
 			return;
 		}
+		//the handler reports successful changes to the file change notifier
 		if (fileSerializer.handleRequest(req, resp, file))
 			return;
 		// finally invoke super to return an error for requests we don't know how to handle
@@ -84,26 +83,6 @@ public class NewFileServlet extends OrionServlet {
 	 * request or <code>null</code> if an error occurred.
 	 */
 	public static IFileStore getFileStore(IPath path) {
-		//first check if we have an alias registered
-		if (path.segmentCount() > 0) {
-			URI alias = Activator.getDefault().lookupAlias(path.segment(0));
-			if (alias != null)
-				try {
-					return EFS.getStore(alias).getFileStore(path.removeFirstSegments(1));
-				} catch (CoreException e) {
-					LogHelper.log(new Status(IStatus.WARNING, Activator.PI_SERVER_SERVLETS, 1, "An error occured when getting file store for path '" + path + "' and alias '" + alias + "'", e));
-					// fallback is to try the same path relatively to the root
-				}
-		}
-		//assume it is relative to the root
-		URI rootStoreURI = Activator.getDefault().getRootLocationURI();
-		try {
-			return EFS.getStore(rootStoreURI).getFileStore(path);
-		} catch (CoreException e) {
-			LogHelper.log(new Status(IStatus.WARNING, Activator.PI_SERVER_SERVLETS, 1, "An error occured when getting file store for path '" + path + "' and root '" + rootStoreURI + "'", e));
-			// fallback and return null
-		}
-
-		return null;
+		return Activator.getDefault().getFileStoreResolver().resolve(path);
 	}
 }
@@ -16,6 +16,7 @@ import java.net.URISyntaxException;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 import org.eclipse.core.filesystem.*;
 import org.eclipse.core.filesystem.provider.FileInfo;
 import org.eclipse.core.runtime.IStatus;
@@ -48,6 +49,52 @@ public class ServletFileStoreHandler extends ServletResourceHandler<IFileStore>
 
 	final ServletResourceHandler<IStatus> statusHandler;
 
+	/**
+	 * Remembers the status of a response, which the servlet API doesn't expose.
+	 */
+	private static class StatusRecordingResponse extends HttpServletResponseWrapper {
+		private int status = SC_OK;
+
+		StatusRecordingResponse(HttpServletResponse response) {
+			super(response);
+		}
+
+		boolean isSuccess() {
+			return status >= 200 && status < 300;
+		}
+
+		@Override
+		public void setStatus(int sc) {
+			status = sc;
+			super.setStatus(sc);
+		}
+
+		@SuppressWarnings("deprecation")
+		@Override
+		public void setStatus(int sc, String sm) {
+			status = sc;
+			super.setStatus(sc, sm);
+		}
+
+		@Override
+		public void sendError(int sc) throws IOException {
+			status = sc;
+			super.sendError(sc);
+		}
+
+		@Override
+		public void sendError(int sc, String msg) throws IOException {
+			status = sc;
+			super.sendError(sc, msg);
+		}
+
+		@Override
+		public void sendRedirect(String location) throws IOException {
+			status = SC_MOVED_TEMPORARILY;
+			super.sendRedirect(location);
+		}
+	}
+
 	public static IFileInfo fromJSON(JSONObject object) {
 		FileInfo info = (FileInfo) EFS.createFileInfo();
 		copyJSONToFileInfo(object, info);
@@ -147,8 +194,26 @@ public class ServletFileStoreHandler extends ServletResourceHandler<IFileStore>
 
 	public boolean handleRequest(HttpServletRequest request, HttpServletResponse response, IFileStore file) throws ServletException {
 		IFileInfo fileInfo = file.fetchInfo();
-		if (!request.getMethod().equals("PUT") && !fileInfo.exists())
+		String method = request.getMethod();
+		if (!method.equals("PUT") && !fileInfo.exists())
 			return statusHandler.handleRequest(request, response, new ServerStatus(IStatus.ERROR, 404, NLS.bind("File not found: {0}", request.getPathInfo()), null));
+		if ("GET".equals(method) || "HEAD".equals(method)) //$NON-NLS-1$ //$NON-NLS-2$
+			return dispatch(request, response, file, fileInfo);
+		//the request may create, modify or delete the file, which is reported once it has succeeded
+		StatusRecordingResponse recorder = new StatusRecordingResponse(response);
+		boolean handled = dispatch(request, recorder, file, fileInfo);
+		if (handled && recorder.isSuccess()) {
+			String change = FileChangeNotifier.CHANGE_MODIFIED;
+			if ("DELETE".equals(method)) //$NON-NLS-1$
+				change = FileChangeNotifier.CHANGE_DELETED;
+			else if (!fileInfo.exists())
+				change = FileChangeNotifier.CHANGE_CREATED;
+			FileChangeNotifier.getDefault().fireChanged(file, change);
+		}
+		return handled;
+	}
+
+	private boolean dispatch(HttpServletRequest request, HttpServletResponse response, IFileStore file, IFileInfo fileInfo) throws ServletException {
 		if (fileInfo.isDirectory())
 			return handleDirectory(request, response, file);
 		return handleFile(request, response, file);
@@ -14,7 +14,7 @@ import org.eclipse.core.runtime.*;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.orion.internal.server.servlets.workspace.WebElement;
 import org.eclipse.orion.server.core.ServerConstants;
-import org.eclipse.orion.server.core.resources.Base64Counter;
+import org.eclipse.orion.server.core.resources.IdAllocator;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.osgi.service.prefs.BackingStoreException;
@@ -26,7 +26,7 @@ public class SiteConfiguration extends WebElement {
 
 	public static final String SITE_CONFIGURATIONS_NODE_NAME = "SiteConfigurations"; //$NON-NLS-1$
 
-	private static final Base64Counter siteConfigCounter = new Base64Counter();
+	private static final IdAllocator siteConfigIds = IdAllocator.forPreferences(scope.getNode(SITE_CONFIGURATIONS_NODE_NAME), KEY_ID_HIGH_WATER_MARK);
 
 	/**
 	 * Creates a new SiteConfiguration instance with the given backing store.
@@ -50,14 +50,11 @@ public class SiteConfiguration extends WebElement {
 	 * @return The next available site configuration id. The id is guaranteed to be globally unique on this server.
 	 */
 	public static String nextSiteConfigurationId() {
-		synchronized (siteConfigCounter) {
-			String candidate;
-			do {
-				candidate = siteConfigCounter.toString();
-				siteConfigCounter.increment();
-			} while (siteConfigExists(candidate));
-			return candidate;
-		}
+		String candidate;
+		do {
+			candidate = siteConfigIds.nextId();
+		} while (siteConfigExists(candidate));
+		return candidate;
 	}
 
 	/**
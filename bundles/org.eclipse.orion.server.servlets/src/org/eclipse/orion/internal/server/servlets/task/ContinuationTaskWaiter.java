@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.servlets.task;
+
+import javax.servlet.http.HttpServletRequest;
+import org.eclipse.orion.server.core.tasks.*;
+import org.mortbay.util.ajax.Continuation;
+import org.mortbay.util.ajax.ContinuationSupport;
+
+/**
+ * Waits for a task to change using a Jetty continuation. This is the only class
+ * referring to the continuation API, which is an optional import, so it must only
+ * be loaded once {@link TaskServlet} has found the API is available.
+ */
+class ContinuationTaskWaiter {
+	/**
+	 * Returns the given task once its version is newer than the given version, or
+	 * the given wait time expires. With continuations that retry the request, this
+	 * method is entered again when the wait is over.
+	 */
+	static TaskInfo waitForTask(HttpServletRequest req, ITaskService taskService, TaskInfo task, long since, long wait) {
+		String taskId = task.getTaskId();
+		final Continuation continuation = ContinuationSupport.getContinuation(req, null);
+		if (continuation.isNew()) {
+			ITaskListener listener = new ITaskListener() {
+				public void taskUpdated(TaskInfo updated) {
+					continuation.resume();
+				}
+			};
+			if (wait <= 0 || !taskService.addTaskListener(taskId, since, listener))
+				return task;
+			continuation.setObject(listener);
+			//either throws to retry the request when the wait is over, or blocks until then
+			continuation.suspend(wait);
+		}
+		Object listener = continuation.getObject();
+		if (listener instanceof ITaskListener)
+			taskService.removeTaskListener(taskId, (ITaskListener) listener);
+		TaskInfo current = taskService.getTask(taskId);
+		return current == null ? task : current;
+	}
+}
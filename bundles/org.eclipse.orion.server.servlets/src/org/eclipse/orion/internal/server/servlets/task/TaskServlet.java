@@ -11,27 +11,46 @@
 package org.eclipse.orion.internal.server.servlets.task;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.List;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import org.eclipse.core.runtime.IPath;
-import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.*;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.orion.internal.server.core.IOUtilities;
 import org.eclipse.orion.internal.server.servlets.Activator;
 import org.eclipse.orion.internal.server.servlets.ProtocolConstants;
-import org.eclipse.orion.server.core.tasks.ITaskService;
-import org.eclipse.orion.server.core.tasks.TaskInfo;
+import org.eclipse.orion.server.core.tasks.*;
 import org.eclipse.orion.server.servlets.OrionServlet;
-import org.json.JSONException;
-import org.json.JSONObject;
+import org.json.*;
 import org.osgi.util.tracker.ServiceTracker;
 
 /**
  * A service for the client to obtain information about the current state of long
  * running operations on the server.
+ * <p>
+ * Instead of polling, a client can pass the version of the task it last received
+ * in the <code>since</code> parameter. The request then waits until the task
+ * changes, or the <code>wait</code> timeout expires. Waiting requests are suspended
+ * with a continuation, so they don't hold a thread on containers that support
+ * continuations. When the continuation API is not available, the request is
+ * answered immediately.
+ * <p>
+ * A GET on the servlet itself lists the tasks of the current user, optionally
+ * only the running or completed ones, and one page at a time. A DELETE on a
+ * running task cancels the job performing it, and a DELETE on a completed task
+ * removes the task. Only the owner of a task can read or delete it.
  */
 public class TaskServlet extends OrionServlet {
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * The default and maximum time in milliseconds a request waits for a task to change.
+	 */
+	private static final long DEFAULT_WAIT = 30000;
+	private static final long MAX_WAIT = 60000;
+
 	ServiceTracker<ITaskService, ITaskService> taskTracker;
 
 	public TaskServlet() {
@@ -45,6 +64,40 @@ public class TaskServlet extends OrionServlet {
 
 	@Override
 	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		String pathInfo = req.getPathInfo();
+		IPath path = pathInfo == null ? Path.EMPTY : new Path(pathInfo);
+		if (path.segmentCount() != 0 && (path.segmentCount() != 2 || !"id".equals(path.segment(0)))) {//$NON-NLS-1$
+			handleException(resp, "Invalid request path: " + path, null, HttpServletResponse.SC_BAD_REQUEST);
+			return;
+		}
+		ITaskService taskService = taskTracker.getService();
+		if (taskService == null) {
+			handleException(resp, "Task service is unavailable", null);
+			return;
+		}
+		if (path.segmentCount() == 0) {
+			handleListTasks(req, resp, taskService);
+			return;
+		}
+		String taskId = path.segment(1);
+		TaskInfo task = taskService.getTask(taskId);
+		if (task == null) {
+			handleException(resp, "Task not found: " + taskId, null, HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		//tasks created without an owner can be read by anyone who knows their id
+		if (task.getUserId() != null && !task.getUserId().equals(req.getRemoteUser())) {
+			handleException(resp, "Forbidden: " + taskId, null, HttpServletResponse.SC_FORBIDDEN);
+			return;
+		}
+		long since = getLongParameter(req, ProtocolConstants.PARM_SINCE, -1);
+		if (since >= 0)
+			task = waitForTask(req, taskService, task, since);
+		writeJSONResponse(req, resp, toJSON(task, getURI(req)));
+	}
+
+	@Override
+	protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 		String pathInfo = req.getPathInfo();
 		IPath path = pathInfo == null ? Path.EMPTY : new Path(pathInfo);
 		if (path.segmentCount() != 2 || !"id".equals(path.segment(0))) {//$NON-NLS-1$
@@ -62,13 +115,102 @@ public class TaskServlet extends OrionServlet {
 			handleException(resp, "Task not found: " + taskId, null, HttpServletResponse.SC_NOT_FOUND);
 			return;
 		}
-		JSONObject result = task.toJSON();
+		String userId = req.getRemoteUser();
+		if (userId == null || !userId.equals(task.getUserId())) {
+			handleException(resp, "Forbidden: " + taskId, null, HttpServletResponse.SC_FORBIDDEN);
+			return;
+		}
+		if (!task.isRunning()) {
+			taskService.removeTask(taskId);
+			return;
+		}
+		//a job that is running stops at its next cancellation check, and completes the task itself
+		boolean running = false;
+		for (Job job : Job.getJobManager().find(taskId))
+			running |= !job.cancel();
+		if (!running) {
+			//the job never started, or the task was left behind by an earlier run of the server
+			task = taskService.getTask(taskId);
+			if (task != null && task.isRunning()) {
+				task.done(new Status(IStatus.CANCEL, Activator.PI_SERVER_SERVLETS, "Task canceled"));
+				taskService.updateTask(task);
+			}
+		}
+		task = taskService.getTask(taskId);
+		if (task != null)
+			writeJSONResponse(req, resp, toJSON(task, getURI(req)));
+	}
+
+	/**
+	 * Writes one page of the tasks of the current user.
+	 */
+	private void handleListTasks(HttpServletRequest req, HttpServletResponse resp, ITaskService taskService) throws IOException {
+		long start = getLongParameter(req, ProtocolConstants.PARM_START, 0);
+		long rows = getLongParameter(req, ProtocolConstants.PARM_ROWS, Integer.MAX_VALUE);
+		if (start < 0 || rows < 0) {
+			handleException(resp, "Invalid paging parameters", null, HttpServletResponse.SC_BAD_REQUEST);
+			return;
+		}
+		String running = IOUtilities.getQueryParameter(req, ProtocolConstants.PARM_RUNNING);
+		String userId = req.getRemoteUser();
+		JSONArray children = new JSONArray();
+		int total = 0;
+		if (userId != null) {
+			URI baseLocation = URIUtil.append(getURI(req), "id"); //$NON-NLS-1$
+			List<TaskInfo> tasks = taskService.getTasks(userId);
+			for (TaskInfo task : tasks) {
+				if (running != null && task.isRunning() != Boolean.valueOf(running).booleanValue())
+					continue;
+				if (total >= start && total - start < rows)
+					children.put(toJSON(task, URIUtil.append(baseLocation, task.getTaskId())));
+				total++;
+			}
+		}
+		JSONObject result = new JSONObject();
 		try {
-			if (result.optString(ProtocolConstants.KEY_LOCATION, "").equals(""))
-				result.put(ProtocolConstants.KEY_LOCATION, getURI(req).toString());
+			result.put(ProtocolConstants.KEY_CHILDREN, children);
+			result.put(ProtocolConstants.KEY_TOTAL, total);
 		} catch (JSONException e) {
 			//cannot happen
 		}
 		writeJSONResponse(req, resp, result);
 	}
+
+	/**
+	 * Returns the JSON representation of the given task, whose location is the given
+	 * location unless the task has a result location.
+	 */
+	private JSONObject toJSON(TaskInfo task, URI taskLocation) {
+		JSONObject result = task.toJSON();
+		try {
+			if (result.optString(ProtocolConstants.KEY_LOCATION, "").equals("")) //$NON-NLS-1$ //$NON-NLS-2$
+				result.put(ProtocolConstants.KEY_LOCATION, taskLocation.toString());
+		} catch (JSONException e) {
+			//cannot happen
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the given task once its version is newer than the given version, or
+	 * the wait timeout of the request expires. Without continuations the task is
+	 * returned immediately, and the client polls again.
+	 */
+	private TaskInfo waitForTask(HttpServletRequest req, ITaskService taskService, TaskInfo task, long since) {
+		if (!Activator.hasContinuationSupport())
+			return task;
+		long wait = Math.min(getLongParameter(req, ProtocolConstants.PARM_WAIT, DEFAULT_WAIT), MAX_WAIT);
+		return ContinuationTaskWaiter.waitForTask(req, taskService, task, since, wait);
+	}
+
+	private long getLongParameter(HttpServletRequest req, String name, long defaultValue) {
+		String value = IOUtilities.getQueryParameter(req, name);
+		if (value == null)
+			return defaultValue;
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
 }
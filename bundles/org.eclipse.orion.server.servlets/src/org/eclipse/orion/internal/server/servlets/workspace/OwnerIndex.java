@@ -0,0 +1,308 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.servlets.workspace;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.INodeChangeListener;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.NodeChangeEvent;
+import org.eclipse.orion.internal.server.servlets.ProtocolConstants;
+import org.eclipse.orion.server.core.LogHelper;
+import org.eclipse.orion.server.core.users.OrionScope;
+import org.json.*;
+import org.osgi.service.prefs.BackingStoreException;
+
+/**
+ * Index of which users own which workspaces, and which workspaces contain which
+ * projects, in both directions. The ownership is persisted as the workspace list
+ * of each user and the project list of each workspace. Answering "who owns this
+ * project" from that data requires reading and parsing the lists of all users and
+ * workspaces, while this index answers it with a few map lookups.
+ * <p>
+ * The index is built from the persisted lists in a single pass on first use, and is
+ * kept up to date by {@link WebUser} and {@link WebWorkspace} as workspaces and
+ * projects are added and removed. The index also listens for the removal of user and
+ * workspace nodes, however they are removed, and forgets their ownership. All sets
+ * returned by this class are immutable snapshots.
+ */
+public class OwnerIndex {
+	private static final String USER_NODE_NAME = "Users"; //$NON-NLS-1$
+	private static final String WORKSPACE_NODE_NAME = "Workspaces"; //$NON-NLS-1$
+
+	private static final OwnerIndex instance = new OwnerIndex();
+
+	/*
+	 * The sets in these maps are never modified once they are in the map. Updates
+	 * replace the set, so readers don't need to lock.
+	 */
+	private final Map<String, Set<String>> userToWorkspaces = new ConcurrentHashMap<String, Set<String>>();
+	private final Map<String, Set<String>> workspaceToUsers = new ConcurrentHashMap<String, Set<String>>();
+	private final Map<String, Set<String>> workspaceToProjects = new ConcurrentHashMap<String, Set<String>>();
+	private final Map<String, Set<String>> projectToWorkspaces = new ConcurrentHashMap<String, Set<String>>();
+
+	private volatile boolean initialized = false;
+
+	/**
+	 * Listens for removal of user and workspace nodes, and of the nodes holding all
+	 * users or all workspaces.
+	 */
+	private final INodeChangeListener removalListener = new INodeChangeListener() {
+		public void added(NodeChangeEvent event) {
+			//new users and workspaces are recorded when they are added to a list
+		}
+
+		public void removed(NodeChangeEvent event) {
+			String parent = event.getParent().name();
+			String child = event.getChild().name();
+			if (event.getParent() == usersNode)
+				userRemoved(child);
+			else if (event.getParent() == workspacesNode)
+				workspaceRemoved(child);
+			else if (OrionScope.SCOPE.equals(parent) && (USER_NODE_NAME.equals(child) || WORKSPACE_NODE_NAME.equals(child)))
+				reset();
+		}
+	};
+	/**
+	 * The nodes the index was built from.
+	 */
+	private volatile IEclipsePreferences usersNode;
+	private volatile IEclipsePreferences workspacesNode;
+
+	public static OwnerIndex getDefault() {
+		return instance;
+	}
+
+	private OwnerIndex() {
+		super();
+	}
+
+	/**
+	 * Returns the ids of the workspaces owned by the given user.
+	 */
+	public Set<String> getWorkspacesOfUser(String userName) {
+		return get(userToWorkspaces, userName);
+	}
+
+	/**
+	 * Returns the names of the users owning the given workspace.
+	 */
+	public Set<String> getUsersOfWorkspace(String workspaceId) {
+		return get(workspaceToUsers, workspaceId);
+	}
+
+	/**
+	 * Returns the ids of the projects in the given workspace.
+	 */
+	public Set<String> getProjectsOfWorkspace(String workspaceId) {
+		return get(workspaceToProjects, workspaceId);
+	}
+
+	/**
+	 * Returns the ids of the workspaces containing the given project.
+	 */
+	public Set<String> getWorkspacesOfProject(String projectId) {
+		return get(projectToWorkspaces, projectId);
+	}
+
+	/**
+	 * Returns the ids of the projects in all workspaces of the given user.
+	 */
+	public Set<String> getProjectsOfUser(String userName) {
+		Set<String> workspaces = getWorkspacesOfUser(userName);
+		if (workspaces.size() == 1)
+			return getProjectsOfWorkspace(workspaces.iterator().next());
+		Set<String> result = new HashSet<String>();
+		for (String workspace : workspaces)
+			result.addAll(getProjectsOfWorkspace(workspace));
+		return Collections.unmodifiableSet(result);
+	}
+
+	/**
+	 * Returns the names of the users owning a workspace that contains the given project.
+	 */
+	public Set<String> getUsersOfProject(String projectId) {
+		Set<String> workspaces = getWorkspacesOfProject(projectId);
+		if (workspaces.size() == 1)
+			return getUsersOfWorkspace(workspaces.iterator().next());
+		Set<String> result = new HashSet<String>();
+		for (String workspace : workspaces)
+			result.addAll(getUsersOfWorkspace(workspace));
+		return Collections.unmodifiableSet(result);
+	}
+
+	/**
+	 * Returns whether the given project is in a workspace owned by the given user.
+	 */
+	public boolean isProjectOwner(String userName, String projectId) {
+		Set<String> userWorkspaces = getWorkspacesOfUser(userName);
+		for (String workspace : getWorkspacesOfProject(projectId)) {
+			if (userWorkspaces.contains(workspace))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Discards the index, so that it is built again from the persisted metadata on
+	 * next use. This happens when the nodes holding all users or all workspaces are
+	 * removed.
+	 */
+	private synchronized void reset() {
+		userToWorkspaces.clear();
+		workspaceToUsers.clear();
+		workspaceToProjects.clear();
+		projectToWorkspaces.clear();
+		initialized = false;
+	}
+
+	/**
+	 * Records that the given user owns the given workspace.
+	 */
+	synchronized void workspaceAdded(String userName, String workspaceId) {
+		if (!initialized)
+			return;
+		addEdge(userToWorkspaces, workspaceToUsers, userName, workspaceId);
+	}
+
+	/**
+	 * Records that the given project was added to the given workspace.
+	 */
+	synchronized void projectAdded(String workspaceId, String projectId) {
+		if (!initialized)
+			return;
+		addEdge(workspaceToProjects, projectToWorkspaces, workspaceId, projectId);
+	}
+
+	/**
+	 * Forgets the workspaces owned by the given user.
+	 */
+	synchronized void userRemoved(String userName) {
+		if (!initialized)
+			return;
+		for (String workspaceId : get(userToWorkspaces, userName))
+			remove(workspaceToUsers, workspaceId, userName);
+		userToWorkspaces.remove(userName);
+	}
+
+	/**
+	 * Forgets the owners and projects of the given workspace.
+	 */
+	synchronized void workspaceRemoved(String workspaceId) {
+		if (!initialized)
+			return;
+		for (String userName : get(workspaceToUsers, workspaceId))
+			remove(userToWorkspaces, userName, workspaceId);
+		workspaceToUsers.remove(workspaceId);
+		for (String projectId : get(workspaceToProjects, workspaceId))
+			remove(projectToWorkspaces, projectId, workspaceId);
+		workspaceToProjects.remove(workspaceId);
+	}
+
+	/**
+	 * Records that the given project was removed from the given workspace.
+	 */
+	synchronized void projectRemoved(String workspaceId, String projectId) {
+		if (!initialized)
+			return;
+		remove(workspaceToProjects, workspaceId, projectId);
+		remove(projectToWorkspaces, projectId, workspaceId);
+	}
+
+	private Set<String> get(Map<String, Set<String>> map, String key) {
+		if (!initialized)
+			initialize();
+		Set<String> result = key == null ? null : map.get(key);
+		if (result == null)
+			return Collections.emptySet();
+		return result;
+	}
+
+	/**
+	 * Builds the index from the workspace lists of all users and the project lists
+	 * of all workspaces.
+	 */
+	private synchronized void initialize() {
+		if (initialized)
+			return;
+		try {
+			IEclipsePreferences users = WebElement.scope.getNode(USER_NODE_NAME);
+			IEclipsePreferences workspaces = WebElement.scope.getNode(WORKSPACE_NODE_NAME);
+			//listeners are only added once to each node
+			((IEclipsePreferences) users.parent()).addNodeChangeListener(removalListener);
+			users.addNodeChangeListener(removalListener);
+			workspaces.addNodeChangeListener(removalListener);
+			usersNode = users;
+			workspacesNode = workspaces;
+			for (String userName : users.childrenNames()) {
+				String list = users.node(userName).get(ProtocolConstants.KEY_WORKSPACES, null);
+				for (String workspaceId : parseIds(list))
+					addEdge(userToWorkspaces, workspaceToUsers, userName, workspaceId);
+			}
+			for (String workspaceId : workspaces.childrenNames()) {
+				String list = workspaces.node(workspaceId).get(ProtocolConstants.KEY_PROJECTS, null);
+				for (String projectId : parseIds(list))
+					addEdge(workspaceToProjects, projectToWorkspaces, workspaceId, projectId);
+			}
+		} catch (BackingStoreException e) {
+			LogHelper.log(e);
+		}
+		initialized = true;
+	}
+
+	/**
+	 * Returns the ids in a persisted JSON array of objects with an id property.
+	 */
+	private static List<String> parseIds(String json) {
+		if (json == null)
+			return Collections.emptyList();
+		List<String> result = new ArrayList<String>();
+		try {
+			JSONArray array = new JSONArray(json);
+			for (int i = 0; i < array.length(); i++) {
+				JSONObject element = array.optJSONObject(i);
+				String id = element == null ? null : element.optString(ProtocolConstants.KEY_ID, null);
+				if (id != null)
+					result.add(id);
+			}
+		} catch (JSONException e) {
+			//someone has bashed the underlying storage - ignore the list
+		}
+		return result;
+	}
+
+	private static void addEdge(Map<String, Set<String>> forward, Map<String, Set<String>> reverse, String from, String to) {
+		add(forward, from, to);
+		add(reverse, to, from);
+	}
+
+	private static void add(Map<String, Set<String>> map, String key, String value) {
+		Set<String> existing = map.get(key);
+		if (existing != null && existing.contains(value))
+			return;
+		Set<String> updated = existing == null ? new HashSet<String>() : new HashSet<String>(existing);
+		updated.add(value);
+		map.put(key, Collections.unmodifiableSet(updated));
+	}
+
+	private static void remove(Map<String, Set<String>> map, String key, String value) {
+		Set<String> existing = map.get(key);
+		if (existing == null || !existing.contains(value))
+			return;
+		if (existing.size() == 1) {
+			map.remove(key);
+			return;
+		}
+		Set<String> updated = new HashSet<String>(existing);
+		updated.remove(value);
+		map.put(key, Collections.unmodifiableSet(updated));
+	}
+}
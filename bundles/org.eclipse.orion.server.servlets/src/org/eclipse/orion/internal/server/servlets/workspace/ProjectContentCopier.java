@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.servlets.workspace;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.*;
+import org.eclipse.orion.internal.server.core.IOUtilities;
+import org.eclipse.orion.internal.server.servlets.Activator;
+import org.eclipse.orion.server.core.LogHelper;
+import org.eclipse.orion.server.core.PreferenceHelper;
+import org.eclipse.orion.server.core.ServerConstants;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Copies the contents of one project to the location of another. When both projects
+ * are on the local file system, the copy strategy is chosen by the {@link ServerConstants#CONFIG_FILE_PROJECT_COPY}
+ * configuration property:
+ * <ul>
+ * <li><code>auto</code> (default) - clone files with reflinks where the file system supports it,
+ * and otherwise perform a parallel copy</li>
+ * <li><code>reflink</code> - same as <code>auto</code></li>
+ * <li><code>copy</code> - always perform a parallel copy</li>
+ * </ul>
+ * Reflinks are copy-on-write at the file system level, so the copy never shares
+ * content with the source. Both strategies copy symbolic links in the source tree
+ * as links, without following them. Links that can't be created are skipped and logged.
+ */
+class ProjectContentCopier {
+	static final String MODE_AUTO = "auto"; //$NON-NLS-1$
+	static final String MODE_COPY = "copy"; //$NON-NLS-1$
+
+	/**
+	 * Files larger than this are copied in several chunks in parallel.
+	 */
+	private static final long CHUNK_SIZE = 8 * 1024 * 1024;
+
+	private final IFileStore source;
+	private final IFileStore destination;
+
+	ProjectContentCopier(IFileStore source, IFileStore destination) {
+		this.source = source;
+		this.destination = destination;
+	}
+
+	/**
+	 * Copies the source tree to the destination. The content of the destination
+	 * is independent of the source afterwards.
+	 */
+	void copy() throws CoreException {
+		File sourceFile = source.toLocalFile(EFS.NONE, null);
+		File destinationFile = destination.toLocalFile(EFS.NONE, null);
+		if (sourceFile == null || destinationFile == null || !sourceFile.isDirectory()) {
+			source.copy(destination, EFS.OVERWRITE, null);
+			return;
+		}
+		String mode = PreferenceHelper.getString(ServerConstants.CONFIG_FILE_PROJECT_COPY, MODE_AUTO).toLowerCase();
+		if (!MODE_COPY.equals(mode) && runCopyCommand("--reflink=always", sourceFile, destinationFile)) //$NON-NLS-1$
+			return;
+		parallelCopy(sourceFile, destinationFile);
+	}
+
+	/**
+	 * Duplicates the source tree using the system copy command with the given
+	 * option. Returns whether the copy succeeded. On failure any partial result
+	 * is removed before falling back to another strategy.
+	 */
+	private boolean runCopyCommand(String option, File sourceFile, File destinationFile) throws CoreException {
+		//the clone option is only available in the GNU copy command
+		if (File.separatorChar != '/')
+			return false;
+		destinationFile.mkdirs();
+		ProcessBuilder builder = new ProcessBuilder("cp", "-R", "-p", option, sourceFile.getAbsolutePath() + "/.", destinationFile.getAbsolutePath()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		builder.redirectErrorStream(true);
+		boolean success = false;
+		try {
+			Process process = builder.start();
+			//drain output so the process can't block on a full pipe
+			IOUtilities.toString(process.getInputStream());
+			success = process.waitFor() == 0;
+		} catch (IOException e) {
+			//copy command not available
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (!success) {
+			destination.delete(EFS.NONE, null);
+			destination.mkdir(EFS.NONE, null);
+		}
+		return success;
+	}
+
+	/**
+	 * Copies the source tree to the destination on several threads. Directories are
+	 * created up front, and file contents are then copied in chunks that are independent
+	 * of each other. Symbolic links are recreated last.
+	 */
+	private void parallelCopy(File sourceFile, File destinationFile) throws CoreException {
+		List<File[]> files = new ArrayList<File[]>();
+		List<File[]> links = new ArrayList<File[]>();
+		collectFiles(sourceFile, destinationFile, files, links);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+		try {
+			List<Future<?>> pending = new ArrayList<Future<?>>();
+			for (File[] pair : files) {
+				long length = pair[0].length();
+				RandomAccessFile out = new RandomAccessFile(pair[1], "rw"); //$NON-NLS-1$
+				try {
+					out.setLength(length);
+				} finally {
+					IOUtilities.safeClose(out);
+				}
+				for (long position = 0; position < length; position += CHUNK_SIZE)
+					pending.add(executor.submit(new ChunkCopy(pair[0], pair[1], position, Math.min(CHUNK_SIZE, length - position))));
+			}
+			for (Future<?> future : pending)
+				future.get();
+		} catch (ExecutionException e) {
+			throw new CoreException(new Status(IStatus.ERROR, Activator.PI_SERVER_SERVLETS, NLS.bind("Error copying {0}", sourceFile), e.getCause()));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CoreException(new Status(IStatus.CANCEL, Activator.PI_SERVER_SERVLETS, NLS.bind("Copy of {0} was interrupted", sourceFile)));
+		} catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR, Activator.PI_SERVER_SERVLETS, NLS.bind("Error copying {0}", sourceFile), e));
+		} finally {
+			executor.shutdownNow();
+		}
+		copyLinks(sourceFile, links);
+		//attributes and time stamps are set last since writing content changes them
+		for (File[] pair : files)
+			copyAttributes(pair[0], pair[1]);
+		copyAttributes(sourceFile, destinationFile);
+	}
+
+	/**
+	 * Creates a symbolic link with the same target for each (source, destination) pair
+	 * of links, the same way the system copy command does. Links that can't be created
+	 * are logged.
+	 */
+	private void copyLinks(File sourceFile, List<File[]> links) {
+		List<File> skipped = new ArrayList<File>();
+		for (File[] pair : links) {
+			String target = EFS.getLocalFileSystem().fromLocalFile(pair[0]).fetchInfo().getStringAttribute(EFS.ATTRIBUTE_LINK_TARGET);
+			if (target == null || !createLink(target, pair[1]))
+				skipped.add(pair[0]);
+		}
+		if (!skipped.isEmpty())
+			LogHelper.log(new Status(IStatus.WARNING, Activator.PI_SERVER_SERVLETS, NLS.bind("Symbolic links not copied from {0}: {1}", sourceFile, skipped)));
+	}
+
+	/**
+	 * Creates a symbolic link at the given location pointing to the given target. Returns
+	 * whether the link was created.
+	 */
+	private boolean createLink(String target, File link) {
+		//there is no API for creating links in Java 5
+		if (File.separatorChar != '/')
+			return false;
+		ProcessBuilder builder = new ProcessBuilder("ln", "-s", target, link.getAbsolutePath()); //$NON-NLS-1$ //$NON-NLS-2$
+		builder.redirectErrorStream(true);
+		try {
+			Process process = builder.start();
+			IOUtilities.toString(process.getInputStream());
+			return process.waitFor() == 0;
+		} catch (IOException e) {
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Creates the directory structure of the source tree in the destination, and collects
+	 * (source, destination) pairs for all files and all symbolic links in the tree. Symbolic
+	 * links are not followed, so the copy never reaches outside the source tree.
+	 */
+	private void collectFiles(File from, File to, List<File[]> files, List<File[]> links) throws CoreException {
+		if (!to.isDirectory() && !to.mkdirs())
+			throw new CoreException(new Status(IStatus.ERROR, Activator.PI_SERVER_SERVLETS, NLS.bind("Error creating directory {0}", to)));
+		File[] children = from.listFiles();
+		if (children == null)
+			return;
+		for (File child : children) {
+			File target = new File(to, child.getName());
+			if (isSymbolicLink(child)) {
+				links.add(new File[] {child, target});
+			} else if (child.isDirectory()) {
+				collectFiles(child, target, files, links);
+				copyAttributes(child, target);
+			} else {
+				files.add(new File[] {child, target});
+			}
+		}
+	}
+
+	private boolean isSymbolicLink(File file) {
+		return EFS.getLocalFileSystem().fromLocalFile(file).fetchInfo().getAttribute(EFS.ATTRIBUTE_SYMLINK);
+	}
+
+	private void copyAttributes(File from, File to) throws CoreException {
+		IFileStore fromStore = EFS.getLocalFileSystem().fromLocalFile(from);
+		IFileStore toStore = EFS.getLocalFileSystem().fromLocalFile(to);
+		toStore.putInfo(fromStore.fetchInfo(), EFS.SET_ATTRIBUTES | EFS.SET_LAST_MODIFIED, null);
+	}
+
+	/**
+	 * Copies one range of bytes of a file to the same range of the target file.
+	 */
+	private static class ChunkCopy implements Callable<Object> {
+		private final File from;
+		private final File to;
+		private final long position;
+		private final long count;
+
+		ChunkCopy(File from, File to, long position, long count) {
+			this.from = from;
+			this.to = to;
+			this.position = position;
+			this.count = count;
+		}
+
+		public Object call() throws IOException {
+			FileInputStream in = new FileInputStream(from);
+			RandomAccessFile out = null;
+			try {
+				out = new RandomAccessFile(to, "rw"); //$NON-NLS-1$
+				FileChannel inChannel = in.getChannel();
+				FileChannel outChannel = out.getChannel();
+				long done = 0;
+				while (done < count) {
+					long transferred = inChannel.transferTo(position + done, count - done, outChannel.position(position + done));
+					if (transferred <= 0)
+						throw new IOException(NLS.bind("Unexpected end of file: {0}", from));
+					done += transferred;
+				}
+			} finally {
+				IOUtilities.safeClose(in);
+				IOUtilities.safeClose(out);
+			}
+			return null;
+		}
+	}
+}
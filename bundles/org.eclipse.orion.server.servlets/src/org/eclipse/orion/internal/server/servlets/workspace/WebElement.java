@@ -14,6 +14,7 @@ import org.eclipse.core.runtime.*;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.IScopeContext;
 import org.eclipse.orion.internal.server.servlets.ProtocolConstants;
+import org.eclipse.orion.server.core.LogHelper;
 import org.eclipse.orion.server.core.ServerConstants;
 import org.eclipse.orion.server.core.users.OrionScope;
 import org.osgi.service.prefs.BackingStoreException;
@@ -24,6 +25,10 @@ import org.osgi.service.prefs.BackingStoreException;
 public class WebElement {
 	protected static final IScopeContext scope = new OrionScope();
 	protected IEclipsePreferences store;
+	/**
+	 * The key under which the id allocator of each kind of element persists its high-water mark.
+	 */
+	protected static final String KEY_ID_HIGH_WATER_MARK = "IdHighWaterMark"; //$NON-NLS-1$
 	protected static final boolean caseSensitive = "macosx".equals(System.getProperty("osgi.os")) ? false : new java.io.File("a").compareTo(new java.io.File("A")) != 0; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
 
 	/**
@@ -31,10 +36,29 @@ public class WebElement {
 	 */
 	public WebElement(IEclipsePreferences store) {
 		this.store = store;
+	}
+
+	/**
+	 * Reads the state of this element from the backing storage. Called once when
+	 * the element is first loaded into its cache; the cached instance is not read
+	 * again.
+	 */
+	void load() {
 		try {
 			store.sync();
 		} catch (BackingStoreException e) {
-			//log
+			LogHelper.log(e);
+		}
+	}
+
+	/**
+	 * Returns whether the backing node of this element has been removed.
+	 */
+	boolean isRemoved() {
+		try {
+			return !store.nodeExists(""); //$NON-NLS-1$
+		} catch (BackingStoreException e) {
+			return true;
 		}
 	}
 
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.servlets.workspace;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Identity cache of web elements of one kind, keyed by id. Elements are loaded
+ * from the backing store once, and all later lookups of the same id return the
+ * same instance, so reads don't go back to the backing store. Changes are written
+ * through to the backing store by {@link WebElement#save()}.
+ * <p>
+ * An element is discarded from the cache when it is explicitly removed, or when
+ * its backing node has been removed by some other means. When the cache is full,
+ * the least recently used element is discarded, so elements in active use keep
+ * their identity.
+ */
+public class WebElementCache<T extends WebElement> {
+	/**
+	 * The default maximum number of cached elements.
+	 */
+	private static final int MAX_ELEMENTS = 10000;
+
+	/**
+	 * Map of id to element, in access order. Guarded by itself.
+	 */
+	private final Map<String, T> elements;
+
+	public WebElementCache() {
+		this(MAX_ELEMENTS);
+	}
+
+	/**
+	 * Creates a cache holding at most the given number of elements.
+	 */
+	public WebElementCache(final int maxElements) {
+		elements = new LinkedHashMap<String, T>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+				return size() > maxElements;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached element with the given id, or <code>null</code> if
+	 * there is no such element in the cache.
+	 */
+	public T get(String id) {
+		T element;
+		synchronized (elements) {
+			element = elements.get(id);
+		}
+		if (element != null && element.isRemoved()) {
+			synchronized (elements) {
+				if (elements.get(id) == element)
+					elements.remove(id);
+			}
+			return null;
+		}
+		return element;
+	}
+
+	/**
+	 * Adds a newly loaded element to the cache. If another thread has added
+	 * an element with the same id in the meantime, that element is returned instead.
+	 */
+	public T add(String id, T element) {
+		synchronized (elements) {
+			T existing = elements.get(id);
+			if (existing != null)
+				return existing;
+			elements.put(id, element);
+			return element;
+		}
+	}
+
+	/**
+	 * Discards the element with the given id, so it is loaded again from the
+	 * backing store on the next lookup.
+	 */
+	public void remove(String id) {
+		synchronized (elements) {
+			elements.remove(id);
+		}
+	}
+}
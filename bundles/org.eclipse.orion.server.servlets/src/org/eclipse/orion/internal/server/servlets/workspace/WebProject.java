@@ -21,7 +21,7 @@ import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.orion.internal.server.servlets.Activator;
 import org.eclipse.orion.internal.server.servlets.ProtocolConstants;
 import org.eclipse.orion.server.core.LogHelper;
-import org.eclipse.orion.server.core.resources.Base64Counter;
+import org.eclipse.orion.server.core.resources.IdAllocator;
 import org.osgi.service.prefs.BackingStoreException;
 
 /**
@@ -29,7 +29,8 @@ import org.osgi.service.prefs.BackingStoreException;
  */
 public class WebProject extends WebElement {
 	public static final String PROJECT_NODE_NAME = "Projects"; //$NON-NLS-1$
-	private static final Base64Counter projectCounter = new Base64Counter();
+	private static final IdAllocator projectIds = IdAllocator.forPreferences(scope.getNode(PROJECT_NODE_NAME), KEY_ID_HIGH_WATER_MARK);
+	private static final WebElementCache<WebProject> cache = new WebElementCache<WebProject>();
 
 	/**
 	 * Creates a workspace instance with the given globally unique id. The workspace
@@ -38,9 +39,13 @@ public class WebProject extends WebElement {
 	 * @return A workspace instance with the given id
 	 */
 	public static WebProject fromId(String id) {
-		WebProject result = new WebProject((IEclipsePreferences) scope.getNode(PROJECT_NODE_NAME).node(id));
+		WebProject result = cache.get(id);
+		if (result != null)
+			return result;
+		result = new WebProject((IEclipsePreferences) scope.getNode(PROJECT_NODE_NAME).node(id));
+		result.load();
 		result.setId(id);
-		return result;
+		return cache.add(id, result);
 	}
 
 	/**
@@ -49,14 +54,11 @@ public class WebProject extends WebElement {
 	 * @return the next available project id, or <code>null</code> if an id could not be allocated
 	 */
 	public static String nextProjectId() {
-		synchronized (projectCounter) {
-			String candidate;
-			do {
-				candidate = projectCounter.toString();
-				projectCounter.increment();
-			} while (exists(candidate) || (!caseSensitive && containsUpperCase(candidate)));
-			return candidate;
-		}
+		String candidate;
+		do {
+			candidate = projectIds.nextId();
+		} while (exists(candidate) || (!caseSensitive && containsUpperCase(candidate)));
+		return candidate;
 	}
 
 	/**
@@ -93,6 +95,7 @@ public class WebProject extends WebElement {
 	}
 
 	public void remove() {
+		cache.remove(getId());
 		store.remove(ProtocolConstants.KEY_CONTENT_LOCATION);
 		store.remove(ProtocolConstants.KEY_ID);
 		store.remove(ProtocolConstants.KEY_NAME);
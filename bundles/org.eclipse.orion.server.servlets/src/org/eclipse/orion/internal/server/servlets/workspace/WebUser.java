@@ -26,6 +26,7 @@ import org.osgi.service.prefs.BackingStoreException;
  * An Eclipse web user.
  */
 public class WebUser extends WebElement {
+	private static final WebElementCache<WebUser> cache = new WebElementCache<WebUser>();
 
 	public WebUser(IEclipsePreferences store) {
 		super(store);
@@ -35,18 +36,48 @@ public class WebUser extends WebElement {
 	 * Creates a web user instance for the given name.
 	 */
 	public static WebUser fromUserName(String userName) {
+		WebUser user = cache.get(userName);
+		if (user != null)
+			return user;
 		IEclipsePreferences users = new OrionScope().getNode("Users"); //$NON-NLS-1$
 		IEclipsePreferences result = (IEclipsePreferences) users.node(userName);
-		if (result.get(ProtocolConstants.KEY_NAME, null) == null)
+		user = new WebUser(result);
+		user.load();
+		boolean changed = false;
+		if (result.get(ProtocolConstants.KEY_NAME, null) == null) {
 			result.put(ProtocolConstants.KEY_NAME, userName);
-		if (result.get(ProtocolConstants.KEY_ID, null) == null)
+			changed = true;
+		}
+		if (result.get(ProtocolConstants.KEY_ID, null) == null) {
 			result.put(ProtocolConstants.KEY_ID, new UniversalUniqueIdentifier().toBase64String());
+			changed = true;
+		}
+		//only write new users, existing users are already in the backing store
+		if (changed) {
+			try {
+				result.flush();
+			} catch (BackingStoreException e) {
+				LogHelper.log(e);
+			}
+		}
+		return cache.add(userName, user);
+	}
+
+	/**
+	 * Removes the metadata of the user with the given name, such as its list of
+	 * workspaces and its rights. This has no effect if the user has no metadata.
+	 */
+	public static void removeUser(String userName) throws CoreException {
+		cache.remove(userName);
+		IEclipsePreferences users = new OrionScope().getNode("Users"); //$NON-NLS-1$
 		try {
-			result.flush();
+			if (!users.nodeExists(userName))
+				return;
+			users.node(userName).removeNode();
+			users.flush();
 		} catch (BackingStoreException e) {
-			LogHelper.log(e);
+			throw new CoreException(new Status(IStatus.ERROR, ServerConstants.PI_SERVER_CORE, "Error removing user " + userName, e)); //$NON-NLS-1$
 		}
-		return new WebUser(result);
 	}
 
 	public WebWorkspace createWorkspace(String name) throws CoreException {
@@ -78,6 +109,7 @@ public class WebUser extends WebElement {
 		workspaceArray.put(newWorkspace);
 		store.put(ProtocolConstants.KEY_WORKSPACES, workspaceArray.toString());
 		save();
+		OwnerIndex.getDefault().workspaceAdded(store.name(), id);
 		return workspace;
 	}
 
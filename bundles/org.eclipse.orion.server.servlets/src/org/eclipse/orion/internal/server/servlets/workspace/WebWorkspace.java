@@ -12,7 +12,7 @@ package org.eclipse.orion.internal.server.servlets.workspace;
 
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.orion.internal.server.servlets.ProtocolConstants;
-import org.eclipse.orion.server.core.resources.Base64Counter;
+import org.eclipse.orion.server.core.resources.IdAllocator;
 import org.json.*;
 
 /**
@@ -20,7 +20,8 @@ import org.json.*;
  */
 public class WebWorkspace extends WebElement {
 	private static final String WORKSPACE_NODE_NAME = "Workspaces";//$NON-NLS-1$
-	private static final Base64Counter workspaceCounter = new Base64Counter();
+	private static final IdAllocator workspaceIds = IdAllocator.forPreferences(scope.getNode(WORKSPACE_NODE_NAME), KEY_ID_HIGH_WATER_MARK);
+	private static final WebElementCache<WebWorkspace> cache = new WebElementCache<WebWorkspace>();
 
 	/**
 	 * Creates a workspace instance with the given globally unique id. The workspace
@@ -29,9 +30,13 @@ public class WebWorkspace extends WebElement {
 	 * @return A workspace instance with the given id
 	 */
 	public static WebWorkspace fromId(String id) {
-		WebWorkspace result = new WebWorkspace((IEclipsePreferences) scope.getNode(WORKSPACE_NODE_NAME).node(id));
+		WebWorkspace result = cache.get(id);
+		if (result != null)
+			return result;
+		result = new WebWorkspace((IEclipsePreferences) scope.getNode(WORKSPACE_NODE_NAME).node(id));
+		result.load();
 		result.setId(id);
-		return result;
+		return cache.add(id, result);
 	}
 
 	/**
@@ -57,12 +62,9 @@ public class WebWorkspace extends WebElement {
 		//make sure we don't already have it
 		String newProjectId = project.getId();
 		for (int i = 0; i < allProjects.length(); i++) {
-			try {
-				if (newProjectId.equals(allProjects.get(i)))
-					return;
-			} catch (JSONException e) {
-				//ignore empty slots
-			}
+			JSONObject existing = allProjects.optJSONObject(i);
+			if (existing != null && newProjectId.equals(existing.optString(ProtocolConstants.KEY_ID, null)))
+				return;
 		}
 		//finally add the project to the workspace
 		JSONObject storedProject = new JSONObject();
@@ -74,6 +76,7 @@ public class WebWorkspace extends WebElement {
 		}
 		allProjects.put(storedProject);
 		store.put(ProtocolConstants.KEY_PROJECTS, allProjects.toString());
+		OwnerIndex.getDefault().projectAdded(getId(), newProjectId);
 	}
 
 	/**
@@ -82,14 +85,11 @@ public class WebWorkspace extends WebElement {
 	 * @return the next available project id, or <code>null</code> if an id could not be allocated
 	 */
 	public static String nextWorkspaceId() {
-		synchronized (workspaceCounter) {
-			String candidate;
-			do {
-				candidate = workspaceCounter.toString();
-				workspaceCounter.increment();
-			} while (exists(candidate));
-			return candidate;
-		}
+		String candidate;
+		do {
+			candidate = workspaceIds.nextId();
+		} while (exists(candidate));
+		return candidate;
 	}
 
 	/**
@@ -135,6 +135,7 @@ public class WebWorkspace extends WebElement {
 			return;
 		allProjects.remove(index);
 		store.put(ProtocolConstants.KEY_PROJECTS, allProjects.toString());
+		OwnerIndex.getDefault().projectRemoved(getId(), newProjectId);
 	}
 
 	/**
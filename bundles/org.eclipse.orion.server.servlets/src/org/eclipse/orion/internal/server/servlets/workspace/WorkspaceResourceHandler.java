@@ -385,7 +385,7 @@ public class WorkspaceResourceHandler extends WebElementResourceHandler<WebWorks
 	 * Copies the content of one project to the location of a second project. 
 	 */
 	private void copyProjectContents(WebProject sourceProject, WebProject destinationProject) throws CoreException {
-		sourceProject.getProjectStore().copy(destinationProject.getProjectStore(), EFS.OVERWRITE, null);
+		new ProjectContentCopier(sourceProject.getProjectStore(), destinationProject.getProjectStore()).copy();
 	}
 
 	private boolean handleError(HttpServletRequest request, HttpServletResponse response, int httpCode, String message) throws ServletException {
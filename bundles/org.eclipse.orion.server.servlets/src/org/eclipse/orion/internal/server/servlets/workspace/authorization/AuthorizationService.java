@@ -11,10 +11,14 @@
 package org.eclipse.orion.internal.server.servlets.workspace.authorization;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.servlet.http.HttpServletResponse;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.*;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.*;
 import org.eclipse.orion.internal.server.servlets.ProtocolConstants;
 import org.eclipse.orion.server.core.*;
 import org.eclipse.orion.server.core.authentication.IAuthenticationService;
@@ -24,8 +28,10 @@ import org.osgi.service.prefs.BackingStoreException;
 
 public class AuthorizationService {
 
+	private static final String USERS_NODE_NAME = "Users"; //$NON-NLS-1$
 	private static final String PREFIX_EXPORT = "/xfer/export/"; //$NON-NLS-1$
 	private static final String PREFIX_IMPORT = "/xfer/import/"; //$NON-NLS-1$
+	private static final String PREFIX_METADATA = "/file/.metadata/"; //$NON-NLS-1$
 	public static final int POST = 1;
 	public static final int PUT = 2;
 	public static final int GET = 4;
@@ -36,6 +42,97 @@ public class AuthorizationService {
 	 */
 	private static final int CURRENT_VERSION = 2;
 
+	/**
+	 * The maximum number of users whose compiled rights are cached.
+	 */
+	private static final int MAX_CACHED_USERS = 10000;
+
+	/**
+	 * Map of user name to the compiled rights of the user.
+	 */
+	private static final ConcurrentMap<String, CompiledRights> rightsCache = new ConcurrentHashMap<String, CompiledRights>();
+
+	/**
+	 * Incremented whenever cached rights are discarded, so that rights compiled while
+	 * they changed are not kept in the cache.
+	 */
+	private static final AtomicLong rightsChanges = new AtomicLong();
+
+	/**
+	 * Discards the cached rights of a user when the rights stored in the user node
+	 * change, including changes made without going through this class.
+	 */
+	private static final IPreferenceChangeListener userListener = new IPreferenceChangeListener() {
+		public void preferenceChange(PreferenceChangeEvent event) {
+			String key = event.getKey();
+			if (ProtocolConstants.KEY_USER_RIGHTS.equals(key) || ProtocolConstants.KEY_USER_RIGHTS_VERSION.equals(key))
+				rightsChanged((IEclipsePreferences) event.getNode());
+		}
+	};
+
+	/**
+	 * Discards the cached rights of removed users, so that a new user with the same
+	 * name doesn't inherit them.
+	 */
+	private static final INodeChangeListener usersListener = new INodeChangeListener() {
+		public void added(NodeChangeEvent event) {
+			if (USERS_NODE_NAME.equals(event.getParent().name())) {
+				IEclipsePreferences userNode = (IEclipsePreferences) event.getChild();
+				userNode.addPreferenceChangeListener(userListener);
+				rightsChanged(userNode);
+			}
+		}
+
+		public void removed(NodeChangeEvent event) {
+			String parent = event.getParent().name();
+			String child = event.getChild().name();
+			if (USERS_NODE_NAME.equals(parent)) {
+				rightsChanges.incrementAndGet();
+				rightsCache.remove(child);
+				rightsIndex.userRemoved(child);
+				decisionCache.invalidate(child);
+			} else if (OrionScope.SCOPE.equals(parent) && USERS_NODE_NAME.equals(child)) {
+				rightsChanges.incrementAndGet();
+				rightsCache.clear();
+				rightsIndex.reset();
+				decisionCache.clear();
+			}
+		}
+	};
+
+	/**
+	 * Index of the users each right is granted to.
+	 */
+	private static final RightsIndex rightsIndex = new RightsIndex(userListener);
+
+	/**
+	 * Lock held while reading, changing and saving the rights of a user, so that
+	 * concurrent changes are not lost.
+	 */
+	private static final Object saveLock = new Object();
+
+	private static final DecisionCache decisionCache = new DecisionCache();
+
+	/**
+	 * Whether anonymous read access to files is enabled, or <code>null</code> if
+	 * the preference has to be read again.
+	 */
+	private static volatile Boolean anonymousRead;
+
+	static {
+		//read the anonymous read preference again whenever it changes
+		IPreferenceChangeListener listener = new IPreferenceChangeListener() {
+			public void preferenceChange(PreferenceChangeEvent event) {
+				if (ServerConstants.CONFIG_FILE_ANONYMOUS_READ.equals(event.getKey())) {
+					anonymousRead = null;
+					decisionCache.clear();
+				}
+			}
+		};
+		new InstanceScope().getNode(ServerConstants.PREFERENCE_SCOPE).addPreferenceChangeListener(listener);
+		new ConfigurationScope().getNode(ServerConstants.PREFERENCE_SCOPE).addPreferenceChangeListener(listener);
+	}
+
 	private static int getMethod(String methodName) {
 		if (methodName.equals("POST")) //$NON-NLS-1$
 			return 1;
@@ -48,27 +145,48 @@ public class AuthorizationService {
 		return 0;
 	}
 
+	/**
+	 * Returns the node holding all users, listening for users being added and removed.
+	 */
+	private static IEclipsePreferences getUsersNode() {
+		IEclipsePreferences users = new OrionScope().getNode(USERS_NODE_NAME);
+		//listeners are only added once to each node
+		users.addNodeChangeListener(usersListener);
+		((IEclipsePreferences) users.parent()).addNodeChangeListener(usersListener);
+		return users;
+	}
+
+	/**
+	 * Returns the node of the given user, listening for changes to its rights.
+	 */
+	private static IEclipsePreferences getUserNode(String name) {
+		IEclipsePreferences result = (IEclipsePreferences) getUsersNode().node(name);
+		result.addPreferenceChangeListener(userListener);
+		return result;
+	}
+
 	public static void addUserRight(String name, String uri) throws CoreException {
 		try {
-			IEclipsePreferences users = new OrionScope().getNode("Users"); //$NON-NLS-1$
-			IEclipsePreferences result = (IEclipsePreferences) users.node(name);
-			JSONArray userRightArray = AuthorizationReader.getAuthorizationData(result);
+			synchronized (saveLock) {
+				IEclipsePreferences result = getUserNode(name);
+				JSONArray userRightArray = AuthorizationReader.getAuthorizationData(result);
 
-			// adds all rights for the uri
-			JSONObject userRight = new JSONObject();
-			userRight.put(ProtocolConstants.KEY_USER_RIGHT_URI, uri);
-			userRight.put(ProtocolConstants.KEY_USER_RIGHT_METHOD, POST | PUT | GET | DELETE);
+				// adds all rights for the uri
+				JSONObject userRight = new JSONObject();
+				userRight.put(ProtocolConstants.KEY_USER_RIGHT_URI, uri);
+				userRight.put(ProtocolConstants.KEY_USER_RIGHT_METHOD, POST | PUT | GET | DELETE);
 
-			//check if we already have this right
-			for (int i = 0; i < userRightArray.length(); i++) {
-				if (userRight.toString().equals(userRightArray.get(i).toString()))
-					return;
-			}
+				//check if we already have this right
+				for (int i = 0; i < userRightArray.length(); i++) {
+					if (userRight.toString().equals(userRightArray.get(i).toString()))
+						return;
+				}
 
-			//add the new right
-			userRightArray.put(userRight);
+				//add the new right
+				userRightArray.put(userRight);
 
-			saveRights(result, userRightArray);
+				saveRights(result, userRightArray);
+			}
 		} catch (Exception e) {
 			String msg = "Error persisting user rights";
 			throw new CoreException(new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, msg, e));
@@ -76,59 +194,111 @@ public class AuthorizationService {
 	}
 
 	public static void removeUserRight(String name, String uri) throws JSONException, BackingStoreException {
-		IEclipsePreferences users = new OrionScope().getNode("Users"); //$NON-NLS-1$
-		IEclipsePreferences result = (IEclipsePreferences) users.node(name);
-		JSONArray userRightArray = AuthorizationReader.getAuthorizationData(result);
-		for (int i = 0; i < userRightArray.length(); i++) {
-			if (uri.equals(((JSONObject) userRightArray.get(i)).get(ProtocolConstants.KEY_USER_RIGHT_URI)))
-				userRightArray.remove(i);
+		synchronized (saveLock) {
+			IEclipsePreferences result = getUserNode(name);
+			JSONArray userRightArray = AuthorizationReader.getAuthorizationData(result);
+			for (int i = 0; i < userRightArray.length(); i++) {
+				if (uri.equals(((JSONObject) userRightArray.get(i)).get(ProtocolConstants.KEY_USER_RIGHT_URI)))
+					userRightArray.remove(i);
+			}
+			saveRights(result, userRightArray);
 		}
-		saveRights(result, userRightArray);
 	}
 
 	private static void saveRights(IEclipsePreferences result, JSONArray userRightArray) throws BackingStoreException {
+		//the user listener updates the caches and the index as the values are put
 		result.put(ProtocolConstants.KEY_USER_RIGHTS, userRightArray.toString());
 		result.putInt(ProtocolConstants.KEY_USER_RIGHTS_VERSION, CURRENT_VERSION);
 		result.flush();
 	}
 
 	/**
-	 * Returns a list of all rights granted to the given user.
+	 * Discards the cached rights of the user with the given node, and indexes the
+	 * rights currently stored in the node.
 	 */
-	private static List<String> getRights(String name) {
-		IEclipsePreferences users = new OrionScope().getNode("Users"); //$NON-NLS-1$
-		IEclipsePreferences result = (IEclipsePreferences) users.node(name);
-		try {
-			JSONArray userRightArray = AuthorizationReader.getAuthorizationData(result);
-			List<String> list = new ArrayList<String>();
-			for (int i = 0; i < userRightArray.length(); i++) {
-				list.add(((JSONObject) userRightArray.get(i)).getString(ProtocolConstants.KEY_USER_RIGHT_URI));
-			}
-			return list;
-		} catch (JSONException e) {
-			return Collections.emptyList();
+	private static void rightsChanged(IEclipsePreferences userNode) {
+		String name = userNode.name();
+		rightsChanges.incrementAndGet();
+		rightsCache.remove(name);
+		rightsIndex.userChanged(userNode);
+		decisionCache.invalidate(name);
+	}
+
+	/**
+	 * Returns the compiled rights of the given user, compiling them if they are not
+	 * cached. Cached rights are discarded by the preference listeners as soon as
+	 * they change in the backing store.
+	 */
+	private static CompiledRights getCompiledRights(String name) throws JSONException {
+		CompiledRights rights = rightsCache.get(name);
+		if (rights != null)
+			return rights;
+		long changes = rightsChanges.get();
+		//getting the node adds the listener before the rights are read
+		rights = CompiledRights.compile(getUserNode(name));
+		if (rightsCache.size() >= MAX_CACHED_USERS)
+			rightsCache.clear();
+		rightsCache.put(name, rights);
+		//the rights may have changed after they were read
+		if (rightsChanges.get() != changes)
+			rightsCache.remove(name, rights);
+		return rights;
+	}
+
+	private static boolean isAnonymousReadAllowed() {
+		Boolean result = anonymousRead;
+		if (result == null) {
+			String projectWorldReadable = PreferenceHelper.getString(ServerConstants.CONFIG_FILE_ANONYMOUS_READ, "false"); //$NON-NLS-1$
+			result = Boolean.valueOf("true".equalsIgnoreCase(projectWorldReadable)); //$NON-NLS-1$
+			anonymousRead = result;
 		}
+		return result.booleanValue();
 	}
 
 	/**
 	 * Returns all users that have the given rights granted to them.
 	 */
 	public static List<String> findUserWithRights(String rightToFind) {
-		IEclipsePreferences users = new OrionScope().getNode("Users"); //$NON-NLS-1$
-		List<String> matches = new ArrayList<String>();
-		String[] usernames;
-		try {
-			usernames = users.childrenNames();
-			for (String user : usernames) {
-				for (String right : getRights(user)) {
-					if (rightToFind.startsWith(right))
-						matches.add(user);
-				}
-			}
-		} catch (BackingStoreException e) {
+		return new ArrayList<String>(rightsIndex.findUsers(rightToFind, getUsersNode()));
+	}
+
+	/**
+	 * Returns the cache used by {@link #checkRightsCached(String, String, String)}.
+	 */
+	public static DecisionCache getDecisionCache() {
+		return decisionCache;
+	}
+
+	/**
+	 * Checks rights like {@link #checkRights(String, String, String)}, but may answer
+	 * from a decision made a few seconds ago for the same user, URI and method. This
+	 * is meant for callers that repeat the same check for many requests in a row.
+	 */
+	public static boolean checkRightsCached(String userName, String uri, String method) throws JSONException {
+		Boolean cached = decisionCache.get(userName, uri, method);
+		if (cached != null)
+			return cached.booleanValue();
+		long generation = decisionCache.getGeneration(userName);
+		boolean allowed = checkRights(userName, uri, method);
+		decisionCache.put(userName, generation, uri, method, allowed, allowed ? getAllowedSubtree(userName, uri, method) : null);
+		return allowed;
+	}
+
+	/**
+	 * Returns the prefix, in lower case, of all URIs on which one right of the given user
+	 * allows the given method, where that right also allows the given URI. Returns
+	 * <code>null</code> if there is no such right, or if the subtree contains URIs that
+	 * {@link #checkRights(String, String, String)} treats specially.
+	 */
+	private static String getAllowedSubtree(String userName, String uri, String method) throws JSONException {
+		String subtree = getCompiledRights(userName).getAllowedSubtree(uri, getMethod(method));
+		if (subtree == null || overlaps(subtree, PREFIX_EXPORT) || overlaps(subtree, PREFIX_IMPORT) || overlaps(subtree, PREFIX_METADATA))
 			return null;
-		}
-		return matches;
+		return subtree;
+	}
+
+	private static boolean overlaps(String prefix, String other) {
+		return prefix.startsWith(other) || other.startsWith(prefix);
 	}
 
 	public static boolean checkRights(String userName, String uri, String method) throws JSONException {
@@ -153,46 +323,14 @@ public class AuthorizationService {
 		}
 
 		// allow anonymous read if the corresponding property is set
-		String projectWorldReadable = PreferenceHelper.getString(ServerConstants.CONFIG_FILE_ANONYMOUS_READ, "false"); //$NON-NLS-1$
-		if (getMethod(method) == GET && uri.startsWith("/file/") && "true".equalsIgnoreCase(projectWorldReadable)) {//$NON-NLS-1$ //$NON-NLS-2$
+		int methodToMatch = getMethod(method);
+		if (methodToMatch == GET && uri.startsWith("/file/") && isAnonymousReadAllowed()) {//$NON-NLS-1$
 			// except don't allow access to metadata
-			if ("/file/".equals(uri) || uri.startsWith("/file/.metadata/")) //$NON-NLS-1$//$NON-NLS-2$
+			if ("/file/".equals(uri) || uri.startsWith(PREFIX_METADATA)) //$NON-NLS-1$
 				return false;
 			return true;
 		}
 
-		IEclipsePreferences users = new OrionScope().getNode("Users"); //$NON-NLS-1$
-		JSONArray userRightArray = AuthorizationReader.getAuthorizationData((IEclipsePreferences) users.node(userName));
-		for (int i = 0; i < userRightArray.length(); i++) {
-			JSONObject userRight = (JSONObject) userRightArray.get(i);
-
-			String uriToMatch = uri.toLowerCase(Locale.ENGLISH);
-			String patternToMatch = userRight.getString(ProtocolConstants.KEY_USER_RIGHT_URI).toLowerCase(Locale.ENGLISH);
-			int methodToMatch = userRight.getInt(ProtocolConstants.KEY_USER_RIGHT_METHOD);
-			if (wildCardMatch(uriToMatch, patternToMatch) && ((getMethod(method) & methodToMatch) == getMethod(method)))
-				return true;
-		}
-
-		return false;
-	}
-
-	private static boolean wildCardMatch(String text, String pattern) {
-		String[] cards = pattern.split("\\*"); //$NON-NLS-1$
-		if (!pattern.startsWith("*") && !text.startsWith(cards[0])) { //$NON-NLS-1$
-			return false;
-		}
-		if (!pattern.endsWith("*") && !text.endsWith(cards[cards.length - 1])) { //$NON-NLS-1$
-			return false;
-		}
-
-		for (String card : cards) {
-			int idex = text.indexOf(card);
-			if (idex == -1) {
-				return false;
-			}
-			text = text.substring(idex + card.length());
-		}
-
-		return true;
+		return getCompiledRights(userName).allows(uri, methodToMatch);
 	}
 }
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.servlets.workspace.authorization;
+
+import java.util.*;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.orion.internal.server.servlets.ProtocolConstants;
+import org.json.*;
+
+/**
+ * The rights of one user, compiled into a trie keyed by the literal prefix of each
+ * right's URI pattern, up to its first wildcard. A check walks the URI through the
+ * trie once, and only tries the remainder of the patterns whose prefix matched. URIs
+ * and patterns are compared ignoring case. Instances are immutable, and checking
+ * rights does not allocate.
+ * <p>
+ * A pattern without wildcards only matches the URI equal to it. The former matching
+ * only required such a URI to start and end with the pattern, so for example the
+ * pattern <code>/file/a</code> also matched <code>/file/a/b/file/a</code>.
+ */
+class CompiledRights {
+	/**
+	 * A node of the trie. The rights of a node are those whose literal prefix is the
+	 * path from the root to the node.
+	 */
+	private static class Node {
+		char[] keys;
+		Node[] children;
+		Right[] rights;
+
+		Node child(char key) {
+			int index = Arrays.binarySearch(keys, key);
+			return index < 0 ? null : children[index];
+		}
+	}
+
+	/**
+	 * The part of a URI pattern after its literal prefix.
+	 */
+	private static class Right {
+		private final int methods;
+		private final boolean wildcard;
+		/**
+		 * The literal parts between and after the wildcards, without empty parts.
+		 */
+		private final String[] parts;
+		/**
+		 * Whether the last part must match the end of the URI.
+		 */
+		private final boolean anchored;
+		/**
+		 * Whether the pattern is a literal prefix followed by wildcards only, so
+		 * every URI starting with the prefix matches.
+		 */
+		final boolean subtree;
+
+		Right(String rest, int methods) {
+			this.methods = methods;
+			this.wildcard = rest.length() > 0;
+			this.anchored = wildcard && rest.charAt(rest.length() - 1) != '*';
+			List<String> result = new ArrayList<String>();
+			for (String part : rest.split("\\*")) //$NON-NLS-1$
+				if (part.length() > 0)
+					result.add(part);
+			this.parts = result.toArray(new String[result.size()]);
+			this.subtree = wildcard && parts.length == 0;
+		}
+
+		boolean allowsMethod(int method) {
+			return (method & methods) == method;
+		}
+
+		/**
+		 * Returns whether this right allows the given method on the given URI,
+		 * where the first <code>start</code> characters of the URI have already
+		 * been matched.
+		 */
+		boolean matches(String uri, int start, int method) {
+			if (!allowsMethod(method))
+				return false;
+			if (!wildcard)
+				return start == uri.length();
+			int end = uri.length();
+			int middle = parts.length;
+			if (anchored) {
+				String last = parts[--middle];
+				end -= last.length();
+				if (end < start || !uri.regionMatches(true, end, last, 0, last.length()))
+					return false;
+			}
+			int position = start;
+			for (int i = 0; i < middle; i++) {
+				position = indexOf(uri, parts[i], position, end);
+				if (position < 0)
+					return false;
+				position += parts[i].length();
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the first index of the given part in the given range of the text,
+		 * ignoring case, or -1 if the part does not occur in that range.
+		 */
+		private static int indexOf(String text, String part, int start, int end) {
+			for (int i = start; i + part.length() <= end; i++) {
+				if (text.regionMatches(true, i, part, 0, part.length()))
+					return i;
+			}
+			return -1;
+		}
+	}
+
+	private static final Right[] NO_RIGHTS = new Right[0];
+
+	private final Node root;
+
+	/**
+	 * Compiles the rights persisted in the given user node.
+	 */
+	static CompiledRights compile(IEclipsePreferences userNode) throws JSONException {
+		return new CompiledRights(userNode);
+	}
+
+	private CompiledRights(IEclipsePreferences userNode) throws JSONException {
+		JSONArray userRightArray = AuthorizationReader.getAuthorizationData(userNode);
+		Map<String, List<Right>> rightsByPrefix = new HashMap<String, List<Right>>();
+		for (int i = 0; i < userRightArray.length(); i++) {
+			JSONObject userRight = userRightArray.getJSONObject(i);
+			String pattern = userRight.getString(ProtocolConstants.KEY_USER_RIGHT_URI).toLowerCase(Locale.ENGLISH);
+			int methods = userRight.getInt(ProtocolConstants.KEY_USER_RIGHT_METHOD);
+			int star = pattern.indexOf('*');
+			String prefix = star < 0 ? pattern : pattern.substring(0, star);
+			List<Right> rights = rightsByPrefix.get(prefix);
+			if (rights == null) {
+				rights = new ArrayList<Right>();
+				rightsByPrefix.put(prefix, rights);
+			}
+			rights.add(new Right(pattern.substring(prefix.length()), methods));
+		}
+		this.root = buildNode("", rightsByPrefix); //$NON-NLS-1$
+	}
+
+	/**
+	 * Builds the trie node for the given prefix, and all nodes below it.
+	 */
+	private static Node buildNode(String prefix, Map<String, List<Right>> rightsByPrefix) {
+		Node node = new Node();
+		List<Right> rights = rightsByPrefix.get(prefix);
+		node.rights = rights == null ? NO_RIGHTS : rights.toArray(new Right[rights.size()]);
+		SortedSet<Character> keys = new TreeSet<Character>();
+		for (String candidate : rightsByPrefix.keySet()) {
+			if (candidate.length() > prefix.length() && candidate.startsWith(prefix))
+				keys.add(candidate.charAt(prefix.length()));
+		}
+		node.keys = new char[keys.size()];
+		node.children = new Node[keys.size()];
+		int i = 0;
+		for (Character key : keys) {
+			node.keys[i] = key.charValue();
+			node.children[i] = buildNode(prefix + key, rightsByPrefix);
+			i++;
+		}
+		return node;
+	}
+
+	/**
+	 * Returns whether these rights allow the given method on the given URI.
+	 */
+	boolean allows(String uri, int method) {
+		Node node = root;
+		int depth = 0;
+		while (true) {
+			for (Right right : node.rights)
+				if (right.matches(uri, depth, method))
+					return true;
+			if (depth == uri.length())
+				return false;
+			node = node.child(Character.toLowerCase(uri.charAt(depth++)));
+			if (node == null)
+				return false;
+		}
+	}
+
+	/**
+	 * Returns the shortest prefix of the given URI, in lower case, such that a single
+	 * right allows the given method on every URI starting with that prefix. Returns
+	 * <code>null</code> if there is no such right.
+	 */
+	String getAllowedSubtree(String uri, int method) {
+		Node node = root;
+		int depth = 0;
+		while (true) {
+			for (Right right : node.rights)
+				if (right.subtree && right.allowsMethod(method))
+					return uri.substring(0, depth).toLowerCase(Locale.ENGLISH);
+			if (depth == uri.length())
+				return null;
+			node = node.child(Character.toLowerCase(uri.charAt(depth++)));
+			if (node == null)
+				return null;
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.servlets.workspace.authorization;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short-lived cache of authorization decisions, keyed by user, URI and method.
+ * It serves callers that check the same right many times in a row, such as a
+ * hosted site checking access to its workspace for every file it serves.
+ * <p>
+ * A decision that was allowed by a right granting a whole subtree of URIs is
+ * recorded for the directory of the URI within that subtree, so it answers the
+ * checks of all URIs in that directory. Other decisions are recorded for the
+ * exact URI.
+ * <p>
+ * Decisions expire after a few seconds. The decisions of a user are discarded
+ * as soon as the rights of that user are saved, and all decisions are discarded
+ * when server-wide authorization settings change. Each discard starts a new
+ * generation of the user's decisions, and decisions made in an earlier
+ * generation are not recorded.
+ */
+public class DecisionCache {
+	/**
+	 * The time in milliseconds a decision is kept.
+	 */
+	private static final long TIME_TO_LIVE = 5000;
+
+	/**
+	 * The maximum number of cached decisions.
+	 */
+	private static final int MAX_DECISIONS = 10000;
+
+	private static class Decision {
+		final boolean allowed;
+		final long expires;
+
+		Decision(boolean allowed, long expires) {
+			this.allowed = allowed;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * The decisions for one user in one generation.
+	 */
+	private static class UserDecisions {
+		final long generation;
+		/**
+		 * Decisions for exact URIs, keyed by method and URI.
+		 */
+		final ConcurrentMap<String, Decision> exact = new ConcurrentHashMap<String, Decision>();
+		/**
+		 * Decisions for all URIs starting with a prefix ending in a slash, keyed by
+		 * method and prefix in lower case.
+		 */
+		final ConcurrentMap<String, Decision> subtrees = new ConcurrentHashMap<String, Decision>();
+
+		UserDecisions(long generation) {
+			this.generation = generation;
+		}
+
+		int size() {
+			return exact.size() + subtrees.size();
+		}
+	}
+
+	/**
+	 * Map of user name to the decisions for that user.
+	 */
+	private final ConcurrentMap<String, UserDecisions> decisions = new ConcurrentHashMap<String, UserDecisions>();
+	private final AtomicLong generations = new AtomicLong();
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Returns the number of checks answered from the cache.
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of checks that were not answered from the cache.
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Discards all cached decisions.
+	 */
+	public void clear() {
+		decisions.clear();
+		size.set(0);
+	}
+
+	/**
+	 * Returns the cached decision for the given check, or <code>null</code> if
+	 * there is no current decision.
+	 */
+	Boolean get(String userName, String uri, String method) {
+		UserDecisions userDecisions = decisions.get(userName);
+		Decision decision = null;
+		if (userDecisions != null) {
+			long now = System.currentTimeMillis();
+			decision = current(userDecisions.exact.get(key(uri, method)), now);
+			if (decision == null && !userDecisions.subtrees.isEmpty()) {
+				String lowerCase = uri.toLowerCase(Locale.ENGLISH);
+				for (int slash = lowerCase.indexOf('/'); decision == null && slash >= 0; slash = lowerCase.indexOf('/', slash + 1))
+					decision = current(userDecisions.subtrees.get(key(lowerCase.substring(0, slash + 1), method)), now);
+			}
+		}
+		if (decision == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return Boolean.valueOf(decision.allowed);
+	}
+
+	private static Decision current(Decision decision, long now) {
+		return decision == null || decision.expires < now ? null : decision;
+	}
+
+	/**
+	 * Returns the current generation of the decisions of the given user. It must be
+	 * read before the decision to {@link #put(String, long, String, String, boolean, String)}
+	 * is made.
+	 */
+	long getGeneration(String userName) {
+		UserDecisions userDecisions = decisions.get(userName);
+		if (userDecisions == null) {
+			UserDecisions created = new UserDecisions(generations.incrementAndGet());
+			userDecisions = decisions.putIfAbsent(userName, created);
+			if (userDecisions == null)
+				userDecisions = created;
+		}
+		return userDecisions.generation;
+	}
+
+	/**
+	 * Records the decision for the given check, unless the decisions of the user have
+	 * been discarded since the given generation was read.
+	 * 
+	 * @param subtree the prefix, in lower case, of all URIs allowed by the right that
+	 * allowed this check, or <code>null</code> if the decision is for the URI only
+	 */
+	void put(String userName, long generation, String uri, String method, boolean allowed, String subtree) {
+		UserDecisions userDecisions = decisions.get(userName);
+		//the rights may have changed while the decision was made
+		if (userDecisions == null || userDecisions.generation != generation)
+			return;
+		Decision decision = new Decision(allowed, System.currentTimeMillis() + TIME_TO_LIVE);
+		Decision previous;
+		//the decision applies to the directory of the URI within the allowed subtree
+		int slash = subtree == null || subtree.length() == 0 ? -1 : uri.indexOf('/', subtree.length() - 1);
+		if (allowed && slash >= 0)
+			previous = userDecisions.subtrees.put(key(uri.substring(0, slash + 1).toLowerCase(Locale.ENGLISH), method), decision);
+		else
+			previous = userDecisions.exact.put(key(uri, method), decision);
+		if (previous == null && size.incrementAndGet() > MAX_DECISIONS)
+			clear();
+	}
+
+	/**
+	 * Discards the cached decisions for the given user.
+	 */
+	void invalidate(String userName) {
+		UserDecisions removed = decisions.remove(userName);
+		if (removed != null)
+			size.addAndGet(-removed.size());
+	}
+
+	private static String key(String uri, String method) {
+		return method + ' ' + uri;
+	}
+}
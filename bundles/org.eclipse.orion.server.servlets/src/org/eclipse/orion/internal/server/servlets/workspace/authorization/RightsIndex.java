@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.servlets.workspace.authorization;
+
+import java.util.*;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
+import org.eclipse.orion.internal.server.servlets.ProtocolConstants;
+import org.eclipse.orion.server.core.LogHelper;
+import org.json.*;
+import org.osgi.service.prefs.BackingStoreException;
+
+/**
+ * Inverted index from the URIs of granted rights to the users they are granted to.
+ * The URIs are kept in a character trie, so the users having a right that is a
+ * prefix of a given URI are found by walking the URI through the trie once.
+ * <p>
+ * The index is built in one pass over all users on first use. Afterwards the
+ * rights of a user are read again from the user's node whenever they change, so
+ * concurrent changes can't be applied out of order.
+ */
+class RightsIndex {
+	private static class Node {
+		final Map<Character, Node> children = new HashMap<Character, Node>();
+		final Set<String> users = new HashSet<String>();
+	}
+
+	private Node root = new Node();
+	/**
+	 * Map of user name to the URIs of the rights of the user.
+	 */
+	private final Map<String, Set<String>> userRights = new HashMap<String, Set<String>>();
+	private boolean initialized = false;
+	/**
+	 * Listener added to each user node read by the index.
+	 */
+	private final IPreferenceChangeListener userListener;
+
+	RightsIndex(IPreferenceChangeListener userListener) {
+		this.userListener = userListener;
+	}
+
+	/**
+	 * Returns the users that have been granted a right whose URI is a prefix of
+	 * the given URI.
+	 */
+	synchronized Set<String> findUsers(String uri, IEclipsePreferences users) {
+		if (!initialized)
+			initialize(users);
+		Set<String> result = new LinkedHashSet<String>(root.users);
+		Node node = root;
+		for (int i = 0; i < uri.length(); i++) {
+			node = node.children.get(uri.charAt(i));
+			if (node == null)
+				break;
+			result.addAll(node.users);
+		}
+		return result;
+	}
+
+	/**
+	 * Replaces the indexed rights of the given user with the rights currently
+	 * stored in the given user node. Has no effect if the index has not been built yet.
+	 */
+	synchronized void userChanged(IEclipsePreferences userNode) {
+		if (!initialized)
+			return;
+		Set<String> current;
+		try {
+			current = userNode.nodeExists("") ? readURIs(userNode) : Collections.<String> emptySet(); //$NON-NLS-1$
+		} catch (BackingStoreException e) {
+			LogHelper.log(e);
+			return;
+		}
+		update(userNode.name(), current);
+	}
+
+	/**
+	 * Removes the rights of the given user from the index.
+	 */
+	synchronized void userRemoved(String user) {
+		if (initialized)
+			update(user, Collections.<String> emptySet());
+	}
+
+	/**
+	 * Discards the index, so that it is built again on next use.
+	 */
+	synchronized void reset() {
+		root = new Node();
+		userRights.clear();
+		initialized = false;
+	}
+
+	private void update(String user, Set<String> current) {
+		Set<String> previous = userRights.get(user);
+		if (previous != null) {
+			for (String uri : previous)
+				if (!current.contains(uri))
+					remove(user, uri);
+		}
+		for (String uri : current)
+			if (previous == null || !previous.contains(uri))
+				add(user, uri);
+		if (current.isEmpty())
+			userRights.remove(user);
+		else
+			userRights.put(user, current);
+	}
+
+	private void initialize(IEclipsePreferences users) {
+		try {
+			for (String user : users.childrenNames()) {
+				IEclipsePreferences userNode = (IEclipsePreferences) users.node(user);
+				userNode.addPreferenceChangeListener(userListener);
+				Set<String> uris = readURIs(userNode);
+				for (String uri : uris)
+					add(user, uri);
+				if (!uris.isEmpty())
+					userRights.put(user, uris);
+			}
+		} catch (BackingStoreException e) {
+			LogHelper.log(e);
+		}
+		initialized = true;
+	}
+
+	/**
+	 * Returns the URIs of the rights stored in the given user node.
+	 */
+	private static Set<String> readURIs(IEclipsePreferences userNode) {
+		JSONArray userRightArray;
+		try {
+			userRightArray = AuthorizationReader.getAuthorizationData(userNode);
+		} catch (JSONException e) {
+			//ignore users with corrupt rights, like the checks do
+			return Collections.emptySet();
+		}
+		Set<String> result = new HashSet<String>();
+		for (int i = 0; i < userRightArray.length(); i++) {
+			JSONObject userRight = userRightArray.optJSONObject(i);
+			String uri = userRight == null ? null : userRight.optString(ProtocolConstants.KEY_USER_RIGHT_URI, null);
+			if (uri != null)
+				result.add(uri);
+		}
+		return result;
+	}
+
+	private void add(String user, String uri) {
+		Node node = root;
+		for (int i = 0; i < uri.length(); i++) {
+			Character key = Character.valueOf(uri.charAt(i));
+			Node child = node.children.get(key);
+			if (child == null) {
+				child = new Node();
+				node.children.put(key, child);
+			}
+			node = child;
+		}
+		node.users.add(user);
+	}
+
+	private void remove(String user, String uri) {
+		Node node = root;
+		for (int i = 0; i < uri.length() && node != null; i++)
+			node = node.children.get(uri.charAt(i));
+		if (node != null)
+			node.users.remove(user);
+	}
+}
@@ -20,6 +20,7 @@ import org.eclipse.core.filesystem.*;
 import org.eclipse.core.runtime.*;
 import org.eclipse.orion.internal.server.core.IOUtilities;
 import org.eclipse.orion.internal.server.servlets.ServletResourceHandler;
+import org.eclipse.orion.internal.server.servlets.file.DirectorySnapshotCache;
 import org.eclipse.orion.internal.server.servlets.file.NewFileServlet;
 
 /**
@@ -38,13 +39,14 @@ public class ClientExport {
 		IFileStore source = NewFileServlet.getFileStore(sourcePath);
 
 		try {
-			if (source.fetchInfo().isDirectory() && source.childNames(EFS.NONE, null).length == 0) {
+			IFileInfo info = source.fetchInfo();
+			if (info.isDirectory() && DirectorySnapshotCache.getDefault().childInfos(source).length == 0) {
 				resp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED, "You cannot export an empty folder");
 				return;
 			}
 
 			ZipOutputStream zout = new ZipOutputStream(resp.getOutputStream());
-			write(source, Path.EMPTY, zout);
+			write(source, info, Path.EMPTY, zout);
 			zout.finish();
 		} catch (CoreException e) {
 			//we can't return an error response at this point because the output stream has been used
@@ -52,11 +54,10 @@ public class ClientExport {
 		}
 	}
 
-	private void write(IFileStore source, IPath path, ZipOutputStream zout) throws IOException, CoreException {
-		IFileInfo info = source.fetchInfo();
+	private void write(IFileStore source, IFileInfo info, IPath path, ZipOutputStream zout) throws IOException, CoreException {
 		if (info.isDirectory()) {
-			for (IFileStore child : source.childStores(EFS.NONE, null))
-				write(child, path.append(child.getName()), zout);
+			for (IFileInfo childInfo : DirectorySnapshotCache.getDefault().childInfos(source))
+				write(source.getChild(childInfo.getName()), childInfo, path.append(childInfo.getName()), zout);
 		} else {
 			ZipEntry entry = new ZipEntry(path.toString());
 			zout.putNextEntry(entry);
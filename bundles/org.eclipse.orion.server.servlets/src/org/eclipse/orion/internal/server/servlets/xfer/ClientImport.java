@@ -27,6 +27,7 @@ import org.eclipse.core.runtime.*;
 import org.eclipse.orion.internal.server.core.IOUtilities;
 import org.eclipse.orion.internal.server.servlets.ProtocolConstants;
 import org.eclipse.orion.internal.server.servlets.ServletResourceHandler;
+import org.eclipse.orion.internal.server.servlets.file.FileChangeNotifier;
 import org.eclipse.orion.internal.server.servlets.file.NewFileServlet;
 import org.eclipse.orion.server.core.ServerStatus;
 import org.eclipse.osgi.util.NLS;
@@ -73,7 +74,9 @@ class ClientImport {
 		try {
 			IFileStore source = EFS.getStore(new File(getStorageDirectory(), FILE_DATA).toURI());
 			IFileStore destination = NewFileServlet.getFileStore(destPath);
+			boolean existed = destination.fetchInfo().exists();
 			source.move(destination, EFS.OVERWRITE, null);
+			FileChangeNotifier.getDefault().fireChanged(destination, existed ? FileChangeNotifier.CHANGE_MODIFIED : FileChangeNotifier.CHANGE_CREATED);
 		} catch (CoreException e) {
 			String msg = NLS.bind("Failed to complete file transfer on {0}", destPath.toString());
 			statusHandler.handleRequest(req, resp, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, msg, e));
@@ -97,6 +100,9 @@ class ClientImport {
 			success = completeMove(req, resp);
 		}
 		if (success) {
+			IFileStore destination = NewFileServlet.getFileStore(new Path(getPath()));
+			if (destination != null)
+				FileChangeNotifier.getDefault().fireChanged(destination, FileChangeNotifier.CHANGE_MODIFIED);
 			resp.setHeader(ProtocolConstants.HEADER_LOCATION, "/file" + getPath()); //$NON-NLS-1$
 			resp.setStatus(HttpServletResponse.SC_CREATED);
 			resp.getOutputStream().write(new String("<head></head><body><textarea>{}</textarea></body>").getBytes());
@@ -117,12 +123,15 @@ class ClientImport {
 			while (entries.hasMoreElements()) {
 				ZipEntry entry = entries.nextElement();
 				IFileStore destination = destinationRoot.getChild(entry.getName());
+				boolean existed = destination.fetchInfo().exists();
 				if (entry.isDirectory())
 					destination.mkdir(EFS.NONE, null);
 				else {
 					destination.getParent().mkdir(EFS.NONE, null);
 					IOUtilities.pipe(source.getInputStream(entry), destination.openOutputStream(EFS.NONE, null), false, true);
 				}
+				if (!existed)
+					FileChangeNotifier.getDefault().fireChanged(destination, FileChangeNotifier.CHANGE_CREATED);
 			}
 			source.close();
 		} catch (ZipException e) {
@@ -15,9 +15,11 @@ import com.jcraft.jsch.ChannelSftp.LsEntry;
 import java.io.*;
 import java.util.List;
 import java.util.Vector;
-import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.runtime.*;
 import org.eclipse.orion.internal.server.core.IOUtilities;
 import org.eclipse.orion.internal.server.servlets.ProtocolConstants;
+import org.eclipse.orion.internal.server.servlets.file.FileChangeNotifier;
 import org.eclipse.osgi.util.NLS;
 
 /**
@@ -25,8 +27,18 @@ import org.eclipse.osgi.util.NLS;
  */
 public class SFTPImportJob extends SFTPTransferJob {
 
-	public SFTPImportJob(File destination, String host, int port, IPath sourcePath, String user, String passphrase, List<String> options) {
-		super(destination, host, port, sourcePath, user, passphrase, options);
+	public SFTPImportJob(String userId, File destination, String host, int port, IPath sourcePath, String user, String passphrase, List<String> options) {
+		super(userId, destination, host, port, sourcePath, user, passphrase, options);
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		try {
+			return super.run(monitor);
+		} finally {
+			//even a failed import may have written some files
+			FileChangeNotifier.getDefault().fireChanged(EFS.getLocalFileSystem().fromLocalFile(localRoot), FileChangeNotifier.CHANGE_MODIFIED);
+		}
 	}
 
 	protected void doTransferDirectory(ChannelSftp channel, IPath remotePath, SftpATTRS remoteAttributes, File localFile) throws SftpException, IOException {
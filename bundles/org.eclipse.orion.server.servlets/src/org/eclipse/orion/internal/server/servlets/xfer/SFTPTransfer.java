@@ -84,9 +84,9 @@ class SFTPTransfer {
 		}
 		SFTPTransferJob job;
 		if (TransferServlet.PREFIX_IMPORT.equals(new Path(request.getPathInfo()).segment(0))) {
-			job = new SFTPImportJob(localFile, host, port, new Path(remotePath), user, passphrase, options);
+			job = new SFTPImportJob(request.getRemoteUser(), localFile, host, port, new Path(remotePath), user, passphrase, options);
 		} else {
-			job = new SFTPExportJob(localFile, host, port, new Path(remotePath), user, passphrase, options);
+			job = new SFTPExportJob(request.getRemoteUser(), localFile, host, port, new Path(remotePath), user, passphrase, options);
 		}
 		job.schedule();
 		TaskInfo task = job.getTask();
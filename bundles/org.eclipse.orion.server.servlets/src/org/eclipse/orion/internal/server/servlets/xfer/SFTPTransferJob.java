@@ -38,9 +38,19 @@ public abstract class SFTPTransferJob extends Job {
 	private ITaskService taskService;
 	private ServiceReference<ITaskService> taskServiceRef;
 	protected final String user;
+	private final String userId;
+	/**
+	 * The current SFTP session, or <code>null</code> when not connected.
+	 */
+	private volatile Session session;
 
-	public SFTPTransferJob(File localFile, String host, int port, IPath remotePath, String user, String passphrase, List<String> options) {
+	/**
+	 * @param userId The login of the user performing the transfer
+	 * @param user The user name on the remote host
+	 */
+	public SFTPTransferJob(String userId, File localFile, String host, int port, IPath remotePath, String user, String passphrase, List<String> options) {
 		super("Transfer over SFTP"); //$NON-NLS-1$
+		this.userId = userId;
 		this.localRoot = localFile;
 		this.host = host;
 		this.port = port;
@@ -60,7 +70,7 @@ public abstract class SFTPTransferJob extends Job {
 	}
 
 	protected TaskInfo createTask() {
-		TaskInfo info = getTaskService().createTask();
+		TaskInfo info = getTaskService().createTask(userId);
 		info.setMessage(NLS.bind("Connecting to {0}...", host));
 		getTaskService().updateTask(info);
 		return info;
@@ -74,6 +84,25 @@ public abstract class SFTPTransferJob extends Job {
 		return task;
 	}
 
+	/**
+	 * The family of this job is the id of its task, so the job can be found
+	 * and canceled through its task.
+	 */
+	@Override
+	public boolean belongsTo(Object family) {
+		return task.getTaskId().equals(family);
+	}
+
+	/**
+	 * Aborts a running transfer by closing its session.
+	 */
+	@Override
+	protected void canceling() {
+		Session current = session;
+		if (current != null)
+			current.disconnect();
+	}
+
 	protected ITaskService getTaskService() {
 		if (taskService == null) {
 			BundleContext context = Activator.getDefault().getContext();
@@ -95,10 +124,13 @@ public abstract class SFTPTransferJob extends Job {
 			JSch jsch = new JSch();
 			IStatus result = null;
 			try {
-				Session session = jsch.getSession(user, host, port);
+				session = jsch.getSession(user, host, port);
 				session.setUserInfo(new SFTPUserInfo(passphrase, passphrase));
 				session.connect();
 				try {
+					//the job may have been canceled while connecting
+					if (monitor.isCanceled())
+						throw new OperationCanceledException();
 					ChannelSftp channel = (ChannelSftp) session.openChannel("sftp"); //$NON-NLS-1$
 					try {
 						channel.connect();
@@ -108,11 +140,14 @@ public abstract class SFTPTransferJob extends Job {
 					}
 				} finally {
 					session.disconnect();
+					session = null;
 				}
 			} catch (Exception e) {
 				String msg = NLS.bind("Transfer from {0} failed: {1}", host + remoteRoot, e.getMessage());
 				result = new Status(IStatus.ERROR, Activator.PI_SERVER_SERVLETS, msg, e);
 			}
+			if (monitor.isCanceled())
+				result = new Status(IStatus.CANCEL, Activator.PI_SERVER_SERVLETS, NLS.bind("Transfer canceled: {0}", host + remoteRoot));
 			if (result == null) {
 				//fill in message to client for successful result
 				String msg = NLS.bind("Transfer complete: {0}", host + remoteRoot);
@@ -26,6 +26,7 @@ public class Activator implements BundleActivator {
 	
 	static BundleContext bundleContext;
 	private ServiceRegistration<IOrionCredentialsService> registerService;
+	private SecureStorageCredentialsService credentialsService;
 
 	public static BundleContext getContext() {
 		return bundleContext;
@@ -40,7 +41,8 @@ public class Activator implements BundleActivator {
 	 */
 	public void start(BundleContext bundleContext) throws Exception {
 		Activator.bundleContext = bundleContext;
-		registerService = bundleContext.registerService(IOrionCredentialsService.class, new SecureStorageCredentialsService(), null);
+		credentialsService = new SecureStorageCredentialsService();
+		registerService = bundleContext.registerService(IOrionCredentialsService.class, credentialsService, null);
 	}
 
 	/*
@@ -52,6 +54,10 @@ public class Activator implements BundleActivator {
 	public void stop(BundleContext bundleContext) throws Exception {
 		if (registerService != null)
 			registerService.unregister();
+		if (credentialsService != null) {
+			credentialsService.deactivate();
+			credentialsService = null;
+		}
 		Activator.bundleContext = null;
 	}
 
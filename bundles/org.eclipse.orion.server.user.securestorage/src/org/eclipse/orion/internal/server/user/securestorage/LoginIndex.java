@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.user.securestorage;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory index of user logins. Logins are unique ignoring case, so the index
+ * is keyed by the login in lower case.
+ * <p>
+ * Looking up the uid of a login does not lock. The logins are also kept in order,
+ * so that a page of users, optionally restricted to logins starting with a given
+ * prefix, can be listed without reading any other users from secure storage.
+ */
+class LoginIndex {
+	/**
+	 * Map of login, in lower case, to the uid of the user with that login.
+	 */
+	private final ConcurrentMap<String, String> uids = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * The same mapping as {@link #uids}, ordered by login. Guarded by this index.
+	 */
+	private final SortedMap<String, String> ordered = new TreeMap<String, String>();
+
+	/**
+	 * Logins are unique ignoring case.
+	 */
+	static String key(String login) {
+		return login.toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Returns the uid of the user with the given login, or <code>null</code>
+	 * if there is no such user.
+	 */
+	String get(String login) {
+		return uids.get(key(login));
+	}
+
+	boolean contains(String login) {
+		return uids.containsKey(key(login));
+	}
+
+	/**
+	 * Records the given login for the given user, unless the login is already
+	 * taken by another user.
+	 * 
+	 * @return <code>true</code> if the login was recorded, and <code>false</code>
+	 * if the login is already taken
+	 */
+	synchronized boolean reserve(String login, String uid) {
+		String key = key(login);
+		String existing = uids.putIfAbsent(key, uid);
+		if (existing != null)
+			return existing.equals(uid);
+		ordered.put(key, uid);
+		return true;
+	}
+
+	/**
+	 * Removes the given login, if it is recorded for the given user.
+	 */
+	synchronized void release(String login, String uid) {
+		String key = key(login);
+		if (uids.remove(key, uid))
+			ordered.remove(key);
+	}
+
+	/**
+	 * Returns the number of logins starting with the given prefix, ignoring case.
+	 * 
+	 * @param prefix the login prefix, or <code>null</code> to count all logins
+	 */
+	synchronized int count(String prefix) {
+		if (prefix == null || prefix.length() == 0)
+			return ordered.size();
+		int count = 0;
+		String keyPrefix = key(prefix);
+		for (String key : ordered.tailMap(keyPrefix).keySet()) {
+			if (!key.startsWith(keyPrefix))
+				break;
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the uids of the users whose logins start with the given prefix,
+	 * ignoring case, ordered by login.
+	 * <p>
+	 * The logins before the requested page are skipped one by one, so the cost grows
+	 * with <code>start</code>. This only walks the in-memory index, which is cheap
+	 * compared to reading the users of the page from secure storage.
+	 * 
+	 * @param prefix the login prefix, or <code>null</code> to list all users
+	 * @param start the index of the first user to return
+	 * @param rows the maximum number of users to return
+	 */
+	synchronized List<String> find(String prefix, int start, int rows) {
+		String keyPrefix = prefix == null ? "" : key(prefix); //$NON-NLS-1$
+		List<String> result = new ArrayList<String>(Math.max(0, Math.min(rows, ordered.size())));
+		int index = 0;
+		for (Map.Entry<String, String> entry : ordered.tailMap(keyPrefix).entrySet()) {
+			if (result.size() >= rows || !entry.getKey().startsWith(keyPrefix))
+				break;
+			if (index++ >= start)
+				result.add(entry.getValue());
+		}
+		return result;
+	}
+}
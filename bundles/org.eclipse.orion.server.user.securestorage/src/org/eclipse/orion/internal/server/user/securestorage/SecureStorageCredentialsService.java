@@ -13,13 +13,14 @@ package org.eclipse.orion.internal.server.user.securestorage;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 import javax.crypto.spec.PBEKeySpec;
 
@@ -35,7 +36,8 @@ import org.eclipse.orion.server.core.LogHelper;
 import org.eclipse.orion.server.core.PreferenceHelper;
 import org.eclipse.orion.server.core.ServerConstants;
 import org.eclipse.orion.server.core.ServerStatus;
-import org.eclipse.orion.server.core.resources.Base64Counter;
+import org.eclipse.orion.server.core.resources.IdAllocator;
+import org.eclipse.orion.server.useradmin.CredentialsCache;
 import org.eclipse.orion.server.useradmin.EmptyAuthorization;
 import org.eclipse.orion.server.useradmin.IOrionCredentialsService;
 import org.eclipse.orion.server.useradmin.Role;
@@ -70,27 +72,79 @@ public class SecureStorageCredentialsService implements IOrionCredentialsService
 	static final String ANONYMOUS_LOGIN_VALUE = "anonymous"; //$NON-NLS-1$
 	static final String ANONYMOUS_NAME_VALUE = "Anonymous"; //$NON-NLS-1$
 
-	private static final Base64Counter userCounter = new Base64Counter();
+	/**
+	 * The key in the storage root under which the high-water mark of allocated user ids is kept.
+	 */
+	static final String USER_ID_HIGH_WATER_MARK = "userIdHighWaterMark"; //$NON-NLS-1$
 
 	private ISecurePreferences storage;
+	private final IdAllocator userIds = new IdAllocator() {
+		@Override
+		protected long readHighWaterMark() {
+			try {
+				return storage.getLong(USER_ID_HIGH_WATER_MARK, 0);
+			} catch (StorageException e) {
+				LogHelper.log(e);
+				return 0;
+			}
+		}
+
+		@Override
+		protected void writeHighWaterMark(long mark) throws StorageException, IOException {
+			storage.putLong(USER_ID_HIGH_WATER_MARK, mark, false);
+			//ids must not be handed out before the mark is persisted
+			writer.changed();
+			writer.barrier();
+		}
+
+		@Override
+		protected String[] readExistingIds() {
+			return storage.node(USERS).childrenNames();
+		}
+	};
 	private Map<String, Role> roles = new HashMap<String, Role>();
+	private final LoginIndex loginIndex = new LoginIndex();
+	private UserPropertyIndex propertyIndex;
+	private StorageWriter writer;
 
 	public SecureStorageCredentialsService() {
 		initSecurePreferences();
+		writer = new StorageWriter(storage);
+		initLoginIndex();
+		propertyIndex = new UserPropertyIndex(storage.node(USERS));
 		initStorage();
 	}
 
-	private String nextUserId() {
-		synchronized (userCounter) {
-			String candidate;
-			do {
-				candidate = userCounter.toString();
-				userCounter.increment();
-			} while (findNode(storage, candidate) != null);
-			return candidate;
+	/**
+	 * Reads the logins of all users into the login index.
+	 */
+	private void initLoginIndex() {
+		ISecurePreferences usersPref = storage.node(USERS);
+		for (String uid : usersPref.childrenNames()) {
+			ISecurePreferences userPrefs = usersPref.node(uid);
+			try {
+				String login = userPrefs.get(USER_LOGIN, null);
+				if (login == null) {
+					//migrate
+					login = uid;
+					userPrefs.put(USER_LOGIN, login, false);
+					writer.changed();
+				}
+				loginIndex.reserve(login, uid);
+			} catch (StorageException e) {
+				LogHelper.log(new Status(IStatus.ERROR, Activator.PI_USER_SECURESTORAGE, IStatus.ERROR, "Error loading user: " + uid, e)); //$NON-NLS-1$
+			}
 		}
 	}
 
+	private String nextUserId() {
+		String candidate;
+		do {
+			candidate = userIds.nextId();
+		} while (storage.nodeExists(USERS + '/' + candidate));
+		return candidate;
+	}
+
 	private void initStorage() {
 		// initialize the admin account
 		String adminDefaultPassword = PreferenceHelper.getString(ServerConstants.CONFIG_AUTH_ADMIN_DEFAULT_PASSWORD);
@@ -206,16 +260,55 @@ public class SecureStorageCredentialsService implements IOrionCredentialsService
 		return users;
 	}
 
-	public User getUser(String key, String value) {
-		// TODO currently searching only by uid and login, all other searches return nothing
-		if (key.equals(USER_LOGIN)) {
+	public int getUserCount(String loginPrefix) {
+		return loginIndex.count(loginPrefix);
+	}
+
+	public List<User> getUsers(String loginPrefix, int start, int rows) {
+		return listUsers(loginPrefix, start, rows, false);
+	}
 
+	public List<User> getUserSummaries(String loginPrefix, int start, int rows) {
+		return listUsers(loginPrefix, start, rows, true);
+	}
+
+	/**
+	 * Returns one page of users, read without decrypting their passwords. The password
+	 * of a user that has one is set to the empty string. Summaries are read from the
+	 * unencrypted login and name only.
+	 */
+	private List<User> listUsers(String loginPrefix, int start, int rows, boolean summary) {
+		List<String> uids = loginIndex.find(loginPrefix, start, rows);
+		List<User> users = new ArrayList<User>(uids.size());
+		for (String uid : uids) {
+			ISecurePreferences node = findNode(storage, uid);
+			//the user may have been deleted since the index was read
+			if (node == null)
+				continue;
 			try {
-				ISecurePreferences node = findNodeByLoginIgnoreCase(storage, value);
-				return formUser(node);
+				User user = new User(uid, node.get(USER_LOGIN, uid), node.get(USER_NAME, ""), null); //$NON-NLS-1$
+				if (!summary) {
+					//don't decrypt the password just to hide it
+					if (Arrays.asList(node.keys()).contains(USER_PASSWORD))
+						user.setPassword(""); //$NON-NLS-1$
+					for (String roleName : node.node(USER_ROLES).childrenNames())
+						user.addRole(getRole(roleName));
+					for (String property : node.node(USER_PROPERTIES).keys())
+						user.addProperty(property, node.node(USER_PROPERTIES).get(property, null));
+				}
+				users.add(user);
 			} catch (StorageException e) {
-				LogHelper.log(new Status(IStatus.ERROR, Activator.PI_USER_SECURESTORAGE, IStatus.ERROR, "Can not get user: " + value, e)); //$NON-NLS-1$
+				LogHelper.log(new Status(IStatus.ERROR, Activator.PI_USER_SECURESTORAGE, IStatus.ERROR, "Can not get user " + uid, e)); //$NON-NLS-1$
 			}
+		}
+		return users;
+	}
+
+	public User getUser(String key, String value) {
+		// TODO currently searching only by uid and login, all other searches return nothing
+		if (key.equals(USER_LOGIN)) {
+			ISecurePreferences node = findNodeByLoginIgnoreCase(storage, value);
+			return formUser(node);
 		} else if (key.equals(USER_UID)) {
 			ISecurePreferences node = findNode(storage, value);
 			return formUser(node);
@@ -225,27 +318,10 @@ public class SecureStorageCredentialsService implements IOrionCredentialsService
 
 	public Set<User> getUsersByProperty(String key, String value, boolean regExp) {
 		Set<User> ret = new HashSet<User>();
-		ISecurePreferences usersPref = storage.node(USERS);
-		for (String uid : usersPref.childrenNames()) {
-			ISecurePreferences userNode = usersPref.node(uid);
-			ISecurePreferences propsNode = userNode.node(USER_PROPERTIES);
-			if (propsNode == null) {
-				continue;
-			}
-			try {
-				String propertyValue = propsNode.get(key, null);
-				if (propertyValue == null) {
-					continue;
-				}
-
-				if (regExp ? Pattern.matches(value, propertyValue) : propertyValue.equals(value)) {
-					ret.add(formUser(userNode));
-				}
-
-			} catch (StorageException e) {
-				continue;
-			}
-
+		for (String uid : propertyIndex.find(key, value, regExp)) {
+			User user = formUser(findNode(storage, uid));
+			if (user != null)
+				ret.add(user);
 		}
 		return ret;
 	}
@@ -272,57 +348,61 @@ public class SecureStorageCredentialsService implements IOrionCredentialsService
 	}
 
 	public User createUser(User user) {
+		User created = internalCreateUser(user);
+		//don't report the user as created before it is persisted
+		if (created != null && !persist("Can not create user: " + user.getLogin())) { //$NON-NLS-1$
+			removeUser(created.getUid());
+			return null;
+		}
+		return created;
+	}
 
+	private User internalCreateUser(User user) {
+		String login = user.getLogin();
+		if (login == null || loginIndex.contains(login))
+			return null;
+		String uid = nextUserId();
+		//reserve the login first, so concurrent requests can't create two users with the same login
+		if (!loginIndex.reserve(login, uid))
+			return null;
 		try {
-
-			ISecurePreferences node = findNodeByLoginIgnoreCase(storage, user.getLogin());
-			if (node != null)
-				return null;
-
-			String uid = nextUserId();
-
 			return internalCreateOrUpdateUser(storage.node(USERS + '/' + uid), user);
-
 		} catch (Exception e) {
-			LogHelper.log(new Status(IStatus.ERROR, Activator.PI_USER_SECURESTORAGE, IStatus.ERROR, "Can not create user: " + user.getLogin(), e)); //$NON-NLS-1$
+			loginIndex.release(login, uid);
+			LogHelper.log(new Status(IStatus.ERROR, Activator.PI_USER_SECURESTORAGE, IStatus.ERROR, "Can not create user: " + login, e)); //$NON-NLS-1$
 		}
 		return null;
 	}
 
-	private ISecurePreferences findNodeByLoginIgnoreCase(ISecurePreferences storage, String login) throws StorageException {
-		if (login == null)
+	public List<User> createUsers(List<User> newUsers) {
+		List<User> created = new ArrayList<User>(newUsers.size());
+		for (User newUser : newUsers)
+			created.add(internalCreateUser(newUser));
+		//the users are written in one flush
+		try {
+			writer.barrier();
+		} catch (IOException e) {
+			LogHelper.log(new Status(IStatus.ERROR, Activator.PI_USER_SECURESTORAGE, IStatus.ERROR, "Can not create users", e)); //$NON-NLS-1$
+			for (User user : created)
+				if (user != null)
+					removeUser(user.getUid());
 			return null;
-		ISecurePreferences usersPref = storage.node(USERS);
-		String[] childrenNames = usersPref.childrenNames();
-		for (int i = 0; i < childrenNames.length; i++) {
-			if (usersPref.node(childrenNames[i]).get(USER_LOGIN, null) == null) {
-				//migrate
-				usersPref.node(childrenNames[i]).put(USER_LOGIN, usersPref.node(childrenNames[i]).name(), false);
-
-				if (login.equalsIgnoreCase(usersPref.node(childrenNames[i]).name()))
-					return usersPref.node(childrenNames[i]);
-
-			} else {
-				if (login.equalsIgnoreCase(usersPref.node(childrenNames[i]).get(USER_LOGIN, null))) {
-					return usersPref.node(childrenNames[i]);
-				}
-
-			}
-
 		}
-		return null;
+		return created;
+	}
+
+	private ISecurePreferences findNodeByLoginIgnoreCase(ISecurePreferences storage, String login) {
+		if (login == null)
+			return null;
+		return findNode(storage, loginIndex.get(login));
 	}
 
 	private ISecurePreferences findNode(ISecurePreferences storage, String uid) {
-		if (uid == null)
+		//a uid containing a separator would denote a node below some user node
+		if (uid == null || uid.length() == 0 || uid.indexOf('/') >= 0)
 			return null;
-		ISecurePreferences usersPref = storage.node(USERS);
-		String[] childrenNames = usersPref.childrenNames();
-		for (int i = 0; i < childrenNames.length; i++) {
-			if (uid.equals(usersPref.node(childrenNames[i]).name()))
-				return usersPref.node(childrenNames[i]);
-		}
-		return null;
+		String path = USERS + '/' + uid;
+		return storage.nodeExists(path) ? storage.node(path) : null;
 	}
 
 	public IStatus updateUser(String uid, User user) {
@@ -330,25 +410,55 @@ public class SecureStorageCredentialsService implements IOrionCredentialsService
 		ISecurePreferences node = findNode(storage, uid);
 		if (node == null)
 			return new ServerStatus(IStatus.ERROR, 404, "User not found: " + uid, null);
+		//remember the stored user, so a change that can't be persisted can be undone
+		User previous = formUser(node);
+		if (previous == null)
+			return new Status(IStatus.ERROR, Activator.PI_USER_SECURESTORAGE, "Can not update user: " + uid);
+
+		String oldLogin = previous.getLogin();
+		String newLogin = user.getLogin();
+		boolean loginChanged = newLogin != null && !LoginIndex.key(newLogin).equals(LoginIndex.key(oldLogin));
+		//reserve the new login first, so concurrent requests can't give two users the same login
+		if (loginChanged && !loginIndex.reserve(newLogin, uid)) {
+			IStatus status = new Status(IStatus.ERROR, Activator.PI_USER_SECURESTORAGE, "User already exists " + user.getLogin());
+			LogHelper.log(status); //$NON-NLS-1$
+			return status;
+		}
 
 		try {
-			ISecurePreferences nodeByLogin = findNodeByLoginIgnoreCase(storage, user.getLogin());
-			if (nodeByLogin != null && !node.name().equals(nodeByLogin.name())) {
-				IStatus status = new Status(IStatus.ERROR, Activator.PI_USER_SECURESTORAGE, "User already exists " + user.getLogin());
-				LogHelper.log(status); //$NON-NLS-1$
-				return status;
-			}
-
 			internalCreateOrUpdateUser(node, user);
-			return new Status(IStatus.OK, Activator.PI_USER_SECURESTORAGE, "User updated " + user.getLogin());
+			CredentialsCache.getDefault().invalidate(uid);
+			writer.barrier();
 		} catch (Exception e) {
+			//the update is reported as failed, so it must not remain in effect
+			restoreUser(node, previous);
+			if (loginChanged)
+				loginIndex.release(newLogin, uid);
+			CredentialsCache.getDefault().invalidate(uid);
 			IStatus status = new Status(IStatus.ERROR, Activator.PI_USER_SECURESTORAGE, IStatus.ERROR, "Can not update user: " + user.getLogin(), e);
 			LogHelper.log(status); //$NON-NLS-1$
 			return status;
 		}
+		//the old login is only given up once the new one is persisted
+		if (loginChanged)
+			loginIndex.release(oldLogin, uid);
+		return new Status(IStatus.OK, Activator.PI_USER_SECURESTORAGE, "User updated " + user.getLogin());
+	}
+
+	/**
+	 * Writes the given previous state of a user back to its node.
+	 */
+	private void restoreUser(ISecurePreferences node, User previous) {
+		try {
+			if (previous.getPassword() == null)
+				node.remove(USER_PASSWORD);
+			internalCreateOrUpdateUser(node, previous);
+		} catch (StorageException e) {
+			LogHelper.log(new Status(IStatus.ERROR, Activator.PI_USER_SECURESTORAGE, IStatus.ERROR, "Can not restore user: " + node.name(), e)); //$NON-NLS-1$
+		}
 	}
 
-	private User internalCreateOrUpdateUser(ISecurePreferences userPrefs, User user) throws StorageException, IOException {
+	private User internalCreateOrUpdateUser(ISecurePreferences userPrefs, User user) throws StorageException {
 		if(user.getLogin()!=null)
 			userPrefs.put(USER_LOGIN, user.getLogin(), false);
 		if(user.getName()!=null)
@@ -367,23 +477,61 @@ public class SecureStorageCredentialsService implements IOrionCredentialsService
 			userPrefs.node(USER_PROPERTIES).put(property, (String) user.getProperty(property), false);
 		}
 
-		userPrefs.flush();
+		writer.changed();
+		propertyIndex.update(userPrefs.name(), user.getProperties());
 		return formUser(userPrefs);
 	}
 
 	public boolean deleteUser(User user) {
-		ISecurePreferences node = findNode(storage, user.getUid());
+		if (!removeUser(user.getUid()))
+			return false;
+		return persist("Can not delete user: " + user.getUid()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Removes the user with the given id from the storage and the indexes, without
+	 * waiting for the change to be persisted.
+	 * @return <code>true</code> if the user existed, and <code>false</code> otherwise
+	 */
+	private boolean removeUser(String uid) {
+		ISecurePreferences node = findNode(storage, uid);
 		if (node == null)
 			return false;
+		try {
+			loginIndex.release(node.get(USER_LOGIN, node.name()), node.name());
+		} catch (StorageException e) {
+			LogHelper.log(e);
+		}
+		CredentialsCache.getDefault().invalidate(node.name());
+		propertyIndex.remove(node.name());
 		node.clear();
 		node.removeNode();
+		writer.changed();
+		return true;
+	}
+
+	/**
+	 * Waits until all changes made so far are persisted, so that callers only
+	 * report success for changes that survive a restart. Concurrent changes are
+	 * still written in a single flush.
+	 * @return <code>true</code> if the changes were persisted, and <code>false</code> otherwise
+	 */
+	private boolean persist(String errorMessage) {
 		try {
-			node.flush();
+			writer.barrier();
 			return true;
 		} catch (IOException e) {
-			LogHelper.log(new Status(IStatus.ERROR, Activator.PI_USER_SECURESTORAGE, IStatus.ERROR, "Cannot delete user: " + user.getLogin(), e)); //$NON-NLS-1$
+			LogHelper.log(new Status(IStatus.ERROR, Activator.PI_USER_SECURESTORAGE, IStatus.ERROR, errorMessage, e));
+			return false;
 		}
-		return false;
+	}
+
+	/**
+	 * Persists all pending changes and stops writing in the background. Called
+	 * when the service is deactivated.
+	 */
+	public void deactivate() {
+		writer.stop();
 	}
 
 	public Authorization getAuthorization(User user) {
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.user.securestorage;
+
+import java.io.IOException;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.equinox.security.storage.ISecurePreferences;
+import org.eclipse.orion.server.core.LogHelper;
+
+/**
+ * Persists changes to secure storage on a single background thread.
+ * <p>
+ * Flushing secure storage encrypts and rewrites the whole storage file, no matter
+ * how little changed. Instead of flushing after every change, callers report that
+ * the storage has changed, and the writer flushes all changes made within a short
+ * interval at once. Callers that need their changes to be persisted before they
+ * continue wait for a barrier, which flushes pending changes immediately.
+ */
+class StorageWriter implements Runnable {
+	/**
+	 * The time in milliseconds changes are collected before they are flushed.
+	 */
+	private static final long FLUSH_INTERVAL = 500;
+
+	private final ISecurePreferences storage;
+
+	/**
+	 * The number of changes reported so far. Guarded by this writer.
+	 */
+	private long changes = 0;
+	/**
+	 * The number of changes persisted by the last flush. Guarded by this writer.
+	 */
+	private long flushed = 0;
+	/**
+	 * The error of the last flush, or <code>null</code> if it succeeded. Guarded by this writer.
+	 */
+	private IOException error;
+	private int waitingForBarrier = 0;
+	private boolean stopped = false;
+	private Thread thread;
+
+	StorageWriter(ISecurePreferences storage) {
+		this.storage = storage;
+	}
+
+	/**
+	 * Reports that the storage has changed and has to be flushed.
+	 */
+	void changed() {
+		synchronized (this) {
+			if (!stopped) {
+				changes++;
+				if (thread == null) {
+					thread = new Thread(this, "Orion user storage writer"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					thread.start();
+				}
+				notifyAll();
+				return;
+			}
+		}
+		//the writer has been stopped, so write through
+		try {
+			storage.flush();
+		} catch (IOException e) {
+			LogHelper.log(new Status(IStatus.ERROR, Activator.PI_USER_SECURESTORAGE, "Error writing user storage", e)); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Waits until all changes reported so far have been persisted.
+	 * 
+	 * @throws IOException if the changes could not be persisted
+	 */
+	void barrier() throws IOException {
+		synchronized (this) {
+			if (thread != null && !stopped) {
+				long target = changes;
+				waitingForBarrier++;
+				notifyAll();
+				try {
+					while (flushed < target && thread != null)
+						wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for user storage to be written"); //$NON-NLS-1$
+				} finally {
+					waitingForBarrier--;
+				}
+				if (flushed >= target) {
+					if (error != null)
+						throw error;
+					return;
+				}
+			}
+		}
+		//the writer is not running, so flush on the calling thread
+		storage.flush();
+	}
+
+	/**
+	 * Persists all pending changes and stops the background thread.
+	 */
+	void stop() {
+		Thread writer;
+		synchronized (this) {
+			stopped = true;
+			writer = thread;
+			notifyAll();
+		}
+		if (writer == null)
+			return;
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public void run() {
+		while (true) {
+			long target;
+			synchronized (this) {
+				try {
+					while (flushed == changes && !stopped)
+						wait();
+					//collect more changes, unless someone is waiting
+					long deadline = System.currentTimeMillis() + FLUSH_INTERVAL;
+					long remaining;
+					while (waitingForBarrier == 0 && !stopped && (remaining = deadline - System.currentTimeMillis()) > 0)
+						wait(remaining);
+				} catch (InterruptedException e) {
+					//flush what we have
+				}
+				if (flushed == changes && stopped) {
+					thread = null;
+					notifyAll();
+					return;
+				}
+				target = changes;
+			}
+			IOException result = null;
+			try {
+				storage.flush();
+			} catch (IOException e) {
+				result = e;
+				LogHelper.log(new Status(IStatus.ERROR, Activator.PI_USER_SECURESTORAGE, "Error writing user storage", e)); //$NON-NLS-1$
+			}
+			synchronized (this) {
+				flushed = target;
+				error = result;
+				notifyAll();
+			}
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.internal.server.user.securestorage;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.equinox.security.storage.ISecurePreferences;
+import org.eclipse.equinox.security.storage.StorageException;
+import org.eclipse.orion.server.core.LogHelper;
+
+/**
+ * In-memory index of user property values, used to find users by property
+ * without reading the properties of every user from secure storage.
+ * <p>
+ * A property is indexed the first time users are searched by it, with one pass
+ * over all users. From then on the index is updated whenever users are saved or
+ * deleted. Exact searches are answered with a single lookup. Regular expression
+ * searches only visit users that have the property, and reuse compiled patterns.
+ */
+class UserPropertyIndex {
+	/**
+	 * The maximum number of compiled patterns kept for reuse.
+	 */
+	private static final int MAX_PATTERNS = 100;
+
+	private final ISecurePreferences usersPrefs;
+
+	/**
+	 * Map of property key to a map of uid to the value of that property.
+	 */
+	private final Map<String, Map<String, String>> valuesByUser = new HashMap<String, Map<String, String>>();
+
+	/**
+	 * Map of property key to a map of property value to the uids of users with that value.
+	 */
+	private final Map<String, Map<String, Set<String>>> usersByValue = new HashMap<String, Map<String, Set<String>>>();
+
+	private final Map<String, Pattern> patterns = new LinkedHashMap<String, Pattern>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+			return size() > MAX_PATTERNS;
+		}
+	};
+
+	/**
+	 * @param usersPrefs the secure storage node containing all users
+	 */
+	UserPropertyIndex(ISecurePreferences usersPrefs) {
+		this.usersPrefs = usersPrefs;
+	}
+
+	/**
+	 * Returns the uids of the users whose value of the given property is equal to
+	 * the given value, or matches the given regular expression.
+	 */
+	synchronized Set<String> find(String key, String value, boolean regExp) {
+		Map<String, String> values = getValues(key);
+		if (!regExp) {
+			Set<String> result = usersByValue.get(key).get(value);
+			return result == null ? Collections.<String> emptySet() : new HashSet<String>(result);
+		}
+		Pattern pattern = patterns.get(value);
+		if (pattern == null) {
+			pattern = Pattern.compile(value);
+			patterns.put(value, pattern);
+		}
+		Set<String> result = new HashSet<String>();
+		for (Map.Entry<String, String> entry : values.entrySet())
+			if (pattern.matcher(entry.getValue()).matches())
+				result.add(entry.getKey());
+		return result;
+	}
+
+	/**
+	 * Records the current properties of the given user.
+	 */
+	synchronized void update(String uid, Dictionary<?, ?> properties) {
+		for (String key : valuesByUser.keySet()) {
+			Object value = properties.get(key);
+			put(key, uid, value instanceof String ? (String) value : null);
+		}
+	}
+
+	/**
+	 * Removes the given user from the index.
+	 */
+	synchronized void remove(String uid) {
+		for (String key : valuesByUser.keySet())
+			put(key, uid, null);
+	}
+
+	/**
+	 * Returns the values of the given property by uid, indexing the property
+	 * if it has not been indexed yet.
+	 */
+	private Map<String, String> getValues(String key) {
+		Map<String, String> values = valuesByUser.get(key);
+		if (values != null)
+			return values;
+		valuesByUser.put(key, new HashMap<String, String>());
+		usersByValue.put(key, new HashMap<String, Set<String>>());
+		for (String uid : usersPrefs.childrenNames()) {
+			try {
+				put(key, uid, usersPrefs.node(uid).node(SecureStorageCredentialsService.USER_PROPERTIES).get(key, null));
+			} catch (StorageException e) {
+				LogHelper.log(new Status(IStatus.ERROR, Activator.PI_USER_SECURESTORAGE, IStatus.ERROR, "Error loading user: " + uid, e)); //$NON-NLS-1$
+			}
+		}
+		return valuesByUser.get(key);
+	}
+
+	private void put(String key, String uid, String value) {
+		Map<String, Set<String>> byValue = usersByValue.get(key);
+		String previous = value == null ? valuesByUser.get(key).remove(uid) : valuesByUser.get(key).put(uid, value);
+		if (previous != null) {
+			Set<String> uids = byValue.get(previous);
+			if (uids != null && uids.remove(uid) && uids.isEmpty())
+				byValue.remove(previous);
+		}
+		if (value != null) {
+			Set<String> uids = byValue.get(value);
+			if (uids == null) {
+				uids = new HashSet<String>();
+				byValue.put(value, uids);
+			}
+			uids.add(uid);
+		}
+	}
+}
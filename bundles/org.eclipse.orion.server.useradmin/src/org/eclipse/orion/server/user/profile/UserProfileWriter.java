@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.user.profile;
+
+import java.util.*;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.orion.server.core.LogHelper;
+
+/**
+ * Writes frequent, non-critical user profile updates, such as login timestamps,
+ * without flushing the profile on the request thread.
+ * <p>
+ * Values are put into the profile immediately, so they can be read right away.
+ * Flushing is deferred to a background thread, which flushes all profiles
+ * changed in the meantime in one batch. Repeated updates of the same user
+ * before the next batch are flushed once. Pending changes are also flushed
+ * when the server shuts down.
+ */
+public class UserProfileWriter {
+	/**
+	 * The time in milliseconds changes are collected before they are flushed.
+	 */
+	private static final long FLUSH_DELAY = 2000;
+
+	private static final UserProfileWriter instance = new UserProfileWriter();
+
+	/**
+	 * Map of user name and profile part to the profile node with unflushed changes.
+	 */
+	private final Map<String, IOrionUserProfileNode> pending = new LinkedHashMap<String, IOrionUserProfileNode>();
+	private Timer flushTimer;
+	private boolean flushScheduled = false;
+
+	public static UserProfileWriter getDefault() {
+		return instance;
+	}
+
+	private UserProfileWriter() {
+		super();
+	}
+
+	/**
+	 * Puts the given value into the given part of the profile of the given user,
+	 * and schedules the profile to be flushed.
+	 */
+	public void put(IOrionUserProfileService profileService, String userName, String partId, String key, String value) throws CoreException {
+		IOrionUserProfileNode node = profileService.getUserProfileNode(userName, partId);
+		node.put(key, value, false);
+		synchronized (pending) {
+			pending.put(userName + '/' + partId, node);
+			if (flushScheduled)
+				return;
+			if (flushTimer == null)
+				flushTimer = new Timer("Orion user profile writer", true); //$NON-NLS-1$
+			flushTimer.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					flush();
+				}
+			}, FLUSH_DELAY);
+			flushScheduled = true;
+		}
+	}
+
+	/**
+	 * Flushes all profiles with pending changes.
+	 */
+	public void flush() {
+		List<IOrionUserProfileNode> batch;
+		synchronized (pending) {
+			flushScheduled = false;
+			if (pending.isEmpty())
+				return;
+			batch = new ArrayList<IOrionUserProfileNode>(pending.values());
+			pending.clear();
+		}
+		for (IOrionUserProfileNode node : batch) {
+			try {
+				node.flush();
+			} catch (CoreException e) {
+				// just log that the changes were not stored
+				LogHelper.log(e);
+			}
+		}
+	}
+
+	/**
+	 * Flushes all pending changes and stops the background thread.
+	 */
+	public void shutdown() {
+		synchronized (pending) {
+			if (flushTimer != null) {
+				flushTimer.cancel();
+				flushTimer = null;
+			}
+		}
+		flush();
+	}
+}
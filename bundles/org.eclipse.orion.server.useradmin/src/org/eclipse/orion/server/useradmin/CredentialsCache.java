@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.useradmin;
+
+import java.io.UnsupportedEncodingException;
+import java.security.*;
+import java.util.*;
+import org.eclipse.orion.server.core.PreferenceHelper;
+import org.eclipse.orion.server.core.ServerConstants;
+
+/**
+ * Cache of recently verified credentials, so that clients sending the same
+ * credentials with every request don't need to be looked up and verified
+ * against the user store every time.
+ * <p>
+ * Passwords are never stored. Each entry keeps a random salt and a hash of the
+ * salt and the verified password, which is enough to recognize the same password
+ * again. Entries expire after a configurable time, and user stores must call
+ * {@link #invalidate(String)} whenever the login or password of a user changes,
+ * or the user is deleted.
+ */
+public class CredentialsCache {
+	/**
+	 * The maximum number of cached credentials.
+	 */
+	private static final int MAX_ENTRIES = 1000;
+	/**
+	 * The default time in seconds a verified credential is trusted.
+	 */
+	private static final int DEFAULT_TIME_TO_LIVE = 60;
+	private static final int SALT_LENGTH = 16;
+	private static final String HASH_ALGORITHM = "SHA-256"; //$NON-NLS-1$
+
+	private static final CredentialsCache instance = new CredentialsCache();
+
+	private static class Entry {
+		final String uid;
+		final byte[] salt;
+		final byte[] hash;
+		final long expires;
+
+		Entry(String uid, byte[] salt, byte[] hash, long expires) {
+			this.uid = uid;
+			this.salt = salt;
+			this.hash = hash;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * Map of login, in lower case, to the verified credential of that login.
+	 * Ordered by access, so the least recently used entry is evicted first.
+	 */
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+	private final SecureRandom random = new SecureRandom();
+	private final long timeToLive;
+
+	public static CredentialsCache getDefault() {
+		return instance;
+	}
+
+	private CredentialsCache() {
+		long ttl = DEFAULT_TIME_TO_LIVE;
+		String configured = PreferenceHelper.getString(ServerConstants.CONFIG_AUTH_CREDENTIALS_CACHE_TTL);
+		if (configured != null) {
+			try {
+				ttl = Long.parseLong(configured.trim());
+			} catch (NumberFormatException e) {
+				//use the default
+			}
+		}
+		timeToLive = ttl * 1000;
+	}
+
+	/**
+	 * Returns the uid of the user whose login and password were recently verified,
+	 * or <code>null</code> if the given credentials have not been verified recently.
+	 */
+	public String getVerifiedUid(String login, String password) {
+		if (timeToLive <= 0 || login == null || password == null)
+			return null;
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(key(login));
+		}
+		if (entry == null || entry.expires < System.currentTimeMillis())
+			return null;
+		byte[] hash = hash(entry.salt, password);
+		return hash != null && MessageDigest.isEqual(hash, entry.hash) ? entry.uid : null;
+	}
+
+	/**
+	 * Records that the given password has been verified for the user with the given
+	 * login and uid.
+	 */
+	public void put(String login, String password, String uid) {
+		if (timeToLive <= 0 || login == null || password == null || uid == null)
+			return;
+		byte[] salt = new byte[SALT_LENGTH];
+		synchronized (random) {
+			random.nextBytes(salt);
+		}
+		byte[] hash = hash(salt, password);
+		if (hash == null)
+			return;
+		Entry entry = new Entry(uid, salt, hash, System.currentTimeMillis() + timeToLive);
+		synchronized (entries) {
+			entries.put(key(login), entry);
+		}
+	}
+
+	/**
+	 * Discards the cached credentials of the user with the given uid.
+	 */
+	public void invalidate(String uid) {
+		synchronized (entries) {
+			for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();)
+				if (it.next().uid.equals(uid))
+					it.remove();
+		}
+	}
+
+	/**
+	 * Logins are unique ignoring case.
+	 */
+	private static String key(String login) {
+		return login.toLowerCase(Locale.ENGLISH);
+	}
+
+	private static byte[] hash(byte[] salt, String password) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+			digest.update(salt);
+			return digest.digest(password.getBytes("UTF-8")); //$NON-NLS-1$
+		} catch (NoSuchAlgorithmException e) {
+			//every Java platform supports SHA-256, so never trust a credential if it is missing
+			return null;
+		} catch (UnsupportedEncodingException e) {
+			//every Java platform supports UTF-8
+			return null;
+		}
+	}
+}
@@ -11,6 +11,7 @@
 package org.eclipse.orion.server.useradmin;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IStatus;
@@ -32,6 +33,17 @@ public interface IOrionCredentialsService {
 
 	public User createUser(User newUser);
 
+	/**
+	 * Creates many users at once. User stores that persist changes in batches
+	 * write all the users together, and return once they have been persisted.
+	 * 
+	 * @param newUsers the users to create
+	 * @return the created users, in the order of the given users, with
+	 *         <code>null</code> for each user that could not be created, or
+	 *         <code>null</code> if the users could not be persisted
+	 */
+	public List<User> createUsers(List<User> newUsers);
+
 	public abstract String getStoreName();
 
 	/**
@@ -42,6 +54,39 @@ public interface IOrionCredentialsService {
 	public abstract boolean canCreateUsers();
 
 	public abstract Collection<User> getUsers();
+
+	/**
+	 * Returns the number of users whose login starts with the given prefix,
+	 * ignoring case.
+	 * 
+	 * @param loginPrefix the login prefix, or <code>null</code> to count all users
+	 * @return the number of matching users
+	 */
+	public int getUserCount(String loginPrefix);
+
+	/**
+	 * Returns one page of the users whose login starts with the given prefix,
+	 * ignoring case. Users are ordered by login, so consecutive pages don't
+	 * overlap. Passwords of the returned users are not exposed.
+	 * 
+	 * @param loginPrefix the login prefix, or <code>null</code> to list all users
+	 * @param start the index of the first user to return
+	 * @param rows the maximum number of users to return
+	 * @return the users on the requested page
+	 */
+	public List<User> getUsers(String loginPrefix, int start, int rows);
+
+	/**
+	 * Returns the same page of users as {@link #getUsers(String, int, int)}, but
+	 * with only the uid, login and name of each user set. This is cheaper than
+	 * reading the full users where only a summary is shown.
+	 * 
+	 * @param loginPrefix the login prefix, or <code>null</code> to list all users
+	 * @param start the index of the first user to return
+	 * @param rows the maximum number of users to return
+	 * @return the summaries of the users on the requested page
+	 */
+	public List<User> getUserSummaries(String loginPrefix, int start, int rows);
 	
 	/**
 	 * Creates a {@code Role} object with the given name and of the given
@@ -11,6 +11,7 @@
 package org.eclipse.orion.server.useradmin;
 
 import org.eclipse.orion.server.core.authentication.IAuthenticationService;
+import org.eclipse.orion.server.user.profile.UserProfileWriter;
 import org.osgi.framework.*;
 import org.osgi.util.tracker.ServiceTracker;
 
@@ -67,6 +68,7 @@ public class UserAdminActivator implements BundleActivator {
 			authServiceTracker.close();
 			authServiceTracker = null;
 		}
+		UserProfileWriter.getDefault().shutdown();
 
 		this.bundleContext = null;
 	}
@@ -39,4 +39,29 @@ public interface UserConstants {
 	public static final String KEY_RESET = "reset"; //$NON-NLS-1$
 	
 	public static final String KEY_LAST_LOGIN_TIMESTAMP = "LastLogInTimestamp"; //$NON-NLS-1$
+
+	/**
+	 * Parameter and response key for the index of the first user on a page of users.
+	 */
+	public static final String KEY_START = "start"; //$NON-NLS-1$
+
+	/**
+	 * Parameter and response key for the maximum number of users on a page of users.
+	 */
+	public static final String KEY_ROWS = "rows"; //$NON-NLS-1$
+
+	/**
+	 * Response key for the total number of users matching a user list request.
+	 */
+	public static final String KEY_TOTAL = "total"; //$NON-NLS-1$
+
+	/**
+	 * Parameter restricting a user list to the users whose login starts with the given prefix.
+	 */
+	public static final String KEY_FILTER = "filter"; //$NON-NLS-1$
+
+	/**
+	 * Parameter requesting only the uid, location, login and name of each listed user.
+	 */
+	public static final String KEY_SUMMARY = "summary"; //$NON-NLS-1$
 }
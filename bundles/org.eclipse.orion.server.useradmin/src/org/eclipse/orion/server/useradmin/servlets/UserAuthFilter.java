@@ -64,7 +64,10 @@ public class UserAuthFilter implements Filter {
 		HttpServletRequest httpRequest = (HttpServletRequest) request;
 		HttpServletResponse httpResponse = (HttpServletResponse) response;
 
-		if ("POST".equals(httpRequest.getMethod()) && httpRequest.getParameter(UserConstants.KEY_RESET) == null) { //$NON-NLS-1$
+		boolean isCreate = "POST".equals(httpRequest.getMethod()) && httpRequest.getParameter(UserConstants.KEY_RESET) == null; //$NON-NLS-1$
+		// importing many users at once is never open to anonymous users
+		boolean isImport = isCreate && isJSONRequest(httpRequest);
+		if (isCreate && !isImport) {
 			// either everyone can create users, or only the specific list
 			if (authorizedAccountCreators == null || authorizedAccountCreators.contains(httpRequest.getRemoteUser())) {
 				chain.doFilter(request, response);
@@ -79,6 +82,11 @@ public class UserAuthFilter implements Filter {
 		request.setAttribute(HttpContext.REMOTE_USER, login);
 		request.setAttribute(HttpContext.AUTHENTICATION_TYPE, authenticationService.getAuthType());
 
+		if (isImport && authorizedAccountCreators != null && authorizedAccountCreators.contains(login)) {
+			chain.doFilter(request, response);
+			return;
+		}
+
 		try {
 			if (!AuthorizationService.checkRights(login, httpRequest.getRequestURI().toString(), httpRequest.getMethod())) {
 				httpResponse.sendError(HttpServletResponse.SC_FORBIDDEN);
@@ -91,6 +99,11 @@ public class UserAuthFilter implements Filter {
 		chain.doFilter(request, response);
 	}
 
+	private static boolean isJSONRequest(HttpServletRequest request) {
+		String contentType = request.getContentType();
+		return contentType != null && contentType.startsWith("application/json"); //$NON-NLS-1$
+	}
+
 	public void destroy() {
 		// nothing to do
 	}
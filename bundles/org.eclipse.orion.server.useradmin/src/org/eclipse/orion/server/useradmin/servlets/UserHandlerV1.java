@@ -13,10 +13,9 @@ package org.eclipse.orion.server.useradmin.servlets;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -27,6 +26,7 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.URIUtil;
 import org.eclipse.orion.internal.server.servlets.ProtocolConstants;
 import org.eclipse.orion.internal.server.servlets.ServletResourceHandler;
+import org.eclipse.orion.internal.server.servlets.workspace.WebUser;
 import org.eclipse.orion.internal.server.servlets.workspace.authorization.AuthorizationService;
 import org.eclipse.orion.server.core.LogHelper;
 import org.eclipse.orion.server.core.PreferenceHelper;
@@ -66,7 +66,9 @@ public class UserHandlerV1 extends ServletResourceHandler<String> {
 					case GET :
 						return handleUsersGet(request, response);
 					case POST :
-						return request.getParameter(UserConstants.KEY_RESET) == null ? handleUserCreate(request, response) : handleUserReset(request, response);
+						if (request.getParameter(UserConstants.KEY_RESET) != null)
+							return handleUserReset(request, response);
+						return isJSONRequest(request) ? handleUsersImport(request, response) : handleUserCreate(request, response);
 					default :
 						return false;
 				}
@@ -105,21 +107,46 @@ public class UserHandlerV1 extends ServletResourceHandler<String> {
 	}
 
 	private boolean handleUsersGet(HttpServletRequest req, HttpServletResponse resp) throws IOException, JSONException, CoreException {
-		Collection<User> users = getUserAdmin().getUsers();
-		Set<JSONObject> userJSONs = new HashSet<JSONObject>();
+		IOrionCredentialsService userAdmin = getUserAdmin();
+		String filter = req.getParameter(UserConstants.KEY_FILTER);
+		boolean summary = Boolean.valueOf(req.getParameter(UserConstants.KEY_SUMMARY)).booleanValue();
+		int total = userAdmin.getUserCount(filter);
+		int start, rows;
+		try {
+			start = getIntParameter(req, UserConstants.KEY_START, 0);
+			//without paging parameters all users are listed
+			rows = getIntParameter(req, UserConstants.KEY_ROWS, total);
+		} catch (NumberFormatException e) {
+			return statusHandler.handleRequest(req, resp, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_BAD_REQUEST, "Invalid paging parameters", e));
+		}
+		if (start < 0 || rows < 0)
+			return statusHandler.handleRequest(req, resp, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_BAD_REQUEST, "Invalid paging parameters", null));
+
+		JSONArray userJSONs = new JSONArray();
 		URI location = OrionServlet.getURI(req);
-		IOrionUserProfileNode userNode = null;
-		for (User user : users) {
-			URI userLocation = URIUtil.append(location, user.getUid());
-			userNode = getUserProfileService().getUserProfileNode(user.getUid(), true).getUserProfileNode(IOrionUserProfileConstants.GENERAL_PROFILE_PART);
-			userJSONs.add(formJson(user, userNode, userLocation));
+		if (summary) {
+			for (User user : userAdmin.getUserSummaries(filter, start, rows))
+				userJSONs.put(formSummaryJson(user, URIUtil.append(location, user.getUid())));
+		} else {
+			for (User user : userAdmin.getUsers(filter, start, rows)) {
+				IOrionUserProfileNode userNode = getUserProfileService().getUserProfileNode(user.getUid(), true).getUserProfileNode(IOrionUserProfileConstants.GENERAL_PROFILE_PART);
+				userJSONs.put(formJson(user, userNode, URIUtil.append(location, user.getUid())));
+			}
 		}
 		JSONObject json = new JSONObject();
 		json.put(UserConstants.KEY_USERS, userJSONs);
+		json.put(UserConstants.KEY_START, start);
+		json.put(UserConstants.KEY_ROWS, userJSONs.length());
+		json.put(UserConstants.KEY_TOTAL, total);
 		OrionServlet.writeJSONResponse(req, resp, json);
 		return true;
 	}
 
+	private static int getIntParameter(HttpServletRequest req, String name, int defaultValue) {
+		String value = req.getParameter(name);
+		return value == null ? defaultValue : Integer.parseInt(value);
+	}
+
 	private boolean handleUserGet(HttpServletRequest req, HttpServletResponse resp, String userId) throws IOException, JSONException, ServletException, CoreException {
 		User user = (User) getUserAdmin().getUser(UserConstants.KEY_UID, userId);
 		if (user == null)
@@ -206,6 +233,62 @@ public class UserHandlerV1 extends ServletResourceHandler<String> {
 		return true;
 	}
 
+	private static boolean isJSONRequest(HttpServletRequest req) {
+		String contentType = req.getContentType();
+		return contentType != null && contentType.startsWith("application/json"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Creates all users listed in the request body at once. The body is a JSON
+	 * object with an array of users, each with a login, and optionally a name and
+	 * a password. The response lists the created users in the same order, with
+	 * <code>null</code> for each user that could not be created.
+	 */
+	private boolean handleUsersImport(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException, JSONException, CoreException {
+		JSONObject data = OrionServlet.readJSONRequest(req);
+		JSONArray usersArray = data.getJSONArray(UserConstants.KEY_USERS);
+		String store = data.optString(UserConstants.KEY_STORE, null);
+
+		IOrionCredentialsService userAdmin;
+		try {
+			userAdmin = (store == null || "".equals(store)) ? getUserAdmin() : getUserAdmin(store);
+		} catch (UnsupportedUserStoreException e) {
+			return statusHandler.handleRequest(req, resp, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_BAD_REQUEST, "User store is not available: " + store, e));
+		}
+
+		List<User> newUsers = new ArrayList<User>(usersArray.length());
+		for (int i = 0; i < usersArray.length(); i++) {
+			JSONObject userObject = usersArray.getJSONObject(i);
+			String login = userObject.optString(UserConstants.KEY_LOGIN, null);
+			if (login == null || login.length() == 0)
+				return statusHandler.handleRequest(req, resp, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_BAD_REQUEST, "User login not specified.", null));
+			newUsers.add(new User(login, userObject.optString(ProtocolConstants.KEY_NAME, ""), userObject.optString(UserConstants.KEY_PASSWORD, ""))); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		List<User> created = userAdmin.createUsers(newUsers);
+		if (created == null)
+			return statusHandler.handleRequest(req, resp, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error creating users", null));
+
+		JSONArray userJSONs = new JSONArray();
+		URI location = OrionServlet.getURI(req);
+		for (User newUser : created) {
+			if (newUser == null) {
+				userJSONs.put(JSONObject.NULL);
+				continue;
+			}
+			try {
+				AuthorizationService.addUserRight(newUser.getUid(), newUser.getLocation());
+			} catch (CoreException e) {
+				return statusHandler.handleRequest(req, resp, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_BAD_REQUEST, "User rights could not be added.", e));
+			}
+			userJSONs.put(formSummaryJson(newUser, URIUtil.append(location, newUser.getUid())));
+		}
+		JSONObject json = new JSONObject();
+		json.put(UserConstants.KEY_USERS, userJSONs);
+		OrionServlet.writeJSONResponse(req, resp, json);
+		return true;
+	}
+
 	private boolean handleUserPut(HttpServletRequest req, HttpServletResponse resp, String userId) throws ServletException, IOException, CoreException, JSONException {
 		JSONObject data = OrionServlet.readJSONRequest(req);
 
@@ -280,9 +363,28 @@ public class UserHandlerV1 extends ServletResourceHandler<String> {
 		if (userAdmin.deleteUser((User) userAdmin.getUser("uid", userId)) == false) {
 			return statusHandler.handleRequest(req, resp, new ServerStatus(IStatus.ERROR, HttpServletResponse.SC_BAD_REQUEST, "User " + userId + " could not be found.", null));
 		}
+		//remove the workspace list and rights, so a new user with the same id doesn't inherit them
+		try {
+			WebUser.removeUser(userId);
+		} catch (CoreException e) {
+			LogHelper.log(e);
+		}
 		return true;
 	}
 
+	/**
+	 * Returns the lightweight representation of a user used in user lists, which
+	 * does not require reading the user's profile.
+	 */
+	private JSONObject formSummaryJson(User user, URI location) throws JSONException {
+		JSONObject json = new JSONObject();
+		json.put(UserConstants.KEY_UID, user.getUid());
+		json.put(ProtocolConstants.KEY_LOCATION, location);
+		json.put(ProtocolConstants.KEY_NAME, user.getName());
+		json.put(UserConstants.KEY_LOGIN, user.getLogin());
+		return json;
+	}
+
 	private JSONObject formJson(User user, IOrionUserProfileNode userProfile, URI location) throws JSONException, CoreException {
 		JSONObject json = new JSONObject();
 		json.put(UserConstants.KEY_UID, user.getUid());
@@ -10,9 +10,14 @@
  *******************************************************************************/
 package org.eclipse.orion.server.tests;
 
+import org.eclipse.orion.server.tests.metastore.LogMetadataStoreTest;
+import org.eclipse.orion.server.tests.metastore.PropertiesFileMetadataStoreTest;
 import org.eclipse.orion.server.tests.prefs.PreferenceTest;
 import org.eclipse.orion.server.tests.servlets.files.AdvancedFilesTest;
 import org.eclipse.orion.server.tests.servlets.files.CoreFilesTest;
+import org.eclipse.orion.server.tests.servlets.files.DirectorySnapshotCacheTest;
+import org.eclipse.orion.server.tests.servlets.files.FileChangeNotifierTest;
+import org.eclipse.orion.server.tests.servlets.files.FileStoreResolverTest;
 import org.eclipse.orion.server.tests.servlets.git.AllGitTests;
 import org.eclipse.orion.server.tests.servlets.site.AllSiteTests;
 import org.eclipse.orion.server.tests.servlets.users.BasicUsersTest;
@@ -27,7 +32,7 @@ import org.junit.runners.Suite.SuiteClasses;
  * Runs all automated server tests.
  */
 @RunWith(Suite.class)
-@SuiteClasses({TransferTest.class, Base64Test.class, CoreFilesTest.class, AdvancedFilesTest.class, PreferenceTest.class, BasicUsersTest.class, WorkspaceServiceTest.class, AllSiteTests.class, AllGitTests.class, AllTaskTests.class, WebElementTest.class})
+@SuiteClasses({TransferTest.class, Base64Test.class, CoreFilesTest.class, AdvancedFilesTest.class, PreferenceTest.class, BasicUsersTest.class, WorkspaceServiceTest.class, AllSiteTests.class, AllGitTests.class, AllTaskTests.class, WebElementTest.class, AuthorizationServiceTest.class, OpenIdCacheTest.class, LogMetadataStoreTest.class, PropertiesFileMetadataStoreTest.class, SessionTokensTest.class, WebElementCacheTest.class, IdAllocatorTest.class, FileStoreResolverTest.class, DirectorySnapshotCacheTest.class, FileChangeNotifierTest.class})
 public class AllServerTests {
 	//goofy junit4, no class body needed
 }
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.orion.internal.server.servlets.workspace.authorization.AuthorizationService;
+import org.eclipse.orion.internal.server.servlets.workspace.authorization.DecisionCache;
+import org.eclipse.orion.server.core.users.OrionScope;
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Test;
+import org.osgi.service.prefs.BackingStoreException;
+
+public class AuthorizationServiceTest {
+	private static final String USER = "AuthorizationServiceTest";
+
+	@After
+	public void tearDown() throws BackingStoreException {
+		new OrionScope().getNode("Users").node(USER).removeNode();
+	}
+
+	@Test
+	public void testCheckRights() throws CoreException, JSONException, BackingStoreException {
+		assertFalse(AuthorizationService.checkRights(USER, "/workspace/A1", "GET"));
+
+		AuthorizationService.addUserRight(USER, "/workspace/A1");
+		AuthorizationService.addUserRight(USER, "/workspace/A1/*");
+		assertTrue(AuthorizationService.checkRights(USER, "/workspace/A1", "GET"));
+		assertTrue(AuthorizationService.checkRights(USER, "/workspace/a1", "PUT"));
+		assertTrue(AuthorizationService.checkRights(USER, "/workspace/A1/project/B2", "DELETE"));
+		assertFalse(AuthorizationService.checkRights(USER, "/workspace/A", "GET"));
+		assertFalse(AuthorizationService.checkRights(USER, "/workspace/A2", "GET"));
+
+		AuthorizationService.addUserRight(USER, "/file/*/.git/*");
+		assertTrue(AuthorizationService.checkRights(USER, "/file/B2/.git/index", "GET"));
+		assertFalse(AuthorizationService.checkRights(USER, "/file/B2/src", "GET"));
+
+		//removed rights must no longer be granted
+		AuthorizationService.removeUserRight(USER, "/workspace/A1/*");
+		assertTrue(AuthorizationService.checkRights(USER, "/workspace/A1", "GET"));
+		assertFalse(AuthorizationService.checkRights(USER, "/workspace/A1/project/B2", "GET"));
+	}
+
+	@Test
+	public void testCheckRightsExactPattern() throws CoreException, JSONException {
+		//a pattern without wildcards only matches the equal URI, ignoring case
+		AuthorizationService.addUserRight(USER, "/file/J9");
+		assertTrue(AuthorizationService.checkRights(USER, "/file/j9", "GET"));
+		assertFalse(AuthorizationService.checkRights(USER, "/file/J9/src", "GET"));
+		assertFalse(AuthorizationService.checkRights(USER, "/file/J9/src/file/J9", "GET"));
+	}
+
+	@Test
+	public void testCheckRightsCached() throws CoreException, JSONException {
+		DecisionCache cache = AuthorizationService.getDecisionCache();
+		assertFalse(AuthorizationService.checkRightsCached(USER, "/workspace/D4", "GET"));
+		long hits = cache.getHitCount();
+		assertFalse(AuthorizationService.checkRightsCached(USER, "/workspace/D4", "GET"));
+		assertEquals(hits + 1, cache.getHitCount());
+
+		//granting a right must discard the cached denial
+		AuthorizationService.addUserRight(USER, "/workspace/D4");
+		assertTrue(AuthorizationService.checkRightsCached(USER, "/workspace/D4", "GET"));
+	}
+
+	@Test
+	public void testCheckRightsCachedSubtree() throws CoreException, JSONException, BackingStoreException {
+		DecisionCache cache = AuthorizationService.getDecisionCache();
+		AuthorizationService.addUserRight(USER, "/file/H8/*");
+		assertTrue(AuthorizationService.checkRightsCached(USER, "/file/H8/a.txt", "GET"));
+
+		//a decision allowed by a subtree right answers other files in the same folder
+		long hits = cache.getHitCount();
+		assertTrue(AuthorizationService.checkRightsCached(USER, "/file/h8/b.txt", "GET"));
+		assertEquals(hits + 1, cache.getHitCount());
+		assertFalse(AuthorizationService.checkRightsCached(USER, "/file/H9/a.txt", "GET"));
+
+		AuthorizationService.removeUserRight(USER, "/file/H8/*");
+		assertFalse(AuthorizationService.checkRightsCached(USER, "/file/H8/c.txt", "GET"));
+	}
+
+	@Test
+	public void testFindUserWithRights() throws CoreException, JSONException, BackingStoreException {
+		assertFalse(AuthorizationService.findUserWithRights("/file/C3/").contains(USER));
+
+		AuthorizationService.addUserRight(USER, "/file/C3");
+		assertTrue(AuthorizationService.findUserWithRights("/file/C3/").contains(USER));
+		assertTrue(AuthorizationService.findUserWithRights("/file/C3/src/").contains(USER));
+		assertFalse(AuthorizationService.findUserWithRights("/file/C4/").contains(USER));
+
+		AuthorizationService.removeUserRight(USER, "/file/C3");
+		assertFalse(AuthorizationService.findUserWithRights("/file/C3/").contains(USER));
+	}
+
+	@Test
+	public void testRemovedUser() throws CoreException, JSONException, BackingStoreException {
+		AuthorizationService.addUserRight(USER, "/file/E5");
+		assertTrue(AuthorizationService.findUserWithRights("/file/E5/").contains(USER));
+		assertTrue(AuthorizationService.checkRightsCached(USER, "/file/E5", "GET"));
+
+		//a new user with the same name must not inherit the rights of the removed user
+		new OrionScope().getNode("Users").node(USER).removeNode();
+		new OrionScope().getNode("Users").node(USER).flush();
+		assertFalse(AuthorizationService.findUserWithRights("/file/E5/").contains(USER));
+		assertFalse(AuthorizationService.checkRightsCached(USER, "/file/E5", "GET"));
+	}
+
+	@Test
+	public void testRightsChangedInBackingStore() throws CoreException, JSONException {
+		AuthorizationService.addUserRight(USER, "/file/F6");
+		assertTrue(AuthorizationService.findUserWithRights("/file/F6/").contains(USER));
+
+		//rights changed without going through the service must be picked up
+		IEclipsePreferences userNode = (IEclipsePreferences) new OrionScope().getNode("Users").node(USER);
+		userNode.put("UserRights", "[{\"Uri\":\"/file/G7\",\"Method\":15}]");
+		assertFalse(AuthorizationService.findUserWithRights("/file/F6/").contains(USER));
+		assertTrue(AuthorizationService.findUserWithRights("/file/G7/").contains(USER));
+		assertTrue(AuthorizationService.checkRights(USER, "/file/G7", "GET"));
+	}
+
+	@Test
+	public void testConcurrentChanges() throws InterruptedException {
+		final String[] uris = new String[20];
+		Thread[] threads = new Thread[uris.length];
+		for (int i = 0; i < threads.length; i++) {
+			final String uri = "/file/H" + i;
+			uris[i] = uri;
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						AuthorizationService.addUserRight(USER, uri);
+					} catch (CoreException e) {
+						//the right is missing below
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		//no change is lost, and the index agrees with the stored rights
+		for (String uri : uris)
+			assertTrue(uri, AuthorizationService.findUserWithRights(uri + "/").contains(USER));
+	}
+}
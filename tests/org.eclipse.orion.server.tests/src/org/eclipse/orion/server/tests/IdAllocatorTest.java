@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.*;
+
+import org.eclipse.orion.server.core.resources.Base64Counter;
+import org.eclipse.orion.server.core.resources.IdAllocator;
+import org.junit.Test;
+
+public class IdAllocatorTest {
+	/**
+	 * An allocator that keeps its high-water mark in memory.
+	 */
+	static class TestAllocator extends IdAllocator {
+		long mark;
+		final List<Long> writes = new ArrayList<Long>();
+		final String[] existing;
+
+		TestAllocator(long mark, String... existing) {
+			this.mark = mark;
+			this.existing = existing;
+		}
+
+		@Override
+		protected long readHighWaterMark() {
+			return mark;
+		}
+
+		@Override
+		protected void writeHighWaterMark(long newMark) {
+			mark = newMark;
+			writes.add(Long.valueOf(newMark));
+		}
+
+		@Override
+		protected String[] readExistingIds() {
+			return existing;
+		}
+	}
+
+	private static String id(long value) {
+		return new Base64Counter(value).toString();
+	}
+
+	@Test
+	public void testBlockRollover() {
+		TestAllocator allocator = new TestAllocator(0);
+		for (int i = 0; i < 250; i++)
+			assertEquals(id(i), allocator.nextId());
+		//a new block is reserved each time the previous one is used up
+		assertEquals(Arrays.asList(Long.valueOf(100), Long.valueOf(200), Long.valueOf(300)), allocator.writes);
+	}
+
+	@Test
+	public void testRestart() {
+		TestAllocator allocator = new TestAllocator(0);
+		for (int i = 0; i < 10; i++)
+			allocator.nextId();
+		//the rest of the reserved block is skipped after a restart
+		allocator = new TestAllocator(allocator.mark);
+		assertEquals(id(100), allocator.nextId());
+	}
+
+	@Test
+	public void testNoHighWaterMark() {
+		//ids allocated before the high-water mark was introduced
+		TestAllocator allocator = new TestAllocator(0, id(0), id(1), id(2), "not-an-id!");
+		assertEquals(id(3), allocator.nextId());
+		assertTrue(allocator.mark > 3);
+	}
+
+	@Test
+	public void testStaleHighWaterMark() {
+		//ids were handed out beyond the persisted mark, for example because writing the mark failed
+		TestAllocator allocator = new TestAllocator(100, id(5), id(150), id(120));
+		assertEquals(id(151), allocator.nextId());
+		assertEquals(Long.valueOf(251), allocator.writes.get(0));
+		//existing ids below the mark don't move it back
+		allocator = new TestAllocator(300, id(5));
+		assertEquals(id(300), allocator.nextId());
+	}
+
+	@Test
+	public void testConcurrentAllocation() throws InterruptedException {
+		final TestAllocator allocator = new TestAllocator(0);
+		final Set<String> ids = Collections.synchronizedSet(new HashSet<String>());
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					for (int j = 0; j < 500; j++)
+						ids.add(allocator.nextId());
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		assertEquals(2000, ids.size());
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.orion.server.openid.core.OpenIdCache;
+import org.openid4java.association.Association;
+import org.openid4java.consumer.ConsumerAssociationStore;
+import org.openid4java.consumer.ConsumerException;
+import org.openid4java.discovery.Discovery;
+import org.openid4java.discovery.DiscoveryException;
+import org.openid4java.discovery.DiscoveryInformation;
+import org.openid4java.discovery.Identifier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OpenIdCacheTest {
+	private static final String IDENTIFIER = "http://localhost/openid/user";
+	private static final String ENDPOINT = "http://localhost/openid/endpoint";
+
+	/**
+	 * A provider that answers discovery locally, and counts the round-trips.
+	 */
+	private static class StubDiscovery extends Discovery {
+		int requests = 0;
+		boolean failing = false;
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public List discover(Identifier identifier) throws DiscoveryException {
+			requests++;
+			if (failing)
+				throw new DiscoveryException("Provider is not responding");
+			List<DiscoveryInformation> result = new ArrayList<DiscoveryInformation>();
+			try {
+				result.add(new DiscoveryInformation(new URL(ENDPOINT), identifier));
+			} catch (MalformedURLException e) {
+				throw new DiscoveryException(e.getMessage());
+			}
+			return result;
+		}
+	}
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("openid", ".ser");
+		file.delete();
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testDiscoveryCached() throws ConsumerException, DiscoveryException {
+		StubDiscovery provider = new StubDiscovery();
+		OpenIdCache cache = new OpenIdCache(provider, null);
+		assertEquals(1, cache.getConsumerManager().discover(IDENTIFIER).size());
+		assertEquals(1, cache.getConsumerManager().discover(IDENTIFIER).size());
+		assertEquals(1, provider.requests);
+	}
+
+	@Test
+	public void testStaleDiscoveryUsedWhenProviderFails() throws ConsumerException, DiscoveryException {
+		StubDiscovery provider = new StubDiscovery();
+		//discovery results expire immediately
+		OpenIdCache cache = new OpenIdCache(provider, null, 0);
+		assertEquals(1, cache.getConsumerManager().discover(IDENTIFIER).size());
+		assertEquals(1, provider.requests);
+
+		//the expired result is discovered again
+		assertEquals(1, cache.getConsumerManager().discover(IDENTIFIER).size());
+		assertEquals(2, provider.requests);
+
+		//the expired result is used when the provider fails
+		provider.failing = true;
+		assertEquals(1, cache.getConsumerManager().discover(IDENTIFIER).size());
+		assertEquals(3, provider.requests);
+	}
+
+	@Test
+	public void testPersisted() throws ConsumerException, DiscoveryException {
+		OpenIdCache cache = new OpenIdCache(new StubDiscovery(), file);
+		cache.getConsumerManager().discover(IDENTIFIER);
+		ConsumerAssociationStore associations = cache.getConsumerManager().getAssociations();
+		associations.save(ENDPOINT, Association.createHmacSha1("current", new byte[20], 3600));
+		associations.save(ENDPOINT, Association.createHmacSha1("expired", new byte[20], new Date(System.currentTimeMillis() - 1000)));
+		cache.persist();
+
+		//a restarted server knows the provider without contacting it
+		StubDiscovery provider = new StubDiscovery();
+		cache = new OpenIdCache(provider, file);
+		assertEquals(1, cache.getConsumerManager().discover(IDENTIFIER).size());
+		assertEquals(0, provider.requests);
+		//association keys are never written to disk
+		associations = cache.getConsumerManager().getAssociations();
+		assertNull(associations.load(ENDPOINT, "current"));
+		assertNull(associations.load(ENDPOINT));
+	}
+
+	@Test
+	public void testAssociationsInMemory() throws ConsumerException {
+		OpenIdCache cache = new OpenIdCache(new StubDiscovery(), null);
+		ConsumerAssociationStore associations = cache.getConsumerManager().getAssociations();
+		associations.save(ENDPOINT, Association.createHmacSha1("current", new byte[20], 3600));
+		associations.save(ENDPOINT, Association.createHmacSha1("expired", new byte[20], new Date(System.currentTimeMillis() - 1000)));
+		assertNotNull(associations.load(ENDPOINT, "current"));
+		assertEquals("current", associations.load(ENDPOINT).getHandle());
+		assertNull(associations.load(ENDPOINT, "expired"));
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.orion.server.authentication.form.core.FormAuthHelper;
+import org.eclipse.orion.server.authentication.form.core.SessionTokens;
+import org.junit.*;
+
+/**
+ * Tests that signed tokens only authenticate the user they were issued to while
+ * they are valid.
+ */
+public class SessionTokensTest {
+	private static final long TIME_TO_LIVE = 60000;
+
+	/**
+	 * The revocation directory shared by all simulated servers.
+	 */
+	private File revocations;
+
+	@Before
+	public void setUp() {
+		revocations = new File(new File(System.getProperty("java.io.tmpdir")), "eclipse.SessionTokensTest");
+		tearDown();
+	}
+
+	@After
+	public void tearDown() {
+		File[] children = revocations.listFiles();
+		if (children != null)
+			for (File child : children)
+				child.delete();
+		revocations.delete();
+	}
+
+	/**
+	 * Returns the tokens of a server using the given key and the shared revocations.
+	 */
+	private SessionTokens tokens(String secret, long timeToLive) throws UnsupportedEncodingException {
+		return new SessionTokens(secret.getBytes("UTF-8"), timeToLive, revocations);
+	}
+
+	/**
+	 * Returns a request sending the given token cookie, and no session.
+	 */
+	private static HttpServletRequest request(final String token) {
+		return (HttpServletRequest) Proxy.newProxyInstance(SessionTokensTest.class.getClassLoader(), new Class[] {HttpServletRequest.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("getCookies"))
+					return new Cookie[] {new Cookie("OrionToken", token)};
+				return null;
+			}
+		});
+	}
+
+	private static String authenticateUser(SessionTokens tokens, String token) {
+		return FormAuthHelper.getAuthenticatedUser(request(token), tokens);
+	}
+
+	@Test
+	public void testValidToken() throws UnsupportedEncodingException {
+		SessionTokens tokens = tokens("secret", TIME_TO_LIVE);
+		String token = tokens.issue("user1");
+		assertEquals("user1", authenticateUser(tokens, token));
+		//any server sharing the key accepts the token
+		assertEquals("user1", authenticateUser(tokens("secret", TIME_TO_LIVE), token));
+	}
+
+	@Test
+	public void testBadSignature() throws UnsupportedEncodingException {
+		SessionTokens tokens = tokens("secret", TIME_TO_LIVE);
+		String token = tokens.issue("user1");
+
+		//signed with another key
+		String forged = tokens("other", TIME_TO_LIVE).issue("user1");
+		assertNull(authenticateUser(tokens, forged));
+
+		//signature altered
+		char last = token.charAt(token.length() - 1);
+		String altered = token.substring(0, token.length() - 1) + (last == '0' ? '1' : '0');
+		assertNull(authenticateUser(tokens, altered));
+
+		//payload altered to claim another user, keeping the original signature
+		String other = tokens("secret", TIME_TO_LIVE).issue("admin");
+		String swapped = other.substring(0, other.indexOf('.')) + token.substring(token.indexOf('.'));
+		assertNull(authenticateUser(tokens, swapped));
+
+		//malformed
+		assertNull(authenticateUser(tokens, "garbage"));
+		assertNull(authenticateUser(tokens, token + ".extra"));
+	}
+
+	@Test
+	public void testExpiredToken() throws UnsupportedEncodingException {
+		SessionTokens tokens = tokens("secret", -1000);
+		String token = tokens.issue("user1");
+		assertNull(authenticateUser(tokens, token));
+	}
+
+	@Test
+	public void testRevokedToken() throws UnsupportedEncodingException {
+		SessionTokens tokens = tokens("secret", TIME_TO_LIVE);
+		String token = tokens.issue("user1");
+		String otherToken = tokens.issue("user1");
+		tokens.revoke(token);
+		assertNull(authenticateUser(tokens, token));
+		//other tokens of the same user are still valid
+		assertEquals("user1", authenticateUser(tokens, otherToken));
+
+		//other servers and restarted servers reject the revoked token
+		assertNull(authenticateUser(tokens("secret", TIME_TO_LIVE), token));
+		assertEquals("user1", authenticateUser(tokens("secret", TIME_TO_LIVE), otherToken));
+	}
+}
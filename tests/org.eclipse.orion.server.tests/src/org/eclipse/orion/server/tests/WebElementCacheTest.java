@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.tests;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.orion.internal.server.servlets.workspace.*;
+import org.eclipse.orion.server.core.users.OrionScope;
+import org.junit.After;
+import org.junit.Test;
+import org.osgi.service.prefs.BackingStoreException;
+
+public class WebElementCacheTest {
+	private static final String NODE_NAME = "WebElementCacheTest";
+
+	@After
+	public void tearDown() throws BackingStoreException {
+		new OrionScope().getNode(NODE_NAME).removeNode();
+	}
+
+	private static WebElement element(String id) {
+		return new WebElement((IEclipsePreferences) new OrionScope().getNode(NODE_NAME).node(id));
+	}
+
+	@Test
+	public void testIdentity() {
+		WebElementCache<WebElement> cache = new WebElementCache<WebElement>();
+		WebElement first = element("a");
+		assertSame(first, cache.add("a", first));
+		//an element loaded concurrently loses to the cached one
+		assertSame(first, cache.add("a", element("a")));
+		assertSame(first, cache.get("a"));
+		assertNull(cache.get("b"));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEvicted() {
+		WebElementCache<WebElement> cache = new WebElementCache<WebElement>(2);
+		WebElement a = cache.add("a", element("a"));
+		cache.add("b", element("b"));
+		assertSame(a, cache.get("a"));
+		cache.add("c", element("c"));
+		//the element in use keeps its identity, the idle one is discarded
+		assertSame(a, cache.get("a"));
+		assertNull(cache.get("b"));
+	}
+
+	@Test
+	public void testRemoved() throws BackingStoreException {
+		WebElementCache<WebElement> cache = new WebElementCache<WebElement>();
+		cache.add("a", element("a"));
+		cache.add("b", element("b"));
+		cache.remove("b");
+		assertNull(cache.get("b"));
+		//removing the backing node discards the element
+		new OrionScope().getNode(NODE_NAME).node("a").removeNode();
+		assertNull(cache.get("a"));
+	}
+
+	@Test
+	public void testLookupIdentity() throws BackingStoreException {
+		String id = "WebElementCacheTest" + System.currentTimeMillis();
+		assertSame(WebProject.fromId(id), WebProject.fromId(id));
+		assertSame(WebWorkspace.fromId(id), WebWorkspace.fromId(id));
+		assertSame(WebUser.fromUserName(id), WebUser.fromUserName(id));
+		WebProject.fromId(id).remove();
+		new OrionScope().getNode("Workspaces").node(id).removeNode();
+		new OrionScope().getNode("Users").node(id).removeNode();
+	}
+}
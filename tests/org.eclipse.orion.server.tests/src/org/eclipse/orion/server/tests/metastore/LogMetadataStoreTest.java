@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.tests.metastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.*;
+import java.util.*;
+import org.eclipse.orion.internal.server.core.metastore.LogMetadataStore;
+import org.eclipse.orion.internal.server.core.metastore.PropertiesFileMetadataStore;
+import org.junit.*;
+import org.osgi.service.prefs.BackingStoreException;
+
+/**
+ * Tests for {@link LogMetadataStore}.
+ */
+public class LogMetadataStoreTest {
+	private File tempDir;
+	private File logFile;
+
+	@Before
+	public void setUp() {
+		tempDir = new File(new File(System.getProperty("java.io.tmpdir")), "eclipse.LogMetadataStoreTest");
+		tearDown();
+		tempDir.mkdirs();
+		logFile = new File(tempDir, "metadata.log");
+	}
+
+	@After
+	public void tearDown() {
+		delete(tempDir);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null)
+			for (File child : children)
+				delete(child);
+		file.delete();
+	}
+
+	private static Properties properties(String... keysAndValues) {
+		Properties result = new Properties();
+		for (int i = 0; i < keysAndValues.length; i += 2)
+			result.put(keysAndValues[i], keysAndValues[i + 1]);
+		return result;
+	}
+
+	@Test
+	public void testSaveAndReopen() throws BackingStoreException {
+		LogMetadataStore store = new LogMetadataStore(logFile);
+		store.save("Users", properties("a/Name", "A", "b/Name", "B"));
+		store.save("Users", properties("a/Name", "A2"));
+
+		store = new LogMetadataStore(logFile);
+		assertEquals(Arrays.asList("Users"), Arrays.asList(store.getQualifiers()));
+		assertEquals(properties("a/Name", "A2"), store.load("Users"));
+		assertNull(store.load("Projects"));
+	}
+
+	@Test
+	public void testUpdateAppendsOnlyChanges() throws BackingStoreException, IOException {
+		LogMetadataStore store = new LogMetadataStore(logFile);
+		store.save("Users", properties("a/Name", "A", "b/Name", "B"));
+		long length = logFile.length();
+
+		Map<String, String> changes = new HashMap<String, String>();
+		changes.put("a/Name", "A2");
+		changes.put("b/Name", null);
+		store.update("Users", changes);
+		assertEquals(properties("a/Name", "A2"), store.load("Users"));
+
+		//only the changed properties are appended
+		String appended = readFile(logFile).substring((int) length);
+		assertEquals("B\tUsers\nP\ta/Name\tA2\nD\tb/Name\nC\n", sortTransaction(appended));
+
+		store = new LogMetadataStore(logFile);
+		assertEquals(properties("a/Name", "A2"), store.load("Users"));
+	}
+
+	@Test
+	public void testTruncatedTransactionIgnored() throws BackingStoreException, IOException {
+		LogMetadataStore store = new LogMetadataStore(logFile);
+		store.save("Users", properties("a/Name", "A"));
+		//the server stopped in the middle of writing the next transaction
+		Writer writer = new OutputStreamWriter(new FileOutputStream(logFile, true), "UTF-8");
+		writer.write("B\tUsers\nP\ta/Name\tCha");
+		writer.close();
+
+		store = new LogMetadataStore(logFile);
+		assertEquals(properties("a/Name", "A"), store.load("Users"));
+		assertFalse(readFile(logFile).contains("Cha"));
+
+		//the discarded transaction does not become part of the next one
+		store.save("Users", properties("a/Name", "A", "b/Name", "B"));
+		store = new LogMetadataStore(logFile);
+		assertEquals(properties("a/Name", "A", "b/Name", "B"), store.load("Users"));
+	}
+
+	@Test
+	public void testCompaction() throws BackingStoreException, IOException {
+		LogMetadataStore store = new LogMetadataStore(logFile, 100);
+		for (int i = 0; i < 100; i++)
+			store.save("Users", properties("a/Name", "Name" + i, "b/Name", "B"));
+		assertEquals(properties("a/Name", "Name99", "b/Name", "B"), store.load("Users"));
+
+		//the log only holds a few transactions worth of records
+		int records = readFile(logFile).split("\n").length;
+		assertTrue("Log was not compacted: " + records, records <= 100);
+
+		store = new LogMetadataStore(logFile, 100);
+		assertEquals(properties("a/Name", "Name99", "b/Name", "B"), store.load("Users"));
+	}
+
+	@Test
+	public void testImportFrom() throws BackingStoreException {
+		PropertiesFileMetadataStore legacy = new PropertiesFileMetadataStore(new File(tempDir, "prefs"));
+		legacy.save("Users", properties("a/Name", "A"));
+		legacy.save("Projects", properties("p/Name", "P"));
+
+		LogMetadataStore store = new LogMetadataStore(logFile);
+		store.save("Projects", properties("p/Name", "Newer"));
+		store.importFrom(legacy);
+		assertEquals(properties("a/Name", "A"), store.load("Users"));
+		//qualifiers already in the log are not overwritten
+		assertEquals(properties("p/Name", "Newer"), store.load("Projects"));
+
+		//once imported, the old store is not read again
+		legacy.save("Workspaces", properties("w/Name", "W"));
+		store = new LogMetadataStore(logFile);
+		store.importFrom(legacy);
+		assertNull(store.load("Workspaces"));
+		assertEquals(properties("a/Name", "A"), store.load("Users"));
+	}
+
+	private static String readFile(File file) throws IOException {
+		StringBuilder result = new StringBuilder();
+		Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		try {
+			char[] buffer = new char[4096];
+			int read;
+			while ((read = reader.read(buffer)) > 0)
+				result.append(buffer, 0, read);
+		} finally {
+			reader.close();
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Sorts the property records of a transaction, whose order is not specified.
+	 */
+	private static String sortTransaction(String transaction) {
+		List<String> lines = new ArrayList<String>(Arrays.asList(transaction.split("\n")));
+		List<String> records = new ArrayList<String>(lines.subList(1, lines.size() - 1));
+		Collections.sort(records, new Comparator<String>() {
+			public int compare(String record1, String record2) {
+				return record2.charAt(0) - record1.charAt(0);
+			}
+		});
+		StringBuilder result = new StringBuilder(lines.get(0)).append('\n');
+		for (String record : records)
+			result.append(record).append('\n');
+		return result.append(lines.get(lines.size() - 1)).append('\n').toString();
+	}
+}
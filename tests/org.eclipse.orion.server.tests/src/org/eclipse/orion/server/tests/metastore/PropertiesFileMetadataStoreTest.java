@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.tests.metastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.*;
+import org.eclipse.orion.internal.server.core.metastore.PropertiesFileMetadataStore;
+import org.junit.*;
+import org.osgi.service.prefs.BackingStoreException;
+
+/**
+ * Tests for {@link PropertiesFileMetadataStore}.
+ */
+public class PropertiesFileMetadataStoreTest {
+	private File tempDir;
+
+	@Before
+	public void setUp() {
+		tempDir = new File(new File(System.getProperty("java.io.tmpdir")), "eclipse.PropertiesFileMetadataStoreTest");
+		tearDown();
+	}
+
+	@After
+	public void tearDown() {
+		File[] children = tempDir.listFiles();
+		if (children != null)
+			for (File child : children)
+				child.delete();
+		tempDir.delete();
+	}
+
+	@Test
+	public void testSaveAndUpdate() throws BackingStoreException {
+		PropertiesFileMetadataStore store = new PropertiesFileMetadataStore(tempDir);
+		assertEquals(0, store.getQualifiers().length);
+		assertNull(store.load("Users"));
+
+		Properties properties = new Properties();
+		properties.put("a/Name", "A");
+		properties.put("b/Name", "B");
+		store.save("Users", properties);
+
+		Map<String, String> changes = new HashMap<String, String>();
+		changes.put("a/Name", "A2");
+		changes.put("b/Name", null);
+		store.update("Users", changes);
+
+		store = new PropertiesFileMetadataStore(tempDir);
+		assertEquals(Arrays.asList("Users"), Arrays.asList(store.getQualifiers()));
+		Properties expected = new Properties();
+		expected.put("a/Name", "A2");
+		assertEquals(expected, store.load("Users"));
+	}
+}
@@ -16,14 +16,19 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import com.meterware.httpunit.*;
-import java.io.IOException;
+import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.List;
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.runtime.*;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.orion.internal.server.servlets.Activator;
 import org.eclipse.orion.internal.server.servlets.ProtocolConstants;
+import org.eclipse.orion.internal.server.servlets.file.FileStoreResolver;
 import org.eclipse.orion.internal.server.servlets.file.NewFileServlet;
 import org.eclipse.orion.server.core.ServerConstants;
 import org.json.*;
@@ -55,6 +60,74 @@ public class CoreFilesTest extends FileSystemTest {
 		setUpAuthorization();
 	}
 
+	@Test
+	public void testBatchOperations() throws Exception {
+		String directoryPath = "sample/directory/path" + System.currentTimeMillis();
+		createDirectory(directoryPath);
+		createFile(directoryPath + "/existing.txt", "Existing contents");
+		String fileLocation = FILE_SERVLET_LOCATION + directoryPath;
+		FileStoreResolver resolver = Activator.getDefault().getFileStoreResolver();
+		IFileStore newFile = resolver.resolve(new Path(directoryPath + "/new.txt"));
+		assertFalse(resolver.exists(newFile));
+
+		JSONArray operations = new JSONArray();
+		operations.put(new JSONObject().put("Method", "PUT").put("Location", fileLocation + "/new.txt").put("Contents", "New contents"));
+		operations.put(new JSONObject().put("Method", "GET").put("Location", fileLocation + "/new.txt").put("Parts", "meta,body"));
+		operations.put(new JSONObject().put("Method", "GET").put("Location", fileLocation + "/existing.txt").put("Parts", "body"));
+		operations.put(new JSONObject().put("Method", "DELETE").put("Location", fileLocation + "/existing.txt"));
+		operations.put(new JSONObject().put("Method", "GET").put("Location", fileLocation + "/does/not/exist.txt"));
+		JSONObject requestObject = new JSONObject();
+		requestObject.put("Operations", operations);
+		WebRequest request = new PostMethodWebRequest(SERVER_LOCATION + "/filebatch", getJsonAsStream(requestObject.toString()), "application/json");
+		setAuthentication(request);
+		WebResponse response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+
+		JSONArray results = new JSONArray(response.getText());
+		assertEquals(operations.length(), results.length());
+		checkFileMetadata(results.getJSONObject(0), "new.txt", null, null, null, null, null, null, null);
+		//operations on the same file are performed in order, so the get must see the put
+		assertEquals("New contents", results.getJSONObject(1).getString("Contents"));
+		assertNotNull(results.getJSONObject(1).getString("ETag"));
+		assertEquals("Existing contents", results.getJSONObject(2).getString("Contents"));
+		assertFalse(checkFileExists(directoryPath + "/existing.txt"));
+		assertEquals(HttpURLConnection.HTTP_NOT_FOUND, results.getJSONObject(4).getInt("HttpCode"));
+		//the cached existence of the created file is discarded
+		assertTrue(resolver.exists(newFile));
+	}
+
+	@Test
+	public void testCopyDirectoryAsync() throws Exception {
+		String directoryPath = "sample/directory/path" + System.currentTimeMillis();
+		String sourcePath = directoryPath + "/source";
+		createDirectory(sourcePath + "/child");
+		createFile(sourcePath + "/child/file.txt", "This is the contents");
+
+		JSONObject requestObject = new JSONObject();
+		addSourceLocation(requestObject, sourcePath);
+		WebRequest request = getPostFilesRequest(directoryPath + "?async=true", requestObject.toString(), "destination");
+		request.setHeaderField("X-Create-Options", "copy");
+		WebResponse response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_ACCEPTED, response.getResponseCode());
+		String taskLocation = response.getHeaderField(ProtocolConstants.HEADER_LOCATION);
+		assertNotNull(taskLocation);
+
+		//wait for the task to complete
+		JSONObject task = new JSONObject(response.getText());
+		for (int i = 0; i < 100 && task.getBoolean("Running"); i++) {
+			Thread.sleep(100);
+			request = new GetMethodWebRequest(taskLocation);
+			setAuthentication(request);
+			response = webConversation.getResponse(request);
+			assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+			task = new JSONObject(response.getText());
+		}
+		assertFalse(task.getBoolean("Running"));
+		assertEquals(100, task.getInt("PercentComplete"));
+		assertTrue(checkDirectoryExists(sourcePath + "/child"));
+		assertTrue(checkFileExists(directoryPath + "/destination/child/file.txt"));
+	}
+
 	@Test
 	public void testCopyFileInvalidSource() throws Exception {
 		String directoryPath = "/testCopyFile/directory/path" + System.currentTimeMillis();
@@ -475,6 +548,31 @@ public class CoreFilesTest extends FileSystemTest {
 
 	}
 
+	@Test
+	public void testReadDirectoryChildrenAfterWrite() throws Exception {
+		String directoryPath = "sample/directory/path" + System.currentTimeMillis();
+		createDirectory(directoryPath);
+		createFile(directoryPath + "/file.txt", "Short");
+		//age the directory time stamp so its listing can be cached
+		File directory = EFS.getStore(URI.create(FILESTORE_PREFIX + directoryPath)).toLocalFile(EFS.NONE, null);
+		directory.setLastModified(System.currentTimeMillis() - 10000);
+
+		WebResponse response = webConversation.getResponse(getGetFilesRequest(directoryPath + "?depth=1"));
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		List<JSONObject> children = getDirectoryChildren(new JSONObject(response.getText()));
+		assertEquals(1, children.size());
+		assertEquals(5, children.get(0).getLong(ProtocolConstants.KEY_LENGTH));
+
+		//writing the file doesn't change the directory time stamp, but must still be reflected in the listing
+		response = webConversation.getResponse(getPutFileRequest(directoryPath + "/file.txt", "Much longer contents"));
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		response = webConversation.getResponse(getGetFilesRequest(directoryPath + "?depth=1"));
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		children = getDirectoryChildren(new JSONObject(response.getText()));
+		assertEquals(1, children.size());
+		assertEquals(20, children.get(0).getLong(ProtocolConstants.KEY_LENGTH));
+	}
+
 	@Test
 	public void testReadFileMetadata() throws Exception {
 		String directoryPath = "sample/directory/path" + System.currentTimeMillis();
@@ -526,4 +624,183 @@ public class CoreFilesTest extends FileSystemTest {
 
 		assertEquals("Invalid file content", fileContent, response.getText());
 	}
+
+	@Test
+	public void testWatchDirectory() throws Exception {
+		String directoryPath = "sample/directory/path" + System.currentTimeMillis();
+		createDirectory(directoryPath);
+		createFile(directoryPath + "/file.txt", "Original contents");
+		String watchLocation = SERVER_LOCATION + "/filewatch/" + directoryPath;
+
+		//without a sequence number the current one is returned immediately
+		WebRequest request = new GetMethodWebRequest(watchLocation);
+		setAuthentication(request);
+		WebResponse response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		JSONObject result = new JSONObject(response.getText());
+		assertEquals(0, result.getJSONArray("Changes").length());
+		long since = result.getLong("Since");
+
+		response = webConversation.getResponse(getPutFileRequest(directoryPath + "/file.txt", "New contents"));
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+
+		request = new GetMethodWebRequest(watchLocation + "?since=" + since + "&wait=5000");
+		setAuthentication(request);
+		response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		result = new JSONObject(response.getText());
+		assertFalse(result.getBoolean("Reset"));
+		assertTrue(result.getLong("Since") > since);
+		JSONArray changes = result.getJSONArray("Changes");
+		boolean found = false;
+		for (int i = 0; i < changes.length(); i++) {
+			JSONObject change = changes.getJSONObject(i);
+			if (change.getString("Location").endsWith(directoryPath + "/file.txt")) {
+				assertEquals("Modified", change.getString("Type"));
+				found = true;
+			}
+		}
+		assertTrue(found);
+	}
+
+	@Test
+	public void testWatchIgnoresFailedRequests() throws Exception {
+		String directoryPath = "sample/directory/path" + System.currentTimeMillis();
+		createDirectory(directoryPath);
+		createFile(directoryPath + "/file.txt", "Original contents");
+		String watchLocation = SERVER_LOCATION + "/filewatch/" + directoryPath;
+
+		WebRequest request = new GetMethodWebRequest(watchLocation);
+		setAuthentication(request);
+		WebResponse response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		long since = new JSONObject(response.getText()).getLong("Since");
+
+		//a write with a stale ETag and a delete of a missing file change nothing
+		request = getPutFileRequest(directoryPath + "/file.txt", "New contents");
+		request.setHeaderField("If-Match", "stale");
+		response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_PRECON_FAILED, response.getResponseCode());
+		response = webConversation.getResponse(getDeleteFilesRequest(directoryPath + "/missing.txt"));
+		assertEquals(HttpURLConnection.HTTP_NOT_FOUND, response.getResponseCode());
+
+		request = new GetMethodWebRequest(watchLocation + "?since=" + since + "&wait=0");
+		setAuthentication(request);
+		response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		assertEquals(0, new JSONObject(response.getText()).getJSONArray("Changes").length());
+	}
+
+	@Test
+	public void testWatchNewFile() throws Exception {
+		String directoryPath = "sample/directory/path" + System.currentTimeMillis();
+		createDirectory(directoryPath);
+		String watchLocation = SERVER_LOCATION + "/filewatch/" + directoryPath;
+
+		WebRequest request = new GetMethodWebRequest(watchLocation);
+		setAuthentication(request);
+		WebResponse response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		long since = new JSONObject(response.getText()).getLong("Since");
+
+		createFile(directoryPath + "/new.txt", "New file");
+
+		request = new GetMethodWebRequest(watchLocation + "?since=" + since + "&wait=5000");
+		setAuthentication(request);
+		response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		JSONArray changes = new JSONObject(response.getText()).getJSONArray("Changes");
+		boolean found = false;
+		for (int i = 0; i < changes.length(); i++) {
+			JSONObject change = changes.getJSONObject(i);
+			if (change.getString("Location").endsWith(directoryPath + "/new.txt")) {
+				assertEquals("Created", change.getString("Type"));
+				found = true;
+			}
+		}
+		assertTrue(found);
+	}
+
+	@Test
+	public void testWriteBinaryFileMultiPart() throws Exception {
+		String directoryPath = "sample/directory/path" + System.currentTimeMillis();
+		createDirectory(directoryPath);
+		String fileName = "binary.dat";
+		createFile(directoryPath + "/" + fileName, "");
+
+		//contents include every byte value, including ones that look like line breaks
+		byte[] contents = new byte[512];
+		for (int i = 0; i < contents.length; i++)
+			contents[i] = (byte) i;
+		String boundary = "orion" + System.currentTimeMillis();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		body.write(("--" + boundary + "\r\nContent-Type: application/json\r\n\r\n{}\r\n").getBytes("ISO-8859-1"));
+		body.write(("--" + boundary + "\r\nContent-Type: application/octet-stream\r\n\r\n").getBytes("ISO-8859-1"));
+		body.write(contents);
+		body.write(("\r\n--" + boundary + "--\r\n").getBytes("ISO-8859-1"));
+
+		String location = SERVER_LOCATION + FILE_SERVLET_LOCATION + directoryPath + "/" + fileName + "?parts=meta,body";
+		WebRequest request = new PutMethodWebRequest(location, new ByteArrayInputStream(body.toByteArray()), "multipart/related; boundary=\"" + boundary + '"');
+		request.setHeaderField(ProtocolConstants.HEADER_ORION_VERSION, "1");
+		setAuthentication(request);
+		WebResponse response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		String etag = new JSONObject(response.getText()).getString(ProtocolConstants.KEY_ETAG);
+
+		//read back the contents and make sure they were not altered
+		request = getGetFilesRequest(directoryPath + "/" + fileName);
+		response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		assertEquals(etag, response.getHeaderField(ProtocolConstants.KEY_ETAG));
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		InputStream in = response.getInputStream();
+		int read;
+		while ((read = in.read()) != -1)
+			actual.write(read);
+		assertTrue("Invalid file content", Arrays.equals(contents, actual.toByteArray()));
+	}
+
+	@Test
+	public void testWriteFileMultiPartLegacyFraming() throws Exception {
+		String directoryPath = "sample/directory/path" + System.currentTimeMillis();
+		createDirectory(directoryPath);
+		String fileName = "legacy.txt";
+		createFile(directoryPath + "/" + fileName, "");
+
+		//older clients send the metadata first, followed by a line holding just the boundary
+		String boundary = "orion" + System.currentTimeMillis();
+		String body = "{}\r\n" + boundary + "\r\nContent-Type: text/plain\r\n\r\nLegacy contents";
+		String location = SERVER_LOCATION + FILE_SERVLET_LOCATION + directoryPath + "/" + fileName + "?parts=meta,body";
+		WebRequest request = new PutMethodWebRequest(location, new ByteArrayInputStream(body.getBytes("UTF-8")), "multipart/related; boundary=\"" + boundary + '"');
+		request.setHeaderField(ProtocolConstants.HEADER_ORION_VERSION, "1");
+		setAuthentication(request);
+		WebResponse response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+
+		request = getGetFilesRequest(directoryPath + "/" + fileName);
+		response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		assertEquals("Invalid file content", "Legacy contents", response.getText());
+	}
+
+	@Test
+	public void testWriteFileMultiPartNoBoundary() throws Exception {
+		String directoryPath = "sample/directory/path" + System.currentTimeMillis();
+		createDirectory(directoryPath);
+		String fileName = "noboundary.txt";
+		createFile(directoryPath + "/" + fileName, "Original contents");
+
+		String body = "--orion\r\n\r\n{}\r\n--orion\r\n\r\nNew contents\r\n--orion--\r\n";
+		String location = SERVER_LOCATION + FILE_SERVLET_LOCATION + directoryPath + "/" + fileName + "?parts=meta,body";
+		WebRequest request = new PutMethodWebRequest(location, new ByteArrayInputStream(body.getBytes("UTF-8")), "multipart/related");
+		request.setHeaderField(ProtocolConstants.HEADER_ORION_VERSION, "1");
+		setAuthentication(request);
+		WebResponse response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.getResponseCode());
+
+		//the file is left unchanged
+		request = getGetFilesRequest(directoryPath + "/" + fileName);
+		response = webConversation.getResponse(request);
+		assertEquals("Original contents", response.getText());
+	}
 }
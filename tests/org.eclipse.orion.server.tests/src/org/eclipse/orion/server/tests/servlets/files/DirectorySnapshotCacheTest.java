@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.tests.servlets.files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.*;
+import org.eclipse.core.filesystem.*;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.orion.internal.server.servlets.file.DirectorySnapshotCache;
+import org.junit.*;
+
+/**
+ * Tests for {@link DirectorySnapshotCache}, using a clock controlled by the test.
+ */
+public class DirectorySnapshotCacheTest {
+	/**
+	 * A cache whose notion of the current time is set by the test.
+	 */
+	static class TestCache extends DirectorySnapshotCache {
+		long now = System.currentTimeMillis();
+
+		@Override
+		protected long currentTimeMillis() {
+			return now;
+		}
+	}
+
+	private File directory;
+	private IFileStore store;
+	private TestCache cache;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = new File(new File(System.getProperty("java.io.tmpdir")), "eclipse.DirectorySnapshotCacheTest");
+		tearDown();
+		directory.mkdirs();
+		write("file.txt", "Short");
+		store = EFS.getLocalFileSystem().fromLocalFile(directory);
+		cache = new TestCache();
+		//the directory time stamp must be older than the file system time stamp resolution for the listing to be cached
+		cache.now = directory.lastModified() + 5000;
+	}
+
+	@After
+	public void tearDown() {
+		File[] children = directory.listFiles();
+		if (children != null)
+			for (File child : children)
+				child.delete();
+		directory.delete();
+	}
+
+	private void write(String name, String contents) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(new File(directory, name)), "UTF-8");
+		try {
+			writer.write(contents);
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	public void testSnapshotReused() throws CoreException {
+		IFileInfo[] children = cache.childInfos(store);
+		assertEquals(1, children.length);
+		assertSame(children, cache.childInfos(store));
+	}
+
+	@Test
+	public void testRecentDirectoryNotCached() throws CoreException {
+		cache.now = directory.lastModified();
+		IFileInfo[] children = cache.childInfos(store);
+		//a change within the same time stamp interval would go unnoticed
+		assertNotSame(children, cache.childInfos(store));
+	}
+
+	@Test
+	public void testChildAddedOutsideServer() throws CoreException, IOException {
+		long timestamp = directory.lastModified();
+		assertEquals(1, cache.childInfos(store).length);
+		write("added.txt", "Added");
+		//make sure the time stamp changes even on file systems with coarse time stamps
+		directory.setLastModified(timestamp + 2000);
+		cache.now = timestamp + 10000;
+		assertEquals(2, cache.childInfos(store).length);
+	}
+
+	@Test
+	public void testChildModifiedOutsideServer() throws CoreException, IOException {
+		long timestamp = directory.lastModified();
+		assertEquals(5, cache.childInfos(store)[0].getLength());
+		write("file.txt", "Much longer contents");
+		directory.setLastModified(timestamp);
+		//the directory time stamp doesn't change, so the old listing is used for a few seconds
+		assertEquals(5, cache.childInfos(store)[0].getLength());
+		cache.now += 60000;
+		assertEquals(20, cache.childInfos(store)[0].getLength());
+	}
+
+	@Test
+	public void testInvalidate() throws CoreException, IOException {
+		long timestamp = directory.lastModified();
+		assertEquals(5, cache.childInfos(store)[0].getLength());
+		write("file.txt", "Much longer contents");
+		directory.setLastModified(timestamp);
+		cache.invalidate(store.getChild("file.txt"));
+		assertEquals(20, cache.childInfos(store)[0].getLength());
+	}
+}
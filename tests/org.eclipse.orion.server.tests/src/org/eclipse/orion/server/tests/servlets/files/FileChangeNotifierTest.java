@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.tests.servlets.files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.*;
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.orion.internal.server.servlets.file.FileChangeNotifier;
+import org.eclipse.orion.internal.server.servlets.file.FileChangeNotifier.ChangeListener;
+import org.junit.Test;
+
+/**
+ * Tests for the listeners of the {@link FileChangeNotifier}, which are used by
+ * watch requests that are suspended instead of holding a thread.
+ */
+public class FileChangeNotifierTest {
+	/**
+	 * A listener counting how often it was notified.
+	 */
+	static class CountingListener implements ChangeListener {
+		int count;
+
+		public synchronized void changesAvailable() {
+			count++;
+		}
+	}
+
+	private final FileChangeNotifier notifier = FileChangeNotifier.getDefault();
+	private final IFileStore root = EFS.getLocalFileSystem().getStore(URI.create("file:/FileChangeNotifierTest" + System.currentTimeMillis()));
+
+	private List<URI> roots() {
+		return Collections.singletonList(root.toURI());
+	}
+
+	@Test
+	public void testListenerNotifiedOnce() {
+		long since = notifier.getLastSequence();
+		CountingListener listener = new CountingListener();
+		assertTrue(notifier.addChangeListener(roots(), since, listener));
+
+		//changes outside the watched tree are not reported
+		notifier.fireChanged(root.getParent().getChild("other"), FileChangeNotifier.CHANGE_CREATED);
+		assertEquals(0, listener.count);
+
+		notifier.fireChanged(root.getChild("a.txt"), FileChangeNotifier.CHANGE_CREATED);
+		notifier.fireChanged(root.getChild("a.txt"), FileChangeNotifier.CHANGE_MODIFIED);
+		assertEquals(1, listener.count);
+		Map<String, String> changes = notifier.getChanges(roots(), since).changes;
+		assertEquals(1, changes.size());
+		assertEquals(FileChangeNotifier.CHANGE_CREATED, changes.get(root.getChild("a.txt").toURI().toString()));
+	}
+
+	@Test
+	public void testChangesAlreadyAvailable() {
+		long since = notifier.getLastSequence();
+		notifier.fireChanged(root.getChild("b.txt"), FileChangeNotifier.CHANGE_CREATED);
+		//there is nothing to wait for
+		CountingListener listener = new CountingListener();
+		assertFalse(notifier.addChangeListener(roots(), since, listener));
+		assertEquals(1, notifier.getChanges(roots(), since).changes.size());
+	}
+
+	@Test
+	public void testListenerRemoved() {
+		CountingListener listener = new CountingListener();
+		assertTrue(notifier.addChangeListener(roots(), notifier.getLastSequence(), listener));
+		notifier.removeChangeListener(listener);
+		notifier.fireChanged(root.getChild("c.txt"), FileChangeNotifier.CHANGE_CREATED);
+		assertEquals(0, listener.count);
+	}
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.tests.servlets.files;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.orion.internal.server.servlets.Activator;
+import org.eclipse.orion.internal.server.servlets.file.FileChangeNotifier;
+import org.eclipse.orion.internal.server.servlets.file.FileStoreResolver;
+import org.junit.*;
+
+/**
+ * Tests that changes reported to the {@link FileChangeNotifier} are visible through
+ * the existence cache of the {@link FileStoreResolver}.
+ */
+public class FileStoreResolverTest {
+	private FileStoreResolver resolver;
+	private IFileStore directory;
+
+	@Before
+	public void setUp() throws CoreException {
+		resolver = Activator.getDefault().getFileStoreResolver();
+		directory = resolver.resolve(new Path("FileStoreResolverTest" + System.currentTimeMillis()));
+		directory.mkdir(EFS.NONE, null);
+	}
+
+	@After
+	public void tearDown() throws CoreException {
+		directory.delete(EFS.NONE, null);
+	}
+
+	@Test
+	public void testCreatedFileVisible() throws Exception {
+		IFileStore file = directory.getChild("file.txt");
+		assertFalse(resolver.exists(file));
+		file.openOutputStream(EFS.NONE, null).close();
+		FileChangeNotifier.getDefault().fireChanged(file, FileChangeNotifier.CHANGE_CREATED);
+		assertTrue(resolver.exists(file));
+	}
+
+	@Test
+	public void testDirectoryChangeInvalidatesDescendants() throws Exception {
+		IFileStore folder = directory.getChild("folder");
+		IFileStore file = folder.getChild("file.txt");
+		assertFalse(resolver.exists(file));
+
+		//files created by a batch operation, an import or a git command are reported on their parents
+		folder.mkdir(EFS.NONE, null);
+		file.openOutputStream(EFS.NONE, null).close();
+		FileChangeNotifier.getDefault().fireChanged(folder, FileChangeNotifier.CHANGE_CREATED);
+		assertTrue(resolver.exists(folder));
+		assertTrue(resolver.exists(file));
+
+		file.delete(EFS.NONE, null);
+		FileChangeNotifier.getDefault().fireChanged(directory, FileChangeNotifier.CHANGE_MODIFIED);
+		assertFalse(resolver.exists(file));
+	}
+}
@@ -34,6 +34,7 @@ import org.junit.Test;
 import org.osgi.service.prefs.BackingStoreException;
 import org.xml.sax.SAXException;
 
+import com.meterware.httpunit.PostMethodWebRequest;
 import com.meterware.httpunit.WebConversation;
 import com.meterware.httpunit.WebRequest;
 import com.meterware.httpunit.WebResponse;
@@ -72,6 +73,118 @@ public class BasicUsersTest extends UsersTest {
 		assertTrue("Too small number of users returned", usersArray.length() > 1);
 	}
 
+	@Test
+	public void testGetUsersPaged() throws IOException, SAXException, JSONException {
+		String prefix = "page_" + System.currentTimeMillis() + "_";
+		//create the users out of order, the list is ordered by login ignoring case
+		createUser(prefix + "c", "pass");
+		createUser(prefix + "A", "pass");
+		createUser(prefix + "b", "pass");
+
+		WebConversation webConversation = new WebConversation();
+		webConversation.setExceptionsThrownOnErrorStatus(false);
+		WebRequest request = getGetUsersRequest("", true);
+		request.setParameter(UserConstants.KEY_FILTER, prefix.toUpperCase());
+		request.setParameter(UserConstants.KEY_START, "1");
+		request.setParameter(UserConstants.KEY_ROWS, "5");
+		WebResponse response = webConversation.getResponse(request);
+		assertEquals(response.getText(), HttpURLConnection.HTTP_OK, response.getResponseCode());
+
+		JSONObject responseObject = new JSONObject(response.getText());
+		assertEquals(3, responseObject.getInt(UserConstants.KEY_TOTAL));
+		assertEquals(1, responseObject.getInt(UserConstants.KEY_START));
+		JSONArray usersArray = responseObject.getJSONArray(UserConstants.KEY_USERS);
+		assertEquals(2, usersArray.length());
+		assertEquals(prefix + "b", usersArray.getJSONObject(0).getString(UserConstants.KEY_LOGIN));
+		assertEquals(prefix + "c", usersArray.getJSONObject(1).getString(UserConstants.KEY_LOGIN));
+		assertTrue(usersArray.getJSONObject(0).has(UserConstants.KEY_PROPERTIES));
+
+		//summaries contain no profile data
+		request = getGetUsersRequest("", true);
+		request.setParameter(UserConstants.KEY_FILTER, prefix);
+		request.setParameter(UserConstants.KEY_ROWS, "1");
+		request.setParameter(UserConstants.KEY_SUMMARY, "true");
+		response = webConversation.getResponse(request);
+		assertEquals(response.getText(), HttpURLConnection.HTTP_OK, response.getResponseCode());
+		responseObject = new JSONObject(response.getText());
+		assertEquals(3, responseObject.getInt(UserConstants.KEY_TOTAL));
+		usersArray = responseObject.getJSONArray(UserConstants.KEY_USERS);
+		assertEquals(1, usersArray.length());
+		assertEquals(prefix + "A", usersArray.getJSONObject(0).getString(UserConstants.KEY_LOGIN));
+		assertTrue(usersArray.getJSONObject(0).has(UserConstants.KEY_UID));
+		assertFalse(usersArray.getJSONObject(0).has(UserConstants.KEY_PROPERTIES));
+
+		//invalid paging parameters
+		request = getGetUsersRequest("", true);
+		request.setParameter(UserConstants.KEY_ROWS, "-1");
+		response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.getResponseCode());
+	}
+
+	@Test
+	public void testImportUsers() throws IOException, SAXException, JSONException {
+		String prefix = "import_" + System.currentTimeMillis() + "_";
+		JSONArray users = new JSONArray();
+		for (int i = 0; i < 3; i++) {
+			JSONObject user = new JSONObject();
+			user.put("login", prefix + i);
+			user.put("Name", "Imported " + i);
+			user.put("password", "pass_" + i);
+			users.put(user);
+		}
+		//the same login again
+		users.put(new JSONObject().put("login", prefix + "0"));
+		JSONObject body = new JSONObject();
+		body.put(UserConstants.KEY_USERS, users);
+
+		WebConversation webConversation = new WebConversation();
+		webConversation.setExceptionsThrownOnErrorStatus(false);
+		WebRequest request = new PostMethodWebRequest(SERVER_LOCATION + "/users", getJsonAsStream(body.toString()), "application/json");
+		request.setHeaderField("Orion-Version", "1");
+		setAuthentication(request, "admin", "admin");
+		WebResponse response = webConversation.getResponse(request);
+		assertEquals(response.getText(), HttpURLConnection.HTTP_OK, response.getResponseCode());
+
+		JSONArray created = new JSONObject(response.getText()).getJSONArray(UserConstants.KEY_USERS);
+		assertEquals(4, created.length());
+		for (int i = 0; i < 3; i++)
+			assertEquals(prefix + i, created.getJSONObject(i).getString(UserConstants.KEY_LOGIN));
+		assertTrue("Duplicate login should not be created", created.isNull(3));
+
+		//imported users can log in
+		request = getGetUsersRequest(created.getJSONObject(1).getString(UserConstants.KEY_UID), true);
+		setAuthentication(request, prefix + "1", "pass_1");
+		response = webConversation.getResponse(request);
+		assertEquals(response.getText(), HttpURLConnection.HTTP_OK, response.getResponseCode());
+	}
+
+	@Test
+	public void testImportUsersRequiresAdmin() throws IOException, SAXException, JSONException {
+		String login = "import_anonymous_" + System.currentTimeMillis();
+		JSONObject body = new JSONObject();
+		body.put(UserConstants.KEY_USERS, new JSONArray().put(new JSONObject().put("login", login)));
+
+		WebConversation webConversation = new WebConversation();
+		webConversation.setExceptionsThrownOnErrorStatus(false);
+		WebRequest request = new PostMethodWebRequest(SERVER_LOCATION + "/users", getJsonAsStream(body.toString()), "application/json");
+		request.setHeaderField("Orion-Version", "1");
+		WebResponse response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_UNAUTHORIZED, response.getResponseCode());
+
+		//a regular user can't import either
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("login", "import_user_" + System.currentTimeMillis());
+		params.put("password", "pass_" + System.currentTimeMillis());
+		request = getPostUsersRequest("", params, true);
+		response = webConversation.getResponse(request);
+		assertEquals(response.getText(), HttpURLConnection.HTTP_OK, response.getResponseCode());
+		request = new PostMethodWebRequest(SERVER_LOCATION + "/users", getJsonAsStream(body.toString()), "application/json");
+		request.setHeaderField("Orion-Version", "1");
+		setAuthentication(request, params.get("login"), params.get("password"));
+		response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_FORBIDDEN, response.getResponseCode());
+	}
+
 	@Test
 	public void testGetUsersForbidden() throws IOException, SAXException {
 		WebConversation webConversation = new WebConversation();
@@ -212,6 +325,12 @@ public class BasicUsersTest extends UsersTest {
 
 		String location = responseObject.getString("Location");
 
+		// authenticate with the old password, so the server has verified it recently
+		request = getGetUsersRequest("", true);
+		setAuthentication(request, params.get("login"), oldPass);
+		response = webConversation.getResponse(request);
+		assertFalse("User could not authenticate", response.getResponseCode() == HttpURLConnection.HTTP_UNAUTHORIZED);
+
 		// update user
 		JSONObject updateBody = new JSONObject();
 		updateBody.put("Name", "usernameUpdate_" + System.currentTimeMillis());
@@ -243,6 +362,12 @@ public class BasicUsersTest extends UsersTest {
 		response = webConversation.getResponse(request);
 		assertEquals("User with no roles has admin privilegges", HttpURLConnection.HTTP_FORBIDDEN, response.getResponseCode());
 
+		// the old password must no longer be accepted
+		request = getGetUsersRequest("", true);
+		setAuthentication(request, params.get("login"), oldPass);
+		response = webConversation.getResponse(request);
+		assertEquals("User could authenticate with old password", HttpURLConnection.HTTP_UNAUTHORIZED, response.getResponseCode());
+
 		// delete user
 		request = getAuthenticatedRequest(location, METHOD_DELETE, true);
 		response = webConversation.getResponse(request);
@@ -334,6 +459,16 @@ public class BasicUsersTest extends UsersTest {
 		responseObject = new JSONObject(response.getText());
 		assertEquals("New login wasn't returned in user details", login2, responseObject.get("login"));
 
+		// the old login must no longer authenticate, and must be available again
+		request = getAuthenticatedRequest(location, METHOD_GET, true);
+		setAuthentication(request, login1, password);
+		response = webConversation.getResponse(request);
+		assertEquals("User could authenticate with old login", HttpURLConnection.HTTP_UNAUTHORIZED, response.getResponseCode());
+
+		params.put("login", login1.toUpperCase());
+		request = getPostUsersRequest("", params, true);
+		response = webConversation.getResponse(request);
+		assertEquals(response.getText(), HttpURLConnection.HTTP_OK, response.getResponseCode());
 	}
 
 	@Test
@@ -381,5 +516,12 @@ public class BasicUsersTest extends UsersTest {
 
 		assertEquals("Found user doesn't have the property expected", propertyValue, foundUser.getProperty(propertyName));
 
+		// searches must reflect later changes to the property
+		String newPropertyValue = "newValue" + System.currentTimeMillis();
+		user.addProperty(propertyName, newPropertyValue);
+		userAdmin.updateUser(user.getUid(), user);
+
+		assertEquals("User found by old property value", 0, userAdmin.getUsersByProperty(propertyName, propertyValue, false).size());
+		assertEquals("User not found by new property value", 1, userAdmin.getUsersByProperty(propertyName, newPropertyValue, false).size());
 	}
 }
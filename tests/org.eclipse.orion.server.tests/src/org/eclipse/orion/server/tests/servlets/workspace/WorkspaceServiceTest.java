@@ -13,6 +13,7 @@ package org.eclipse.orion.server.tests.servlets.workspace;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
@@ -31,6 +32,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.orion.internal.server.servlets.ProtocolConstants;
+import org.eclipse.orion.internal.server.servlets.workspace.OwnerIndex;
 import org.eclipse.orion.internal.server.servlets.workspace.ServletTestingSupport;
 import org.eclipse.orion.internal.server.servlets.workspace.WorkspaceServlet;
 import org.eclipse.orion.server.core.users.OrionScope;
@@ -366,6 +368,53 @@ public class WorkspaceServiceTest extends FileSystemTest {
 		assertEquals(fileName, child.getString("Name"));
 	}
 
+	@Test
+	public void testCopyProjectContentsIndependent() throws IOException, SAXException, URISyntaxException, JSONException {
+		//create workspace
+		String workspaceName = WorkspaceServiceTest.class.getName() + "#testCopyProjectContentsIndependent";
+		WebResponse response = createWorkspace(workspaceName);
+		URI workspaceLocation = new URI(response.getHeaderField(ProtocolConstants.HEADER_LOCATION));
+
+		//create a project with a file in it
+		String sourceName = "Source Project";
+		WebRequest request = getCreateProjectRequest(workspaceLocation, sourceName, null);
+		response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_CREATED, response.getResponseCode());
+		String sourceLocation = response.getHeaderField(ProtocolConstants.HEADER_LOCATION);
+		String sourceContentLocation = new JSONObject(response.getText()).optString("ContentLocation");
+		String fileName = "file.txt";
+		request = getPostFilesRequest(sourceContentLocation, "{}", fileName);
+		response = webConversation.getResource(request);
+		assertEquals(HttpURLConnection.HTTP_CREATED, response.getResponseCode());
+		String sourceFileLocation = response.getHeaderField(ProtocolConstants.HEADER_LOCATION);
+		request = getPutFileRequest(sourceFileLocation, "original contents");
+		response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+
+		//copy the project
+		request = getCopyMoveProjectRequest(workspaceLocation, "Destination Project", sourceLocation, false);
+		response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_CREATED, response.getResponseCode());
+		String destinationContentLocation = new JSONObject(response.getText()).optString("ContentLocation");
+
+		//modify the file in the copy
+		response = webConversation.getResponse(getGetFilesRequest(destinationContentLocation + "?depth=1"));
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		JSONArray children = new JSONObject(response.getText()).getJSONArray("Children");
+		assertEquals(1, children.length());
+		String destinationFileLocation = children.getJSONObject(0).getString(ProtocolConstants.KEY_LOCATION);
+		request = getPutFileRequest(destinationFileLocation, "modified contents");
+		response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+
+		//the source file must be unchanged
+		response = webConversation.getResponse(getGetFilesRequest(sourceFileLocation));
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		assertEquals("original contents", response.getText());
+		response = webConversation.getResponse(getGetFilesRequest(destinationFileLocation));
+		assertEquals("modified contents", response.getText());
+	}
+
 	@Test
 	public void testCreateProjectBadName() throws IOException, SAXException, URISyntaxException, JSONException {
 		//create workspace
@@ -497,6 +546,78 @@ public class WorkspaceServiceTest extends FileSystemTest {
 		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
 	}
 
+	@Test
+	public void testProjectOwnerIndex() throws IOException, SAXException, JSONException, URISyntaxException, BackingStoreException {
+		//create workspace
+		String workspaceName = WorkspaceServiceTest.class.getName() + "#testProjectOwnerIndex";
+		WebResponse response = createWorkspace(workspaceName);
+		URI workspaceLocation = new URI(response.getHeaderField(ProtocolConstants.HEADER_LOCATION));
+		String workspaceId = new JSONObject(response.getText()).getString(ProtocolConstants.KEY_ID);
+
+		//create a project
+		WebRequest request = getCreateProjectRequest(workspaceLocation, "My Project", null);
+		response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_CREATED, response.getResponseCode());
+		String projectLocation = response.getHeaderField(ProtocolConstants.HEADER_LOCATION);
+		String projectId = new JSONObject(response.getText()).getString(ProtocolConstants.KEY_ID);
+
+		//the index should know the owners of the new project in both directions
+		OwnerIndex index = OwnerIndex.getDefault();
+		assertTrue(index.getWorkspacesOfUser(testUserId).contains(workspaceId));
+		assertTrue(index.getProjectsOfUser(testUserId).contains(projectId));
+		assertTrue(index.getUsersOfProject(projectId).contains(testUserId));
+		assertTrue(index.isProjectOwner(testUserId, projectId));
+
+		assertTrue(index.getProjectsOfWorkspace(workspaceId).contains(projectId));
+		assertTrue(index.getUsersOfWorkspace(workspaceId).contains(testUserId));
+
+		//delete project
+		request = new DeleteMethodWebRequest(makeAbsolute(projectLocation));
+		request.setHeaderField(ProtocolConstants.HEADER_ORION_VERSION, "1");
+		setAuthentication(request);
+		response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		assertFalse(index.getProjectsOfUser(testUserId).contains(projectId));
+		assertFalse(index.isProjectOwner(testUserId, projectId));
+	}
+
+	@Test
+	public void testOwnerIndexAfterRemoval() throws IOException, SAXException, JSONException, URISyntaxException, BackingStoreException {
+		//create a workspace with a project
+		String workspaceName = WorkspaceServiceTest.class.getName() + "#testOwnerIndexAfterRemoval";
+		WebResponse response = createWorkspace(workspaceName);
+		URI workspaceLocation = new URI(response.getHeaderField(ProtocolConstants.HEADER_LOCATION));
+		String workspaceId = new JSONObject(response.getText()).getString(ProtocolConstants.KEY_ID);
+		WebRequest request = getCreateProjectRequest(workspaceLocation, "My Project", null);
+		response = webConversation.getResponse(request);
+		assertEquals(HttpURLConnection.HTTP_CREATED, response.getResponseCode());
+		String projectId = new JSONObject(response.getText()).getString(ProtocolConstants.KEY_ID);
+		OwnerIndex index = OwnerIndex.getDefault();
+		assertTrue(index.isProjectOwner(testUserId, projectId));
+
+		//removing the workspace metadata should remove its ownership
+		OrionScope prefs = new OrionScope();
+		prefs.getNode("Workspaces").node(workspaceId).removeNode();
+		assertFalse(index.getWorkspacesOfUser(testUserId).contains(workspaceId));
+		assertFalse(index.getWorkspacesOfProject(projectId).contains(workspaceId));
+		assertFalse(index.isProjectOwner(testUserId, projectId));
+
+		//a workspace of a removed user should have no owner
+		response = createWorkspace(workspaceName);
+		workspaceId = new JSONObject(response.getText()).getString(ProtocolConstants.KEY_ID);
+		assertTrue(index.getUsersOfWorkspace(workspaceId).contains(testUserId));
+		prefs.getNode("Users").node(testUserId).removeNode();
+		assertTrue(index.getWorkspacesOfUser(testUserId).isEmpty());
+		assertFalse(index.getUsersOfWorkspace(workspaceId).contains(testUserId));
+
+		//removing all users should be picked up when the index is next used
+		response = createWorkspace(workspaceName);
+		workspaceId = new JSONObject(response.getText()).getString(ProtocolConstants.KEY_ID);
+		assertTrue(index.getUsersOfWorkspace(workspaceId).contains(testUserId));
+		prefs.getNode("Users").removeNode();
+		assertTrue(index.getUsersOfWorkspace(workspaceId).isEmpty());
+	}
+
 	@Test
 	public void testGetWorkspaces() throws IOException, SAXException, JSONException {
 		WebRequest request = new GetMethodWebRequest(SERVER_LOCATION + "/workspace");
@@ -40,6 +40,16 @@ public class TaskInfoTest extends TestCase {
 		AllTaskTests.assertEqualTasks(info, task2);
 	}
 
+	@Test
+	public void testVersion() {
+		TaskInfo info = new TaskInfo("mytask");
+		assertEquals(0, info.getVersion());
+		info.setMessage("msg");
+		info.setPercentComplete(50);
+		assertEquals(2, info.getVersion());
+		assertEquals(2, TaskInfo.fromJSON(info.toJSON().toString()).getVersion());
+	}
+
 	@Test
 	public void testSetMessage() {
 		TaskInfo info = new TaskInfo("mytask");
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.tests.tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import org.eclipse.core.runtime.*;
+import org.eclipse.orion.internal.server.core.tasks.TaskService;
+import org.eclipse.orion.internal.server.core.tasks.TaskStore;
+import org.eclipse.orion.server.core.tasks.ITaskListener;
+import org.eclipse.orion.server.core.tasks.TaskInfo;
+import org.junit.*;
+
+/**
+ * Tests for {@link TaskService}.
+ */
+public class TaskServiceTest extends TestCase {
+	File tempDir;
+	TaskService service;
+
+	@Test
+	public void testProgressUpdatesAreCoalesced() {
+		service = new TaskService(new Path(tempDir.getAbsolutePath()), 60000);
+		TaskInfo task = service.createTask();
+		for (int i = 1; i <= 10; i++)
+			service.updateTask(task.setPercentComplete(i * 5));
+		//running tasks are served from memory and written later
+		assertEquals(50, service.getTask(task.getTaskId()).getPercentComplete());
+		TaskStore store = new TaskStore(tempDir);
+		assertNull(store.readTask(task.getTaskId()));
+
+		service.flush();
+		assertEquals(50, TaskInfo.fromJSON(store.readTask(task.getTaskId())).getPercentComplete());
+	}
+
+	@Test
+	public void testCompletedTaskIsWritten() {
+		service = new TaskService(new Path(tempDir.getAbsolutePath()), 60000);
+		TaskInfo task = service.createTask();
+		task.done(new Status(IStatus.ERROR, "pluginid", "status message"));
+		service.updateTask(task);
+		TaskInfo stored = TaskInfo.fromJSON(new TaskStore(tempDir).readTask(task.getTaskId()));
+		AllTaskTests.assertEqualTasks(task, stored);
+
+		//a new service finds the task in the store
+		service.shutdown();
+		service = new TaskService(new Path(tempDir.getAbsolutePath()), 60000);
+		AllTaskTests.assertEqualTasks(task, service.getTask(task.getTaskId()));
+	}
+
+	@Test
+	public void testCompletedTaskExpires() throws InterruptedException {
+		service = new TaskService(new Path(tempDir.getAbsolutePath()), 10);
+		TaskInfo running = service.createTask();
+		TaskInfo task = service.createTask();
+		service.updateTask(task.done(Status.OK_STATUS));
+		Thread.sleep(50);
+
+		service.sweep();
+		assertNull(service.getTask(task.getTaskId()));
+		assertNull(new TaskStore(tempDir).readTask(task.getTaskId()));
+		//running tasks don't expire while they are updated
+		assertNotNull(service.getTask(running.getTaskId()));
+	}
+
+	@Test
+	public void testAbandonedTaskRemoved() throws InterruptedException {
+		service = new TaskService(new Path(tempDir.getAbsolutePath()), 60000, 100);
+		TaskInfo abandoned = service.createTask();
+		TaskInfo running = service.createTask();
+		service.flush();
+		final List<TaskInfo> updates = new ArrayList<TaskInfo>();
+		assertTrue(service.addTaskListener(abandoned.getTaskId(), abandoned.getVersion(), new ITaskListener() {
+			public void taskUpdated(TaskInfo updated) {
+				updates.add(updated);
+			}
+		}));
+		Thread.sleep(150);
+		service.updateTask(running.setPercentComplete(10));
+
+		service.sweep();
+		assertNull(service.getTask(abandoned.getTaskId()));
+		assertNull(new TaskStore(tempDir).readTask(abandoned.getTaskId()));
+		//a waiting client is released
+		assertEquals(1, updates.size());
+		assertNotNull(service.getTask(running.getTaskId()));
+	}
+
+	@Test
+	public void testTaskListener() {
+		service = new TaskService(new Path(tempDir.getAbsolutePath()), 60000);
+		TaskInfo task = service.createTask();
+		service.updateTask(task.setMessage("started"));
+		final List<TaskInfo> updates = new ArrayList<TaskInfo>();
+		ITaskListener listener = new ITaskListener() {
+			public void taskUpdated(TaskInfo updated) {
+				updates.add(updated);
+			}
+		};
+		//the client has not seen the current version yet
+		assertFalse(service.addTaskListener(task.getTaskId(), task.getVersion() - 1, listener));
+		assertTrue(service.addTaskListener(task.getTaskId(), task.getVersion(), listener));
+
+		service.updateTask(task.setPercentComplete(50));
+		service.updateTask(task.setPercentComplete(60));
+		//listeners are notified once
+		assertEquals(1, updates.size());
+		assertEquals(50, updates.get(0).getPercentComplete());
+		assertEquals(task.getVersion() - 1, updates.get(0).getVersion());
+
+		//nothing to wait for once the task is done
+		service.updateTask(task.done(Status.OK_STATUS));
+		assertFalse(service.addTaskListener(task.getTaskId(), task.getVersion(), listener));
+		assertFalse(service.addTaskListener("Doesnotexist", 0, listener));
+	}
+
+	@Test
+	public void testTasksOfUser() {
+		service = new TaskService(new Path(tempDir.getAbsolutePath()), 60000);
+		TaskInfo first = service.createTask("alice");
+		service.createTask("bob");
+		TaskInfo second = service.createTask("alice");
+		service.updateTask(second.done(Status.OK_STATUS));
+		List<TaskInfo> tasks = service.getTasks("alice");
+		assertEquals(2, tasks.size());
+		assertEquals(first.getTaskId(), tasks.get(0).getTaskId());
+		assertEquals("alice", tasks.get(1).getUserId());
+
+		service.removeTask(second.getTaskId());
+		assertNull(service.getTask(second.getTaskId()));
+		assertNull(new TaskStore(tempDir).readTask(second.getTaskId()));
+		assertEquals(1, service.getTasks("alice").size());
+	}
+
+	@Test
+	public void testRemovedTaskIsNotUpdated() {
+		service = new TaskService(new Path(tempDir.getAbsolutePath()), 60000);
+		TaskInfo task = service.createTask("alice");
+		service.updateTask(task.setPercentComplete(10));
+		service.removeTask(task.getTaskId());
+
+		//the job working on the task doesn't know it was removed
+		service.updateTask(task.setPercentComplete(20));
+		service.updateTask(task.done(Status.OK_STATUS));
+		service.flush();
+		assertNull(service.getTask(task.getTaskId()));
+		assertNull(new TaskStore(tempDir).readTask(task.getTaskId()));
+		assertEquals(0, service.getTasks("alice").size());
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		tempDir = new File(new File(System.getProperty("java.io.tmpdir")), "eclipse.TaskServiceTest");
+		tearDown();
+		tempDir.mkdir();
+	}
+
+	@After
+	public void tearDown() {
+		if (service != null) {
+			service.shutdown();
+			service = null;
+		}
+		File[] children = tempDir.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				child.delete();
+			}
+		}
+		tempDir.delete();
+	}
+}
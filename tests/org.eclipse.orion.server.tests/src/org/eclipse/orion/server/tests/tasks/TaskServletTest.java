@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.orion.server.tests.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.meterware.httpunit.*;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.orion.server.core.tasks.ITaskService;
+import org.eclipse.orion.server.core.tasks.TaskInfo;
+import org.eclipse.orion.server.tests.AbstractServerTest;
+import org.eclipse.orion.server.tests.ServerTestsActivator;
+import org.eclipse.orion.server.tests.servlets.internal.DeleteMethodWebRequest;
+import org.json.*;
+import org.junit.*;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Tests for listing, reading and canceling tasks through the task servlet.
+ */
+public class TaskServletTest extends AbstractServerTest {
+	private static final String OTHER_LOGIN = "othertaskuser";
+	private static final String OTHER_PASSWORD = "othertaskuser";
+
+	WebConversation webConversation;
+	ServiceReference<ITaskService> taskServiceRef;
+	ITaskService taskService;
+
+	@Before
+	public void setUp() throws Exception {
+		webConversation = new WebConversation();
+		webConversation.setExceptionsThrownOnErrorStatus(false);
+		setUpAuthorization();
+		createUser(OTHER_LOGIN, OTHER_PASSWORD);
+		BundleContext context = ServerTestsActivator.getContext();
+		taskServiceRef = context.getServiceReference(ITaskService.class);
+		taskService = context.getService(taskServiceRef);
+	}
+
+	@After
+	public void tearDown() {
+		ServerTestsActivator.getContext().ungetService(taskServiceRef);
+	}
+
+	@Test
+	public void testListAndCancelAsOwner() throws IOException, JSONException {
+		TaskInfo task = taskService.createTask(testUserLogin);
+		taskService.updateTask(task.setMessage("Working..."));
+
+		//the owner sees the running task
+		WebResponse response = getTasks(testUserLogin, testUserPassword, "?running=true");
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		assertTrue(containsTask(new JSONObject(response.getText()), task.getTaskId()));
+		response = getTasks(testUserLogin, testUserPassword, "?running=false");
+		assertFalse(containsTask(new JSONObject(response.getText()), task.getTaskId()));
+
+		//another user does not
+		response = getTasks(OTHER_LOGIN, OTHER_PASSWORD, "");
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		assertFalse(containsTask(new JSONObject(response.getText()), task.getTaskId()));
+
+		//canceling a task without a job completes it
+		WebRequest request = new DeleteMethodWebRequest(getTaskLocation(task));
+		setAuthentication(request);
+		response = webConversation.getResource(request);
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		TaskInfo canceled = TaskInfo.fromJSON(response.getText());
+		assertFalse(canceled.isRunning());
+		assertEquals(IStatus.CANCEL, canceled.getResult().getSeverity());
+
+		//deleting a completed task removes it
+		request = new DeleteMethodWebRequest(getTaskLocation(task));
+		setAuthentication(request);
+		response = webConversation.getResource(request);
+		assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+		request = new GetMethodWebRequest(getTaskLocation(task));
+		setAuthentication(request);
+		response = webConversation.getResource(request);
+		assertEquals(HttpURLConnection.HTTP_NOT_FOUND, response.getResponseCode());
+	}
+
+	@Test
+	public void testOtherUserForbidden() throws IOException {
+		TaskInfo task = taskService.createTask(testUserLogin);
+		taskService.updateTask(task.setMessage("Working..."));
+
+		WebRequest request = new GetMethodWebRequest(getTaskLocation(task));
+		setAuthentication(request, OTHER_LOGIN, OTHER_PASSWORD);
+		WebResponse response = webConversation.getResource(request);
+		assertEquals(HttpURLConnection.HTTP_FORBIDDEN, response.getResponseCode());
+
+		request = new DeleteMethodWebRequest(getTaskLocation(task));
+		setAuthentication(request, OTHER_LOGIN, OTHER_PASSWORD);
+		response = webConversation.getResource(request);
+		assertEquals(HttpURLConnection.HTTP_FORBIDDEN, response.getResponseCode());
+		assertTrue(taskService.getTask(task.getTaskId()).isRunning());
+
+		taskService.removeTask(task.getTaskId());
+	}
+
+	private WebResponse getTasks(String login, String password, String query) throws IOException {
+		WebRequest request = new GetMethodWebRequest(ServerTestsActivator.getServerLocation() + "/task" + query);
+		setAuthentication(request, login, password);
+		return webConversation.getResource(request);
+	}
+
+	private String getTaskLocation(TaskInfo task) {
+		return ServerTestsActivator.getServerLocation() + "/task/id/" + task.getTaskId();
+	}
+
+	private boolean containsTask(JSONObject list, String taskId) throws JSONException {
+		JSONArray children = list.getJSONArray("Children");
+		for (int i = 0; i < children.length(); i++)
+			if (taskId.equals(children.getJSONObject(i).getString("Id")))
+				return true;
+		return false;
+	}
+}